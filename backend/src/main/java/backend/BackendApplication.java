@@ -2,12 +2,18 @@ package backend;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 
 @SpringBootApplication
 public class BackendApplication {
 
+    // enough for every startup step of this application; served at /api/actuator/startup
+    private static final int STARTUP_STEPS = 8192;
+
     public static void main(String[] args) {
-        SpringApplication.run(BackendApplication.class, args);
+        SpringApplication app = new SpringApplication(BackendApplication.class);
+        app.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEPS));
+        app.run(args);
     }
 
 }
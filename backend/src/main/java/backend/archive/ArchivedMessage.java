@@ -0,0 +1,9 @@
+package backend.archive;
+
+import java.time.LocalDateTime;
+
+/**
+ * A message as kept in an archive segment.
+ */
+public record ArchivedMessage(long id, long senderId, long receiverId, String content, LocalDateTime sentAt,
+                              boolean read) {}
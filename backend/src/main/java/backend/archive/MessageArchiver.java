@@ -0,0 +1,115 @@
+package backend.archive;
+
+import backend.repository.MessageArchiveRepository;
+import backend.repository.MessageArchiveRepository.Pair;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Moves messages older than a cutoff from dbo.message into compressed archive segments.
+ * Works one chunk at a time, oldest conversation first: a chunk is up to segmentSize messages
+ * of one conversation, inserted as a segment and deleted from the hot table in the same
+ * transaction, followed by a pause so the job never holds locks for long or competes with
+ * request traffic for the log. The change feed reports each segment as the tombstone of the
+ * messages it took (V17), so synced clients drop them from their copy of the thread.
+ */
+public class MessageArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageArchiver.class);
+
+    private final MessageArchiveRepository archive;
+    private final TransactionTemplate tx;
+    private final Duration maxAge;
+    private final int segmentSize;
+    private final int maxSegmentsPerRun;
+    private final Duration pause;
+
+    private final Counter messagesArchived;
+    private final Counter segmentsWritten;
+    private final Counter rawBytes;
+    private final Counter storedBytes;
+    private final Timer chunks;
+
+    /**
+     * @param maxAge messages sent longer ago than this are archived
+     * @param segmentSize most messages per segment
+     * @param maxSegmentsPerRun most segments one {@link #run} writes
+     * @param pause time between two chunks
+     */
+    public MessageArchiver(MessageArchiveRepository archive, TransactionTemplate tx, Duration maxAge,
+                           int segmentSize, int maxSegmentsPerRun, Duration pause, MeterRegistry registry) {
+        this.archive = archive;
+        this.tx = tx;
+        this.maxAge = maxAge;
+        this.segmentSize = segmentSize;
+        this.maxSegmentsPerRun = maxSegmentsPerRun;
+        this.pause = pause;
+        this.messagesArchived = Counter.builder("journal.archive.messages")
+                .description("Messages moved to the archive").register(registry);
+        this.segmentsWritten = Counter.builder("journal.archive.segments").register(registry);
+        this.rawBytes = Counter.builder("journal.archive.bytes").tag("form", "raw")
+                .description("UTF-8 size of archived message content").register(registry);
+        this.storedBytes = Counter.builder("journal.archive.bytes").tag("form", "stored")
+                .description("Size of the written segments").register(registry);
+        this.chunks = Timer.builder("journal.archive.chunk").register(registry);
+    }
+
+    /**
+     * Archives until nothing is older than the cutoff or the per-run limit is reached.
+     *
+     * @return number of messages archived
+     */
+    public int run() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(maxAge);
+        int total = 0;
+        for (int i = 0; i < maxSegmentsPerRun; i++) {
+            Integer moved = chunks.record(() -> tx.execute(status -> archiveOne(cutoff)));
+            if (moved == null || moved == 0) break;
+            total += moved;
+            if (!sleep(pause)) break;
+        }
+        if (total > 0) log.info("Archived {} messages sent before {}", total, cutoff);
+        return total;
+    }
+
+    private int archiveOne(LocalDateTime cutoff) {
+        Pair pair = archive.oldestConversationBefore(cutoff).orElse(null);
+        if (pair == null) return 0;
+        List<ArchivedMessage> batch = archive.oldestMessages(pair, cutoff, segmentSize);
+        if (batch.isEmpty()) return 0;
+
+        byte[] body = MessageSegments.encode(pair.low(), batch);
+        archive.insertSegment(pair, batch, body);
+        int deleted = archive.deleteMessages(batch);
+        if (deleted != batch.size()) {
+            // a message vanished between read and delete; roll back rather than archive a copy of it
+            throw new IllegalStateException("Expected to delete " + batch.size() + " messages, deleted " + deleted);
+        }
+
+        messagesArchived.increment(batch.size());
+        segmentsWritten.increment();
+        rawBytes.increment(batch.stream().mapToLong(m -> m.content().getBytes(StandardCharsets.UTF_8).length).sum());
+        storedBytes.increment(body.length);
+        return batch.size();
+    }
+
+    private static boolean sleep(Duration d) {
+        if (d.isZero()) return true;
+        try {
+            Thread.sleep(d.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
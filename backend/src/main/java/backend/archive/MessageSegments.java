@@ -0,0 +1,90 @@
+package backend.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Binary form of an archive segment: one conversation's messages, deflated together so the
+ * repeated phrasing of a thread compresses well. The first byte is the format version.
+ * Messages are stored relative to the pair, so sender and receiver cost one bit.
+ */
+public final class MessageSegments {
+
+    static final byte V1_DEFLATE = 1;
+
+    private MessageSegments() {
+    }
+
+    /**
+     * @param low the lower user id of the conversation
+     * @param messages messages between {@code low} and one other user, in time order
+     */
+    public static byte[] encode(long low, List<ArchivedMessage> messages) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(V1_DEFLATE);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater))) {
+            out.writeInt(messages.size());
+            for (ArchivedMessage m : messages) {
+                byte[] content = m.content().getBytes(StandardCharsets.UTF_8);
+                out.writeLong(m.id());
+                out.writeBoolean(m.senderId() == low);
+                out.writeLong(m.sentAt().toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(m.sentAt().getNano());
+                out.writeBoolean(m.read());
+                out.writeInt(content.length);
+                out.write(content);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param low the lower user id of the conversation
+     * @param high the higher user id of the conversation
+     * @param body what {@link #encode} returned
+     * @return the messages, in time order
+     */
+    public static List<ArchivedMessage> decode(long low, long high, byte[] body) {
+        if (body.length == 0 || body[0] != V1_DEFLATE) {
+            throw new IllegalStateException("Unknown archive segment format " + (body.length == 0 ? "-" : body[0]));
+        }
+        Inflater inflater = new Inflater(true);
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(
+                new ByteArrayInputStream(body, 1, body.length - 1), inflater))) {
+            int count = in.readInt();
+            List<ArchivedMessage> messages = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long id = in.readLong();
+                boolean fromLow = in.readBoolean();
+                LocalDateTime sentAt = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+                boolean read = in.readBoolean();
+                byte[] content = in.readNBytes(in.readInt());
+                messages.add(new ArchivedMessage(id, fromLow ? low : high, fromLow ? high : low,
+                        new String(content, StandardCharsets.UTF_8), sentAt, read));
+            }
+            return messages;
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupt archive segment", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
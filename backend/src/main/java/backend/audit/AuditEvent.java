@@ -0,0 +1,46 @@
+package backend.audit;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One audited access. Stored as a fixed-size record in the segment files.
+ *
+ * @param occurredAt epoch milliseconds
+ * @param userId who accessed the record
+ * @param patientId whose record was accessed
+ * @param subjectId the note or diagnosis written, 0 for reads
+ */
+public record AuditEvent(long occurredAt, Action action, long userId, long patientId, long subjectId) {
+
+    /** What was done. Stored by ordinal, so only append new values. */
+    public enum Action {
+        READ_RECORD,
+        READ_OWN_RECORD,
+        WRITE_NOTE,
+        WRITE_DIAGNOSIS
+    }
+
+    private static final Action[] ACTIONS = Action.values();
+
+    static final int BYTES = 4 * Long.BYTES + Integer.BYTES;
+
+    void writeTo(ByteBuffer buf) {
+        buf.putLong(occurredAt);
+        buf.putLong(userId);
+        buf.putLong(patientId);
+        buf.putLong(subjectId);
+        buf.putInt(action.ordinal());
+    }
+
+    static AuditEvent readFrom(ByteBuffer buf) {
+        long at = buf.getLong();
+        long user = buf.getLong();
+        long patient = buf.getLong();
+        long subject = buf.getLong();
+        int action = buf.getInt();
+        if (action < 0 || action >= ACTIONS.length) {
+            throw new IllegalStateException("Unknown audit action " + action);
+        }
+        return new AuditEvent(at, ACTIONS[action], user, patient, subject);
+    }
+}
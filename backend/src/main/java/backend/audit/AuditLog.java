@@ -0,0 +1,225 @@
+package backend.audit;
+
+import backend.audit.AuditEvent.Action;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Append-only access audit log. Request threads put events on a lock-free ring and return;
+ * one writer thread takes them off in batches and appends each batch as a checksummed frame to
+ * the current memory-mapped segment file. Pages are forced to disk every fsync interval, so an
+ * event is durable at most that long after it was recorded. Segments are sealed when full or
+ * after the roll interval, and sealed segments are shipped to the database by {@link AuditShipper}.
+ *
+ * A full ring makes the caller wait up to maxBlock rather than lose the event; only after that
+ * is the event dropped, counted and logged. Work run through {@link #unaudited} records nothing,
+ * for synthetic requests such as the warm-up's.
+ *
+ * A segment's sequence is also its id in dbo.audit_event, so it must not repeat after a restart
+ * with an emptied directory or between instances shipping to the same database: the high bits
+ * are the epoch millisecond the segment was opened (at least one more than the last segment's),
+ * the low {@value #INSTANCE_BITS} bits a tag drawn at random when the log starts.
+ */
+public class AuditLog implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditLog.class);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    static final int INSTANCE_BITS = 16;
+    private static final ThreadLocal<Boolean> SUPPRESSED = new ThreadLocal<>();
+
+    private final Path dir;
+    private final AuditRing<AuditEvent> ring;
+    private final int segmentSize;
+    private final int batchSize;
+    private final long fsyncNanos;
+    private final long rollNanos;
+    private final long maxBlockNanos;
+    private final int instance = ThreadLocalRandom.current().nextInt(1 << INSTANCE_BITS);
+
+    private final Counter written;
+    private final Counter dropped;
+    private final Counter blocked;
+    private final Timer fsyncs;
+
+    private final Thread writer;
+    private volatile boolean running = true;
+    private AuditSegment segment;
+    private long lastOpenedAt;
+    private boolean dirty;
+    private long lastForce = System.nanoTime();
+
+    /**
+     * @param dir where the segment files are written
+     * @param ringCapacity events the ring holds, rounded up to a power of two
+     * @param segmentSize bytes per segment file
+     * @param batchSize most events per frame
+     * @param fsyncInterval longest time an event stays in the page cache only
+     * @param rollInterval a segment with events is sealed after this long even if not full
+     * @param maxBlock how long a caller waits for room on a full ring
+     */
+    public AuditLog(Path dir, int ringCapacity, int segmentSize, int batchSize, Duration fsyncInterval,
+                    Duration rollInterval, Duration maxBlock, MeterRegistry registry) throws IOException {
+        if (AuditSegment.maxEvents(segmentSize) < batchSize) {
+            throw new IllegalArgumentException("Audit segment of " + segmentSize + " bytes cannot hold a batch of " + batchSize);
+        }
+        this.dir = Files.createDirectories(dir);
+        this.ring = new AuditRing<>(ringCapacity);
+        this.segmentSize = segmentSize;
+        this.batchSize = batchSize;
+        this.fsyncNanos = fsyncInterval.toNanos();
+        this.rollNanos = rollInterval.toNanos();
+        this.maxBlockNanos = maxBlock.toNanos();
+
+        this.written = Counter.builder("journal.audit.events").tag("outcome", "written").register(registry);
+        this.dropped = Counter.builder("journal.audit.events").tag("outcome", "dropped")
+                .description("Events lost because the ring stayed full").register(registry);
+        this.blocked = Counter.builder("journal.audit.blocked")
+                .description("Callers that had to wait for room on the ring").register(registry);
+        this.fsyncs = Timer.builder("journal.audit.fsync").register(registry);
+        Gauge.builder("journal.audit.ring.size", ring, AuditRing::size).register(registry);
+
+        recover();
+        this.writer = new Thread(this::writeLoop, "audit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // a crash leaves the last segment open; its intact frames are kept and it is sealed as is
+    private void recover() throws IOException {
+        for (Path open : AuditSegment.list(dir, AuditSegment.OPEN)) {
+            long seq = AuditSegment.sequenceOf(open);
+            Files.move(open, open.resolveSibling(AuditSegment.fileName(seq, AuditSegment.SEALED)));
+            log.warn("Sealed audit segment {} left open by an earlier run", seq);
+        }
+        for (Path sealed : AuditSegment.list(dir, AuditSegment.SEALED)) {
+            lastOpenedAt = Math.max(lastOpenedAt, AuditSegment.sequenceOf(sealed) >>> INSTANCE_BITS);
+        }
+    }
+
+    private long nextSequence() {
+        lastOpenedAt = Math.max(lastOpenedAt + 1, System.currentTimeMillis());
+        return lastOpenedAt << INSTANCE_BITS | instance;
+    }
+
+    /**
+     * Runs work on this thread without recording its accesses.
+     */
+    public static <T> T unaudited(Supplier<T> work) {
+        Boolean previous = SUPPRESSED.get();
+        SUPPRESSED.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) SUPPRESSED.remove();
+        }
+    }
+
+    /**
+     * Records an access. Returns as soon as the event is queued.
+     *
+     * @param subjectId the note or diagnosis written, 0 for reads
+     */
+    public void record(Action action, long userId, long patientId, long subjectId) {
+        if (SUPPRESSED.get() != null) return;
+        AuditEvent event = new AuditEvent(System.currentTimeMillis(), action, userId, patientId, subjectId);
+        if (ring.offer(event)) return;
+
+        blocked.increment();
+        long deadline = System.nanoTime() + maxBlockNanos;
+        while (System.nanoTime() < deadline && running) {
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+            if (ring.offer(event)) return;
+        }
+        dropped.increment();
+        log.error("Audit ring full, dropped {} by user {} on patient {}", action, userId, patientId);
+    }
+
+    /** The directory holding the segment files. */
+    public Path directory() {
+        return dir;
+    }
+
+    private void writeLoop() {
+        List<AuditEvent> batch = new ArrayList<>(batchSize);
+        while (true) {
+            boolean stopping = !running;
+            try {
+                ring.drain(batch::add, batchSize - batch.size());
+                if (!batch.isEmpty()) {
+                    append(batch);
+                    batch.clear();
+                    // keep draining while there is a backlog
+                    if (ring.size() > 0) continue;
+                }
+                long now = System.nanoTime();
+                if (dirty && now - lastForce >= fsyncNanos) force(now);
+                if (segment != null && !segment.isEmpty() && segment.ageNanos() >= rollNanos) seal();
+                if (stopping) {
+                    if (segment != null) seal();
+                    return;
+                }
+            } catch (IOException | RuntimeException e) {
+                // the batch stays and is retried; the log never silently skips events
+                log.error("Audit writer failed, retrying", e);
+                LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1));
+                if (stopping) return;
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    private void append(List<AuditEvent> batch) throws IOException {
+        if (segment != null && !segment.fits(batch.size())) seal();
+        if (segment == null) segment = AuditSegment.create(dir, nextSequence(), segmentSize);
+        segment.append(batch);
+        written.increment(batch.size());
+        dirty = true;
+    }
+
+    private void force(long now) {
+        fsyncs.record(segment::force);
+        dirty = false;
+        lastForce = now;
+    }
+
+    private void seal() throws IOException {
+        AuditSegment s = segment;
+        segment = null;
+        if (s.isEmpty()) {
+            s.close();
+            Files.delete(dir.resolve(AuditSegment.fileName(s.sequence(), AuditSegment.OPEN)));
+        } else {
+            s.seal();
+        }
+        dirty = false;
+        lastForce = System.nanoTime();
+    }
+
+    /**
+     * Writes out everything queued, seals the current segment and stops the writer.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package backend.audit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free queue for many producers and one consumer. Each slot carries a sequence
+ * number: producers claim a position with one CAS and publish the slot by advancing its
+ * sequence, the consumer takes slots in order as they are published.
+ *
+ * @param <E> element type
+ */
+final class AuditRing<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    // only the consumer moves the head; volatile so size() can read it from other threads
+    private volatile long head;
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    AuditRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) sequences.set(i, i);
+    }
+
+    /**
+     * @return false if the ring is full
+     */
+    boolean offer(E e) {
+        long pos = tail.get();
+        while (true) {
+            int index = (int) pos & mask;
+            long seq = sequences.getAcquire(index);
+            long diff = seq - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots.setPlain(index, e);
+                    sequences.setRelease(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Consumer only.
+     *
+     * @return number of elements passed to {@code sink}
+     */
+    int drain(Consumer<? super E> sink, int max) {
+        long pos = head;
+        int n = 0;
+        while (n < max) {
+            int index = (int) pos & mask;
+            if (sequences.getAcquire(index) != pos + 1) break;
+            E e = slots.getPlain(index);
+            slots.setPlain(index, null);
+            sequences.setRelease(index, pos + mask + 1);
+            pos++;
+            n++;
+            sink.accept(e);
+        }
+        head = pos;
+        return n;
+    }
+
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,58 @@
+package backend.audit;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line scan of the audit segment files for one patient, for events not yet shipped
+ * to dbo.audit_event or when the database is not at hand. Prints one tab-separated line per event:
+ * time, action, user, patient, subject, segment.
+ *
+ * <pre>
+ * java -cp backend.jar -Dloader.main=backend.audit.AuditScan \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher /var/lib/journal/audit 42
+ * </pre>
+ */
+public final class AuditScan {
+
+    private AuditScan() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: AuditScan <segment directory> <patient id>");
+            System.exit(2);
+        }
+        int matches = scan(Path.of(args[0]), Long.parseLong(args[1]), System.out);
+        System.err.println(matches + " events");
+    }
+
+    /**
+     * Scans every segment in {@code dir}, sealed, open or marked corrupt, oldest first.
+     *
+     * @return number of events printed
+     */
+    public static int scan(Path dir, long patientId, PrintStream out) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (var list = Files.list(dir)) {
+            list.filter(f -> f.getFileName().toString().startsWith("audit-")).sorted().forEach(files::add);
+        }
+        int[] matches = {0};
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            boolean intact = AuditSegment.read(file, e -> {
+                if (e.patientId() != patientId) return;
+                out.println(Instant.ofEpochMilli(e.occurredAt()) + "\t" + e.action() + "\t" + e.userId() + "\t"
+                        + e.patientId() + "\t" + e.subjectId() + "\t" + name);
+                matches[0]++;
+            });
+            if (!intact) System.err.println(name + ": stopped at a frame failing its checksum");
+        }
+        return matches[0];
+    }
+}
@@ -0,0 +1,182 @@
+package backend.audit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * One audit segment file, written through a memory mapping of its full size.
+ *
+ * <pre>
+ * header: int magic, int version, long sequence
+ * frame:  int count, int crc32c of the records, count records of {@link AuditEvent#BYTES} bytes
+ * </pre>
+ *
+ * The count of a frame is written last, so a frame cut short by a crash reads as the end of the
+ * file (count 0, the mapping is zero-filled) or fails its checksum. Segments being written end
+ * in {@code .open}; they are renamed to {@code .seg} once sealed and are not written again.
+ */
+final class AuditSegment implements Closeable {
+
+    static final String OPEN = ".open";
+    static final String SEALED = ".seg";
+
+    private static final int MAGIC = 0x4A415544; // "JAUD"
+    private static final int VERSION = 1;
+    private static final int HEADER = 16;
+    private static final int FRAME_HEADER = 8;
+
+    private final long sequence;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buf;
+    private final CRC32C crc = new CRC32C();
+    private final long createdAt;
+    private int frames;
+
+    private AuditSegment(long sequence, Path path, FileChannel channel, MappedByteBuffer buf) {
+        this.sequence = sequence;
+        this.path = path;
+        this.channel = channel;
+        this.buf = buf;
+        this.createdAt = System.nanoTime();
+    }
+
+    static String fileName(long sequence, String suffix) {
+        return String.format("audit-%019d%s", sequence, suffix);
+    }
+
+    /**
+     * @return the sequence in a segment file name, or -1 if it is not one
+     */
+    static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith("audit-") || !(name.endsWith(OPEN) || name.endsWith(SEALED))) return -1;
+        try {
+            return Long.parseLong(name.substring(6, name.lastIndexOf('.')));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static AuditSegment create(Path dir, long sequence, int size) throws IOException {
+        Path path = dir.resolve(fileName(sequence, OPEN));
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buf.putInt(MAGIC).putInt(VERSION).putLong(sequence);
+            return new AuditSegment(sequence, path, channel, buf);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    long sequence() {
+        return sequence;
+    }
+
+    boolean isEmpty() {
+        return frames == 0;
+    }
+
+    long ageNanos() {
+        return System.nanoTime() - createdAt;
+    }
+
+    boolean fits(int events) {
+        return buf.remaining() >= FRAME_HEADER + events * AuditEvent.BYTES;
+    }
+
+    static int maxEvents(int segmentSize) {
+        return (segmentSize - HEADER - FRAME_HEADER) / AuditEvent.BYTES;
+    }
+
+    /** Appends one frame; call {@link #fits} first. */
+    void append(List<AuditEvent> events) {
+        int start = buf.position();
+        buf.position(start + FRAME_HEADER);
+        for (AuditEvent e : events) e.writeTo(buf);
+
+        crc.reset();
+        crc.update(buf.slice(start + FRAME_HEADER, events.size() * AuditEvent.BYTES));
+        buf.putInt(start + 4, (int) crc.getValue());
+        buf.putInt(start, events.size());
+        frames++;
+    }
+
+    /** Writes the mapped pages to disk. */
+    void force() {
+        buf.force();
+    }
+
+    /**
+     * Forces, closes and renames the file to its sealed name.
+     *
+     * @return the sealed file
+     */
+    Path seal() throws IOException {
+        force();
+        channel.close();
+        return Files.move(path, path.resolveSibling(fileName(sequence, SEALED)), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads every intact frame of a segment file, open or sealed.
+     *
+     * @return false if reading stopped at a frame that failed its checksum rather than at the end
+     * @throws IOException if the file is not an audit segment
+     */
+    static boolean read(Path file, Consumer<AuditEvent> sink) throws IOException {
+        ByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buf.remaining() < HEADER || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+            throw new IOException("Not an audit segment: " + file);
+        }
+        buf.getLong();
+
+        CRC32C crc = new CRC32C();
+        while (buf.remaining() >= FRAME_HEADER) {
+            int start = buf.position();
+            int count = buf.getInt();
+            int expected = buf.getInt();
+            if (count <= 0) return true;
+            long length = (long) count * AuditEvent.BYTES;
+            if (length > buf.remaining()) return false;
+
+            crc.reset();
+            crc.update(buf.slice(start + FRAME_HEADER, (int) length));
+            if ((int) crc.getValue() != expected) return false;
+            for (int i = 0; i < count; i++) sink.accept(AuditEvent.readFrom(buf));
+        }
+        return true;
+    }
+
+    static List<Path> list(Path dir, String suffix) {
+        try (var files = Files.list(dir)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(suffix) && sequenceOf(f) >= 0)
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package backend.audit;
+
+import backend.repository.AuditRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bulk loads sealed audit segments into dbo.audit_event, oldest first, and deletes each file
+ * once its rows are committed. A segment is loaded in one transaction that first removes any
+ * rows of an earlier, interrupted attempt. A segment whose id is already taken by another file's
+ * rows is not loaded; it is renamed to .conflict and kept for inspection.
+ */
+public class AuditShipper {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditShipper.class);
+
+    private final Path dir;
+    private final AuditRepository repository;
+    private final TransactionTemplate tx;
+    private final Counter segments;
+    private final Counter events;
+    private final Counter corrupt;
+    private final Counter conflicts;
+
+    public AuditShipper(Path dir, AuditRepository repository, TransactionTemplate tx, MeterRegistry registry) {
+        this.dir = dir;
+        this.repository = repository;
+        this.tx = tx;
+        this.segments = Counter.builder("journal.audit.shipped.segments").register(registry);
+        this.events = Counter.builder("journal.audit.shipped.events").register(registry);
+        this.corrupt = Counter.builder("journal.audit.corrupt.segments")
+                .description("Segments that ended in a frame failing its checksum").register(registry);
+        this.conflicts = Counter.builder("journal.audit.conflict.segments")
+                .description("Segments whose id the database holds for another file").register(registry);
+    }
+
+    /**
+     * @return number of segments shipped
+     */
+    public int ship() throws IOException {
+        int shipped = 0;
+        for (Path file : AuditSegment.list(dir, AuditSegment.SEALED)) {
+            long sequence = AuditSegment.sequenceOf(file);
+            List<AuditEvent> read = new ArrayList<>();
+            boolean intact = AuditSegment.read(file, read::add);
+            try {
+                tx.executeWithoutResult(status -> repository.replaceSegment(sequence, read));
+            } catch (AuditRepository.SegmentConflictException e) {
+                conflicts.increment();
+                log.error("Audit segment {} not shipped: {}", file, e.getMessage());
+                Files.move(file, file.resolveSibling(file.getFileName() + ".conflict"));
+                continue;
+            }
+            if (intact) {
+                Files.delete(file);
+            } else {
+                // the intact frames before it are shipped; the file is kept for inspection
+                corrupt.increment();
+                log.error("Audit segment {} has a frame failing its checksum after {} events", file, read.size());
+                Files.move(file, file.resolveSibling(file.getFileName() + ".corrupt"));
+            }
+            segments.increment();
+            events.increment(read.size());
+            shipped++;
+        }
+        return shipped;
+    }
+}
@@ -0,0 +1,229 @@
+package backend.auth;
+
+import backend.tracing.TraceContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashes and checks passwords with bcrypt on a small pool of its own, so a login storm costs
+ * a bounded amount of CPU instead of every request thread's. Work that cannot start within
+ * the queue, or finish within the wait, is shed with 503.
+ *
+ * Stored values are {@code {bcrypt}$2a$...}. Values without a prefix are the old plaintext
+ * passwords; they still match, and {@link Check#MATCH_REHASH} tells the caller to store a
+ * hash instead. The same happens for hashes made with a lower cost than the current one.
+ */
+public class PasswordHasher implements AutoCloseable {
+
+    /** The hashing pool is full or too slow right now. */
+    @ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "Too many logins right now, try again")
+    public static class OverloadedException extends RuntimeException {
+        OverloadedException(String message) {
+            super(message);
+        }
+    }
+
+    public enum Check {
+        MISMATCH,
+        MATCH,
+        /** Matched, but the stored value is plaintext or too cheap and should be replaced. */
+        MATCH_REHASH
+    }
+
+    private final int cost;
+    private final long maxWaitNanos;
+    private final PasswordEncoder encoder;
+    private final ThreadPoolExecutor pool;
+    // checked against when there is no stored value, so an unknown username costs a bcrypt too
+    private final String dummy;
+
+    private final Timer hashTime;
+    private final Timer queueWait;
+    private final Counter queueFull;
+    private final Counter timedOut;
+
+    /**
+     * @param cost bcrypt log rounds
+     * @param threads hashing threads, at most the number of cores worth giving to logins
+     * @param queueCapacity hashes that may wait for a thread
+     * @param maxWait how long a request waits for its hash, queueing included
+     * @param registry where the meters are registered
+     */
+    public PasswordHasher(int cost, int threads, int queueCapacity, Duration maxWait, MeterRegistry registry) {
+        this.cost = cost;
+        this.maxWaitNanos = maxWait.toNanos();
+        var delegating = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", new BCryptPasswordEncoder(cost)));
+        delegating.setDefaultPasswordEncoderForMatches(new Plaintext());
+        this.encoder = delegating;
+        this.dummy = delegating.encode(UUID.randomUUID().toString());
+
+        AtomicInteger index = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread t = new Thread(r, "password-hash-" + index.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        this.hashTime = Timer.builder("journal.password.hash").description("CPU time of one bcrypt hash or check")
+                .register(registry);
+        this.queueWait = Timer.builder("journal.password.queue.wait").description("Time waiting for a hashing thread")
+                .register(registry);
+        this.queueFull = Counter.builder("journal.password.rejected").tag("reason", "queue-full").register(registry);
+        this.timedOut = Counter.builder("journal.password.rejected").tag("reason", "timeout").register(registry);
+        Gauge.builder("journal.password.queue.size", pool, p -> p.getQueue().size()).register(registry);
+        Gauge.builder("journal.password.cost", this, h -> h.cost).register(registry);
+    }
+
+    /**
+     * @param raw password as entered
+     * @return the value to store
+     * @throws OverloadedException if the hash cannot be done in time
+     */
+    public String hash(String raw) {
+        return run(() -> encoder.encode(raw));
+    }
+
+    /**
+     * Hashes on the calling thread instead of the pool, for background jobs that should not
+     * take the hashing threads from logins and may take as long as they need.
+     *
+     * @param raw password as entered
+     * @return the value to store
+     */
+    public String hashHere(String raw) {
+        long started = System.nanoTime();
+        try {
+            return encoder.encode(raw);
+        } finally {
+            hashTime.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * @param raw password as entered
+     * @param stored the stored value, hashed or legacy plaintext; null for an unknown user,
+     *               which is checked against a dummy hash so it takes as long as a wrong password
+     * @return whether it matches, and whether the stored value should be rehashed
+     * @throws OverloadedException if the check cannot be done in time
+     */
+    public Check check(String raw, String stored) {
+        if (raw == null) return Check.MISMATCH;
+        if (stored == null) {
+            run(() -> encoder.matches(raw, dummy));
+            return Check.MISMATCH;
+        }
+        boolean hashed = stored.startsWith("{");
+        // plaintext is compared inline, only bcrypt needs the pool
+        boolean matches = hashed ? run(() -> encoder.matches(raw, stored)) : encoder.matches(raw, stored);
+        if (!matches) return Check.MISMATCH;
+        return encoder.upgradeEncoding(stored) ? Check.MATCH_REHASH : Check.MATCH;
+    }
+
+    public int cost() {
+        return cost;
+    }
+
+    private <T> T run(Callable<T> work) {
+        long submitted = System.nanoTime();
+        Future<T> result;
+        try {
+            result = pool.submit(TraceContext.wrap(() -> {
+                long started = System.nanoTime();
+                queueWait.record(started - submitted, TimeUnit.NANOSECONDS);
+                try {
+                    return work.call();
+                } finally {
+                    hashTime.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            queueFull.increment();
+            throw new OverloadedException("Password hashing queue is full");
+        }
+
+        try {
+            return result.get(maxWaitNanos - (System.nanoTime() - submitted), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            timedOut.increment();
+            throw new OverloadedException("Password hashing did not finish in time");
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    /**
+     * Picks the highest cost whose hash takes at most {@code target} on this machine.
+     * Each step doubles the work, so one timed hash at {@code minCost} is enough to extrapolate.
+     *
+     * @param target wanted time for one hash
+     * @param minCost never go below this
+     * @param maxCost never go above this
+     * @return the cost to use
+     */
+    public static int calibrate(Duration target, int minCost, int maxCost) {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(minCost);
+        probe.encode("warm-up");
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            probe.encode("calibration");
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        int cost = minCost;
+        long estimate = best;
+        while (cost < maxCost && estimate * 2 <= target.toNanos()) {
+            cost++;
+            estimate *= 2;
+        }
+        return cost;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    /** The legacy password_hash values, which are the passwords themselves. */
+    private static class Plaintext implements PasswordEncoder {
+
+        @Override
+        public String encode(CharSequence raw) {
+            throw new UnsupportedOperationException("Passwords are no longer stored in plaintext");
+        }
+
+        @Override
+        public boolean matches(CharSequence raw, String stored) {
+            return MessageDigest.isEqual(raw.toString().getBytes(StandardCharsets.UTF_8),
+                    stored.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package backend.bulkhead;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A number of permits for one workload, with a bounded wait to get one. The number can be
+ * changed while permits are held; after a shrink, callers wait until enough have been returned.
+ * Publishes {@code <prefix>.active}, {@code .limit}, {@code .rejected} and {@code .wait},
+ * tagged with the workload, so saturation can be compared against the limit.
+ */
+public class Bulkhead {
+
+    private volatile int limit;
+    private final long maxWaitNanos;
+    private final ResizableSemaphore permits;
+    private final Counter rejected;
+    private final Timer waited;
+
+    /**
+     * @param prefix metric name prefix
+     * @param workload used as the {@code workload} tag
+     * @param limit number of permits
+     * @param maxWait how long to wait for a permit before giving up
+     * @param registry where the meters are registered
+     */
+    public Bulkhead(String prefix, Workload workload, int limit, Duration maxWait, MeterRegistry registry) {
+        this.limit = limit;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.permits = new ResizableSemaphore(limit);
+        String tag = workload.name().toLowerCase();
+        this.rejected = Counter.builder(prefix + ".rejected").tag("workload", tag).register(registry);
+        this.waited = Timer.builder(prefix + ".wait").tag("workload", tag).register(registry);
+        Gauge.builder(prefix + ".active", this, Bulkhead::active).tag("workload", tag).register(registry);
+        Gauge.builder(prefix + ".limit", this, b -> b.limit).tag("workload", tag).register(registry);
+    }
+
+    /**
+     * @return true with a permit held, false if none became free in time
+     */
+    public boolean tryEnter() throws InterruptedException {
+        if (permits.tryAcquire()) {
+            waited.record(0, TimeUnit.NANOSECONDS);
+            return true;
+        }
+        long start = System.nanoTime();
+        boolean entered = maxWaitNanos > 0 && permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+        waited.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (!entered) rejected.increment();
+        return entered;
+    }
+
+    public void exit() {
+        permits.release();
+    }
+
+    public int active() {
+        return limit - permits.availablePermits();
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    /**
+     * Changes the number of permits. Permits held above a lowered limit stay valid until returned.
+     *
+     * @param newLimit at least 1
+     */
+    public synchronized void resize(int newLimit) {
+        if (newLimit < 1) throw new IllegalArgumentException("Bulkhead limit must be at least 1, was " + newLimit);
+        int delta = newLimit - limit;
+        if (delta > 0) permits.release(delta);
+        else if (delta < 0) permits.reducePermits(-delta);
+        limit = newLimit;
+    }
+
+    private static final class ResizableSemaphore extends Semaphore {
+
+        ResizableSemaphore(int permits) {
+            super(permits, true);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package backend.bulkhead;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Admits each request into its workload's bulkhead or sheds it with 503 + Retry-After.
+ * A request that got in but then found its connection partition empty is shed the same way.
+ */
+public class BulkheadFilter extends OncePerRequestFilter {
+
+    private final Map<Workload, Bulkhead> bulkheads;
+
+    public BulkheadFilter(Map<Workload, Bulkhead> bulkheads) {
+        this.bulkheads = bulkheads;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        Workload workload = Workload.of(request.getMethod(), path);
+        Bulkhead bulkhead = bulkheads.get(workload);
+
+        try {
+            if (bulkhead != null && !bulkhead.tryEnter()) {
+                shed(response, workload);
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            shed(response, workload);
+            return;
+        }
+
+        WorkloadContext.set(workload);
+        try {
+            chain.doFilter(request, response);
+        } catch (ServletException | RuntimeException e) {
+            if (!partitionExhausted(e) || response.isCommitted()) throw e;
+            shed(response, workload);
+        } finally {
+            WorkloadContext.set(null);
+            if (bulkhead != null) bulkhead.exit();
+        }
+    }
+
+    private static boolean partitionExhausted(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof PartitionedDataSource.PartitionExhaustedException) return true;
+        }
+        return false;
+    }
+
+    private static void shed(HttpServletResponse response, Workload workload) throws IOException {
+        response.resetBuffer();
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader("Retry-After", "1");
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getWriter().write("Too busy serving " + workload.name().toLowerCase() + " requests, try again");
+    }
+}
@@ -0,0 +1,135 @@
+package backend.bulkhead;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Splits the connection pool into per-workload partitions. Only as many requests of a workload
+ * may hold connections at once as its partition allows; the permit is returned when the
+ * request's last connection is closed. Connections taken outside a request (Flyway, the import
+ * thread, shard scatter threads) are not counted.
+ *
+ * A connection opened while the thread already holds one from the same partition, such as the
+ * REQUIRES_NEW shard transaction of a sharded write, shares the held permit. Waiting for a second
+ * permit could deadlock: every permit held by a request that is waiting for another.
+ */
+public class PartitionedDataSource extends DelegatingDataSource {
+
+    /** No connection left in the caller's partition within its wait. */
+    public static class PartitionExhaustedException extends SQLTransientConnectionException {
+        PartitionExhaustedException(Workload workload) {
+            super("No database connection left for " + workload.name().toLowerCase() + " requests");
+        }
+    }
+
+    private final Map<Workload, Bulkhead> partitions;
+    private final Map<Workload, Integer> configured;
+    private final ThreadLocal<Held> held = new ThreadLocal<>();
+
+    // a request's permit and how many of its connections are still open
+    private static final class Held {
+        final Bulkhead partition;
+        final AtomicInteger open = new AtomicInteger(1);
+
+        Held(Bulkhead partition) {
+            this.partition = partition;
+        }
+
+        // false once the last connection has closed and the permit is gone
+        boolean join() {
+            return open.getAndUpdate(n -> n == 0 ? 0 : n + 1) > 0;
+        }
+
+        void leave() {
+            if (open.decrementAndGet() == 0) partition.exit();
+        }
+    }
+
+    public PartitionedDataSource(DataSource target, Map<Workload, Bulkhead> partitions) {
+        super(target);
+        this.partitions = partitions;
+        this.configured = new EnumMap<>(Workload.class);
+        partitions.forEach((workload, partition) -> configured.put(workload, partition.limit()));
+    }
+
+    /**
+     * Scales every partition with the pool, so each workload keeps its share when the pool is
+     * resized. A partition never drops below one connection.
+     *
+     * @param factor new pool size over the configured pool size
+     */
+    public void scale(double factor) {
+        partitions.forEach((workload, partition) ->
+                partition.resize(Math.max(1, (int) Math.floor(configured.get(workload) * factor))));
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Workload workload = WorkloadContext.current();
+        Bulkhead partition = partitions.get(workload);
+        if (partition == null) return super.getConnection();
+
+        Held permit = held.get();
+        if (permit == null || permit.partition != partition || !permit.join()) {
+            try {
+                if (!partition.tryEnter()) throw new PartitionExhaustedException(workload);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+            }
+            permit = new Held(partition);
+            held.set(permit);
+        }
+        try {
+            return releasingOnClose(super.getConnection(), permit);
+        } catch (SQLException | RuntimeException e) {
+            permit.leave();
+            throw e;
+        }
+    }
+
+    private static Connection releasingOnClose(Connection target, Held permit) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(
+                PartitionedDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close" -> {
+                            try {
+                                target.close();
+                            } finally {
+                                if (released.compareAndSet(false, true)) permit.leave();
+                            }
+                            return null;
+                        }
+                        case "equals" -> {
+                            return proxy == args[0];
+                        }
+                        case "hashCode" -> {
+                            return System.identityHashCode(proxy);
+                        }
+                        case "unwrap" -> {
+                            if (((Class<?>) args[0]).isInstance(proxy)) return proxy;
+                        }
+                        default -> {
+                        }
+                    }
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+}
@@ -0,0 +1,33 @@
+package backend.bulkhead;
+
+/**
+ * Classes of requests that get their own concurrency limit and connection partition,
+ * so a spike in one (typically message polling) cannot starve the others.
+ */
+public enum Workload {
+    /** Notes and diagnoses written by doctors and staff. */
+    CLINICAL_WRITE,
+    /** Reading patient records, timelines and the change feed. */
+    RECORDS,
+    /** Login, registration and session checks. */
+    AUTH,
+    /** Contacts, threads and sending messages. */
+    MESSAGING,
+    /** Everything else; not limited. */
+    OTHER;
+
+    /**
+     * @param method HTTP method
+     * @param path request path without the context path
+     * @return the workload the request belongs to
+     */
+    public static Workload of(String method, String path) {
+        if ("OPTIONS".equals(method)) return OTHER;
+        if (path.startsWith("/api/auth/")) return AUTH;
+        if (path.startsWith("/api/messages")) return MESSAGING;
+        if (path.startsWith("/api/patients") || path.startsWith("/api/changes")) {
+            return "GET".equals(method) ? RECORDS : CLINICAL_WRITE;
+        }
+        return OTHER;
+    }
+}
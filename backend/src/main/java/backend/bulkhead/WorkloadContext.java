@@ -0,0 +1,42 @@
+package backend.bulkhead;
+
+/**
+ * The workload of the request being served on this thread, set by {@link BulkheadFilter}
+ * and read by {@link PartitionedDataSource} to pick the connection partition. Work handed to
+ * another thread takes its workload along through {@link #wrap}.
+ */
+public final class WorkloadContext {
+
+    private static final ThreadLocal<Workload> CURRENT = new ThreadLocal<>();
+
+    private WorkloadContext() {
+    }
+
+    /**
+     * @return the current workload, {@link Workload#OTHER} outside a request
+     */
+    public static Workload current() {
+        Workload w = CURRENT.get();
+        return w == null ? Workload.OTHER : w;
+    }
+
+    /**
+     * @return the task, running in the given workload on whichever thread runs it
+     */
+    public static Runnable wrap(Workload workload, Runnable task) {
+        return () -> {
+            Workload previous = CURRENT.get();
+            set(workload);
+            try {
+                task.run();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+
+    static void set(Workload workload) {
+        if (workload == null) CURRENT.remove();
+        else CURRENT.set(workload);
+    }
+}
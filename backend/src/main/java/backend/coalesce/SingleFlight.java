@@ -0,0 +1,123 @@
+package backend.coalesce;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller (the leader) runs the load on
+ * its own thread, callers that arrive while it is in flight wait for and share its result or failure.
+ * Nothing is cached; the key is free again as soon as the load finishes.
+ *
+ * The loaded value is handed to several request threads, so it must be immutable and must not
+ * depend on who asked. Check authorization before calling {@link #load}.
+ *
+ * @param <K> what identifies a load
+ * @param <V> the shared result
+ */
+public class SingleFlight<K, V> {
+
+    /** A follower gave up waiting for the leader. */
+    @ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "Timed out waiting for a shared load")
+    public static class WaitTimeoutException extends RuntimeException {
+        WaitTimeoutException(String name) {
+            super("Timed out waiting for in-flight load of " + name);
+        }
+    }
+
+    private final String name;
+    private final Duration waitTimeout;
+    private final boolean enabled;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter leaders;
+    private final Counter followers;
+    private final Counter timeouts;
+    private final Counter failures;
+
+    /**
+     * @param name used as the {@code name} tag on the metrics
+     * @param waitTimeout how long a follower waits for the leader
+     * @param enabled false runs every load on its own
+     * @param registry where the counters are registered
+     */
+    public SingleFlight(String name, Duration waitTimeout, boolean enabled, MeterRegistry registry) {
+        this.name = name;
+        this.waitTimeout = waitTimeout;
+        this.enabled = enabled;
+        this.leaders = Counter.builder("journal.singleflight.calls").tag("name", name).tag("role", "leader")
+                .description("Loads that ran against the database").register(registry);
+        this.followers = Counter.builder("journal.singleflight.calls").tag("name", name).tag("role", "follower")
+                .description("Loads that shared an in-flight result").register(registry);
+        this.timeouts = Counter.builder("journal.singleflight.timeouts").tag("name", name).register(registry);
+        this.failures = Counter.builder("journal.singleflight.failures").tag("name", name).register(registry);
+        Gauge.builder("journal.singleflight.coalescing.ratio", this, SingleFlight::coalescingRatio)
+                .tag("name", name)
+                .description("Share of calls served by another caller's load")
+                .register(registry);
+        Gauge.builder("journal.singleflight.in.flight", inFlight, ConcurrentHashMap::size)
+                .tag("name", name).register(registry);
+    }
+
+    /**
+     * @param key what to load
+     * @param loader the load; runs on this thread if no load for the key is in flight
+     * @return the loaded value, possibly from another caller's load
+     * @throws WaitTimeoutException if another caller's load does not finish within the wait timeout
+     */
+    public V load(K key, Supplier<V> loader) {
+        if (!enabled) {
+            leaders.increment();
+            return loader.get();
+        }
+
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if (running == null) {
+            leaders.increment();
+            try {
+                V value = loader.get();
+                mine.complete(value);
+                return value;
+            } catch (RuntimeException | Error e) {
+                failures.increment();
+                mine.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, mine);
+            }
+        }
+
+        followers.increment();
+        try {
+            return running.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw new WaitTimeoutException(name);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + name, e);
+        } catch (ExecutionException e) {
+            // same failure as the leader, e.g. a 404 for a patient that does not exist
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            if (e.getCause() instanceof Error err) throw err;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    double coalescingRatio() {
+        double shared = followers.count();
+        double total = shared + leaders.count();
+        return total == 0 ? 0 : shared / total;
+    }
+}
@@ -0,0 +1,25 @@
+package backend.coalesce;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+
+/**
+ * Creates {@link SingleFlight}s that share the configured timeout, switch and meter registry.
+ */
+public class SingleFlights {
+
+    private final Duration waitTimeout;
+    private final boolean enabled;
+    private final MeterRegistry registry;
+
+    public SingleFlights(Duration waitTimeout, boolean enabled, MeterRegistry registry) {
+        this.waitTimeout = waitTimeout;
+        this.enabled = enabled;
+        this.registry = registry;
+    }
+
+    public <K, V> SingleFlight<K, V> create(String name) {
+        return new SingleFlight<>(name, waitTimeout, enabled, registry);
+    }
+}
@@ -0,0 +1,228 @@
+package backend.cohort;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * One {@link PatientBitmap} per condition code, for answering cohort questions without
+ * touching the database. Loaded once at startup from every shard, then kept current by
+ * {@link #added} as diagnoses are saved.
+ *
+ * Queries share a read lock and evaluate into fresh bitmaps; additions take the write lock
+ * for one bit. Additions made while the initial load runs are kept and replayed on top of it,
+ * up to maxPending of them; past that the load is refused and has to be repeated.
+ */
+public class CohortIndex {
+
+    /** The index has not finished loading since startup. */
+    @ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "Cohort index is still loading")
+    public static class NotReadyException extends RuntimeException {
+        NotReadyException() {
+            super("Cohort index is still loading");
+        }
+    }
+
+    /**
+     * @param total patients in the cohort
+     * @param patientIds the requested page, ascending
+     */
+    public record Page(long total, long[] patientIds) {}
+
+    private record Addition(String code, long patientId) {}
+
+    /** Additions kept for replay by default; far more than are saved while a load runs. */
+    public static final int DEFAULT_MAX_PENDING = 100_000;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Timer queries;
+    private TreeMap<String, PatientBitmap> byCode = new TreeMap<>();
+    private PatientBitmap all = new PatientBitmap();
+    private List<Addition> pending = new ArrayList<>();
+    private final int maxPending;
+    private boolean pendingOverflowed;
+    private volatile boolean ready;
+
+    private final CohortQuery.Codes codes = new CohortQuery.Codes() {
+        @Override
+        public PatientBitmap code(String code) {
+            PatientBitmap b = byCode.get(code);
+            return b == null ? new PatientBitmap() : b;
+        }
+
+        @Override
+        public PatientBitmap prefix(String prefix) {
+            PatientBitmap result = new PatientBitmap();
+            for (PatientBitmap b : byCode.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values()) {
+                result = result.or(b);
+            }
+            return result;
+        }
+
+        @Override
+        public PatientBitmap all() {
+            return all;
+        }
+    };
+
+    public CohortIndex(MeterRegistry registry) {
+        this(registry, DEFAULT_MAX_PENDING);
+    }
+
+    /**
+     * @param maxPending additions kept for replay while the initial load runs
+     */
+    public CohortIndex(MeterRegistry registry, int maxPending) {
+        this.maxPending = maxPending;
+        this.queries = Timer.builder("journal.cohort.query").register(registry);
+        Gauge.builder("journal.cohort.codes", this, i -> i.read(() -> i.byCode.size())).register(registry);
+        Gauge.builder("journal.cohort.patients", this, i -> i.read(() -> i.all.cardinality())).register(registry);
+        Gauge.builder("journal.cohort.bytes", this, CohortIndex::sizeInBytes).baseUnit("bytes").register(registry);
+    }
+
+    public static String normalize(String code) {
+        return code.trim().toUpperCase(Locale.ROOT);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @return patients matching the query
+     * @throws NotReadyException before the initial load has finished
+     */
+    public long count(CohortQuery query) {
+        return evaluate(query, result -> result.cardinality());
+    }
+
+    /**
+     * @param offset patients to skip, in id order
+     * @param limit most patient ids to return
+     * @return the total and one page of patient ids
+     * @throws NotReadyException before the initial load has finished
+     */
+    public Page page(CohortQuery query, long offset, int limit) {
+        return evaluate(query, result -> new Page(result.cardinality(), result.page(offset, limit)));
+    }
+
+    /**
+     * Records that a patient got a condition. Inside a transaction this takes effect after
+     * the commit, so a rolled back diagnosis never shows up in a cohort.
+     */
+    public void added(String code, long patientId) {
+        Addition addition = new Addition(normalize(code), patientId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(addition);
+                }
+            });
+        } else {
+            apply(addition);
+        }
+    }
+
+    /**
+     * Replaces the contents with a full load and marks the index ready.
+     *
+     * @param parts code bitmaps, e.g. one map per shard; merged by code
+     * @throws IllegalStateException if more than maxPending additions came in since the last
+     *         attempt; they are dropped and the load has to be read and made again
+     */
+    public void load(List<Map<String, PatientBitmap>> parts) {
+        TreeMap<String, PatientBitmap> loaded = new TreeMap<>();
+        for (Map<String, PatientBitmap> part : parts) {
+            part.forEach((code, patients) -> loaded.merge(normalize(code), patients, PatientBitmap::or));
+        }
+        PatientBitmap everyone = new PatientBitmap();
+        for (PatientBitmap b : loaded.values()) everyone = everyone.or(b);
+
+        lock.writeLock().lock();
+        try {
+            if (pendingOverflowed) {
+                discardPending();
+                throw new IllegalStateException("More than " + maxPending + " diagnoses were added during the load");
+            }
+            byCode = loaded;
+            all = everyone;
+            for (Addition a : pending) add(a);
+            pending = null;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Forgets the additions kept for replay, after a load attempt failed. The next attempt reads
+     * everything saved until then, so only additions from now on need to be kept.
+     */
+    public void discardPending() {
+        lock.writeLock().lock();
+        try {
+            if (pending == null) return;
+            pending = new ArrayList<>();
+            pendingOverflowed = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(Addition addition) {
+        lock.writeLock().lock();
+        try {
+            add(addition);
+            if (pending == null || pendingOverflowed) return;
+            if (pending.size() < maxPending) {
+                pending.add(addition);
+            } else {
+                pending = new ArrayList<>();
+                pendingOverflowed = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(Addition a) {
+        byCode.computeIfAbsent(a.code(), c -> new PatientBitmap()).add(a.patientId());
+        all.add(a.patientId());
+    }
+
+    private <T> T evaluate(CohortQuery query, Function<PatientBitmap, T> answer) {
+        if (!ready) throw new NotReadyException();
+        return queries.record(() -> read(() -> answer.apply(query.evaluate(codes))));
+    }
+
+    private <T> T read(Supplier<T> work) {
+        lock.readLock().lock();
+        try {
+            return work.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long sizeInBytes() {
+        return read(() -> {
+            long bytes = all.sizeInBytes();
+            for (PatientBitmap b : byCode.values()) bytes += b.sizeInBytes();
+            return bytes;
+        });
+    }
+}
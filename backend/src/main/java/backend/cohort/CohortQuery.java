@@ -0,0 +1,163 @@
+package backend.cohort;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A parsed cohort expression over condition codes, e.g. {@code E11 AND I10 AND NOT N18}
+ * or {@code (E10* OR E11*) AND NOT O24*}. A trailing {@code *} matches every code with
+ * that prefix. AND binds tighter than OR; keywords are case-insensitive and codes are
+ * compared in upper case. {@code NOT N18} means patients with some diagnosis but not N18.
+ */
+public final class CohortQuery {
+
+    /** The bitmaps a query is evaluated against. */
+    public interface Codes {
+        /** Patients with exactly this code; empty if none. */
+        PatientBitmap code(String code);
+
+        /** Patients with any code starting with the prefix. */
+        PatientBitmap prefix(String prefix);
+
+        /**
+         * Every patient with at least one condition; what NOT is taken against. Patients
+         * without any recorded condition are not in the index and never match.
+         */
+        PatientBitmap all();
+    }
+
+    private sealed interface Node permits Code, Not, And, Or {}
+
+    private record Code(String code, boolean prefix) implements Node {}
+
+    private record Not(Node node) implements Node {}
+
+    private record And(List<Node> nodes) implements Node {}
+
+    private record Or(List<Node> nodes) implements Node {}
+
+    private final String text;
+    private final Node root;
+
+    private CohortQuery(String text, Node root) {
+        this.text = text;
+        this.root = root;
+    }
+
+    /**
+     * @param text the expression
+     * @return the parsed query
+     * @throws IllegalArgumentException if the expression is malformed
+     */
+    public static CohortQuery parse(String text) {
+        if (text == null || text.isBlank()) throw new IllegalArgumentException("Empty cohort query");
+        Parser parser = new Parser(tokenize(text));
+        Node root = parser.or();
+        if (parser.pos < parser.tokens.size()) {
+            throw new IllegalArgumentException("Unexpected '" + parser.tokens.get(parser.pos) + "' in cohort query");
+        }
+        return new CohortQuery(text.trim(), root);
+    }
+
+    public PatientBitmap evaluate(Codes codes) {
+        return eval(root, codes);
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    private static PatientBitmap eval(Node node, Codes codes) {
+        if (node instanceof Code c) return c.prefix() ? codes.prefix(c.code()) : codes.code(c.code());
+        if (node instanceof Not n) return codes.all().andNot(eval(n.node(), codes));
+        if (node instanceof Or o) {
+            PatientBitmap result = new PatientBitmap();
+            for (Node child : o.nodes()) result = result.or(eval(child, codes));
+            return result;
+        }
+
+        // AND: intersect the positive terms first, then subtract the negated ones from that
+        And a = (And) node;
+        PatientBitmap result = null;
+        for (Node child : a.nodes()) {
+            if (child instanceof Not) continue;
+            result = result == null ? eval(child, codes) : result.and(eval(child, codes));
+            if (result.isEmpty()) return result;
+        }
+        if (result == null) result = codes.all();
+        for (Node child : a.nodes()) {
+            if (child instanceof Not n) result = result.andNot(eval(n.node(), codes));
+        }
+        return result;
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')') {
+                tokens.add(String.valueOf(c));
+                i++;
+            } else if (Character.isLetterOrDigit(c)) {
+                int start = i;
+                while (i < text.length() && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '.')) i++;
+                if (i < text.length() && text.charAt(i) == '*') i++;
+                tokens.add(text.substring(start, i).toUpperCase(Locale.ROOT));
+            } else {
+                throw new IllegalArgumentException("Unexpected '" + c + "' in cohort query");
+            }
+        }
+        return tokens;
+    }
+
+    private static final class Parser {
+        private final List<String> tokens;
+        private int pos;
+
+        Parser(List<String> tokens) {
+            this.tokens = tokens;
+        }
+
+        Node or() {
+            List<Node> nodes = new ArrayList<>(List.of(and()));
+            while (accept("OR")) nodes.add(and());
+            return nodes.size() == 1 ? nodes.get(0) : new Or(nodes);
+        }
+
+        Node and() {
+            List<Node> nodes = new ArrayList<>(List.of(unary()));
+            while (accept("AND")) nodes.add(unary());
+            return nodes.size() == 1 ? nodes.get(0) : new And(nodes);
+        }
+
+        Node unary() {
+            if (accept("NOT")) return new Not(unary());
+            if (accept("(")) {
+                Node inner = or();
+                if (!accept(")")) throw new IllegalArgumentException("Missing ')' in cohort query");
+                return inner;
+            }
+            if (pos == tokens.size()) throw new IllegalArgumentException("Cohort query ends too early");
+            String token = tokens.get(pos);
+            if (token.equals(")") || token.equals("AND") || token.equals("OR")) {
+                throw new IllegalArgumentException("Expected a code but got '" + token + "'");
+            }
+            pos++;
+            boolean prefix = token.endsWith("*");
+            return new Code(prefix ? token.substring(0, token.length() - 1) : token, prefix);
+        }
+
+        private boolean accept(String token) {
+            if (pos < tokens.size() && tokens.get(pos).equals(token)) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+    }
+}
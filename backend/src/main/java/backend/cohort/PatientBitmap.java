@@ -0,0 +1,438 @@
+package backend.cohort;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of patient ids, laid out like a Roaring bitmap: ids are grouped by their
+ * high bits into chunks of 65536, and each chunk is stored as a sorted array of the low
+ * 16 bits while it has at most 4096 members, and as a 65536-bit bitmap after that.
+ * Sparse codes therefore cost about two bytes per patient and common codes one bit.
+ *
+ * Not thread safe; {@link CohortIndex} guards its bitmaps with a lock.
+ * Results of {@link #and}, {@link #or} and {@link #andNot} share nothing with their inputs.
+ */
+public final class PatientBitmap {
+
+    static final int ARRAY_MAX = 4096;
+
+    private long[] keys;
+    private Container[] containers;
+    private int size;
+
+    public PatientBitmap() {
+        this(4);
+    }
+
+    private PatientBitmap(int capacity) {
+        keys = new long[capacity];
+        containers = new Container[capacity];
+    }
+
+    public static PatientBitmap of(long... ids) {
+        PatientBitmap b = new PatientBitmap();
+        for (long id : ids) b.add(id);
+        return b;
+    }
+
+    /**
+     * @return true if the id was not in the set yet
+     */
+    public boolean add(long id) {
+        if (id < 0) throw new IllegalArgumentException("Negative patient id " + id);
+        long key = id >>> 16;
+        char low = (char) id;
+        int i = find(key);
+        if (i < 0) {
+            insert(-i - 1, key, new ArrayContainer().add(low));
+            return true;
+        }
+        int before = containers[i].cardinality();
+        containers[i] = containers[i].add(low);
+        return containers[i].cardinality() > before;
+    }
+
+    public boolean contains(long id) {
+        int i = find(id >>> 16);
+        return i >= 0 && containers[i].contains((char) id);
+    }
+
+    public long cardinality() {
+        long n = 0;
+        for (int i = 0; i < size; i++) n += containers[i].cardinality();
+        return n;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public PatientBitmap and(PatientBitmap other) {
+        PatientBitmap result = new PatientBitmap(Math.max(1, Math.min(size, other.size)));
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.append(keys[i], containers[i].and(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public PatientBitmap or(PatientBitmap other) {
+        PatientBitmap result = new PatientBitmap(Math.max(1, size + other.size));
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.append(keys[i], containers[i].copy());
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.append(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public PatientBitmap andNot(PatientBitmap other) {
+        PatientBitmap result = new PatientBitmap(Math.max(1, size));
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) j++;
+            boolean shared = j < other.size && other.keys[j] == keys[i];
+            result.append(keys[i], shared ? containers[i].andNot(other.containers[j]) : containers[i].copy());
+        }
+        return result;
+    }
+
+    /**
+     * @param offset members to skip, in ascending id order
+     * @param limit most ids to return
+     * @return up to {@code limit} ids starting at the {@code offset}-th smallest
+     */
+    public long[] page(long offset, int limit) {
+        long[] out = new long[(int) Math.max(0, Math.min(limit, cardinality() - offset))];
+        int written = 0;
+        long skip = offset;
+        for (int i = 0; i < size && written < out.length; i++) {
+            int n = containers[i].cardinality();
+            if (skip >= n) {
+                skip -= n;
+                continue;
+            }
+            written += containers[i].select((int) skip, keys[i] << 16, out, written);
+            skip = 0;
+        }
+        return out;
+    }
+
+    /** Approximate heap used by the containers. */
+    public long sizeInBytes() {
+        long bytes = 16L * keys.length;
+        for (int i = 0; i < size; i++) bytes += containers[i].sizeInBytes();
+        return bytes;
+    }
+
+    private int find(long key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insert(int at, long key, Container c) {
+        if (size == keys.length) grow();
+        System.arraycopy(keys, at, keys, at + 1, size - at);
+        System.arraycopy(containers, at, containers, at + 1, size - at);
+        keys[at] = key;
+        containers[at] = c;
+        size++;
+    }
+
+    // keys arrive in ascending order from the set operations
+    private void append(long key, Container c) {
+        if (c.cardinality() == 0) return;
+        if (size == keys.length) grow();
+        keys[size] = key;
+        containers[size] = c;
+        size++;
+    }
+
+    private void grow() {
+        int capacity = Math.max(4, keys.length * 2);
+        keys = Arrays.copyOf(keys, capacity);
+        containers = Arrays.copyOf(containers, capacity);
+    }
+
+    // ==== containers: the low 16 bits of the ids in one chunk ====
+
+    private sealed interface Container permits ArrayContainer, BitmapContainer {
+        Container add(char v);
+
+        boolean contains(char v);
+
+        int cardinality();
+
+        Container and(Container other);
+
+        Container or(Container other);
+
+        Container andNot(Container other);
+
+        Container copy();
+
+        /** Writes members from the {@code skip}-th on into {@code out}; returns how many were written. */
+        int select(int skip, long high, long[] out, int at);
+
+        long sizeInBytes();
+    }
+
+    private static final class ArrayContainer implements Container {
+        private char[] values;
+        private int n;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int n) {
+            this.values = values;
+            this.n = n;
+        }
+
+        @Override
+        public Container add(char v) {
+            int i = Arrays.binarySearch(values, 0, n, v);
+            if (i >= 0) return this;
+            if (n == ARRAY_MAX) return toBitmap().add(v);
+            i = -i - 1;
+            if (n == values.length) values = Arrays.copyOf(values, Math.min(ARRAY_MAX, n * 2));
+            System.arraycopy(values, i, values, i + 1, n - i);
+            values[i] = v;
+            n++;
+            return this;
+        }
+
+        @Override
+        public boolean contains(char v) {
+            return Arrays.binarySearch(values, 0, n, v) >= 0;
+        }
+
+        @Override
+        public int cardinality() {
+            return n;
+        }
+
+        @Override
+        public Container and(Container other) {
+            char[] out = new char[n];
+            int k = 0;
+            if (other instanceof ArrayContainer a) {
+                int i = 0;
+                int j = 0;
+                while (i < n && j < a.n) {
+                    if (values[i] < a.values[j]) i++;
+                    else if (values[i] > a.values[j]) j++;
+                    else {
+                        out[k++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < n; i++) if (other.contains(values[i])) out[k++] = values[i];
+            }
+            return new ArrayContainer(out, k);
+        }
+
+        @Override
+        public Container or(Container other) {
+            if (other instanceof BitmapContainer b) return b.or(this);
+            ArrayContainer a = (ArrayContainer) other;
+            char[] out = new char[n + a.n];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < n || j < a.n) {
+                if (j == a.n || (i < n && values[i] < a.values[j])) out[k++] = values[i++];
+                else if (i == n || values[i] > a.values[j]) out[k++] = a.values[j++];
+                else {
+                    out[k++] = values[i++];
+                    j++;
+                }
+            }
+            ArrayContainer merged = new ArrayContainer(out, k);
+            return k > ARRAY_MAX ? merged.toBitmap() : merged;
+        }
+
+        @Override
+        public Container andNot(Container other) {
+            char[] out = new char[n];
+            int k = 0;
+            for (int i = 0; i < n; i++) if (!other.contains(values[i])) out[k++] = values[i];
+            return new ArrayContainer(out, k);
+        }
+
+        @Override
+        public Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, n), n);
+        }
+
+        @Override
+        public int select(int skip, long high, long[] out, int at) {
+            int written = 0;
+            for (int i = skip; i < n && at + written < out.length; i++) out[at + written++] = high | values[i];
+            return written;
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return 16 + 2L * values.length;
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer b = new BitmapContainer();
+            for (int i = 0; i < n; i++) b.add(values[i]);
+            return b;
+        }
+    }
+
+    private static final class BitmapContainer implements Container {
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer() {
+            this(new long[1024], 0);
+        }
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        public Container add(char v) {
+            long bit = 1L << v;
+            if ((words[v >>> 6] & bit) == 0) {
+                words[v >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        public boolean contains(char v) {
+            return (words[v >>> 6] & (1L << v)) != 0;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public Container and(Container other) {
+            if (other instanceof ArrayContainer a) return a.and(this);
+            long[] o = ((BitmapContainer) other).words;
+            long[] out = new long[1024];
+            int card = 0;
+            for (int i = 0; i < 1024; i++) {
+                out[i] = words[i] & o[i];
+                card += Long.bitCount(out[i]);
+            }
+            return shrink(out, card);
+        }
+
+        @Override
+        public Container or(Container other) {
+            long[] out = words.clone();
+            int card = cardinality;
+            if (other instanceof ArrayContainer a) {
+                for (int i = 0; i < a.n; i++) {
+                    char v = a.values[i];
+                    if ((out[v >>> 6] & (1L << v)) == 0) {
+                        out[v >>> 6] |= 1L << v;
+                        card++;
+                    }
+                }
+            } else {
+                long[] o = ((BitmapContainer) other).words;
+                card = 0;
+                for (int i = 0; i < 1024; i++) {
+                    out[i] |= o[i];
+                    card += Long.bitCount(out[i]);
+                }
+            }
+            return new BitmapContainer(out, card);
+        }
+
+        @Override
+        public Container andNot(Container other) {
+            long[] out = words.clone();
+            int card = cardinality;
+            if (other instanceof ArrayContainer a) {
+                for (int i = 0; i < a.n; i++) {
+                    char v = a.values[i];
+                    if ((out[v >>> 6] & (1L << v)) != 0) {
+                        out[v >>> 6] &= ~(1L << v);
+                        card--;
+                    }
+                }
+            } else {
+                long[] o = ((BitmapContainer) other).words;
+                card = 0;
+                for (int i = 0; i < 1024; i++) {
+                    out[i] &= ~o[i];
+                    card += Long.bitCount(out[i]);
+                }
+            }
+            return shrink(out, card);
+        }
+
+        @Override
+        public Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        public int select(int skip, long high, long[] out, int at) {
+            int written = 0;
+            for (int i = 0; i < 1024 && at + written < out.length; i++) {
+                long w = words[i];
+                while (w != 0 && at + written < out.length) {
+                    int bit = Long.numberOfTrailingZeros(w);
+                    w &= w - 1;
+                    if (skip > 0) skip--;
+                    else out[at + written++] = high | ((long) i << 6 | bit);
+                }
+            }
+            return written;
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return 16 + 8L * 1024;
+        }
+
+        private static Container shrink(long[] words, int cardinality) {
+            if (cardinality > ARRAY_MAX) return new BitmapContainer(words, cardinality);
+            char[] values = new char[cardinality];
+            int k = 0;
+            for (int i = 0; i < 1024; i++) {
+                long w = words[i];
+                while (w != 0) {
+                    values[k++] = (char) (i << 6 | Long.numberOfTrailingZeros(w));
+                    w &= w - 1;
+                }
+            }
+            return new ArrayContainer(values, cardinality);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package backend.config;
+
+import backend.datasource.PatientShards;
+import backend.repository.PractitionerActivityRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+
+import java.time.LocalDate;
+
+/**
+ * Recounts the last few days of the practitioner activity rollup on every shard, so counts
+ * missed by a failed increment or a write outside the controllers are corrected.
+ * Corrections are counted in journal.activity.reconcile.corrections.
+ */
+@Configuration
+@EnableScheduling
+@EnableConfigurationProperties(ActivityRollupProperties.class)
+public class ActivityRollupConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ActivityRollupConfig.class);
+
+    @Bean
+    SchedulingConfigurer reconcileActivityRollup(ActivityRollupProperties properties,
+                                                 PractitionerActivityRepository activity,
+                                                 PatientShards shards,
+                                                 MeterRegistry registry) {
+        Counter corrections = Counter.builder("journal.activity.reconcile.corrections")
+                .description("Rollup rows the recount had to fix").register(registry);
+        Timer duration = Timer.builder("journal.activity.reconcile").register(registry);
+
+        Runnable reconcile = () -> duration.record(() -> {
+            LocalDate to = LocalDate.now().plusDays(1);
+            LocalDate from = to.minusDays(properties.reconcileDays());
+            try {
+                int fixed = shards.onEveryShard(() -> activity.reconcile(from, to)).stream().mapToInt(Integer::intValue).sum();
+                corrections.increment(fixed);
+                if (fixed > 0) log.info("Activity rollup: corrected {} rows between {} and {}", fixed, from, to);
+            } catch (RuntimeException e) {
+                log.warn("Activity rollup reconciliation failed", e);
+            }
+        });
+        return registrar -> registrar.addFixedDelayTask(reconcile, properties.reconcileInterval());
+    }
+}
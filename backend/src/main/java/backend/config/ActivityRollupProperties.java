@@ -0,0 +1,18 @@
+package backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Reconciliation of the practitioner activity rollup (journal.activity-rollup.*).
+ *
+ * @param reconcileInterval time between two recounts
+ * @param reconcileDays how many days back, today included, each recount covers
+ */
+@ConfigurationProperties(prefix = "journal.activity-rollup")
+public record ActivityRollupProperties(
+        @DefaultValue("1h") Duration reconcileInterval,
+        @DefaultValue("7") int reconcileDays
+) {}
@@ -0,0 +1,50 @@
+package backend.config;
+
+import backend.archive.MessageArchiver;
+import backend.repository.MessageArchiveRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs the message archiver on a fixed delay. Archived messages stay readable through
+ * /api/messages/thread/{otherId}/archive.
+ */
+@Configuration
+@EnableConfigurationProperties(ArchiveProperties.class)
+public class ArchiveConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveConfig.class);
+
+    @Bean
+    @ConditionalOnProperty(prefix = "journal.archive", name = "enabled", havingValue = "true", matchIfMissing = true)
+    MessageArchiver messageArchiver(ArchiveProperties properties, MessageArchiveRepository archive,
+                                    PlatformTransactionManager transactionManager, MeterRegistry registry) {
+        if (properties.segmentSize() < 1 || properties.segmentSize() > 2000) {
+            // deleteMessages binds one parameter per message; SQL Server allows 2100
+            throw new IllegalStateException("journal.archive.segment-size must be between 1 and 2000");
+        }
+        return new MessageArchiver(archive, new TransactionTemplate(transactionManager), properties.maxAge(),
+                properties.segmentSize(), properties.maxSegmentsPerRun(), properties.pause(), registry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "journal.archive", name = "enabled", havingValue = "true", matchIfMissing = true)
+    SchedulingConfigurer archiveMessages(ArchiveProperties properties, MessageArchiver archiver) {
+        Runnable run = () -> {
+            try {
+                archiver.run();
+            } catch (RuntimeException e) {
+                log.warn("Message archival failed", e);
+            }
+        };
+        return registrar -> registrar.addFixedDelayTask(run, properties.interval());
+    }
+}
@@ -0,0 +1,26 @@
+package backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Archival of old messages into compressed segments (journal.archive.*).
+ *
+ * @param enabled false leaves every message in the hot table
+ * @param maxAge messages sent longer ago than this are archived
+ * @param segmentSize most messages of one conversation per segment, and per transaction
+ * @param maxSegmentsPerRun most segments one run writes, so a large backlog is worked off over several runs
+ * @param pause time between two segments
+ * @param interval time between two runs
+ */
+@ConfigurationProperties(prefix = "journal.archive")
+public record ArchiveProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("365d") Duration maxAge,
+        @DefaultValue("500") int segmentSize,
+        @DefaultValue("200") int maxSegmentsPerRun,
+        @DefaultValue("200ms") Duration pause,
+        @DefaultValue("1h") Duration interval
+) {}
@@ -0,0 +1,52 @@
+package backend.config;
+
+import backend.audit.AuditLog;
+import backend.audit.AuditShipper;
+import backend.repository.AuditRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+
+/**
+ * Creates the access audit log and ships its sealed segments on a fixed delay.
+ * The log is closed on shutdown, which writes out queued events and seals the last segment.
+ */
+@Configuration
+@EnableConfigurationProperties(AuditProperties.class)
+public class AuditConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditConfig.class);
+
+    @Bean(destroyMethod = "close")
+    AuditLog auditLog(AuditProperties properties, MeterRegistry registry) throws IOException {
+        return new AuditLog(properties.directory(), properties.ringCapacity(),
+                Math.toIntExact(properties.segmentSize().toBytes()), properties.batchSize(),
+                properties.fsyncInterval(), properties.rollInterval(), properties.maxBlock(), registry);
+    }
+
+    @Bean
+    AuditShipper auditShipper(AuditLog auditLog, AuditRepository repository,
+                              PlatformTransactionManager transactionManager, MeterRegistry registry) {
+        return new AuditShipper(auditLog.directory(), repository, new TransactionTemplate(transactionManager), registry);
+    }
+
+    @Bean
+    SchedulingConfigurer shipAuditSegments(AuditProperties properties, AuditShipper shipper) {
+        Runnable ship = () -> {
+            try {
+                shipper.ship();
+            } catch (Exception e) {
+                log.warn("Shipping audit segments failed, will retry", e);
+            }
+        };
+        return registrar -> registrar.addFixedDelayTask(ship, properties.shipInterval());
+    }
+}
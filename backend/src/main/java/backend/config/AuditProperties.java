@@ -0,0 +1,32 @@
+package backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Access audit log (journal.audit.*).
+ *
+ * @param directory where segment files are written; should be a persistent volume
+ * @param ringCapacity events queued between request threads and the writer
+ * @param segmentSize size of one segment file
+ * @param batchSize most events the writer appends as one frame
+ * @param fsyncInterval longest time a written event is not yet on disk
+ * @param rollInterval a segment is sealed after this long even if not full, so it can be shipped
+ * @param maxBlock how long a request waits for room when the ring is full before the event is dropped
+ * @param shipInterval time between two runs of shipping sealed segments to dbo.audit_event
+ */
+@ConfigurationProperties(prefix = "journal.audit")
+public record AuditProperties(
+        @DefaultValue("audit") Path directory,
+        @DefaultValue("65536") int ringCapacity,
+        @DefaultValue("16MB") DataSize segmentSize,
+        @DefaultValue("512") int batchSize,
+        @DefaultValue("1s") Duration fsyncInterval,
+        @DefaultValue("5m") Duration rollInterval,
+        @DefaultValue("50ms") Duration maxBlock,
+        @DefaultValue("1m") Duration shipInterval
+) {}
@@ -0,0 +1,50 @@
+package backend.config;
+
+import backend.datasource.PatientShards;
+import backend.messaging.BroadcastService;
+import backend.repository.BroadcastRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Message broadcasts (see {@link BroadcastService}).
+ * The job yields while threads are waiting on the spring.datasource pool; behind the replica or
+ * shard routing there is no single pool to watch and only maxRate holds it back.
+ */
+@Configuration
+@EnableConfigurationProperties(BroadcastProperties.class)
+public class BroadcastConfig {
+
+    @Bean
+    BroadcastService broadcastService(BroadcastRepository broadcasts, PatientShards shards,
+                                      PlatformTransactionManager transactionManager, DataSource dataSource,
+                                      BroadcastProperties properties) throws SQLException {
+        if (properties.batchSize() < 1 || properties.batchSize() > 2000) {
+            // insertForPatients binds one parameter per patient; SQL Server allows 2100
+            throw new IllegalStateException("journal.broadcast.batch-size must be between 1 and 2000");
+        }
+        if (properties.maxRate() < 1) {
+            throw new IllegalStateException("journal.broadcast.max-rate must be positive");
+        }
+        BooleanSupplier poolBusy = () -> false;
+        if (dataSource.isWrapperFor(HikariDataSource.class)) {
+            HikariDataSource pool = dataSource.unwrap(HikariDataSource.class);
+            poolBusy = () -> {
+                // null until the pool has started
+                HikariPoolMXBean mx = pool.getHikariPoolMXBean();
+                return mx != null && mx.getThreadsAwaitingConnection() > 0;
+            };
+        }
+        return new BroadcastService(broadcasts, shards, transactionManager, poolBusy,
+                properties.batchSize(), properties.maxRate(), properties.busyPause(),
+                properties.queueCapacity(), properties.retainedJobs());
+    }
+}
@@ -0,0 +1,25 @@
+package backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for message broadcasts to groups of patients (journal.broadcast.*).
+ *
+ * @param batchSize messages inserted per transaction; at most 2000, since a batch of a
+ *                  practitioner's patients binds one parameter per patient
+ * @param maxRate most messages written per second
+ * @param busyPause wait between checks while requests are queueing for a database connection
+ * @param queueCapacity broadcasts that may wait while another one runs
+ * @param retainedJobs finished jobs kept for status requests
+ */
+@ConfigurationProperties(prefix = "journal.broadcast")
+public record BroadcastProperties(
+        @DefaultValue("500") int batchSize,
+        @DefaultValue("2000") int maxRate,
+        @DefaultValue("250ms") Duration busyPause,
+        @DefaultValue("4") int queueCapacity,
+        @DefaultValue("50") int retainedJobs
+) {}
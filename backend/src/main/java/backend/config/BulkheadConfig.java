@@ -0,0 +1,83 @@
+package backend.config;
+
+import backend.bulkhead.Bulkhead;
+import backend.bulkhead.BulkheadFilter;
+import backend.bulkhead.PartitionedDataSource;
+import backend.bulkhead.Workload;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Keeps one workload from starving the others: every request class gets its own concurrency
+ * limit and its own slice of the connection pool. Message polling can then fill its own slots
+ * and connections without stalling logins or note writes, which have slices of their own.
+ * Clinical writes get the longest waits so they queue briefly instead of being shed.
+ *
+ * Metrics: journal.bulkhead.{active,limit,wait,rejected} and journal.db.partition.{active,limit,wait,rejected},
+ * tagged with workload.
+ */
+@Configuration
+@ConditionalOnProperty(name = "journal.bulkhead.enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(BulkheadProperties.class)
+public class BulkheadConfig {
+
+    @Bean
+    FilterRegistrationBean<BulkheadFilter> bulkheadFilter(BulkheadProperties properties, MeterRegistry registry) {
+        Map<Workload, Bulkhead> bulkheads = new EnumMap<>(Workload.class);
+        properties.workloads().forEach((workload, limit) -> bulkheads.put(workload,
+                new Bulkhead("journal.bulkhead", workload, limit.maxConcurrent(), limit.maxWait(), registry)));
+
+        var registration = new FilterRegistrationBean<>(new BulkheadFilter(bulkheads));
+        registration.addUrlPatterns("/api/*");
+        // before Spring Security, so shed requests cost no session lookup
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+
+    /**
+     * Wraps the application's DataSource in a {@link PartitionedDataSource}. The partitions
+     * together may not ask for more connections than the pool has. With sharding a write holds
+     * its home connection while it opens one on the patient's shard, which may be shard 0 as well,
+     * so the pool must have two connections for every one in the partitions.
+     */
+    @Bean
+    static BeanPostProcessor partitionDataSource(ObjectProvider<BulkheadProperties> properties,
+                                                 ObjectProvider<MeterRegistry> registry,
+                                                 Environment env) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!"dataSource".equals(beanName) || !(bean instanceof DataSource dataSource)) return bean;
+
+                BulkheadProperties config = properties.getObject();
+                int poolSize = env.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10);
+                int perRequest = env.getProperty("journal.sharding.enabled", Boolean.class, false) ? 2 : 1;
+                int reserved = perRequest * config.workloads().values().stream()
+                        .mapToInt(BulkheadProperties.Limit::connections).sum();
+                if (reserved > poolSize) {
+                    throw new IllegalStateException("journal.bulkhead reserves " + reserved
+                            + " connections" + (perRequest > 1 ? " (two per request with sharding)" : "")
+                            + " but the pool only has " + poolSize);
+                }
+
+                Map<Workload, Bulkhead> partitions = new EnumMap<>(Workload.class);
+                config.workloads().forEach((workload, limit) -> partitions.put(workload,
+                        new Bulkhead("journal.db.partition", workload, limit.connections(), limit.connectionWait(),
+                                registry.getObject())));
+                return new PartitionedDataSource(dataSource, partitions);
+            }
+        };
+    }
+}
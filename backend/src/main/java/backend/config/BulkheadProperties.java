@@ -0,0 +1,38 @@
+package backend.config;
+
+import backend.bulkhead.Workload;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Per-workload concurrency limits and connection partitions (journal.bulkhead.*).
+ *
+ * @param enabled admit requests through the bulkheads and partition the connection pool
+ * @param workloads limits per workload class; classes without an entry are not limited
+ */
+@ConfigurationProperties(prefix = "journal.bulkhead")
+public record BulkheadProperties(
+        @DefaultValue("true") boolean enabled,
+        Map<Workload, Limit> workloads
+) {
+
+    public BulkheadProperties {
+        workloads = workloads == null ? Map.of() : Map.copyOf(workloads);
+    }
+
+    /**
+     * @param maxConcurrent requests of this class handled at once
+     * @param maxWait how long a request waits for a slot before it is shed with 503
+     * @param connections database connections this class may hold at once
+     * @param connectionWait how long a request waits for one of those connections before it is shed with 503
+     */
+    public record Limit(
+            int maxConcurrent,
+            @DefaultValue("0ms") Duration maxWait,
+            int connections,
+            @DefaultValue("1s") Duration connectionWait
+    ) {}
+}
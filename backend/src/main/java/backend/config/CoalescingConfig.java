@@ -0,0 +1,20 @@
+package backend.config;
+
+import backend.coalesce.SingleFlights;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Request coalescing for the patient record and message thread reads.
+ */
+@Configuration
+@EnableConfigurationProperties(CoalescingProperties.class)
+public class CoalescingConfig {
+
+    @Bean
+    SingleFlights singleFlights(CoalescingProperties properties, MeterRegistry registry) {
+        return new SingleFlights(properties.waitTimeout(), properties.enabled(), registry);
+    }
+}
@@ -0,0 +1,18 @@
+package backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for coalescing identical concurrent reads (journal.coalescing.*).
+ *
+ * @param enabled share in-flight loads between concurrent requests
+ * @param waitTimeout how long a request waits for another request's load before giving up with 503
+ */
+@ConfigurationProperties(prefix = "journal.coalescing")
+public record CoalescingProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("5s") Duration waitTimeout
+) {}
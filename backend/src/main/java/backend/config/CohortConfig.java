@@ -0,0 +1,63 @@
+package backend.config;
+
+import backend.cohort.CohortIndex;
+import backend.datasource.PatientShards;
+import backend.repository.CohortRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * The in-memory cohort index. It is loaded in the background once the application is up;
+ * cohort requests get 503 until then. A failed load is retried with a growing pause, so a
+ * database that is down at startup only delays the index.
+ */
+@Configuration
+public class CohortConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(CohortConfig.class);
+
+    private static final Duration FIRST_RETRY = Duration.ofSeconds(5);
+    private static final Duration MAX_RETRY = Duration.ofMinutes(5);
+
+    @Bean
+    CohortIndex cohortIndex(MeterRegistry registry) {
+        return new CohortIndex(registry);
+    }
+
+    @Bean
+    ApplicationListener<ApplicationReadyEvent> loadCohortIndex(CohortIndex index, CohortRepository cohorts,
+                                                                PatientShards shards) {
+        return event -> {
+            Thread loader = new Thread(() -> {
+                Duration retry = FIRST_RETRY;
+                while (true) {
+                    long start = System.nanoTime();
+                    try {
+                        index.load(shards.onEveryShard(cohorts::patientsByCode));
+                        log.info("Cohort index loaded in {} ms", (System.nanoTime() - start) / 1_000_000);
+                        return;
+                    } catch (RuntimeException e) {
+                        index.discardPending();
+                        log.error("Could not load the cohort index; retrying in {}", retry, e);
+                    }
+                    try {
+                        Thread.sleep(retry.toMillis());
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    Duration doubled = retry.multipliedBy(2);
+                    retry = doubled.compareTo(MAX_RETRY) > 0 ? MAX_RETRY : doubled;
+                }
+            }, "cohort-index-load");
+            loader.setDaemon(true);
+            loader.start();
+        };
+    }
+}
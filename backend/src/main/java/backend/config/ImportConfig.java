@@ -0,0 +1,30 @@
+package backend.config;
+
+import backend.auth.PasswordHasher;
+import backend.datasource.PatientShards;
+import backend.imports.PatientImportService;
+import backend.repository.PatientImportRepository;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * CSV patient import (see {@link PatientImportService}).
+ */
+@Configuration
+@EnableConfigurationProperties(ImportProperties.class)
+public class ImportConfig {
+
+    @Bean
+    PatientImportService patientImportService(PatientImportRepository imports,
+                                              PatientShards shards,
+                                              PasswordHasher passwords,
+                                              PlatformTransactionManager transactionManager,
+                                              ImportProperties properties) {
+        return new PatientImportService(imports, shards, passwords, transactionManager,
+                properties.batchSize(), properties.maxReportedRejects(),
+                properties.queueCapacity(), properties.retainedJobs(),
+                properties.maxUploadSize().toBytes());
+    }
+}
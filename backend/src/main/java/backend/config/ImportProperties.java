@@ -0,0 +1,23 @@
+package backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings for the CSV patient import (journal.import.*).
+ *
+ * @param batchSize rows bulk copied and merged per transaction
+ * @param maxReportedRejects rejected rows listed in the job status; all are counted
+ * @param queueCapacity imports that may wait while another one runs
+ * @param retainedJobs finished jobs kept for status requests
+ * @param maxUploadSize largest CSV accepted; a larger upload is rejected with 413 while it is spooled
+ */
+@ConfigurationProperties(prefix = "journal.import")
+public record ImportProperties(
+        @DefaultValue("5000") int batchSize,
+        @DefaultValue("1000") int maxReportedRejects,
+        @DefaultValue("4") int queueCapacity,
+        @DefaultValue("50") int retainedJobs,
+        @DefaultValue("512MB") DataSize maxUploadSize
+) {}
@@ -0,0 +1,26 @@
+package backend.config;
+
+import backend.messaging.MessagingExecutor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * The executor behind {@link backend.controller.AsyncMessageController}. Async requests leave
+ * the bulkhead when their servlet thread returns, so for them the executor's queue is the limit
+ * on messaging requests in flight and its threads the limit on connections.
+ *
+ * Metrics: journal.messaging.{queue.wait,queue.size,active,rejected}.
+ */
+@Configuration
+@Profile("async-messaging")
+@EnableConfigurationProperties(MessagingProperties.class)
+public class MessagingConfig {
+
+    @Bean(destroyMethod = "close")
+    MessagingExecutor messagingExecutor(MessagingProperties properties, MeterRegistry registry) {
+        return new MessagingExecutor(properties.threads(), properties.queueCapacity(), properties.maxQueueWait(), registry);
+    }
+}
@@ -0,0 +1,20 @@
+package backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Async messaging endpoints, active with the async-messaging profile (journal.messaging.*).
+ *
+ * @param threads threads doing the messaging database work; like the messaging connection partition
+ * @param queueCapacity messaging requests that may wait for a thread; more get 503
+ * @param maxQueueWait a request that waited this long for a thread gets 503 instead of an answer
+ */
+@ConfigurationProperties(prefix = "journal.messaging")
+public record MessagingProperties(
+        @DefaultValue("2") int threads,
+        @DefaultValue("2000") int queueCapacity,
+        @DefaultValue("5s") Duration maxQueueWait
+) {}
@@ -0,0 +1,21 @@
+package backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.List;
+
+/**
+ * Who may use the operator endpoints of the actuator, jfr, metrics and startup (journal.operators.*).
+ *
+ * Anyone can register an account with any role, so the STAFF role alone does not make an
+ * operator: the account must also be listed here. An empty list locks the endpoints.
+ *
+ * @param usernames staff accounts allowed to use them
+ */
+@ConfigurationProperties(prefix = "journal.operators")
+public record OperatorProperties(List<String> usernames) {
+
+    public OperatorProperties {
+        usernames = usernames == null ? List.of() : List.copyOf(usernames);
+    }
+}
@@ -0,0 +1,31 @@
+package backend.config;
+
+import backend.auth.PasswordHasher;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Password hashing on its own bounded pool (see {@link PasswordHasher}).
+ */
+@Configuration
+@EnableConfigurationProperties(PasswordProperties.class)
+public class PasswordConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(PasswordConfig.class);
+
+    @Bean
+    PasswordHasher passwordHasher(PasswordProperties properties, MeterRegistry registry) {
+        int cost = properties.cost() != null
+                ? properties.cost()
+                : PasswordHasher.calibrate(properties.targetTime(), properties.minCost(), properties.maxCost());
+        int threads = properties.threads() > 0
+                ? properties.threads()
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        log.info("Password hashing with bcrypt cost {} on {} thread(s)", cost, threads);
+        return new PasswordHasher(cost, threads, properties.queueCapacity(), properties.maxWait(), registry);
+    }
+}
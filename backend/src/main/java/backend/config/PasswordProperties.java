@@ -0,0 +1,28 @@
+package backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Password hashing settings (journal.password.*).
+ *
+ * @param cost bcrypt cost; leave unset to calibrate against {@code targetTime} at startup
+ * @param targetTime how long one hash should take when calibrating
+ * @param minCost lowest cost calibration may pick
+ * @param maxCost highest cost calibration may pick
+ * @param threads hashing threads; 0 for half of the available cores
+ * @param queueCapacity hashes that may wait for a thread before logins are shed
+ * @param maxWait how long a login waits for its hash before it is shed with 503
+ */
+@ConfigurationProperties(prefix = "journal.password")
+public record PasswordProperties(
+        Integer cost,
+        @DefaultValue("50ms") Duration targetTime,
+        @DefaultValue("10") int minCost,
+        @DefaultValue("14") int maxCost,
+        @DefaultValue("0") int threads,
+        @DefaultValue("64") int queueCapacity,
+        @DefaultValue("2s") Duration maxWait
+) {}
@@ -0,0 +1,45 @@
+package backend.config;
+
+import backend.bulkhead.PartitionedDataSource;
+import backend.datasource.AdaptivePoolSizer;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * Resizes the connection pool from its own acquire and usage timers. The pool metrics themselves
+ * (hikaricp.connections.acquire/usage/active/idle/pending/timeout) are published by Spring Boot;
+ * application.yml turns on their histograms and HikariCP's leak detection.
+ *
+ * Metrics: journal.db.pool.target.size and journal.db.pool.resizes{direction}, tagged with pool.
+ */
+@Configuration
+@ConditionalOnProperty(name = "journal.datasource.pool.adaptive", havingValue = "true")
+@EnableConfigurationProperties(PoolProperties.class)
+public class PoolConfig {
+
+    @Bean
+    AdaptivePoolSizer adaptivePoolSizer(DataSource dataSource, PoolProperties properties, MeterRegistry registry)
+            throws SQLException {
+        if (!dataSource.isWrapperFor(HikariDataSource.class)) {
+            throw new IllegalStateException("journal.datasource.pool.adaptive needs the single spring.datasource pool");
+        }
+        PartitionedDataSource partitions = dataSource.isWrapperFor(PartitionedDataSource.class)
+                ? dataSource.unwrap(PartitionedDataSource.class) : null;
+        return new AdaptivePoolSizer(dataSource.unwrap(HikariDataSource.class), partitions,
+                properties.minSize(), properties.maxSize(), properties.step(), properties.targetAcquire(),
+                properties.maxUsageGrowth(), properties.headroom(), properties.shrinkAfter(), registry);
+    }
+
+    @Bean
+    SchedulingConfigurer adjustPoolSize(PoolProperties properties, AdaptivePoolSizer sizer) {
+        return registrar -> registrar.addFixedDelayTask(sizer::adjust, properties.interval());
+    }
+}
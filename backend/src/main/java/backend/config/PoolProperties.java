@@ -0,0 +1,33 @@
+package backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Adaptive sizing of the spring.datasource pool (journal.datasource.pool.*).
+ *
+ * @param adaptive turns the sizer on; off, the pool keeps spring.datasource.hikari.maximum-pool-size
+ * @param minSize smallest pool size
+ * @param maxSize largest pool size; keep it below what SQL Server allows this instance
+ * @param step connections added or removed at once when waits or database latency change
+ * @param interval time between two sizing decisions
+ * @param targetAcquire average wait for a connection above which the pool grows
+ * @param maxUsageGrowth how many times its usual value the connection usage time may reach
+ *                       before the database counts as saturated and the pool shrinks
+ * @param headroom connections kept per connection in use on average before an idle pool shrinks
+ * @param shrinkAfter intervals with room to spare before an idle pool gives back a connection
+ */
+@ConfigurationProperties(prefix = "journal.datasource.pool")
+public record PoolProperties(
+        @DefaultValue("false") boolean adaptive,
+        @DefaultValue("5") int minSize,
+        @DefaultValue("30") int maxSize,
+        @DefaultValue("2") int step,
+        @DefaultValue("15s") Duration interval,
+        @DefaultValue("5ms") Duration targetAcquire,
+        @DefaultValue("1.5") double maxUsageGrowth,
+        @DefaultValue("1.5") double headroom,
+        @DefaultValue("8") int shrinkAfter
+) {}
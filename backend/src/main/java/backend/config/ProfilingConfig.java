@@ -0,0 +1,54 @@
+package backend.config;
+
+import backend.profiling.JfrDataSource;
+import backend.profiling.JfrEndpoint;
+import backend.profiling.JfrProfiler;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+
+/**
+ * On-demand and continuous JFR recordings behind the actuator "jfr" endpoint, summarized into
+ * hot methods, allocation sites, lock waits and slow statements, and exported as collapsed
+ * stacks for flame graphs. The endpoint still has to be exposed
+ * (management.endpoints.web.exposure.include) and is limited to the operators of
+ * journal.operators.usernames in SecurityConfig.
+ */
+@Configuration
+@ConditionalOnProperty(name = "journal.profiling.enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(ProfilingProperties.class)
+public class ProfilingConfig {
+
+    @Bean(destroyMethod = "close")
+    JfrProfiler jfrProfiler(ProfilingProperties properties) throws IOException {
+        ProfilingProperties.Continuous c = properties.continuous();
+        return new JfrProfiler(properties.directory(), properties.settings(), properties.jdbcThreshold(),
+                properties.maxDuration(), properties.retained(), properties.top(),
+                c.enabled() ? new JfrProfiler.Continuous(c.settings(), c.jdbcThreshold(), c.maxAge(),
+                        c.maxSize().toBytes()) : null);
+    }
+
+    @Bean
+    JfrEndpoint jfrEndpoint(JfrProfiler profiler, ProfilingProperties properties) {
+        return new JfrEndpoint(profiler, properties.defaultDuration());
+    }
+
+    /** Wraps the application's DataSource in a {@link JfrDataSource}. */
+    @Bean
+    static BeanPostProcessor recordJdbcStatements() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if ("dataSource".equals(beanName) && bean instanceof DataSource dataSource) {
+                    return new JfrDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+}
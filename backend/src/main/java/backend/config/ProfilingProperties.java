@@ -0,0 +1,50 @@
+package backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * JFR profiling through the actuator "jfr" endpoint (journal.profiling.*).
+ *
+ * @param enabled false registers neither the endpoint nor the JDBC events
+ * @param directory where recordings are written
+ * @param settings JDK configuration on-demand recordings start from, "profile" or "default"
+ * @param jdbcThreshold shortest JDBC statement an on-demand recording keeps
+ * @param defaultDuration length of an on-demand recording when the request gives none
+ * @param maxDuration longest on-demand recording
+ * @param retained recording files kept
+ * @param top rows in each summary table
+ * @param continuous the ring buffer recording, off by default
+ */
+@ConfigurationProperties(prefix = "journal.profiling")
+public record ProfilingProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("profiles") Path directory,
+        @DefaultValue("profile") String settings,
+        @DefaultValue("10ms") Duration jdbcThreshold,
+        @DefaultValue("60s") Duration defaultDuration,
+        @DefaultValue("5m") Duration maxDuration,
+        @DefaultValue("20") int retained,
+        @DefaultValue("25") int top,
+        @DefaultValue Continuous continuous
+) {
+
+    /**
+     * @param enabled start the ring buffer with the application
+     * @param settings JDK configuration it records with
+     * @param jdbcThreshold shortest JDBC statement it keeps
+     * @param maxAge oldest data kept
+     * @param maxSize most data kept
+     */
+    public record Continuous(
+            @DefaultValue("false") boolean enabled,
+            @DefaultValue("default") String settings,
+            @DefaultValue("50ms") Duration jdbcThreshold,
+            @DefaultValue("15m") Duration maxAge,
+            @DefaultValue("200MB") DataSize maxSize
+    ) {}
+}
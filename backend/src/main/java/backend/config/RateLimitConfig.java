@@ -0,0 +1,48 @@
+package backend.config;
+
+import backend.ratelimit.RateLimitFilter;
+import backend.ratelimit.RateLimitRule;
+import backend.ratelimit.RateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Per-token and per-address rate limits. The filter runs inside the Spring Security chain
+ * (see {@link SecurityConfig}), so it is kept out of the plain servlet filter chain.
+ */
+@Configuration
+@ConditionalOnProperty(name = "journal.rate-limit.enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(RateLimitProperties.class)
+public class RateLimitConfig {
+
+    @Bean
+    RateLimitFilter rateLimitFilter(RateLimitProperties properties, MeterRegistry registry) {
+        List<RateLimitRule> rules = properties.rules().stream()
+                .map(r -> new RateLimitRule(
+                        r.name(),
+                        r.path(),
+                        new HashSet<>(r.methods()),
+                        limiter(r.perToken(), properties.maxKeys()),
+                        limiter(r.perIp(), properties.maxKeys())))
+                .toList();
+        return new RateLimitFilter(rules, registry);
+    }
+
+    @Bean
+    FilterRegistrationBean<RateLimitFilter> rateLimitFilterRegistration(RateLimitFilter filter) {
+        var registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
+    private static RateLimiter limiter(RateLimitProperties.Limit limit, int maxKeys) {
+        return limit == null ? null : new RateLimiter(limit.requests(), limit.per(), limit.burstOrRequests(), maxKeys);
+    }
+}
@@ -0,0 +1,52 @@
+package backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Per-endpoint request rate limits (journal.rate-limit.*).
+ *
+ * @param enabled reject clients over their limit with 429
+ * @param maxKeys buckets kept per limit before idle ones are dropped
+ * @param rules checked in order, the first rule matching a request applies
+ */
+@ConfigurationProperties(prefix = "journal.rate-limit")
+public record RateLimitProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("100000") int maxKeys,
+        List<Rule> rules
+) {
+
+    public RateLimitProperties {
+        rules = rules == null ? List.of() : List.copyOf(rules);
+    }
+
+    /**
+     * @param name used as the rule tag on journal.ratelimit.rejected
+     * @param path path pattern, e.g. /api/messages/thread/*
+     * @param methods HTTP methods; empty for all
+     * @param perToken limit per signed-in session, or none
+     * @param perIp limit per client address, or none
+     */
+    public record Rule(String name, String path, List<String> methods, Limit perToken, Limit perIp) {
+
+        public Rule {
+            methods = methods == null ? List.of() : List.copyOf(methods);
+        }
+    }
+
+    /**
+     * @param requests requests allowed per {@code per}
+     * @param per the period
+     * @param burst requests allowed back to back; defaults to {@code requests}
+     */
+    public record Limit(int requests, @DefaultValue("1s") Duration per, Integer burst) {
+
+        public int burstOrRequests() {
+            return burst == null ? requests : burst;
+        }
+    }
+}
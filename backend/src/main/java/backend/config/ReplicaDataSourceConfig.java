@@ -0,0 +1,97 @@
+package backend.config;
+
+import backend.datasource.ReplicaLagGuard;
+import backend.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Read/write splitting between the primary database and a read replica.
+ * Only active when journal.datasource.replica.enabled=true; otherwise Spring Boot
+ * creates the single spring.datasource pool as before.
+ *
+ * Both pools are beans of their own so Spring Boot publishes HikariCP metrics
+ * per pool (tagged pool=journal-primary / pool=journal-replica).
+ */
+@Configuration
+@ConditionalOnProperty(name = "journal.datasource.replica.enabled", havingValue = "true")
+@EnableConfigurationProperties(ReplicaProperties.class)
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource ds = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        ds.setPoolName("journal-primary");
+        return ds;
+    }
+
+    @Bean
+    @ConfigurationProperties("journal.datasource.replica.hikari")
+    HikariDataSource replicaDataSource(ReplicaProperties replica, DataSourceProperties primary,
+                                       @Qualifier("primaryDataSource") HikariDataSource primaryPool) {
+        HikariDataSource ds = new HikariDataSource();
+        ds.setJdbcUrl(replica.url());
+        ds.setUsername(replica.username());
+        ds.setPassword(replica.password());
+        ds.setDriverClassName(primary.determineDriverClassName());
+        // same driver settings as the primary; journal.datasource.replica.hikari may add to them
+        ds.setDataSourceProperties(primaryPool.getDataSourceProperties());
+        ds.setPoolName("journal-replica");
+        ds.setReadOnly(true);
+        return ds;
+    }
+
+    @Bean
+    @Primary
+    DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                          @Qualifier("replicaDataSource") DataSource replica,
+                          ReplicaProperties properties,
+                          MeterRegistry registry) {
+        Map<String, Counter> routed = Map.of(
+                "write", routeCounter(registry, ReplicaRoutingDataSource.Target.PRIMARY, "write"),
+                "lag-guard", routeCounter(registry, ReplicaRoutingDataSource.Target.PRIMARY, "lag-guard"),
+                "read", routeCounter(registry, ReplicaRoutingDataSource.Target.REPLICA, "read")
+        );
+
+        var routing = new ReplicaRoutingDataSource(
+                primary,
+                replica,
+                new ReplicaLagGuard(properties.lagWindow(), properties.maxTrackedSessions()),
+                ReplicaDataSourceConfig::currentSessionToken,
+                (target, reason) -> routed.get(reason).increment()
+        );
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    private static Counter routeCounter(MeterRegistry registry, ReplicaRoutingDataSource.Target target, String reason) {
+        return Counter.builder("journal.datasource.routed")
+                .description("Connections handed out by the read/write router")
+                .tag("target", target.name().toLowerCase())
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    // Same header the controllers use to resolve the logged-in user.
+    private static String currentSessionToken() {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attrs) {
+            return attrs.getRequest().getHeader("X-Auth");
+        }
+        return null;
+    }
+}
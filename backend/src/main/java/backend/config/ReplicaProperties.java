@@ -0,0 +1,26 @@
+package backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for the optional read replica (journal.datasource.replica.*).
+ *
+ * @param enabled turns read/write routing on
+ * @param url JDBC url of the replica
+ * @param username replica login
+ * @param password replica password
+ * @param lagWindow how long a session keeps reading from the primary after it wrote
+ * @param maxTrackedSessions upper bound on sessions remembered by the lag guard
+ */
+@ConfigurationProperties(prefix = "journal.datasource.replica")
+public record ReplicaProperties(
+        @DefaultValue("false") boolean enabled,
+        String url,
+        String username,
+        String password,
+        @DefaultValue("2s") Duration lagWindow,
+        @DefaultValue("100000") int maxTrackedSessions
+) {}
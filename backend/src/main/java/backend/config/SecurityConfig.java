@@ -1,22 +1,58 @@
 package backend.config;
 
+import backend.auth.SessionManager;
+import backend.model.Role;
+import backend.profiling.JfrEndpoint;
+import backend.ratelimit.RateLimitFilter;
+import backend.repository.UserRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.security.web.context.SecurityContextHolderFilter;
+
+import java.util.Set;
+import java.util.function.Supplier;
 
 @Configuration
+@EnableConfigurationProperties(OperatorProperties.class)
 public class SecurityConfig {
 
     @Bean
-    SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    SecurityFilterChain securityFilterChain(HttpSecurity http, ObjectProvider<RateLimitFilter> rateLimitFilter,
+                                            ObjectProvider<UserRepository> users,
+                                            OperatorProperties operators) throws Exception {
         http
                 .csrf(csrf -> csrf.disable()) // allow POST/PUT w
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/api/auth/**").permitAll()
+                        // jfr exposes stacks and SQL text, metrics and startup the application's internals
+                        // (POST startup even drains the timeline): configured operators only
+                        .requestMatchers(EndpointRequest.to(JfrEndpoint.class), EndpointRequest.to("metrics", "startup"))
+                        .access(operatorSession(users::getObject, Set.copyOf(operators.usernames())))
                         .requestMatchers("/api/actuator/**").permitAll()
                         .anyRequest().permitAll()
                 );
+        // throttle before anything else in the chain does work for the request
+        rateLimitFilter.ifAvailable(filter -> http.addFilterBefore(filter, SecurityContextHolderFilter.class));
         return http.build();
     }
+
+    // the X-Auth session must belong to a STAFF user listed in journal.operators.usernames;
+    // the role alone is not enough, since registration lets anyone pick it
+    static AuthorizationManager<RequestAuthorizationContext> operatorSession(Supplier<UserRepository> users,
+                                                                             Set<String> operators) {
+        return (authentication, context) -> {
+            Long uid = SessionManager.resolveUserId(context.getRequest().getHeader("X-Auth"));
+            boolean operator = uid != null && !operators.isEmpty() && users.get().findById(uid)
+                    .map(u -> u.getRole() == Role.STAFF && operators.contains(u.getUsername())).orElse(false);
+            return new AuthorizationDecision(operator);
+        };
+    }
 }
@@ -0,0 +1,58 @@
+package backend.config;
+
+import backend.auth.PasswordHasher;
+import backend.datasource.PatientShards;
+import backend.repository.PractitionerActivityRepository;
+import backend.seed.SeedLoader;
+import backend.seed.SyntheticRecords;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+
+/**
+ * The seed profile fills the database with synthetic records for scale testing and exits:
+ *
+ * <pre>
+ * # about 10M rows
+ * mvn spring-boot:run -Dspring-boot.run.profiles=seed -Dspring-boot.run.arguments=--journal.seed.patients=300000
+ * </pre>
+ *
+ * See {@link SyntheticRecords} for what is generated and {@link SeedLoader} for how it is written.
+ */
+@Configuration
+@Profile("seed")
+@EnableConfigurationProperties(SeedProperties.class)
+public class SeedConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(SeedConfig.class);
+
+    @Bean
+    ApplicationRunner seedDatabase(SeedProperties properties, JdbcTemplate jdbc,
+                                   PlatformTransactionManager transactionManager,
+                                   PractitionerActivityRepository activity, PatientShards shards,
+                                   PasswordHasher passwords, ConfigurableApplicationContext context) {
+        return args -> {
+            if (shards.isSharded()) {
+                throw new IllegalStateException("The seed profile only fills an unsharded database");
+            }
+            SeedLoader loader = new SeedLoader(jdbc, transactionManager, activity, properties.threads());
+            LocalDate until = properties.until() != null ? properties.until() : LocalDate.now();
+            SyntheticRecords records = new SyntheticRecords(properties.seed(), properties.patients(),
+                    properties.chunkSize(), properties.patientsPerDoctor(), properties.historyYears(), until,
+                    passwords.hash(properties.password()), loader.nextIds());
+            log.info("Seeding {} patients with seed {} up to {}", properties.patients(), properties.seed(), until);
+            loader.load(records);
+            System.exit(SpringApplication.exit(context));
+        };
+    }
+}
@@ -0,0 +1,30 @@
+package backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.LocalDate;
+
+/**
+ * Synthetic data generation under the seed profile (journal.seed.*).
+ *
+ * @param seed random seed; the same seed, size and until give the same rows
+ * @param patients patients to generate, about 35 rows each across all tables
+ * @param chunkSize patients generated and written per transaction
+ * @param threads chunks in flight at once, each holding a connection
+ * @param patientsPerDoctor patients per doctor, which sets the number of practitioners and clinics
+ * @param historyYears how far back encounters and messages go
+ * @param until day after the last generated event; today if not set
+ * @param password password of every generated account
+ */
+@ConfigurationProperties(prefix = "journal.seed")
+public record SeedProperties(
+        @DefaultValue("42") long seed,
+        @DefaultValue("100000") int patients,
+        @DefaultValue("1000") int chunkSize,
+        @DefaultValue("4") int threads,
+        @DefaultValue("1500") int patientsPerDoctor,
+        @DefaultValue("5") int historyYears,
+        LocalDate until,
+        @DefaultValue("seed") String password
+) {}
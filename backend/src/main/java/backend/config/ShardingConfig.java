@@ -0,0 +1,116 @@
+package backend.config;
+
+import backend.datasource.PatientShards;
+import backend.datasource.ShardRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Patient-id sharding. {@link PatientShards} is always available; with sharding off it
+ * runs everything inline against the single database.
+ */
+@Configuration
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig {
+
+    @Bean
+    PatientShards patientShards(ShardingProperties properties, PlatformTransactionManager transactionManager) {
+        return new PatientShards(properties.count(), properties.idRange(), transactionManager);
+    }
+
+    /**
+     * One pool per shard behind a {@link ShardRoutingDataSource}.
+     * Shard 0 is spring.datasource and keeps users, messages and practitioners.
+     */
+    @Configuration
+    @ConditionalOnProperty(name = "journal.sharding.enabled", havingValue = "true")
+    static class ShardedDataSources {
+
+        @Bean
+        @ConfigurationProperties("spring.datasource.hikari")
+        HikariDataSource homeShardDataSource(DataSourceProperties properties) {
+            HikariDataSource ds = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+            ds.setPoolName("journal-shard-0");
+            return ds;
+        }
+
+        @Bean
+        @Primary
+        ShardRoutingDataSource dataSource(@Qualifier("homeShardDataSource") HikariDataSource home,
+                                          DataSourceProperties homeProperties,
+                                          ShardingProperties properties,
+                                          MeterRegistry registry,
+                                          Environment env) {
+            if (env.getProperty("journal.datasource.replica.enabled", Boolean.class, false)) {
+                throw new IllegalStateException("journal.sharding and journal.datasource.replica cannot be enabled together");
+            }
+
+            List<HikariDataSource> shards = new ArrayList<>();
+            shards.add(home);
+            for (ShardingProperties.Shard shard : properties.shards()) {
+                HikariDataSource ds = new HikariDataSource();
+                ds.setJdbcUrl(shard.url());
+                ds.setUsername(shard.username());
+                ds.setPassword(shard.password());
+                ds.setDriverClassName(homeProperties.determineDriverClassName());
+                ds.setDataSourceProperties(home.getDataSourceProperties());
+                ds.setMaximumPoolSize(home.getMaximumPoolSize());
+                ds.setPoolName("journal-shard-" + shards.size());
+                ds.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+                shards.add(ds);
+            }
+            return new ShardRoutingDataSource(shards);
+        }
+
+        /**
+         * Runs the regular migrations against every shard. Each shard gets its own
+         * shard_id_base placeholder so its identity columns start in its own id range.
+         */
+        @Bean
+        FlywayMigrationStrategy migrateEveryShard(ShardingProperties properties) {
+            return flyway -> {
+                ShardRoutingDataSource routing;
+                try {
+                    // may be wrapped, e.g. by the bulkhead connection partitions
+                    routing = flyway.getConfiguration().getDataSource().unwrap(ShardRoutingDataSource.class);
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Sharding is enabled but the DataSource is not shard routed", e);
+                }
+                for (Map.Entry<Object, DataSource> shard : routing.getResolvedDataSources().entrySet()) {
+                    int index = (Integer) shard.getKey();
+
+                    Map<String, String> placeholders = new HashMap<>(flyway.getConfiguration().getPlaceholders());
+                    placeholders.put("shard_id_base", String.valueOf(index * properties.idRange()));
+                    placeholders.put("shard_count", String.valueOf(properties.count()));
+
+                    Flyway.configure()
+                            .configuration(flyway.getConfiguration())
+                            .dataSource(shard.getValue())
+                            .placeholders(placeholders)
+                            .load()
+                            .migrate();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.List;
+
+/**
+ * Settings for patient-id sharding (journal.sharding.*).
+ * Shard 0 is always spring.datasource; {@code shards} lists the additional shards 1..N.
+ *
+ * @param enabled turns sharding on
+ * @param idRange number of ids reserved per shard; shard n allocates from n * idRange
+ * @param shards connection settings of the additional shards
+ */
+@ConfigurationProperties(prefix = "journal.sharding")
+public record ShardingProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("1000000000000") long idRange,
+        @DefaultValue List<Shard> shards
+) {
+    public record Shard(String url, String username, String password) {}
+
+    public int count() {
+        return enabled ? 1 + shards.size() : 1;
+    }
+}
@@ -0,0 +1,71 @@
+package backend.config;
+
+import backend.audit.AuditLog;
+import backend.auth.PasswordHasher;
+import backend.profiling.JfrProfiler;
+import backend.startup.DeferredSchemaValidation;
+import backend.startup.StartupReport;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.metrics.ApplicationStartup;
+
+import java.util.List;
+
+/**
+ * Support for the fast-start profile: beans that must not be created lazily, the deferred
+ * schema validation and the startup report.
+ */
+@Configuration
+@EnableConfigurationProperties(StartupProperties.class)
+public class StartupConfig {
+
+    /*
+     * With spring.main.lazy-initialization these would otherwise be created by the first request
+     * that needs them: the password hasher calibrates bcrypt for half a second, the audit log
+     * recovers segments left open, the JFR profiler starts the continuous recording, and the entity
+     * manager factory is the largest piece of startup, which deferred repository bootstrap builds
+     * in the background as soon as it is asked for.
+     */
+    @Bean
+    static LazyInitializationExcludeFilter eagerBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(
+                EntityManagerFactory.class, PasswordHasher.class, AuditLog.class, JfrProfiler.class);
+    }
+
+    @Bean
+    StartupReport startupReport(ApplicationStartup startup, StartupProperties properties) {
+        return new StartupReport(startup, properties.reportSlowestBeans());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "journal.startup", name = "defer-schema-validation", havingValue = "true")
+    DeferredSchemaValidation schemaHealthIndicator() {
+        return new DeferredSchemaValidation();
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "journal.startup", name = "defer-schema-validation", havingValue = "true")
+    HibernatePropertiesCustomizer deferredSchemaValidationIntegrator(DeferredSchemaValidation validation) {
+        return properties -> properties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER,
+                (IntegratorProvider) () -> List.of(validation));
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "journal.startup", name = "defer-schema-validation", havingValue = "true")
+    ApplicationListener<ApplicationReadyEvent> validateSchemaInBackground(DeferredSchemaValidation validation) {
+        return event -> {
+            Thread validator = new Thread(validation::validate, "schema-validation");
+            validator.setDaemon(true);
+            validator.start();
+        };
+    }
+}
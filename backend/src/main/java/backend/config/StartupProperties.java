@@ -0,0 +1,17 @@
+package backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Startup behaviour (journal.startup.*); the fast-start profile turns these on.
+ *
+ * @param deferSchemaValidation validate entities against the database after startup, in the
+ *                              background, instead of during it; use with ddl-auto none
+ * @param reportSlowestBeans how many of the slowest bean creations to log once started
+ */
+@ConfigurationProperties(prefix = "journal.startup")
+public record StartupProperties(
+        @DefaultValue("false") boolean deferSchemaValidation,
+        @DefaultValue("10") int reportSlowestBeans
+) {}
@@ -0,0 +1,112 @@
+package backend.config;
+
+import backend.tracing.RepositoryTracing;
+import backend.tracing.SpanExporter;
+import backend.tracing.TraceContext;
+import backend.tracing.Tracer;
+import backend.tracing.TracingDataSource;
+import backend.tracing.TracingFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.data.repository.Repository;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+
+/**
+ * Sampled request tracing: a SERVER span per request, an INTERNAL span per repository call and
+ * per JSON response, a CLIENT span per JDBC statement. Spans are written to rotating OTLP/JSON
+ * files under journal.tracing.directory; load them into Jaeger or any viewer that reads OTLP
+ * files. The current span follows work onto the application task executor (streamed exports),
+ * the shard scatter pool and the password hashing pool.
+ *
+ * Metrics: journal.tracing.spans{outcome} and journal.tracing.queue.size.
+ */
+@Configuration
+@ConditionalOnProperty(name = "journal.tracing.enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(TracingProperties.class)
+public class TracingConfig {
+
+    @Bean(destroyMethod = "close")
+    SpanExporter spanExporter(TracingProperties properties, MeterRegistry registry) throws IOException {
+        return new SpanExporter(properties.directory(), properties.serviceName(), properties.maxFileSize().toBytes(),
+                properties.maxFiles(), properties.queueCapacity(), properties.batchSize(), registry);
+    }
+
+    @Bean
+    Tracer tracer(TracingProperties properties, SpanExporter exporter) {
+        return new Tracer(properties.sampleRatio(), exporter);
+    }
+
+    @Bean
+    FilterRegistrationBean<TracingFilter> tracingFilter(Tracer tracer) {
+        var registration = new FilterRegistrationBean<>(new TracingFilter(tracer));
+        registration.addUrlPatterns("/api/*");
+        // outside the bulkhead and rate limit filters, so shed requests are traced too
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 5);
+        return registration;
+    }
+
+    /** Picked up by Spring Boot for the application task executor that runs async MVC work. */
+    @Bean
+    TaskDecorator tracingTaskDecorator() {
+        return TraceContext::wrap;
+    }
+
+    /**
+     * Wraps the application's DataSource in a {@link TracingDataSource} and every repository,
+     * Spring Data interface or {@code @Repository} class, in a {@link RepositoryTracing} advice.
+     */
+    @Bean
+    static BeanPostProcessor traceRepositoriesAndStatements(ObjectProvider<TracingProperties> properties) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if ("dataSource".equals(beanName) && bean instanceof DataSource dataSource) {
+                    return new TracingDataSource(dataSource, "mssql", properties.getObject().maxStatementLength());
+                }
+
+                Class<?> type = AopUtils.getTargetClass(bean);
+                String name;
+                if (bean instanceof Repository<?, ?>) {
+                    name = repositoryInterface(bean);
+                } else if (AnnotatedElementUtils.hasAnnotation(type, org.springframework.stereotype.Repository.class)) {
+                    name = type.getSimpleName();
+                } else {
+                    return bean;
+                }
+
+                RepositoryTracing advice = new RepositoryTracing(name);
+                if (bean instanceof Advised advised && !advised.isFrozen()) {
+                    advised.addAdvice(0, advice);
+                    return bean;
+                }
+                ProxyFactory factory = new ProxyFactory(bean);
+                factory.setProxyTargetClass(!(bean instanceof Repository<?, ?>));
+                factory.addAdvice(advice);
+                return factory.getProxy(type.getClassLoader());
+            }
+        };
+    }
+
+    private static String repositoryInterface(Object bean) {
+        for (Class<?> i : bean.getClass().getInterfaces()) {
+            if (Repository.class.isAssignableFrom(i) && !i.getName().startsWith("org.springframework.")) {
+                return i.getSimpleName();
+            }
+        }
+        return AopUtils.getTargetClass(bean).getSimpleName();
+    }
+}
@@ -0,0 +1,33 @@
+package backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+
+/**
+ * Request tracing (journal.tracing.*).
+ *
+ * @param enabled false installs no filter, proxies or exporter at all
+ * @param sampleRatio share of requests traced when the caller sent no sampled traceparent, 0 to 1
+ * @param serviceName the service.name written with every span
+ * @param directory where the OTLP/JSON trace files are written
+ * @param maxFileSize a trace file is rotated once it is larger than this
+ * @param maxFiles trace files kept, the current one included
+ * @param queueCapacity finished spans waiting to be written; more are dropped
+ * @param batchSize most spans written as one line
+ * @param maxStatementLength SQL longer than this is cut off in db.statement
+ */
+@ConfigurationProperties(prefix = "journal.tracing")
+public record TracingProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("0.01") double sampleRatio,
+        @DefaultValue("journal-backend") String serviceName,
+        @DefaultValue("traces") Path directory,
+        @DefaultValue("64MB") DataSize maxFileSize,
+        @DefaultValue("10") int maxFiles,
+        @DefaultValue("8192") int queueCapacity,
+        @DefaultValue("256") int batchSize,
+        @DefaultValue("2000") int maxStatementLength
+) {}
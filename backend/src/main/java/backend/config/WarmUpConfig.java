@@ -0,0 +1,38 @@
+package backend.config;
+
+import backend.controller.PatientRecordController;
+import backend.datasource.PatientShards;
+import backend.messaging.MessagingService;
+import backend.repository.PatientRepository;
+import backend.repository.UserRepository;
+import backend.warmup.WarmUp;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs the warm-up as an application runner. Runners finish before the application is ready,
+ * and readiness (/api/actuator/health/readiness) stays REFUSING_TRAFFIC until then.
+ */
+@Configuration
+@EnableConfigurationProperties(WarmUpProperties.class)
+public class WarmUpConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "journal.warmup", name = "enabled", havingValue = "true")
+    ApplicationRunner warmUp(WarmUpProperties properties, MessagingService messaging,
+                             PatientRecordController recordController, PatientRepository patients,
+                             UserRepository users, PatientShards shards, PlatformTransactionManager transactionManager,
+                             ObjectMapper mapper, MeterRegistry registry) {
+        WarmUp warmUp = new WarmUp(messaging, recordController, patients, users, shards,
+                new TransactionTemplate(transactionManager), mapper, registry);
+        return args -> warmUp.run(properties.budget(), properties.window(), properties.settledWindows(),
+                properties.maxCompilationShare());
+    }
+}
@@ -0,0 +1,24 @@
+package backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * JIT warm-up before the application reports ready (journal.warmup.*).
+ *
+ * @param enabled false reports ready straight after startup
+ * @param budget longest time the warm-up may take
+ * @param window length of one measurement of compilation activity
+ * @param settledWindows quiet windows in a row after which the warm-up stops early
+ * @param maxCompilationShare share of a window spent compiling, 0 to 1, below which the window counts as quiet
+ */
+@ConfigurationProperties(prefix = "journal.warmup")
+public record WarmUpProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("30s") Duration budget,
+        @DefaultValue("1s") Duration window,
+        @DefaultValue("3") int settledWindows,
+        @DefaultValue("0.05") double maxCompilationShare
+) {}
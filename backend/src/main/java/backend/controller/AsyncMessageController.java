@@ -0,0 +1,100 @@
+package backend.controller;
+
+import backend.json.JsonBody;
+import backend.messaging.MessagingExecutor;
+import backend.messaging.MessagingService;
+import backend.messaging.MessagingService.SendMessageRequest;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The messaging endpoints of {@link MessageController}, same paths and responses, for the
+ * async-messaging profile. Each request is handed to the {@link MessagingExecutor} and its
+ * servlet thread goes straight back to the container; the response is written when the work
+ * completes. Many idle or waiting message clients then cost queued tasks and open sockets
+ * rather than one blocked platform thread each.
+ * Cross-origin requests are allowed from http://localhost:5173 for development purposes.
+ */
+@RestController
+@RequestMapping("/api/messages")
+@CrossOrigin(origins = "http://localhost:5173")
+@Profile("async-messaging")
+public class AsyncMessageController {
+
+    private final MessagingService messaging;
+    private final MessagingExecutor executor;
+
+    /**
+     * @param messaging MessagingService doing the work of every endpoint
+     * @param executor MessagingExecutor running that work off the servlet threads
+     */
+    public AsyncMessageController(MessagingService messaging, MessagingExecutor executor) {
+        this.messaging = messaging;
+        this.executor = executor;
+    }
+
+    /**
+     * See {@link MessageController#getContacts}.
+     *
+     * @param token Authentication token from the X-Auth header
+     * @return completes with the contacts (id, username, role)
+     * @throws MessagingExecutor.OverloadedException with 503 status if the messaging queue is full
+     */
+    @GetMapping("/contacts")
+    public CompletableFuture<ResponseEntity<JsonBody>> getContacts(
+            @RequestHeader(value = "X-Auth", required = false) String token) {
+        return executor.submit(() -> ResponseEntity.ok(messaging.contacts(token)));
+    }
+
+    /**
+     * See {@link MessageController#getThread}.
+     *
+     * @param token Authentication token from the X-Auth header
+     * @param otherId The ID of the other user in the conversation
+     * @return completes with the messages of the thread, oldest first
+     * @throws MessagingExecutor.OverloadedException with 503 status if the messaging queue is full
+     */
+    @GetMapping("/thread/{otherId}")
+    public CompletableFuture<ResponseEntity<JsonBody>> getThread(
+            @RequestHeader(value = "X-Auth", required = false) String token,
+            @PathVariable Long otherId) {
+        return executor.submit(() -> ResponseEntity.ok(messaging.thread(token, otherId)));
+    }
+
+    /**
+     * See {@link MessageController#getArchivedThread}.
+     *
+     * @param token Authentication token from the X-Auth header
+     * @param otherId The ID of the other user in the conversation
+     * @param before Cursor from the previous response; omitted for the newest segment
+     * @return completes with {@code {messages, before}}
+     * @throws MessagingExecutor.OverloadedException with 503 status if the messaging queue is full
+     */
+    @GetMapping("/thread/{otherId}/archive")
+    public CompletableFuture<ResponseEntity<JsonBody>> getArchivedThread(
+            @RequestHeader(value = "X-Auth", required = false) String token,
+            @PathVariable Long otherId,
+            @RequestParam(required = false) Long before) {
+        return executor.submit(() -> ResponseEntity.ok(messaging.archivedThread(token, otherId, before)));
+    }
+
+    /**
+     * See {@link MessageController#send}.
+     *
+     * @param token Authentication token from the X-Auth header
+     * @param req SendMessageRequest containing receiverId and message content
+     * @return completes with the sent message, or fails with a {@link ResponseStatusException}
+     *         (401, 400, 404) as the blocking endpoint would throw
+     * @throws MessagingExecutor.OverloadedException with 503 status if the messaging queue is full
+     */
+    @PostMapping
+    public CompletableFuture<ResponseEntity<JsonBody>> send(
+            @RequestHeader(value = "X-Auth", required = false) String token,
+            @RequestBody SendMessageRequest req) {
+        return executor.submit(() -> ResponseEntity.ok(messaging.send(token, req)));
+    }
+}
@@ -1,16 +1,21 @@
 package backend.controller;
 
+import backend.auth.PasswordHasher;
 import backend.auth.SessionManager;
+import backend.datasource.PatientShards;
+import backend.json.JsonBody;
+import backend.json.ResponseWriters;
+import backend.json.ResponseWriters.Login;
 import backend.model.Patient;
 import backend.model.Role;
 import backend.model.User;
 import backend.repository.PatientRepository;
 import backend.repository.UserRepository;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Map;
-
 /**
  * Controller for handling user authentication operations including registration, login, and session management.
  * Provides endpoints for user registration, login, logout, and checking current session information.
@@ -22,16 +27,26 @@ public class AuthController {
 
     private final UserRepository users;
     private final PatientRepository patients;
+    private final PatientShards shards;
+    private final PasswordHasher passwords;
+    private final TransactionTemplate tx;
 
     /**
      * Constructor for AuthController with dependency injection.
      *
      * @param users UserRepository for accessing user data
      * @param patients PatientRepository for accessing patient data
+     * @param shards PatientShards for placing new patients on their shard
+     * @param passwords PasswordHasher for hashing and checking passwords off the request threads
+     * @param transactionManager PlatformTransactionManager for the account reads and writes
      */
-    public AuthController(UserRepository users, PatientRepository patients) {
+    public AuthController(UserRepository users, PatientRepository patients, PatientShards shards,
+                          PasswordHasher passwords, PlatformTransactionManager transactionManager) {
         this.users = users;
         this.patients = patients;
+        this.shards = shards;
+        this.passwords = passwords;
+        this.tx = new TransactionTemplate(transactionManager);
     }
 
     /**
@@ -49,63 +64,81 @@ public class AuthController {
      * Creates a new user account and if the role is PATIENT, also creates a corresponding patient record.
      *
      * @param req RegisterRequest containing username, password, and role
-     * @return ResponseEntity with user details including ID, username, role, and patientId (if applicable)
+     * @return ResponseEntity with user details including ID, username, role, and patientId (if applicable),
+     *         or bad request if the username already exists
+     * @throws PasswordHasher.OverloadedException (503) if the password cannot be hashed in time
      */
     @PostMapping("/register")
     public ResponseEntity<?> register(@RequestBody RegisterRequest req) {
         // valideringarna som du redan har...
+        if (users.existsByUsername(req.username())) {
+            return ResponseEntity.badRequest().body("Username already exists");
+        }
 
         User u = new User();
         u.setUsername(req.username());
-        u.setPassword(req.password());
+        // hashed before the transaction so no connection is held while it runs
+        u.setPassword(passwords.hash(req.password()));
         u.setRole(Role.valueOf(req.role().toUpperCase()));
 
-        if (u.getRole() == Role.PATIENT) {
-            Patient p = new Patient();
-            p.setPersonnummer(u.getUsername()); //TODO Gör ett personnummerfält i register
-            p.setName(u.getUsername());
-            patients.save(p);
-            u.setPatientId(p.getId());
+        int shard = shards.shardFor(u.getUsername());
+        User saved;
+        try {
+            saved = tx.execute(status -> {
+                if (u.getRole() == Role.PATIENT) {
+                    Patient p = new Patient();
+                    p.setPersonnummer(u.getUsername()); //TODO Gör ett personnummerfält i register
+                    p.setName(u.getUsername());
+                    shards.onShard(shard, () -> patients.save(p));
+                    u.setPatientId(p.getId());
+                }
+                return users.save(u);
+            });
+        } catch (RuntimeException e) {
+            // on a shard the patient was committed in its own transaction; without the account it is an orphan
+            if (shards.isSharded() && u.getPatientId() != null) {
+                shards.onShard(shard, () -> {
+                    patients.deleteById(u.getPatientId());
+                    return null;
+                });
+            }
+            throw e;
         }
 
-        User saved = users.save(u);
-
-        return ResponseEntity.ok(Map.of(
-                "id", saved.getId(),
-                "username", saved.getUsername(),
-                "role", saved.getRole().name(),
-                "patientId", saved.getPatientId()
-        ));
+        return ResponseEntity.ok(JsonBody.of(ResponseWriters.REGISTERED, saved));
     }
 
     /**
      * Authenticates a user and creates a session.
      * Verifies username and password, then issues an authentication token for valid credentials.
+     * A password still stored in plaintext, or hashed with a lower cost than the current one,
+     * is replaced by a fresh hash once it has matched.
      *
      * @param req LoginRequest containing username and password
      * @return ResponseEntity with authentication token and user details if successful,
      *         or 401 status with error message if credentials are invalid
+     * @throws PasswordHasher.OverloadedException (503) if the password cannot be checked in time
      */
     @PostMapping("/login")
     public ResponseEntity<?> login(@RequestBody LoginRequest req) {
-        var u = users.findByUsername(req.username()).orElse(null);
-        if (u == null || !u.getPassword().equals(req.password())) {
+        // read-write, so it goes to the primary and a login right after register sees the new account;
+        // the password is checked after the transaction so no connection is held while it runs
+        User u = tx.execute(status -> users.findByUsername(req.username()).orElse(null));
+        // an unknown username is checked against a dummy hash, so it answers no faster than a wrong password
+        PasswordHasher.Check check = passwords.check(req.password(), u == null ? null : u.getPassword());
+        if (check == PasswordHasher.Check.MISMATCH) {
             return ResponseEntity.status(401).body("Invalid credentials");
         }
+        if (check == PasswordHasher.Check.MATCH_REHASH) {
+            try {
+                users.replacePassword(u.getId(), u.getPassword(), passwords.hash(req.password()));
+            } catch (PasswordHasher.OverloadedException e) {
+                // still a valid login; the password is rehashed on a later one
+            }
+        }
         String token = SessionManager.issueToken(u.getId());
 
-        var userMap = new java.util.HashMap<String,Object>();
-        userMap.put("id", u.getId());
-        userMap.put("username", u.getUsername());
-        if (u.getRole() != null) userMap.put("role", u.getRole().name());
-        if (u.getPatientId() != null) userMap.put("patientId", u.getPatientId());
-        if (u.getPractitionerId() != null) userMap.put("practitionerId", u.getPractitionerId());
-
-        var resp = new java.util.HashMap<String,Object>();
-        resp.put("token", token);
-        resp.put("user", userMap);
-
-        return ResponseEntity.ok(resp);
+        return ResponseEntity.ok(JsonBody.of(ResponseWriters.LOGIN, new Login(token, u)));
     }
 
     /**
@@ -122,13 +155,7 @@ public class AuthController {
         if (uid == null) return ResponseEntity.status(401).body("Not logged in");
         var u = users.findById(uid).orElse(null);
         if (u == null) return ResponseEntity.status(401).body("Invalid session");
-        return ResponseEntity.ok(Map.of(
-                "id", u.getId(),
-                "username", u.getUsername(),
-                "role", u.getRole() == null ? null : u.getRole().name(),
-                "patientId", u.getPatientId(),
-                "practitionerId", u.getPractitionerId()
-        ));
+        return ResponseEntity.ok(JsonBody.of(ResponseWriters.SESSION_USER, u));
     }
 
     /**
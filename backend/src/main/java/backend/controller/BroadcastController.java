@@ -0,0 +1,164 @@
+package backend.controller;
+
+import backend.auth.SessionManager;
+import backend.messaging.BroadcastJob;
+import backend.messaging.BroadcastJob.Audience;
+import backend.messaging.BroadcastService;
+import backend.model.Role;
+import backend.model.User;
+import backend.repository.PractitionerRepository;
+import backend.repository.UserRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Controller for sending one message to a group of patients.
+ * A broadcast is queued and its messages written in the background; its progress is read
+ * from the job status.
+ * Cross-origin requests are allowed from http://localhost:5173 for development purposes.
+ */
+@RestController
+@RequestMapping("/api/messages/broadcasts")
+@CrossOrigin(origins = "http://localhost:5173")
+public class BroadcastController {
+
+    /**
+     * Record representing a broadcast to start.
+     *
+     * @param practitionerId whose patients receive the message, for PRACTITIONER_PATIENTS;
+     *                       defaults to the sender's own practitioner
+     */
+    public record BroadcastRequest(Audience audience, Long practitionerId, String content) {}
+
+    private final BroadcastService broadcasts;
+    private final UserRepository users;
+    private final PractitionerRepository practitioners;
+
+    /**
+     * Constructor for BroadcastController with dependency injection.
+     *
+     * @param broadcasts BroadcastService that sends the messages
+     * @param users UserRepository for accessing user data
+     * @param practitioners PractitionerRepository for checking the practitioner exists
+     */
+    public BroadcastController(BroadcastService broadcasts, UserRepository users,
+                               PractitionerRepository practitioners) {
+        this.broadcasts = broadcasts;
+        this.users = users;
+        this.practitioners = practitioners;
+    }
+
+    // ==== helpers ====
+
+    private User requireUser(String token) {
+        Long uid = SessionManager.resolveUserId(token);
+        if (uid == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Not logged in");
+        }
+        return users.findById(uid)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid session"));
+    }
+
+    private void requireDoctorOrStaff(User u) {
+        if (u.getRole() != Role.DOCTOR && u.getRole() != Role.STAFF) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Only doctor/staff may do this");
+        }
+    }
+
+    /**
+     * Starts a broadcast: the message is sent from the current user to every patient account
+     * (ALL_PATIENTS) or to the accounts of the patients with an encounter with the practitioner
+     * (PRACTITIONER_PATIENTS).
+     * Restricted to doctors and staff members only.
+     *
+     * @param token Authentication token from the X-Auth header
+     * @param req Audience, practitioner and message text
+     * @return ResponseEntity with 202 status and the queued job
+     * @throws ResponseStatusException with 401 status if user is not authenticated
+     * @throws ResponseStatusException with 403 status if user is not doctor/staff
+     * @throws ResponseStatusException with 400 status if audience or content is missing,
+     *                                 or no practitioner is given for PRACTITIONER_PATIENTS
+     * @throws ResponseStatusException with 404 status if the practitioner does not exist
+     * @throws ResponseStatusException with 503 status if too many broadcasts are already queued
+     */
+    @PostMapping
+    @Transactional(readOnly = true)
+    public ResponseEntity<?> start(
+            @RequestHeader(value = "X-Auth", required = false) String token,
+            @RequestBody BroadcastRequest req
+    ) {
+        User user = requireUser(token);
+        requireDoctorOrStaff(user);
+        if (req.audience() == null || req.content() == null || req.content().isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "audience och content krävs");
+        }
+
+        Long practitionerId = null;
+        if (req.audience() == Audience.PRACTITIONER_PATIENTS) {
+            practitionerId = req.practitionerId() != null ? req.practitionerId() : user.getPractitionerId();
+            if (practitionerId == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "practitionerId krävs");
+            }
+            if (!practitioners.existsById(practitionerId)) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Practitioner not found");
+            }
+        }
+
+        try {
+            BroadcastJob job = broadcasts.submit(req.audience(), practitionerId, user.getId(), req.content().trim());
+            return ResponseEntity.accepted().body(job.snapshot());
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many broadcasts queued, try again later");
+        }
+    }
+
+    /**
+     * Returns the progress of a broadcast.
+     * Restricted to doctors and staff members only.
+     *
+     * @param token Authentication token from the X-Auth header
+     * @param id The job id returned when the broadcast was started
+     * @return ResponseEntity with the job status
+     * @throws ResponseStatusException with 401 status if user is not authenticated
+     * @throws ResponseStatusException with 403 status if user is not doctor/staff
+     * @throws ResponseStatusException with 404 status if the job is unknown
+     */
+    @GetMapping("/{id}")
+    @Transactional(readOnly = true)
+    public ResponseEntity<?> status(
+            @RequestHeader(value = "X-Auth", required = false) String token,
+            @PathVariable String id
+    ) {
+        User user = requireUser(token);
+        requireDoctorOrStaff(user);
+
+        return broadcasts.find(id)
+                .map(job -> ResponseEntity.ok(job.snapshot()))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Broadcast not found"));
+    }
+
+    /**
+     * Lists recent broadcasts, newest first.
+     * Restricted to doctors and staff members only.
+     *
+     * @param token Authentication token from the X-Auth header
+     * @return ResponseEntity with the status of each remembered job
+     * @throws ResponseStatusException with 401 status if user is not authenticated
+     * @throws ResponseStatusException with 403 status if user is not doctor/staff
+     */
+    @GetMapping
+    @Transactional(readOnly = true)
+    public ResponseEntity<?> recent(
+            @RequestHeader(value = "X-Auth", required = false) String token
+    ) {
+        User user = requireUser(token);
+        requireDoctorOrStaff(user);
+
+        return ResponseEntity.ok(broadcasts.recent().stream().map(BroadcastJob::snapshot).toList());
+    }
+}
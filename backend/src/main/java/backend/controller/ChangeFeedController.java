@@ -0,0 +1,204 @@
+package backend.controller;
+
+import backend.auth.SessionManager;
+import backend.datasource.PatientShards;
+import backend.model.Role;
+import backend.model.User;
+import backend.repository.ChangeFeedRepository;
+import backend.repository.ChangeFeedRepository.ArchivedChange;
+import backend.repository.ChangeFeedRepository.Change;
+import backend.repository.ChangeFeedRepository.ConditionChange;
+import backend.repository.ChangeFeedRepository.EncounterChange;
+import backend.repository.ChangeFeedRepository.MessageChange;
+import backend.repository.UserRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Controller for delta sync. Clients keep the cursor from their last call and get back
+ * only the encounters, conditions and messages written since then, instead of
+ * downloading whole records and threads again. Messages the archiver moved out of the hot
+ * table come back as archived changes, so clients can drop them from their copy of the thread.
+ * Cross-origin requests are allowed from http://localhost:5173 for development purposes.
+ */
+@RestController
+@RequestMapping("/api/changes")
+@CrossOrigin(origins = "http://localhost:5173")
+public class ChangeFeedController {
+
+    private static final int MAX_LIMIT = 1000;
+
+    private final ChangeFeedRepository feed;
+    private final UserRepository users;
+    private final PatientShards shards;
+
+    /**
+     * Constructor for ChangeFeedController with dependency injection.
+     *
+     * @param feed ChangeFeedRepository for reading changed rows
+     * @param users UserRepository for accessing user data
+     * @param shards PatientShards for reading records from the patient's shard
+     */
+    public ChangeFeedController(ChangeFeedRepository feed, UserRepository users, PatientShards shards) {
+        this.feed = feed;
+        this.users = users;
+        this.shards = shards;
+    }
+
+    /**
+     * One batch of changes.
+     *
+     * @param cursor pass back as {@code since} on the next call
+     * @param hasMore true if more changes are waiting; call again right away
+     * @param encounters changed encounters of the patient, oldest change first
+     * @param conditions changed conditions of the patient, oldest change first
+     * @param messages changed messages sent or received by the caller, oldest change first
+     * @param archived messages of the caller's conversations moved to the archive, oldest change first;
+     *                 drop them from the local thread and read them via /api/messages/thread/{otherId}/archive
+     */
+    public record ChangeBatch(
+            String cursor,
+            boolean hasMore,
+            List<EncounterChange> encounters,
+            List<ConditionChange> conditions,
+            List<MessageChange> messages,
+            List<ArchivedChange> archived
+    ) {}
+
+    // records (patient shard) and messages (home database) have separate rowversion sequences
+    record Cursor(long records, long messages) {
+        static Cursor parse(String token) {
+            if (token == null || token.isBlank()) return new Cursor(0, 0);
+            String[] parts = token.split("\\.");
+            try {
+                if (parts.length == 2) return new Cursor(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            } catch (NumberFormatException ignored) {
+                // fall through
+            }
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+
+        String token() {
+            return records + "." + messages;
+        }
+    }
+
+    record Slice<T extends Change>(List<T> rows, long cursor, boolean hasMore) {}
+
+    // ==== helpers ====
+
+    private User requireUser(String token) {
+        Long uid = SessionManager.resolveUserId(token);
+        if (uid == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Not logged in");
+        }
+        return users.findById(uid)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid session"));
+    }
+
+    // patients only follow their own record; doctors and staff pick the patient they have open
+    private Long recordScope(User u, Long requestedPatientId) {
+        if (u.getRole() == Role.PATIENT) {
+            if (requestedPatientId != null && !requestedPatientId.equals(u.getPatientId())) {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Not allowed to read this patient");
+            }
+            return u.getPatientId();
+        }
+        return requestedPatientId;
+    }
+
+    /**
+     * Returns everything that changed since the given cursor.
+     * Records are included when a patient is in scope: the caller's own record for patients,
+     * the {@code patientId} parameter for doctors and staff.
+     * Messages are those sent or received by the caller, and archive segments of the caller's
+     * conversations; both carry versions of the home database, so they share one cursor.
+     *
+     * @param token Authentication token from the X-Auth header
+     * @param since Cursor from the previous batch, omitted on the first call
+     * @param patientId Patient whose record to follow (doctors and staff)
+     * @param limit Maximum rows per stream (1-1000, default 200)
+     * @return ResponseEntity with a ChangeBatch
+     * @throws ResponseStatusException with 401 status if user is not authenticated
+     * @throws ResponseStatusException with 403 status if a patient asks for another patient's record
+     * @throws ResponseStatusException with 400 status if the cursor or limit is invalid
+     */
+    @GetMapping
+    @Transactional(readOnly = true)
+    public ResponseEntity<?> changesSince(
+            @RequestHeader(value = "X-Auth", required = false) String token,
+            @RequestParam(required = false) String since,
+            @RequestParam(required = false) Long patientId,
+            @RequestParam(defaultValue = "200") int limit
+    ) {
+        User me = requireUser(token);
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_LIMIT);
+        }
+        Cursor cursor = Cursor.parse(since);
+        Long scope = recordScope(me, patientId);
+
+        Slice<Change> records = new Slice<>(List.of(), cursor.records(), false);
+        if (scope != null) {
+            int shard;
+            try {
+                shard = shards.shardOf(scope);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Patient not found");
+            }
+            records = shards.onShard(shard, () -> firstChanges(
+                    feed.encountersSince(scope, cursor.records(), limit),
+                    feed.conditionsSince(scope, cursor.records(), limit),
+                    cursor.records(), limit));
+        }
+        Slice<Change> thread = firstChanges(
+                feed.messagesSince(me.getId(), cursor.messages(), limit),
+                feed.archivedSince(me.getId(), cursor.messages(), limit),
+                cursor.messages(), limit);
+
+        List<EncounterChange> encounters = new ArrayList<>();
+        List<ConditionChange> conditions = new ArrayList<>();
+        for (Change c : records.rows()) {
+            if (c instanceof EncounterChange e) encounters.add(e);
+            else if (c instanceof ConditionChange cond) conditions.add(cond);
+        }
+        List<MessageChange> messages = new ArrayList<>();
+        List<ArchivedChange> archived = new ArrayList<>();
+        for (Change c : thread.rows()) {
+            if (c instanceof MessageChange m) messages.add(m);
+            else if (c instanceof ArchivedChange a) archived.add(a);
+        }
+
+        return ResponseEntity.ok(new ChangeBatch(
+                new Cursor(records.cursor(), thread.cursor()).token(),
+                records.hasMore() || thread.hasMore(),
+                encounters,
+                conditions,
+                messages,
+                archived
+        ));
+    }
+
+    /*
+     * Each table returned its first `limit` changes, so the first `limit` of the union are
+     * exactly the next `limit` changes overall; the cursor moves to the last one taken.
+     */
+    static Slice<Change> firstChanges(List<? extends Change> a, List<? extends Change> b, long since, int limit) {
+        List<Change> all = new ArrayList<>(a.size() + b.size());
+        all.addAll(a);
+        all.addAll(b);
+        all.sort(Comparator.comparingLong(Change::version));
+
+        boolean hasMore = all.size() > limit || a.size() == limit || b.size() == limit;
+        List<Change> taken = all.size() > limit ? all.subList(0, limit) : all;
+        long cursor = taken.isEmpty() ? since : taken.get(taken.size() - 1).version();
+        return new Slice<>(taken, cursor, hasMore);
+    }
+}
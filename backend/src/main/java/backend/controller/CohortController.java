@@ -0,0 +1,138 @@
+package backend.controller;
+
+import backend.auth.SessionManager;
+import backend.cohort.CohortIndex;
+import backend.cohort.CohortQuery;
+import backend.model.Role;
+import backend.model.User;
+import backend.repository.UserRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Controller for cohort questions over diagnosis codes, e.g. "patients with E11 and I10 but
+ * not N18". Answered from the in-memory {@link CohortIndex}, not the database.
+ * Cross-origin requests are allowed from http://localhost:5173 for development purposes.
+ */
+@RestController
+@RequestMapping("/api/cohorts")
+@CrossOrigin(origins = "http://localhost:5173")
+public class CohortController {
+
+    private static final int MAX_SIZE = 1000;
+
+    private final CohortIndex index;
+    private final UserRepository users;
+
+    /**
+     * Constructor for CohortController with dependency injection.
+     *
+     * @param index CohortIndex holding the patients per condition code
+     * @param users UserRepository for accessing user data
+     */
+    public CohortController(CohortIndex index, UserRepository users) {
+        this.index = index;
+        this.users = users;
+    }
+
+    /**
+     * Size of a cohort.
+     *
+     * @param query the expression as given
+     * @param count patients in the cohort
+     */
+    public record CohortCount(String query, long count) {}
+
+    /**
+     * One page of a cohort.
+     *
+     * @param query the expression as given
+     * @param total patients in the cohort
+     * @param page page number, from 0
+     * @param size page size
+     * @param patientIds patient ids on this page, ascending
+     */
+    public record CohortPage(String query, long total, int page, int size, long[] patientIds) {}
+
+    // ==== helpers ====
+
+    private User requireUser(String token) {
+        Long uid = SessionManager.resolveUserId(token);
+        if (uid == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Not logged in");
+        }
+        return users.findById(uid)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid session"));
+    }
+
+    private void requireDoctorOrStaff(User u) {
+        if (u.getRole() != Role.DOCTOR && u.getRole() != Role.STAFF) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Only doctor/staff may do this");
+        }
+    }
+
+    private static CohortQuery parse(String q) {
+        try {
+            return CohortQuery.parse(q);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * Counts the patients matching a cohort expression.
+     * Codes are combined with AND, OR, NOT and parentheses; {@code E11*} matches every code starting with E11.
+     * Only patients with at least one diagnosis are counted: NOT is taken against them, so a
+     * patient without any recorded diagnosis is never in a cohort, not even {@code NOT N18}.
+     * Restricted to doctors and staff members only.
+     *
+     * @param token Authentication token from the X-Auth header
+     * @param q Cohort expression, e.g. {@code E11 AND I10 AND NOT N18}
+     * @return ResponseEntity with a CohortCount
+     * @throws ResponseStatusException with 401 status if user is not authenticated
+     * @throws ResponseStatusException with 403 status if user is not doctor/staff
+     * @throws ResponseStatusException with 400 status if the expression is malformed
+     * @throws CohortIndex.NotReadyException (503) while the index is still loading after startup
+     */
+    @GetMapping("/count")
+    public ResponseEntity<?> count(
+            @RequestHeader(value = "X-Auth", required = false) String token,
+            @RequestParam String q
+    ) {
+        requireDoctorOrStaff(requireUser(token));
+        CohortQuery query = parse(q);
+        return ResponseEntity.ok(new CohortCount(query.toString(), index.count(query)));
+    }
+
+    /**
+     * Lists the patients matching a cohort expression, one page at a time in patient id order.
+     * Restricted to doctors and staff members only.
+     *
+     * @param token Authentication token from the X-Auth header
+     * @param q Cohort expression, see {@link #count}
+     * @param page Page number, from 0
+     * @param size Patients per page (1-1000, default 100)
+     * @return ResponseEntity with a CohortPage
+     * @throws ResponseStatusException with 401 status if user is not authenticated
+     * @throws ResponseStatusException with 403 status if user is not doctor/staff
+     * @throws ResponseStatusException with 400 status if the expression, page or size is invalid
+     * @throws CohortIndex.NotReadyException (503) while the index is still loading after startup
+     */
+    @GetMapping
+    public ResponseEntity<?> patients(
+            @RequestHeader(value = "X-Auth", required = false) String token,
+            @RequestParam String q,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "100") int size
+    ) {
+        requireDoctorOrStaff(requireUser(token));
+        if (page < 0 || size < 1 || size > MAX_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "page must be >= 0 and size between 1 and " + MAX_SIZE);
+        }
+        CohortQuery query = parse(q);
+        CohortIndex.Page result = index.page(query, (long) page * size, size);
+        return ResponseEntity.ok(new CohortPage(query.toString(), result.total(), page, size, result.patientIds()));
+    }
+}
@@ -0,0 +1,144 @@
+package backend.controller;
+
+import backend.auth.SessionManager;
+import backend.imports.ImportJob;
+import backend.imports.PatientImportService;
+import backend.model.Role;
+import backend.model.User;
+import backend.repository.UserRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Controller for bulk onboarding of patients from CSV.
+ * An upload is queued and imported in the background; its progress and rejected rows
+ * are read from the job status.
+ * Cross-origin requests are allowed from http://localhost:5173 for development purposes.
+ */
+@RestController
+@RequestMapping("/api/admin/imports")
+@CrossOrigin(origins = "http://localhost:5173")
+public class ImportController {
+
+    private final PatientImportService imports;
+    private final UserRepository users;
+
+    /**
+     * Constructor for ImportController with dependency injection.
+     *
+     * @param imports PatientImportService that runs the imports
+     * @param users UserRepository for accessing user data
+     */
+    public ImportController(PatientImportService imports, UserRepository users) {
+        this.imports = imports;
+        this.users = users;
+    }
+
+    // ==== helpers ====
+
+    private User requireUser(String token) {
+        Long uid = SessionManager.resolveUserId(token);
+        if (uid == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Not logged in");
+        }
+        return users.findById(uid)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid session"));
+    }
+
+    private void requireDoctorOrStaff(User u) {
+        if (u.getRole() != Role.DOCTOR && u.getRole() != Role.STAFF) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Only doctor/staff may do this");
+        }
+    }
+
+    /**
+     * Starts a patient import. The request body is the CSV file itself (UTF-8) with a header row:
+     * personnummer, name, password, and optionally username, birth_date, gender, contact_info.
+     * A PATIENT account is created for every imported patient.
+     * Not transactional, so no connection is held while the upload is copied to disk.
+     * Restricted to doctors and staff members only.
+     *
+     * @param token Authentication token from the X-Auth header
+     * @param separator Field separator, ',' (default) or ';'
+     * @param csv The request body
+     * @return ResponseEntity with 202 status and the queued job
+     * @throws ResponseStatusException with 401 status if user is not authenticated
+     * @throws ResponseStatusException with 403 status if user is not doctor/staff
+     * @throws ResponseStatusException with 400 status if the separator is not supported
+     * @throws ResponseStatusException with 413 status if the file is larger than journal.import.max-upload-size
+     * @throws ResponseStatusException with 503 status if too many imports are already queued
+     */
+    @PostMapping(consumes = {"text/csv", "text/plain", "application/octet-stream"})
+    public ResponseEntity<?> start(
+            @RequestHeader(value = "X-Auth", required = false) String token,
+            @RequestParam(defaultValue = ",") String separator,
+            InputStream csv
+    ) throws IOException {
+        User user = requireUser(token);
+        requireDoctorOrStaff(user);
+        if (!separator.equals(",") && !separator.equals(";")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "separator must be ',' or ';'");
+        }
+
+        try {
+            ImportJob job = imports.submit(csv, separator.charAt(0));
+            return ResponseEntity.accepted().body(job.snapshot());
+        } catch (PatientImportService.TooLargeException e) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, e.getMessage());
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many imports queued, try again later");
+        }
+    }
+
+    /**
+     * Returns the progress of an import, with counts and the first rejected rows.
+     * Restricted to doctors and staff members only.
+     *
+     * @param token Authentication token from the X-Auth header
+     * @param id The job id returned when the import was started
+     * @return ResponseEntity with the job status
+     * @throws ResponseStatusException with 401 status if user is not authenticated
+     * @throws ResponseStatusException with 403 status if user is not doctor/staff
+     * @throws ResponseStatusException with 404 status if the job is unknown
+     */
+    @GetMapping("/{id}")
+    @Transactional(readOnly = true)
+    public ResponseEntity<?> status(
+            @RequestHeader(value = "X-Auth", required = false) String token,
+            @PathVariable String id
+    ) {
+        User user = requireUser(token);
+        requireDoctorOrStaff(user);
+
+        return imports.find(id)
+                .map(job -> ResponseEntity.ok(job.snapshot()))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Import not found"));
+    }
+
+    /**
+     * Lists recent imports, newest first.
+     * Restricted to doctors and staff members only.
+     *
+     * @param token Authentication token from the X-Auth header
+     * @return ResponseEntity with the status of each remembered job
+     * @throws ResponseStatusException with 401 status if user is not authenticated
+     * @throws ResponseStatusException with 403 status if user is not doctor/staff
+     */
+    @GetMapping
+    @Transactional(readOnly = true)
+    public ResponseEntity<?> recent(
+            @RequestHeader(value = "X-Auth", required = false) String token
+    ) {
+        User user = requireUser(token);
+        requireDoctorOrStaff(user);
+
+        return ResponseEntity.ok(imports.recent().stream().map(ImportJob::snapshot).toList());
+    }
+}
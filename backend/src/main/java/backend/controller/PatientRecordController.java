@@ -1,17 +1,32 @@
 package backend.controller;
 
+import backend.audit.AuditEvent.Action;
+import backend.audit.AuditLog;
 import backend.auth.SessionManager;
+import backend.coalesce.SingleFlight;
+import backend.coalesce.SingleFlights;
+import backend.cohort.CohortIndex;
+import backend.datasource.PatientShards;
+import backend.json.JsonBody;
+import backend.json.ResponseWriters;
+import backend.json.ResponseWriters.NoteCreated;
 import backend.model.*;
 import backend.repository.*;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
 
 /**
  * Controller for managing patient medical records, encounters, and conditions.
@@ -26,31 +41,62 @@ public class PatientRecordController {
 
     private final PatientRepository patients;
     private final EncounterRepository encounters;
+    private final EncounterNoteRepository encounterNotes;
     private final ConditionRepository conditions;
     private final UserRepository users;
     private final PractitionerRepository practitioners;
+    private final PatientShards shards;
+    private final CohortIndex cohorts;
+    private final PractitionerActivityRepository activity;
+    private final AuditLog audit;
+    private final TransactionTemplate readOnlyTx;
+    private final SingleFlight<String, PatientSummaryResponse> recordsByName;
+    private final SingleFlight<Long, PatientSummaryResponse> recordsById;
 
     /**
      * Constructor for PatientRecordController with dependency injection.
      *
      * @param patients PatientRepository for accessing patient data
      * @param encounters EncounterRepository for accessing encounter/note data
+     * @param encounterNotes EncounterNoteRepository for accessing note bodies
      * @param conditions ConditionRepository for accessing diagnosis data
      * @param users UserRepository for accessing user data
      * @param practitioners PractitionerRepository for accessing practitioner data
+     * @param shards PatientShards for running patient-scoped queries on the patient's shard
+     * @param cohorts CohortIndex to tell about new diagnoses
+     * @param activity PractitionerActivityRepository for the per-practitioner daily counts
+     * @param audit AuditLog for recording record reads and writes
+     * @param transactionManager PlatformTransactionManager for the shared record loads
+     * @param flights SingleFlights for sharing record loads between concurrent requests
      */
     public PatientRecordController(
             PatientRepository patients,
             EncounterRepository encounters,
+            EncounterNoteRepository encounterNotes,
             ConditionRepository conditions,
             UserRepository users,
-            PractitionerRepository practitioners
+            PractitionerRepository practitioners,
+            PatientShards shards,
+            CohortIndex cohorts,
+            PractitionerActivityRepository activity,
+            AuditLog audit,
+            PlatformTransactionManager transactionManager,
+            SingleFlights flights
     ) {
         this.patients = patients;
         this.encounters = encounters;
+        this.encounterNotes = encounterNotes;
         this.conditions = conditions;
         this.users = users;
         this.practitioners = practitioners;
+        this.shards = shards;
+        this.cohorts = cohorts;
+        this.activity = activity;
+        this.audit = audit;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.recordsByName = flights.create("patient-record-by-name");
+        this.recordsById = flights.create("patient-record");
     }
 
     // ==== helpers ====
@@ -70,6 +116,60 @@ public class PatientRecordController {
         }
     }
 
+    private Practitioner practitionerOf(User u) {
+        if (u.getPractitionerId() == null) return null;
+        return practitioners.findById(u.getPractitionerId()).orElse(null);
+    }
+
+    private Patient requirePatient(long patientId) {
+        return patients.findById(patientId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Patient not found"));
+    }
+
+    // patient, encounter and condition rows live on the patient's shard
+    private <T> T onPatientShard(long patientId, Supplier<T> work) {
+        int shard;
+        try {
+            shard = shards.shardOf(patientId);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Patient not found");
+        }
+        return shards.onShard(shard, work);
+    }
+
+    // the encounter row only keeps a preview; the body goes to encounter_note in the same transaction
+    private Encounter saveNote(long patientId, Long practitionerId, String text) {
+        Encounter enc = new Encounter();
+        enc.setPatientId(patientId);
+        enc.setPractitionerId(practitionerId);
+        enc.setStartTime(LocalDateTime.now());
+        enc.setNotePreview(EncounterNote.previewOf(text));
+
+        Encounter saved = encounters.save(enc);
+        if (text != null) {
+            encounterNotes.save(new EncounterNote(saved.getId(), text));
+        }
+        if (practitionerId != null) {
+            activity.addEncounter(practitionerId, saved.getStartTime().toLocalDate());
+        }
+        return saved;
+    }
+
+    // names are not part of the shard key, so ask every shard
+    private long requirePatientIdByName(String name) {
+        var found = shards.onEveryShard(() -> patients.findByName(name).map(Patient::getId))
+                .stream()
+                .flatMap(Optional::stream)
+                .toList();
+        if (found.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Patient not found");
+        }
+        if (found.size() > 1) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Patient name is not unique");
+        }
+        return found.get(0);
+    }
+
     // =========================================================
     // 1) Create patient note via patient ID
     // =========================================================
@@ -92,6 +192,7 @@ public class PatientRecordController {
      * @throws ResponseStatusException with 404 status if patient is not found
      */
     @PostMapping("/{patientId}/notes")
+    @Transactional
     public ResponseEntity<?> createNote(
             @RequestHeader(value = "X-Auth", required = false) String token,
             @PathVariable Long patientId,
@@ -100,23 +201,13 @@ public class PatientRecordController {
         User user = requireUser(token);
         requireDoctorOrStaff(user);
 
-        Patient patient = patients.findById(patientId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Patient not found"));
+        Encounter saved = onPatientShard(patientId, () -> {
+            Patient patient = requirePatient(patientId);
+            return saveNote(patient.getId(), user.getPractitionerId(), req.noteText());
+        });
 
-        Encounter enc = new Encounter();
-        enc.setPatientId(patient.getId());
-        enc.setPractitionerId(user.getPractitionerId());
-        enc.setStartTime(LocalDateTime.now());
-        enc.setNotes(req.noteText());
-
-        Encounter saved = encounters.save(enc);
-
-        Map<String, Object> resp = new HashMap<>();
-        resp.put("id", saved.getId());
-        resp.put("patientId", saved.getPatientId());
-        resp.put("notes", saved.getNotes());
-        resp.put("startTime", saved.getStartTime());
-        return ResponseEntity.ok(resp);
+        audit.record(Action.WRITE_NOTE, user.getId(), saved.getPatientId(), saved.getId());
+        return ResponseEntity.ok(JsonBody.of(ResponseWriters.NOTE_CREATED, new NoteCreated(saved, req.noteText())));
     }
 
     // =======================================================
@@ -141,6 +232,7 @@ public class PatientRecordController {
      * @throws ResponseStatusException with 404 status if patient is not found
      */
     @PostMapping("/{patientId}/conditions")
+    @Transactional
     public ResponseEntity<?> createDiagnosis(
             @RequestHeader(value = "X-Auth", required = false) String token,
             @PathVariable Long patientId,
@@ -148,31 +240,31 @@ public class PatientRecordController {
     ) {
         User user = requireUser(token);
         requireDoctorOrStaff(user);
-
-        Patient patient = patients.findById(patientId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Patient not found"));
-
-        Condition cond = new Condition();
-        cond.setPatient(patient);        // ManyToOne till Patient
-        cond.setCode(req.code());
-        cond.setDisplay(req.display());
-        if (req.onsetDate() != null && !req.onsetDate().isBlank()) {
-            cond.setOnsetDate(LocalDate.parse(req.onsetDate())); // "2025-11-09"
-        }
-        if (user.getPractitionerId() != null) {
-            practitioners.findById(user.getPractitionerId())
-                    .ifPresent(cond::setAssertedByPractitioner);
-        }
-
-        Condition saved = conditions.save(cond);
-
-        Map<String, Object> resp = new HashMap<>();
-        resp.put("id", saved.getId());
-        resp.put("patientId", saved.getPatient().getId());
-        resp.put("code", saved.getCode());
-        resp.put("display", saved.getDisplay());
-        resp.put("onsetDate", saved.getOnsetDate());
-        return ResponseEntity.ok(resp);
+        Practitioner practitioner = practitionerOf(user);
+
+        Condition saved = onPatientShard(patientId, () -> {
+            Patient patient = requirePatient(patientId);
+
+            Condition cond = new Condition();
+            cond.setPatient(patient);        // ManyToOne till Patient
+            cond.setCode(req.code());
+            cond.setDisplay(req.display());
+            if (req.onsetDate() != null && !req.onsetDate().isBlank()) {
+                cond.setOnsetDate(LocalDate.parse(req.onsetDate())); // "2025-11-09"
+            }
+            cond.setAssertedByPractitioner(practitioner);
+            cond.setRecordedAt(LocalDateTime.now());
+
+            Condition c = conditions.save(cond);
+            cohorts.added(c.getCode(), patientId);
+            if (practitioner != null) {
+                activity.addDiagnosis(practitioner.getId(), c.getRecordedAt().toLocalDate());
+            }
+            return c;
+        });
+
+        audit.record(Action.WRITE_DIAGNOSIS, user.getId(), saved.getPatient().getId(), saved.getId());
+        return ResponseEntity.ok(JsonBody.of(ResponseWriters.CONDITION_CREATED, saved));
     }
 
     // =========================================================
@@ -196,6 +288,7 @@ public class PatientRecordController {
      * @throws ResponseStatusException with 404 status if patient is not found
      */
     @PostMapping("/notes/by-name")
+    @Transactional
     public ResponseEntity<?> createNoteByName(
             @RequestHeader(value = "X-Auth", required = false) String token,
             @RequestBody CreateNoteByNameRequest req
@@ -203,23 +296,13 @@ public class PatientRecordController {
         User user = requireUser(token);
         requireDoctorOrStaff(user);
 
-        Patient patient = patients.findByName(req.patientName())
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Patient not found"));
+        long patientId = requirePatientIdByName(req.patientName());
 
-        Encounter enc = new Encounter();
-        enc.setPatientId(patient.getId());
-        enc.setPractitionerId(user.getPractitionerId());
-        enc.setStartTime(LocalDateTime.now());
-        enc.setNotes(req.noteText());
-
-        Encounter saved = encounters.save(enc);
+        Encounter saved = onPatientShard(patientId,
+                () -> saveNote(patientId, user.getPractitionerId(), req.noteText()));
 
-        Map<String, Object> resp = new HashMap<>();
-        resp.put("id", saved.getId());
-        resp.put("patientId", saved.getPatientId());
-        resp.put("notes", saved.getNotes());
-        resp.put("startTime", saved.getStartTime());
-        return ResponseEntity.ok(resp);
+        audit.record(Action.WRITE_NOTE, user.getId(), saved.getPatientId(), saved.getId());
+        return ResponseEntity.ok(JsonBody.of(ResponseWriters.NOTE_CREATED, new NoteCreated(saved, req.noteText())));
     }
 
     // =========================================================
@@ -243,52 +326,84 @@ public class PatientRecordController {
      * @throws ResponseStatusException with 404 status if patient is not found
      */
     @PostMapping("/conditions/by-name")
+    @Transactional
     public ResponseEntity<?> createDiagnosisByName(
             @RequestHeader(value = "X-Auth", required = false) String token,
             @RequestBody CreateDiagnosisByNameRequest req
     ) {
         User user = requireUser(token);
         requireDoctorOrStaff(user);
+        Practitioner practitioner = practitionerOf(user);
+
+        long patientId = requirePatientIdByName(req.patientName());
+
+        Condition saved = onPatientShard(patientId, () -> {
+            Condition cond = new Condition();
+            cond.setPatient(requirePatient(patientId));
+            cond.setCode(req.code());
+            cond.setDisplay(req.display());
+            if (req.onsetDate() != null && !req.onsetDate().isBlank()) {
+                cond.setOnsetDate(LocalDate.parse(req.onsetDate()));
+            }
+            cond.setAssertedByPractitioner(practitioner);
+            cond.setRecordedAt(LocalDateTime.now());
+
+            Condition c = conditions.save(cond);
+            cohorts.added(c.getCode(), patientId);
+            if (practitioner != null) {
+                activity.addDiagnosis(practitioner.getId(), c.getRecordedAt().toLocalDate());
+            }
+            return c;
+        });
+
+        audit.record(Action.WRITE_DIAGNOSIS, user.getId(), saved.getPatient().getId(), saved.getId());
+        return ResponseEntity.ok(JsonBody.of(ResponseWriters.CONDITION_CREATED, saved));
+    }
 
-        Patient patient = patients.findByName(req.patientName())
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Patient not found"));
-
-        Condition cond = new Condition();
-        cond.setPatient(patient);
-        cond.setCode(req.code());
-        cond.setDisplay(req.display());
-        if (req.onsetDate() != null && !req.onsetDate().isBlank()) {
-            cond.setOnsetDate(LocalDate.parse(req.onsetDate()));
-        }
-        if (user.getPractitionerId() != null) {
-            practitioners.findById(user.getPractitionerId())
-                    .ifPresent(cond::setAssertedByPractitioner);
+    /**
+     * Record representing one encounter together with its note text.
+     */
+    public record EncounterView(
+            Long id,
+            Long patientId,
+            Long practitionerId,
+            Long locationId,
+            LocalDateTime startTime,
+            LocalDateTime endTime,
+            String notes
+    ) {
+        static EncounterView of(Encounter e, String notes) {
+            return new EncounterView(e.getId(), e.getPatientId(), e.getPractitionerId(), e.getLocationId(),
+                    e.getStartTime(), e.getEndTime(), notes);
         }
+    }
 
-        Condition saved = conditions.save(cond);
+    /**
+     * Record representing the patient part of a summary.
+     */
+    public record PatientView(long id, String name, String personnummer) {}
 
-        Map<String, Object> resp = new HashMap<>();
-        resp.put("id", saved.getId());
-        resp.put("patientId", saved.getPatient().getId());
-        resp.put("code", saved.getCode());
-        resp.put("display", saved.getDisplay());
-        resp.put("onsetDate", saved.getOnsetDate());
-        return ResponseEntity.ok(resp);
-    }
+    /**
+     * Record representing one diagnosis in a summary.
+     */
+    public record ConditionView(Long id, String code, String display, LocalDate onsetDate) {}
 
     /**
      * Record representing a complete patient summary including patient details, notes, and conditions.
+     * Built from plain values only, since one summary may be shared by concurrent requests.
      */
     public record PatientSummaryResponse(
-            Patient patient,
-            java.util.List<Encounter> notes,
-            java.util.List<Condition> conditions
+            PatientView patient,
+            java.util.List<EncounterView> notes,
+            java.util.List<ConditionView> conditions
     ) {}
 
     /**
      * Retrieves the complete medical record for a specific patient by patient name.
      * Includes patient details, all medical notes/encounters, and all diagnoses/conditions.
      * Restricted to doctors and staff members only.
+     * Concurrent requests for the same patient share one load (the caller is checked first).
+     * Every read is recorded in the access audit log.
      *
      * @param token Authentication token from the X-Auth header
      * @param patientName The name of the patient to retrieve the record for
@@ -305,18 +420,19 @@ public class PatientRecordController {
         User user = requireUser(token);
         requireDoctorOrStaff(user);
 
-        Patient patient = patients.findByName(patientName)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Patient not found"));
-
-        var notes = encounters.findByPatientId(patient.getId());
-        var conds = conditions.findByPatient(patient);
-
-        return ResponseEntity.ok(new PatientSummaryResponse(patient, notes, conds));
+        PatientSummaryResponse summary = recordsByName.load(patientName, () -> readOnlyTx.execute(status -> {
+            long patientId = requirePatientIdByName(patientName);
+            return onPatientShard(patientId, () -> summaryOf(requirePatient(patientId)));
+        }));
+        audit.record(Action.READ_RECORD, user.getId(), summary.patient().id(), 0);
+        return ResponseEntity.ok(summary);
     }
 
     /**
      * Retrieves the current user's own complete medical record.
      * Available only to patients and returns their own patient data, notes, and conditions.
+     * Concurrent requests for the same record share one load.
+     * Every read is recorded in the access audit log.
      *
      * @param token Authentication token from the X-Auth header
      * @return ResponseEntity with PatientSummaryResponse containing the patient's own medical record
@@ -337,12 +453,59 @@ public class PatientRecordController {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No patient linked to this user");
         }
 
-        Patient patient = patients.findById(user.getPatientId())
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Patient not found"));
+        long patientId = user.getPatientId();
+
+        PatientSummaryResponse summary = recordsById.load(patientId, () -> readOnlyTx.execute(
+                status -> onPatientShard(patientId, () -> summaryOf(requirePatient(patientId)))));
+        audit.record(Action.READ_OWN_RECORD, user.getId(), patientId, 0);
+        return ResponseEntity.ok(summary);
+    }
 
-        var notes = encounters.findByPatientId(patient.getId());
-        var conds = conditions.findByPatient(patient);
+    /**
+     * Retrieves the full text of a single note.
+     * Available to doctors and staff, and to the patient the note belongs to.
+     *
+     * @param token Authentication token from the X-Auth header
+     * @param patientId The ID of the patient the note belongs to
+     * @param encounterId The ID of the encounter holding the note
+     * @return ResponseEntity with an EncounterView including the full note text
+     * @throws ResponseStatusException with 401 status if user is not authenticated
+     * @throws ResponseStatusException with 403 status if a patient asks for another patient's note
+     * @throws ResponseStatusException with 404 status if the encounter is not found for this patient
+     */
+    @GetMapping("/{patientId}/notes/{encounterId}")
+    @Transactional(readOnly = true)
+    public ResponseEntity<?> getNote(
+            @RequestHeader(value = "X-Auth", required = false) String token,
+            @PathVariable Long patientId,
+            @PathVariable Long encounterId
+    ) {
+        User user = requireUser(token);
+        if (user.getRole() == Role.PATIENT && !patientId.equals(user.getPatientId())) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Not allowed to read this patient");
+        }
+
+        return ResponseEntity.ok(onPatientShard(patientId, () -> {
+            Encounter enc = encounters.findById(encounterId)
+                    .filter(e -> patientId.equals(e.getPatientId()))
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Note not found"));
+            String body = encounterNotes.findById(encounterId).map(EncounterNote::getBody).orElse(null);
+            return EncounterView.of(enc, body);
+        }));
+    }
 
-        return ResponseEntity.ok(new PatientSummaryResponse(patient, notes, conds));
+    // the record views show whole notes, so bodies are fetched in one query next to the encounter list
+    private PatientSummaryResponse summaryOf(Patient patient) {
+        List<Encounter> list = encounters.findByPatientId(patient.getId());
+        Map<Long, String> bodies = new HashMap<>();
+        encounterNotes.findAllById(list.stream().map(Encounter::getId).toList())
+                .forEach(n -> bodies.put(n.getEncounterId(), n.getBody()));
+
+        var notes = list.stream().map(e -> EncounterView.of(e, bodies.get(e.getId()))).toList();
+        var conds = conditions.findByPatient(patient).stream()
+                .map(c -> new ConditionView(c.getId(), c.getCode(), c.getDisplay(), c.getOnsetDate()))
+                .toList();
+        return new PatientSummaryResponse(
+                new PatientView(patient.getId(), patient.getName(), patient.getPersonnummer()), notes, conds);
     }
 }
\ No newline at end of file
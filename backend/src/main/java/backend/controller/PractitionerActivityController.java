@@ -0,0 +1,118 @@
+package backend.controller;
+
+import backend.auth.SessionManager;
+import backend.datasource.PatientShards;
+import backend.model.Role;
+import backend.model.User;
+import backend.repository.PractitionerActivityRepository;
+import backend.repository.PractitionerActivityRepository.Activity;
+import backend.repository.UserRepository;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Controller for workload dashboards: encounters and diagnoses per practitioner per day or week.
+ * Answered from the practitioner_daily_activity rollup, so the cost depends on the number
+ * of practitioners and days asked for, not on how many records there are.
+ * Cross-origin requests are allowed from http://localhost:5173 for development purposes.
+ */
+@RestController
+@RequestMapping("/api/practitioners/activity")
+@CrossOrigin(origins = "http://localhost:5173")
+public class PractitionerActivityController {
+
+    private static final int MAX_DAYS = 400;
+
+    private final PractitionerActivityRepository activity;
+    private final UserRepository users;
+    private final PatientShards shards;
+
+    /**
+     * Constructor for PractitionerActivityController with dependency injection.
+     *
+     * @param activity PractitionerActivityRepository for reading the rollup
+     * @param users UserRepository for accessing user data
+     * @param shards PatientShards for adding up the rollup of every shard
+     */
+    public PractitionerActivityController(PractitionerActivityRepository activity, UserRepository users,
+                                          PatientShards shards) {
+        this.activity = activity;
+        this.users = users;
+        this.shards = shards;
+    }
+
+    // ==== helpers ====
+
+    private User requireUser(String token) {
+        Long uid = SessionManager.resolveUserId(token);
+        if (uid == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Not logged in");
+        }
+        return users.findById(uid)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid session"));
+    }
+
+    private void requireDoctorOrStaff(User u) {
+        if (u.getRole() != Role.DOCTOR && u.getRole() != Role.STAFF) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Only doctor/staff may do this");
+        }
+    }
+
+    private record Key(long practitionerId, LocalDate period) {}
+
+    /**
+     * Returns encounters and diagnoses per practitioner and period.
+     * Restricted to doctors and staff members only.
+     *
+     * @param token Authentication token from the X-Auth header
+     * @param from First day, inclusive (yyyy-MM-dd)
+     * @param to Last day, inclusive (yyyy-MM-dd)
+     * @param granularity {@code day} (default) or {@code week}; weeks start on Monday and
+     *                    weeks cut by the range only count the days inside it
+     * @param practitionerId Only this practitioner, if given
+     * @return ResponseEntity with the activity ordered by period and practitioner
+     * @throws ResponseStatusException with 401 status if user is not authenticated
+     * @throws ResponseStatusException with 403 status if user is not doctor/staff
+     * @throws ResponseStatusException with 400 status if the range or granularity is invalid
+     */
+    @GetMapping
+    @Transactional(readOnly = true)
+    public ResponseEntity<?> activity(
+            @RequestHeader(value = "X-Auth", required = false) String token,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "day") String granularity,
+            @RequestParam(required = false) Long practitionerId
+    ) {
+        requireDoctorOrStaff(requireUser(token));
+        if (to.isBefore(from) || ChronoUnit.DAYS.between(from, to) >= MAX_DAYS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from..to must span 1 to " + MAX_DAYS + " days");
+        }
+        boolean weekly = switch (granularity) {
+            case "day" -> false;
+            case "week" -> true;
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "granularity must be day or week");
+        };
+
+        // each shard counts its own patients' encounters and diagnoses
+        Map<Key, Activity> total = new TreeMap<>(Comparator.comparing(Key::period).thenComparing(Key::practitionerId));
+        for (List<Activity> shard : shards.onEveryShard(() -> activity.range(from, to.plusDays(1), practitionerId, weekly))) {
+            for (Activity a : shard) {
+                total.merge(new Key(a.practitionerId(), a.period()), a, (x, y) -> new Activity(
+                        x.practitionerId(), x.period(), x.encounters() + y.encounters(), x.diagnoses() + y.diagnoses()));
+            }
+        }
+        return ResponseEntity.ok(List.copyOf(total.values()));
+    }
+}
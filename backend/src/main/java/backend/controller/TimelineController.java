@@ -0,0 +1,104 @@
+package backend.controller;
+
+import backend.auth.SessionManager;
+import backend.datasource.PatientShards;
+import backend.model.Role;
+import backend.model.User;
+import backend.repository.UserRepository;
+import backend.timeline.PatientTimeline;
+import backend.timeline.TimelineCursor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Controller for the chronological patient timeline.
+ * Combines encounters, conditions and observations into one list ordered by time,
+ * returned page by page with a continuation token.
+ * Cross-origin requests are allowed from http://localhost:5173 for development purposes.
+ */
+@RestController
+@RequestMapping("/api/patients")
+@CrossOrigin(origins = "http://localhost:5173")
+public class TimelineController {
+
+    private final UserRepository users;
+    private final PatientTimeline timeline;
+    private final PatientShards shards;
+
+    /**
+     * Constructor for TimelineController with dependency injection.
+     *
+     * @param users UserRepository for accessing user data
+     * @param timeline PatientTimeline for merging the patient's records
+     * @param shards PatientShards for reading from the patient's shard
+     */
+    public TimelineController(UserRepository users, PatientTimeline timeline, PatientShards shards) {
+        this.users = users;
+        this.timeline = timeline;
+        this.shards = shards;
+    }
+
+    // ==== helpers ====
+
+    private User requireUser(String token) {
+        Long uid = SessionManager.resolveUserId(token);
+        if (uid == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Not logged in");
+        }
+        return users.findById(uid)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid session"));
+    }
+
+    // doctors and staff may read any timeline, patients only their own
+    private void requireAccess(User u, long patientId) {
+        if (u.getRole() == Role.DOCTOR || u.getRole() == Role.STAFF) return;
+        if (u.getRole() == Role.PATIENT && u.getPatientId() != null && u.getPatientId() == patientId) return;
+        throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Not allowed to read this patient");
+    }
+
+    /**
+     * Retrieves one page of a patient's timeline, oldest entries first.
+     * Pass the returned {@code next} token as {@code after} to read the following page.
+     *
+     * @param token Authentication token from the X-Auth header
+     * @param patientId The ID of the patient
+     * @param after Continuation token from the previous page, omitted for the first page
+     * @param size Maximum number of entries on the page (1-200, default 50)
+     * @return ResponseEntity with the page entries and the token for the next page (null on the last page)
+     * @throws ResponseStatusException with 401 status if user is not authenticated
+     * @throws ResponseStatusException with 403 status if the user may not read this patient
+     * @throws ResponseStatusException with 400 status if the token or size is invalid
+     */
+    @GetMapping("/{patientId}/timeline")
+    @Transactional(readOnly = true)
+    public ResponseEntity<?> getTimeline(
+            @RequestHeader(value = "X-Auth", required = false) String token,
+            @PathVariable long patientId,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int size
+    ) {
+        User user = requireUser(token);
+        requireAccess(user, patientId);
+
+        if (size < 1 || size > PatientTimeline.MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be between 1 and " + PatientTimeline.MAX_PAGE_SIZE);
+        }
+        TimelineCursor cursor;
+        try {
+            cursor = after == null || after.isBlank() ? null : TimelineCursor.decode(after);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid continuation token");
+        }
+
+        int shard;
+        try {
+            shard = shards.shardOf(patientId);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Patient not found");
+        }
+        return ResponseEntity.ok(shards.onShard(shard, () -> timeline.page(patientId, cursor, size)));
+    }
+}
@@ -5,14 +5,29 @@ import backend.dto.UserDto;
 import backend.model.Role;
 import backend.model.User;
 import backend.repository.UserRepository;
+import backend.repository.UserSummary;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
 
 /**
  * Controller for managing user accounts in the system.
@@ -24,26 +39,116 @@ import java.util.List;
 @RequestMapping("/api/users")
 public class UserController {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    // rows written between flushes of an export
+    private static final int EXPORT_FLUSH_ROWS = 1000;
+
     private final UserRepository repo;
+    private final ObjectMapper mapper;
+    private final TransactionTemplate readOnlyTx;
 
     /**
      * Constructor for UserController with dependency injection.
      *
      * @param repo UserRepository for accessing user data
+     * @param mapper ObjectMapper for writing exports row by row
+     * @param transactionManager PlatformTransactionManager for the export transaction
      */
-    public UserController(UserRepository repo) {
+    public UserController(UserRepository repo, ObjectMapper mapper, PlatformTransactionManager transactionManager) {
         this.repo = repo;
+        this.mapper = mapper;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
     }
 
     /**
-     * Retrieves all users in the system.
-     * Returns a list of all users as UserDto objects.
+     * Record representing one page of users and where the next page starts.
      *
-     * @return List of UserDto objects representing all users
+     * @param users the users on this page, by ascending ID
+     * @param next pass as {@code afterId} for the next page; null on the last page
+     */
+    public record UserPage(List<UserDto> users, Long next) {}
+
+    /**
+     * Retrieves one page of users, ordered by ID.
+     * Only id, username and role are read, without loading the user entities.
+     * Restricted to doctors and staff members only.
+     *
+     * @param token Authentication token from the X-Auth header
+     * @param afterId Only users with a higher ID; omitted for the first page
+     * @param size Maximum number of users on the page (1-1000, default 100)
+     * @param role Only users with this role (PATIENT, DOCTOR or STAFF)
+     * @param usernamePrefix Only users whose username starts with this text
+     * @return UserPage with the users and the {@code afterId} of the next page
+     * @throws ResponseStatusException with 401 status if user is not authenticated
+     * @throws ResponseStatusException with 403 status if user is not doctor/staff
+     * @throws ResponseStatusException with 400 status if size or role is invalid
      */
     @GetMapping
-    public List<UserDto> all() {
-        return repo.findAll().stream().map(UserController::toDto).toList();
+    @Transactional(readOnly = true)
+    public UserPage all(
+            @RequestHeader(value = "X-Auth", required = false) String token,
+            @RequestParam(defaultValue = "0") long afterId,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size,
+            @RequestParam(required = false) String role,
+            @RequestParam(required = false) String usernamePrefix) {
+
+        requireDoctorOrStaff(requireUser(token));
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        // one extra row tells whether there is a next page
+        List<UserSummary> rows = repo.findPage(afterId, parseRole(role), prefixPattern(usernamePrefix), Limit.of(size + 1));
+        boolean more = rows.size() > size;
+        List<UserDto> users = rows.stream().limit(size).map(UserController::toDto).toList();
+        return new UserPage(users, more ? users.get(size - 1).getId() : null);
+    }
+
+    /**
+     * Exports all users matching the filters as newline-delimited JSON, one {@code {id, username, role}}
+     * object per line, ordered by ID. Rows are streamed from the database as they are written,
+     * so the export never holds the whole user table in memory.
+     * Restricted to doctors and staff members only.
+     *
+     * @param token Authentication token from the X-Auth header
+     * @param role Only users with this role (PATIENT, DOCTOR or STAFF)
+     * @param usernamePrefix Only users whose username starts with this text
+     * @return ResponseEntity streaming application/x-ndjson
+     * @throws ResponseStatusException with 401 status if user is not authenticated
+     * @throws ResponseStatusException with 403 status if user is not doctor/staff
+     * @throws ResponseStatusException with 400 status if role is invalid
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestHeader(value = "X-Auth", required = false) String token,
+            @RequestParam(required = false) String role,
+            @RequestParam(required = false) String usernamePrefix) {
+
+        requireDoctorOrStaff(requireUser(token));
+        Role r = parseRole(role);
+        String pattern = prefixPattern(usernamePrefix);
+
+        StreamingResponseBody body = out -> readOnlyTx.executeWithoutResult(status -> {
+            try (Stream<UserSummary> rows = repo.streamAll(r, pattern);
+                 JsonGenerator g = mapper.getFactory().createGenerator(out)) {
+                g.setRootValueSeparator(null);
+                int n = 0;
+                for (UserSummary u : (Iterable<UserSummary>) rows::iterator) {
+                    g.writeStartObject();
+                    g.writeNumberField("id", u.getId());
+                    g.writeStringField("username", u.getUsername());
+                    g.writeStringField("role", u.getRole() == null ? null : u.getRole().name());
+                    g.writeEndObject();
+                    g.writeRaw('\n');
+                    if (++n % EXPORT_FLUSH_ROWS == 0) g.flush();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
     }
 
     /**
@@ -53,6 +158,7 @@ public class UserController {
      * @return ResponseEntity with UserDto if found, or 404 status if not found
      */
     @GetMapping("/{id}")
+    @Transactional(readOnly = true)
     public ResponseEntity<UserDto> get(@PathVariable Long id) {
         return repo.findById(id)
                 .map(UserController::toDto)
@@ -114,6 +220,26 @@ public class UserController {
                 u.getRole() == null ? null : u.getRole().name());
     }
 
+    private static UserDto toDto(UserSummary u) {
+        return new UserDto(u.getId(), u.getUsername(),
+                u.getRole() == null ? null : u.getRole().name());
+    }
+
+    private static Role parseRole(String role) {
+        if (role == null || role.isBlank()) return null;
+        try {
+            return Role.valueOf(role.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown role " + role);
+        }
+    }
+
+    // LIKE pattern matching the prefix literally; null matches every username
+    private static String prefixPattern(String prefix) {
+        if (prefix == null || prefix.isEmpty()) return null;
+        return prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_").replace("[", "\\[") + "%";
+    }
+
     // --- Request model ---
 
     /**
@@ -130,12 +256,13 @@ public class UserController {
      *
      * @param token Authentication token from the X-Auth header
      * @return User entity if token is valid
-     * @throws RuntimeException with "401 Unauthorized" message if token is invalid or user not found
+     * @throws ResponseStatusException with 401 status if token is invalid or user not found
      */
     private User requireUser(String token) {
         Long uid = SessionManager.resolveUserId(token);
-        if (uid == null) throw new RuntimeException("401 Unauthorized");
-        return repo.findById(uid).orElseThrow(() -> new RuntimeException("401 Unauthorized"));
+        if (uid == null) throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Not logged in");
+        return repo.findById(uid)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid session"));
     }
 
     /**
@@ -143,10 +270,10 @@ public class UserController {
      * This is a helper method for authorization checks.
      *
      * @param u The user to check
-     * @throws RuntimeException with "403 Forbidden" message if user doesn't have required role
+     * @throws ResponseStatusException with 403 status if user doesn't have required role
      */
     private void requireDoctorOrStaff(User u) {
         if (u.getRole() != Role.DOCTOR && u.getRole() != Role.STAFF)
-            throw new RuntimeException("403 Forbidden");
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Only doctors and staff");
     }
 }
\ No newline at end of file
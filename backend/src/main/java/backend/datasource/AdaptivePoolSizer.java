@@ -0,0 +1,191 @@
+package backend.datasource;
+
+import backend.bulkhead.PartitionedDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resizes the connection pool between a floor and a ceiling from what the pool observed since
+ * the last run, using HikariCP's own acquire and usage timers:
+ * <ul>
+ *   <li>requests waited for a connection and each connection was not held longer than
+ *       usual: the database keeps up, so the pool grows by one step;</li>
+ *   <li>connections are held much longer than usual: the database is the bottleneck and more
+ *       connections would only queue inside it, so the pool shrinks by one step;</li>
+ *   <li>nobody waited and the average number of connections in use (busy time over elapsed
+ *       time) stayed well below the size for several runs: the pool shrinks by one.</li>
+ * </ul>
+ * "Usual" is a slow moving average of the usage time. When the bulkhead splits the pool into
+ * per-workload partitions, the partitions are scaled with it.
+ */
+public class AdaptivePoolSizer {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptivePoolSizer.class);
+    private static final double BASELINE_WEIGHT = 0.05;
+
+    private final HikariDataSource pool;
+    private final PartitionedDataSource partitions;
+    private final int configuredSize;
+    private final int minSize;
+    private final int maxSize;
+    private final int step;
+    private final long targetAcquireNanos;
+    private final double maxUsageGrowth;
+    private final double headroom;
+    private final int shrinkAfter;
+    private final MeterRegistry registry;
+
+    private final AtomicInteger size = new AtomicInteger();
+    private final Counter grown;
+    private final Counter shrunk;
+
+    private Timer acquire;
+    private Timer usage;
+    private long lastRun = System.nanoTime();
+    private long lastAcquireCount;
+    private double lastAcquireNanos;
+    private long lastUsageCount;
+    private double lastUsageNanos;
+    private double baselineUsageNanos = -1;
+    private int quietRuns;
+
+    /**
+     * @param pool the pool to resize; its configured maximum is the starting size
+     * @param partitions the bulkhead partitions of the pool, null if it is not partitioned
+     * @param minSize smallest pool size
+     * @param maxSize largest pool size
+     * @param step connections added or removed at once when waits or database latency change
+     * @param targetAcquire average wait for a connection above which the pool grows
+     * @param maxUsageGrowth usage time over its usual value above which the pool shrinks
+     * @param headroom connections kept per connection in use on average
+     * @param shrinkAfter runs with room to spare before an idle pool shrinks
+     * @param registry where HikariCP publishes hikaricp.connections.* for the pool
+     */
+    public AdaptivePoolSizer(HikariDataSource pool, PartitionedDataSource partitions, int minSize, int maxSize,
+                             int step, Duration targetAcquire, double maxUsageGrowth, double headroom,
+                             int shrinkAfter, MeterRegistry registry) {
+        if (minSize < 1 || maxSize < minSize) {
+            throw new IllegalArgumentException("Pool size range " + minSize + ".." + maxSize + " is not valid");
+        }
+        this.pool = pool;
+        this.partitions = partitions;
+        this.configuredSize = pool.getMaximumPoolSize();
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.step = step;
+        this.targetAcquireNanos = targetAcquire.toNanos();
+        this.maxUsageGrowth = maxUsageGrowth;
+        this.headroom = headroom;
+        this.shrinkAfter = shrinkAfter;
+        this.registry = registry;
+
+        // connections above the floor are closed again after idle-timeout when the pool shrinks
+        pool.setMinimumIdle(Math.min(pool.getMinimumIdle(), minSize));
+        this.size.set(configuredSize);
+        resize(Math.max(minSize, Math.min(maxSize, configuredSize)));
+
+        Gauge.builder("journal.db.pool.target.size", size, AtomicInteger::get)
+                .tag("pool", pool.getPoolName())
+                .description("Pool size chosen by the adaptive sizer").register(registry);
+        this.grown = Counter.builder("journal.db.pool.resizes").tag("pool", pool.getPoolName())
+                .tag("direction", "grow").register(registry);
+        this.shrunk = Counter.builder("journal.db.pool.resizes").tag("pool", pool.getPoolName())
+                .tag("direction", "shrink").register(registry);
+    }
+
+    /** Looks at the pool since the last run and resizes it if needed; called on a fixed delay. */
+    public void adjust() {
+        HikariPoolMXBean mx = pool.getHikariPoolMXBean();
+        if (mx == null || !meters()) return; // pool not started yet
+
+        long now = System.nanoTime();
+        long elapsed = Math.max(1, now - lastRun);
+        long acquires = acquire.count() - lastAcquireCount;
+        double acquireNanos = acquire.totalTime(TimeUnit.NANOSECONDS) - lastAcquireNanos;
+        long uses = usage.count() - lastUsageCount;
+        double usageNanos = usage.totalTime(TimeUnit.NANOSECONDS) - lastUsageNanos;
+        lastRun = now;
+        lastAcquireCount += acquires;
+        lastAcquireNanos += acquireNanos;
+        lastUsageCount += uses;
+        lastUsageNanos += usageNanos;
+
+        double meanAcquire = acquires == 0 ? 0 : acquireNanos / acquires;
+        double meanUsage = uses == 0 ? 0 : usageNanos / uses;
+        double inUse = usageNanos / elapsed;
+        boolean waited = meanAcquire > targetAcquireNanos || mx.getThreadsAwaitingConnection() > 0;
+        boolean slower = uses > 0 && baselineUsageNanos > 0 && meanUsage > baselineUsageNanos * maxUsageGrowth;
+
+        int current = size.get();
+        if (slower && current > minSize) {
+            quietRuns = 0;
+            shrink(current - step, "usage " + millis(meanUsage) + " vs usual " + millis(baselineUsageNanos));
+        } else if (waited && !slower && current < maxSize) {
+            quietRuns = 0;
+            grow(current + step, "acquire " + millis(meanAcquire));
+        } else if (!waited && inUse * headroom < current - 1 && current > minSize) {
+            if (++quietRuns >= shrinkAfter) {
+                quietRuns = 0;
+                shrink(current - 1, "in use " + String.format("%.1f", inUse));
+            }
+        } else {
+            quietRuns = 0;
+        }
+
+        // follows lasting changes in the queries too, just slower than a saturated database shows up
+        if (uses > 0) {
+            baselineUsageNanos = baselineUsageNanos < 0 ? meanUsage
+                    : baselineUsageNanos + BASELINE_WEIGHT * (meanUsage - baselineUsageNanos);
+        }
+    }
+
+    /** @return the pool size last set */
+    public int size() {
+        return size.get();
+    }
+
+    private void grow(int to, String reason) {
+        int from = size.get();
+        resize(Math.min(maxSize, to));
+        grown.increment();
+        log.info("Grew pool {} from {} to {} ({})", pool.getPoolName(), from, size.get(), reason);
+    }
+
+    private void shrink(int to, String reason) {
+        int from = size.get();
+        resize(Math.max(minSize, to));
+        shrunk.increment();
+        log.info("Shrank pool {} from {} to {} ({})", pool.getPoolName(), from, size.get(), reason);
+    }
+
+    private void resize(int to) {
+        pool.getHikariConfigMXBean().setMaximumPoolSize(to);
+        size.set(to);
+        if (partitions != null) partitions.scale((double) to / configuredSize);
+    }
+
+    private boolean meters() {
+        if (acquire != null) return true;
+        acquire = registry.find("hikaricp.connections.acquire").tag("pool", pool.getPoolName()).timer();
+        usage = registry.find("hikaricp.connections.usage").tag("pool", pool.getPoolName()).timer();
+        if (acquire == null || usage == null) {
+            acquire = null;
+            return false;
+        }
+        return true;
+    }
+
+    private static String millis(double nanos) {
+        return String.format("%.1fms", nanos / 1_000_000);
+    }
+}
@@ -0,0 +1,144 @@
+package backend.datasource;
+
+import backend.tracing.TraceContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Places patient-scoped work (patient, encounter, condition, observation) on the right shard.
+ *
+ * Ids are allocated in one range per shard: shard n hands out ids from n * idRange,
+ * so the owning shard of any patient id is simply id / idRange.
+ * New patients are placed by a hash of their personnummer.
+ *
+ * Work on a shard runs in its own transaction (REQUIRES_NEW) so it gets a connection from
+ * that shard even when the caller already holds one on the home database.
+ * With a single shard everything runs inline in the caller's transaction, exactly as before sharding.
+ */
+public class PatientShards implements AutoCloseable {
+
+    private final int count;
+    private final long idRange;
+    private final PlatformTransactionManager transactionManager;
+    private final ExecutorService scatter;
+
+    /**
+     * @param count number of shards, 1 when sharding is off
+     * @param idRange size of each shard's id range
+     * @param transactionManager used to open a transaction on the target shard
+     */
+    public PatientShards(int count, long idRange, PlatformTransactionManager transactionManager) {
+        if (count < 1) throw new IllegalArgumentException("At least one shard is required");
+        this.count = count;
+        this.idRange = idRange;
+        this.transactionManager = transactionManager;
+        this.scatter = count == 1 ? null : Executors.newFixedThreadPool(count, r -> {
+            Thread t = new Thread(r, "shard-scatter");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public boolean isSharded() {
+        return count > 1;
+    }
+
+    /**
+     * @param patientId id of a patient or any row allocated on the patient's shard
+     * @return the shard that owns the id
+     */
+    public int shardOf(long patientId) {
+        if (count == 1) return ShardContext.HOME;
+        int shard = (int) (patientId / idRange);
+        if (shard < 0 || shard >= count) {
+            throw new IllegalArgumentException("Id " + patientId + " is outside every shard range");
+        }
+        return shard;
+    }
+
+    /**
+     * @param personnummer identity of a new patient
+     * @return the shard the patient should be created on
+     */
+    public int shardFor(String personnummer) {
+        return count == 1 ? ShardContext.HOME : Math.floorMod(personnummer.hashCode(), count);
+    }
+
+    public <T> T onShardOf(long patientId, Supplier<T> work) {
+        return onShard(shardOf(patientId), work);
+    }
+
+    /**
+     * Runs the work against one shard.
+     * The transaction is read-only if the caller's transaction is.
+     *
+     * @param shard shard number
+     * @param work repository calls to run on that shard
+     * @return whatever the work returns
+     */
+    public <T> T onShard(int shard, Supplier<T> work) {
+        if (count == 1) return work.get();
+        return inTransaction(shard, TransactionSynchronizationManager.isCurrentTransactionReadOnly(), work);
+    }
+
+    /**
+     * Scatter-gather: runs the same work on every shard in parallel, in read-only transactions.
+     *
+     * @param work repository calls to run on each shard
+     * @return one result per shard, in shard order
+     */
+    public <T> List<T> onEveryShard(Supplier<T> work) {
+        if (count == 1) return List.of(work.get());
+
+        List<Future<T>> futures = new ArrayList<>(count);
+        for (int shard = 0; shard < count; shard++) {
+            int s = shard;
+            futures.add(scatter.submit(TraceContext.wrap(() -> inTransaction(s, true, work))));
+        }
+        List<T> results = new ArrayList<>(count);
+        try {
+            for (Future<T> f : futures) results.add(f.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(f -> f.cancel(true));
+            throw new IllegalStateException("Interrupted while querying shards", e);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException("Shard query failed", e.getCause());
+        }
+        return results;
+    }
+
+    private <T> T inTransaction(int shard, boolean readOnly, Supplier<T> work) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        tx.setReadOnly(readOnly);
+
+        Integer previous = ShardContext.set(shard);
+        try {
+            return tx.execute(status -> work.get());
+        } finally {
+            ShardContext.set(previous);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (scatter != null) scatter.shutdownNow();
+    }
+}
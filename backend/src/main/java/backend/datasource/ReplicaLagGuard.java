@@ -0,0 +1,83 @@
+package backend.datasource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which sessions wrote to the primary recently, so that their next reads
+ * can be kept on the primary until the replica has had time to catch up.
+ * Entries are keyed by session token and expire after the configured lag window.
+ * At most maxEntries sessions are tracked: when purging expired entries does not make room,
+ * the oldest writes are forgotten first, and those sessions may read slightly stale data.
+ */
+public class ReplicaLagGuard {
+
+    private final long windowNanos;
+    private final int maxEntries;
+
+    // session token -> System.nanoTime() of the last committed write
+    private final Map<String, Long> lastWrite = new ConcurrentHashMap<>();
+
+    /**
+     * @param window how long after a write the session keeps reading from the primary
+     * @param maxEntries upper bound on tracked sessions
+     */
+    public ReplicaLagGuard(Duration window, int maxEntries) {
+        this.windowNanos = window.toNanos();
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Records that the given session has just written to the primary.
+     *
+     * @param sessionKey session token, ignored when null
+     */
+    public void markWrite(String sessionKey) {
+        if (sessionKey == null || windowNanos <= 0) return;
+        if (lastWrite.size() >= maxEntries) {
+            purgeExpired(System.nanoTime());
+            if (lastWrite.size() >= maxEntries) evictOldest();
+        }
+        lastWrite.put(sessionKey, System.nanoTime());
+    }
+
+    /**
+     * Returns true if the session wrote within the lag window and must therefore read from the primary.
+     *
+     * @param sessionKey session token, may be null
+     * @return whether reads for this session should stay on the primary
+     */
+    public boolean mustReadFromPrimary(String sessionKey) {
+        if (sessionKey == null) return false;
+        Long at = lastWrite.get(sessionKey);
+        if (at == null) return false;
+        if (System.nanoTime() - at < windowNanos) return true;
+        lastWrite.remove(sessionKey, at);
+        return false;
+    }
+
+    int size() {
+        return lastWrite.size();
+    }
+
+    // down to three quarters of the limit, so a steady stream of writers sorts the map only now and then
+    private void evictOldest() {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(lastWrite.entrySet());
+        entries.sort(Map.Entry.comparingByValue((a, b) -> Long.compare(a - b, 0)));
+        int excess = entries.size() - maxEntries * 3 / 4;
+        for (int i = 0; i < excess; i++) {
+            lastWrite.remove(entries.get(i).getKey(), entries.get(i).getValue());
+        }
+    }
+
+    private void purgeExpired(long now) {
+        Iterator<Map.Entry<String, Long>> it = lastWrite.entrySet().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().getValue() >= windowNanos) it.remove();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package backend.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Routes connections to either the primary or the read replica.
+ * Read-only transactions go to the replica, everything else goes to the primary.
+ * A session that wrote recently keeps reading from the primary (see {@link ReplicaLagGuard}).
+ *
+ * Must be wrapped in a LazyConnectionDataSourceProxy so the read-only flag
+ * of the transaction is known when the physical connection is fetched.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Target { PRIMARY, REPLICA }
+
+    private final ReplicaLagGuard lagGuard;
+    private final Supplier<String> sessionKey;
+    private final BiConsumer<Target, String> onRoute;
+
+    /**
+     * @param primary pool used for writes and for lag-guarded reads
+     * @param replica pool used for read-only transactions
+     * @param lagGuard tracks sessions that wrote recently
+     * @param sessionKey resolves the current session token, may return null
+     * @param onRoute callback with the chosen target and the reason, used for metrics
+     */
+    public ReplicaRoutingDataSource(DataSource primary,
+                                    DataSource replica,
+                                    ReplicaLagGuard lagGuard,
+                                    Supplier<String> sessionKey,
+                                    BiConsumer<Target, String> onRoute) {
+        this.lagGuard = lagGuard;
+        this.sessionKey = sessionKey;
+        this.onRoute = onRoute;
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String session = sessionKey.get();
+
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            rememberWrite(session);
+            onRoute.accept(Target.PRIMARY, "write");
+            return Target.PRIMARY;
+        }
+        if (lagGuard.mustReadFromPrimary(session)) {
+            onRoute.accept(Target.PRIMARY, "lag-guard");
+            return Target.PRIMARY;
+        }
+        onRoute.accept(Target.REPLICA, "read");
+        return Target.REPLICA;
+    }
+
+    // The write only becomes visible once committed, so start the lag window from there.
+    private void rememberWrite(String session) {
+        if (session == null) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    lagGuard.markWrite(session);
+                }
+            });
+        } else {
+            lagGuard.markWrite(session);
+        }
+    }
+}
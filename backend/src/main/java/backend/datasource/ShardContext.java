@@ -0,0 +1,26 @@
+package backend.datasource;
+
+/**
+ * Holds the shard the current thread is working against.
+ * Threads without a shard use shard 0, the home database for users, messages and practitioners.
+ */
+public final class ShardContext {
+
+    public static final int HOME = 0;
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {}
+
+    public static int current() {
+        Integer shard = CURRENT.get();
+        return shard == null ? HOME : shard;
+    }
+
+    static Integer set(Integer shard) {
+        Integer previous = CURRENT.get();
+        if (shard == null) CURRENT.remove();
+        else CURRENT.set(shard);
+        return previous;
+    }
+}
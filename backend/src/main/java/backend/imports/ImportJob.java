@@ -0,0 +1,112 @@
+package backend.imports;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of one CSV import. Updated by the import thread, read by status requests.
+ */
+public final class ImportJob {
+
+    public enum Status { QUEUED, RUNNING, DONE, FAILED }
+
+    /**
+     * A row that was not imported.
+     *
+     * @param line line in the file where the row starts
+     * @param personnummer the row's personnummer as written, if any
+     * @param reason why the row was skipped
+     */
+    public record Reject(long line, String personnummer, String reason) {}
+
+    /**
+     * Point-in-time view of a job, as returned by the API.
+     *
+     * @param rejects the first rejected rows; {@code rejected} counts all of them
+     */
+    public record Snapshot(
+            String id,
+            Status status,
+            long totalBytes,
+            long bytesRead,
+            int percent,
+            long rowsRead,
+            long patientsCreated,
+            long usersCreated,
+            long rejected,
+            List<Reject> rejects,
+            Instant queuedAt,
+            Instant startedAt,
+            Instant finishedAt,
+            String error
+    ) {}
+
+    private final String id = UUID.randomUUID().toString();
+    private final long totalBytes;
+    private final int maxReportedRejects;
+    private final Instant queuedAt = Instant.now();
+
+    final AtomicLong bytesRead = new AtomicLong();
+    final AtomicLong rowsRead = new AtomicLong();
+    final AtomicLong patientsCreated = new AtomicLong();
+    final AtomicLong usersCreated = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final List<Reject> rejects = new ArrayList<>();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    ImportJob(long totalBytes, int maxReportedRejects) {
+        this.totalBytes = totalBytes;
+        this.maxReportedRejects = maxReportedRejects;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public Status status() {
+        return status;
+    }
+
+    void start() {
+        startedAt = Instant.now();
+        status = Status.RUNNING;
+    }
+
+    void finish() {
+        finishedAt = Instant.now();
+        status = Status.DONE;
+    }
+
+    void fail(String message) {
+        error = message;
+        finishedAt = Instant.now();
+        status = Status.FAILED;
+    }
+
+    void reject(long line, String personnummer, String reason) {
+        rejected.incrementAndGet();
+        synchronized (rejects) {
+            if (rejects.size() < maxReportedRejects) rejects.add(new Reject(line, personnummer, reason));
+        }
+    }
+
+    public Snapshot snapshot() {
+        long read = bytesRead.get();
+        int percent = status == Status.DONE ? 100
+                : totalBytes == 0 ? 0 : (int) Math.min(99, read * 100 / totalBytes);
+        List<Reject> reported;
+        synchronized (rejects) {
+            reported = List.copyOf(rejects);
+        }
+        return new Snapshot(id, status, totalBytes, read, percent, rowsRead.get(),
+                patientsCreated.get(), usersCreated.get(), rejected.get(), reported,
+                queuedAt, startedAt, finishedAt, error);
+    }
+}
@@ -0,0 +1,100 @@
+package backend.imports;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * Swedish personal identity numbers. Accepts the usual ways of writing them
+ * (YYMMDD-NNNN, YYMMDD+NNNN, YYYYMMDDNNNN, YYYYMMDD-NNNN, YYMMDDNNNN) and normalizes
+ * to YYYYMMDD-NNNN so that the same person always gets the same key.
+ * Coordination numbers (day + 60) are accepted.
+ */
+public final class Personnummer {
+
+    private Personnummer() {
+    }
+
+    /**
+     * @param raw personnummer as written in the source
+     * @param today reference date for picking the century of a 10-digit number
+     * @return the number as YYYYMMDD-NNNN
+     * @throws IllegalArgumentException with a readable reason if the number is not valid
+     */
+    public static String normalize(String raw, LocalDate today) {
+        if (raw == null || raw.isBlank()) throw new IllegalArgumentException("personnummer is missing");
+        String s = raw.strip();
+        boolean centenarian = s.indexOf('+') >= 0;
+        String digits = s.replace("-", "").replace("+", "");
+        if (!digits.chars().allMatch(c -> c >= '0' && c <= '9')) {
+            throw new IllegalArgumentException("personnummer has invalid characters");
+        }
+
+        String full;
+        if (digits.length() == 12) {
+            full = digits;
+        } else if (digits.length() == 10) {
+            int yy = Integer.parseInt(digits.substring(0, 2));
+            int century = today.getYear() / 100 * 100;
+            int year = century + yy;
+            if (year > today.getYear()) year -= 100;
+            if (centenarian) year -= 100;
+            full = year + digits.substring(2);
+        } else {
+            throw new IllegalArgumentException("personnummer must have 10 or 12 digits");
+        }
+
+        birthDate(full);
+        if (!luhnValid(full.substring(2))) {
+            throw new IllegalArgumentException("personnummer check digit is wrong");
+        }
+        return full.substring(0, 8) + "-" + full.substring(8);
+    }
+
+    /**
+     * @param normalized personnummer as returned by {@link #normalize}
+     * @return the date of birth the number encodes
+     */
+    public static LocalDate birthDate(String normalized) {
+        String digits = normalized.replace("-", "");
+        int day = Integer.parseInt(digits.substring(6, 8));
+        if (day > 60) day -= 60; // samordningsnummer
+        try {
+            return LocalDate.of(
+                    Integer.parseInt(digits.substring(0, 4)),
+                    Integer.parseInt(digits.substring(4, 6)),
+                    day);
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("personnummer has an invalid date");
+        }
+    }
+
+    /**
+     * @param birthDate date of birth
+     * @param serial birth number, 0-999; odd for men, even for women
+     * @param coordination write a coordination number (day + 60)
+     * @return the number as YYYYMMDD-NNNN with its check digit
+     */
+    public static String format(LocalDate birthDate, int serial, boolean coordination) {
+        if (serial < 0 || serial > 999) throw new IllegalArgumentException("serial must be 0-999");
+        String digits = String.format("%04d%02d%02d%03d", birthDate.getYear(), birthDate.getMonthValue(),
+                birthDate.getDayOfMonth() + (coordination ? 60 : 0), serial);
+        for (int check = 0; check < 10; check++) {
+            if (luhnValid(digits.substring(2) + check)) return digits.substring(0, 8) + "-" + digits.substring(8) + check;
+        }
+        throw new IllegalStateException("no check digit for " + digits);
+    }
+
+    // Luhn over YYMMDDNNN with the last digit as check digit
+    static boolean luhnValid(String tenDigits) {
+        int sum = 0;
+        for (int i = 0; i < 10; i++) {
+            int d = tenDigits.charAt(i) - '0';
+            if (i % 2 == 0) {
+                d *= 2;
+                if (d > 9) d -= 9;
+            }
+            sum += d;
+        }
+        return sum % 10 == 0;
+    }
+}
@@ -0,0 +1,29 @@
+package backend.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+
+/**
+ * A response body paired with the writer that renders it.
+ * Returned from controllers and written by {@link JsonBodyHttpMessageConverter}.
+ */
+public final class JsonBody {
+
+    private final JsonWriter<Object> writer;
+    private final Object value;
+
+    @SuppressWarnings("unchecked")
+    private JsonBody(JsonWriter<?> writer, Object value) {
+        this.writer = (JsonWriter<Object>) writer;
+        this.value = value;
+    }
+
+    public static <T> JsonBody of(JsonWriter<T> writer, T value) {
+        return new JsonBody(writer, value);
+    }
+
+    public void writeTo(JsonGenerator g) throws IOException {
+        writer.write(g, value);
+    }
+}
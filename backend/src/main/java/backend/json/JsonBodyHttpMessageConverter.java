@@ -0,0 +1,53 @@
+package backend.json;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import backend.tracing.Span;
+import backend.tracing.TraceContext;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+
+/**
+ * Writes {@link JsonBody} responses directly to the response stream.
+ * The generator comes from the application's JsonFactory, whose buffers are recycled per thread,
+ * so a response costs little more than the bytes it writes.
+ */
+public class JsonBodyHttpMessageConverter extends AbstractHttpMessageConverter<JsonBody> {
+
+    private final JsonFactory factory;
+
+    public JsonBodyHttpMessageConverter(JsonFactory factory) {
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+        this.factory = factory;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return JsonBody.class == clazz;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected JsonBody readInternal(Class<? extends JsonBody> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("JsonBody is write-only", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(JsonBody body, HttpOutputMessage outputMessage) throws IOException {
+        try (TraceContext.Scope ignored = TraceContext.open("json.write", Span.Kind.INTERNAL);
+             JsonGenerator g = factory.createGenerator(outputMessage.getBody(), JsonEncoding.UTF8)) {
+            g.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            body.writeTo(g);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package backend.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+
+/**
+ * Writes one fixed response shape straight to a generator, without building a map
+ * or going through Jackson's reflective bean serializers.
+ *
+ * @param <T> the value the shape is written from
+ */
+@FunctionalInterface
+public interface JsonWriter<T> {
+
+    void write(JsonGenerator g, T value) throws IOException;
+}
@@ -0,0 +1,278 @@
+package backend.json;
+
+import backend.archive.ArchivedMessage;
+import backend.model.Condition;
+import backend.model.Encounter;
+import backend.model.Message;
+import backend.model.User;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Precompiled writers for the hot auth, note and message responses.
+ * Field names are pre-encoded once; values are written straight from the entities.
+ * The JSON is the same as Jackson produced for the maps and records these replace
+ * (dates as ISO strings, as with WRITE_DATES_AS_TIMESTAMPS off).
+ */
+public final class ResponseWriters {
+
+    private ResponseWriters() {
+    }
+
+    /** Successful login: the session token and who logged in. */
+    public record Login(String token, User user) {}
+
+    /** A note that was just saved; the text is the one submitted, the row only has a preview. */
+    public record NoteCreated(Encounter encounter, String notes) {}
+
+    /** Contacts of {@code selfId}, who is left out of the list. */
+    public record Contacts(long selfId, List<User> users) {}
+
+    /** One message with the names of both parties. */
+    public record MessageView(Message message, User sender, User receiver) {}
+
+    /** The conversation between {@code me} and {@code other}; each list is sorted by sentAt. */
+    public record MessageThread(User me, User other, List<Message> sent, List<Message> received) {}
+
+    /**
+     * One archive segment of the conversation between {@code me} and {@code other}, oldest first.
+     * {@code before} is the cursor for the next older segment, null when this is the oldest.
+     */
+    public record ArchivedThread(User me, User other, List<ArchivedMessage> messages, Long before) {}
+
+    private static final SerializableString ID = new SerializedString("id");
+    private static final SerializableString USERNAME = new SerializedString("username");
+    private static final SerializableString ROLE = new SerializedString("role");
+    private static final SerializableString PATIENT_ID = new SerializedString("patientId");
+    private static final SerializableString PRACTITIONER_ID = new SerializedString("practitionerId");
+    private static final SerializableString TOKEN = new SerializedString("token");
+    private static final SerializableString USER = new SerializedString("user");
+    private static final SerializableString NOTES = new SerializedString("notes");
+    private static final SerializableString START_TIME = new SerializedString("startTime");
+    private static final SerializableString CODE = new SerializedString("code");
+    private static final SerializableString DISPLAY = new SerializedString("display");
+    private static final SerializableString ONSET_DATE = new SerializedString("onsetDate");
+    private static final SerializableString SENDER_ID = new SerializedString("senderId");
+    private static final SerializableString RECEIVER_ID = new SerializedString("receiverId");
+    private static final SerializableString SENDER_NAME = new SerializedString("senderName");
+    private static final SerializableString RECEIVER_NAME = new SerializedString("receiverName");
+    private static final SerializableString CONTENT = new SerializedString("content");
+    private static final SerializableString SENT_AT = new SerializedString("sentAt");
+    private static final SerializableString READ = new SerializedString("read");
+    private static final SerializableString MESSAGES = new SerializedString("messages");
+    private static final SerializableString BEFORE = new SerializedString("before");
+
+    /** {@code {token, user: {id, username, role?, patientId?, practitionerId?}}}, absent values left out. */
+    public static final JsonWriter<Login> LOGIN = (g, login) -> {
+        User u = login.user();
+        g.writeStartObject();
+        string(g, TOKEN, login.token());
+        g.writeFieldName(USER);
+        g.writeStartObject();
+        number(g, ID, u.getId());
+        string(g, USERNAME, u.getUsername());
+        if (u.getRole() != null) string(g, ROLE, u.getRole().name());
+        if (u.getPatientId() != null) number(g, PATIENT_ID, u.getPatientId());
+        if (u.getPractitionerId() != null) number(g, PRACTITIONER_ID, u.getPractitionerId());
+        g.writeEndObject();
+        g.writeEndObject();
+    };
+
+    /** {@code {id, username, role, patientId, practitionerId}} for the current session. */
+    public static final JsonWriter<User> SESSION_USER = (g, u) -> {
+        g.writeStartObject();
+        number(g, ID, u.getId());
+        string(g, USERNAME, u.getUsername());
+        string(g, ROLE, u.getRole() == null ? null : u.getRole().name());
+        number(g, PATIENT_ID, u.getPatientId());
+        number(g, PRACTITIONER_ID, u.getPractitionerId());
+        g.writeEndObject();
+    };
+
+    /** {@code {id, username, role, patientId}} for a new account. */
+    public static final JsonWriter<User> REGISTERED = (g, u) -> {
+        g.writeStartObject();
+        number(g, ID, u.getId());
+        string(g, USERNAME, u.getUsername());
+        string(g, ROLE, u.getRole() == null ? null : u.getRole().name());
+        number(g, PATIENT_ID, u.getPatientId());
+        g.writeEndObject();
+    };
+
+    /** {@code {id, patientId, notes, startTime}}. */
+    public static final JsonWriter<NoteCreated> NOTE_CREATED = (g, n) -> {
+        Encounter e = n.encounter();
+        g.writeStartObject();
+        number(g, ID, e.getId());
+        number(g, PATIENT_ID, e.getPatientId());
+        string(g, NOTES, n.notes());
+        dateTime(g, START_TIME, e.getStartTime());
+        g.writeEndObject();
+    };
+
+    /** {@code {id, patientId, code, display, onsetDate}}. */
+    public static final JsonWriter<Condition> CONDITION_CREATED = (g, c) -> {
+        g.writeStartObject();
+        number(g, ID, c.getId());
+        number(g, PATIENT_ID, c.getPatient().getId());
+        string(g, CODE, c.getCode());
+        string(g, DISPLAY, c.getDisplay());
+        date(g, ONSET_DATE, c.getOnsetDate());
+        g.writeEndObject();
+    };
+
+    /** {@code [{id, username, role}, ...]}. */
+    public static final JsonWriter<Contacts> CONTACTS = (g, contacts) -> {
+        g.writeStartArray();
+        for (User u : contacts.users()) {
+            if (u.getId() == contacts.selfId()) continue;
+            g.writeStartObject();
+            number(g, ID, u.getId());
+            string(g, USERNAME, u.getUsername());
+            string(g, ROLE, u.getRole().name());
+            g.writeEndObject();
+        }
+        g.writeEndArray();
+    };
+
+    /** {@code {id, senderId, receiverId, senderName, receiverName, content, sentAt, read}}. */
+    public static final JsonWriter<MessageView> MESSAGE = (g, v) ->
+            message(g, v.message(), v.sender().getUsername(), v.receiver().getUsername());
+
+    /**
+     * Array of {@link #MESSAGE} in time order. Both directions are already sorted,
+     * so they are merged while writing; on equal times the caller's own message comes first.
+     */
+    public static final JsonWriter<MessageThread> THREAD = (g, t) -> {
+        String mine = t.me().getUsername();
+        String theirs = t.other().getUsername();
+        List<Message> a = t.sent();
+        List<Message> b = t.received();
+        int i = 0;
+        int j = 0;
+
+        g.writeStartArray();
+        while (i < a.size() || j < b.size()) {
+            boolean takeSent = j == b.size()
+                    || (i < a.size() && !a.get(i).getSentAt().isAfter(b.get(j).getSentAt()));
+            if (takeSent) {
+                message(g, a.get(i++), mine, theirs);
+            } else {
+                message(g, b.get(j++), theirs, mine);
+            }
+        }
+        g.writeEndArray();
+    };
+
+    /** {@code {messages: [MESSAGE, ...], before}}; archived messages have the same fields as live ones. */
+    public static final JsonWriter<ArchivedThread> ARCHIVED_THREAD = (g, t) -> {
+        long myId = t.me().getId();
+        String mine = t.me().getUsername();
+        String theirs = t.other().getUsername();
+
+        g.writeStartObject();
+        g.writeFieldName(MESSAGES);
+        g.writeStartArray();
+        for (ArchivedMessage m : t.messages()) {
+            boolean sentByMe = m.senderId() == myId;
+            message(g, m.id(), m.senderId(), m.receiverId(), sentByMe ? mine : theirs, sentByMe ? theirs : mine,
+                    m.content(), m.sentAt(), m.read());
+        }
+        g.writeEndArray();
+        number(g, BEFORE, t.before());
+        g.writeEndObject();
+    };
+
+    private static void message(JsonGenerator g, Message m, String senderName, String receiverName) throws IOException {
+        message(g, m.getId(), m.getSenderUserId(), m.getReceiverUserId(), senderName, receiverName,
+                m.getContent(), m.getSentAt(), m.isRead());
+    }
+
+    private static void message(JsonGenerator g, Long id, Long senderId, Long receiverId, String senderName,
+                                String receiverName, String content, LocalDateTime sentAt, boolean read) throws IOException {
+        g.writeStartObject();
+        number(g, ID, id);
+        number(g, SENDER_ID, senderId);
+        number(g, RECEIVER_ID, receiverId);
+        string(g, SENDER_NAME, senderName);
+        string(g, RECEIVER_NAME, receiverName);
+        string(g, CONTENT, content);
+        dateTime(g, SENT_AT, sentAt);
+        g.writeFieldName(READ);
+        g.writeBoolean(read);
+        g.writeEndObject();
+    }
+
+    // ==== field helpers ====
+
+    private static void number(JsonGenerator g, SerializableString name, Long value) throws IOException {
+        g.writeFieldName(name);
+        if (value == null) g.writeNull();
+        else g.writeNumber(value.longValue());
+    }
+
+    private static void string(JsonGenerator g, SerializableString name, String value) throws IOException {
+        g.writeFieldName(name);
+        g.writeString(value);
+    }
+
+    // room for yyyy-MM-ddTHH:mm:ss.nnnnnnnnn
+    private static final ThreadLocal<char[]> DATE_TIME_BUFFER = ThreadLocal.withInitial(() -> new char[29]);
+
+    /*
+     * Same text as ISO_LOCAL_DATE_TIME (seconds always, fraction without trailing zeros),
+     * formatted into a reused buffer since message lists write one per row.
+     */
+    private static void dateTime(JsonGenerator g, SerializableString name, LocalDateTime value) throws IOException {
+        g.writeFieldName(name);
+        if (value == null) {
+            g.writeNull();
+            return;
+        }
+        if (value.getYear() < 0 || value.getYear() > 9999) {
+            g.writeString(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(value));
+            return;
+        }
+        char[] c = DATE_TIME_BUFFER.get();
+        digits(c, 0, value.getYear(), 4);
+        c[4] = '-';
+        digits(c, 5, value.getMonthValue(), 2);
+        c[7] = '-';
+        digits(c, 8, value.getDayOfMonth(), 2);
+        c[10] = 'T';
+        digits(c, 11, value.getHour(), 2);
+        c[13] = ':';
+        digits(c, 14, value.getMinute(), 2);
+        c[16] = ':';
+        digits(c, 17, value.getSecond(), 2);
+        int len = 19;
+        int nano = value.getNano();
+        if (nano != 0) {
+            c[19] = '.';
+            digits(c, 20, nano, 9);
+            len = 29;
+            while (c[len - 1] == '0') len--;
+        }
+        g.writeString(c, 0, len);
+    }
+
+    private static void digits(char[] c, int at, int value, int width) {
+        for (int i = at + width - 1; i >= at; i--) {
+            c[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static void date(JsonGenerator g, SerializableString name, LocalDate value) throws IOException {
+        g.writeFieldName(name);
+        if (value == null) g.writeNull();
+        else g.writeString(DateTimeFormatter.ISO_LOCAL_DATE.format(value));
+    }
+}
@@ -0,0 +1,119 @@
+package backend.messaging;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of one message broadcast. Updated by the broadcast thread, read by status requests.
+ */
+public final class BroadcastJob {
+
+    public enum Status { QUEUED, RUNNING, DONE, FAILED }
+
+    /** Who receives the message. */
+    public enum Audience {
+        /** Every patient account. */
+        ALL_PATIENTS,
+        /** The accounts of patients with at least one encounter with the practitioner. */
+        PRACTITIONER_PATIENTS
+    }
+
+    /**
+     * Point-in-time view of a job, as returned by the API.
+     *
+     * @param recipients patients the message is going to, known once the job runs; patients
+     *                   without an account get nothing, so {@code sent} may end below it
+     * @param yields times the job paused because requests were waiting for a database connection
+     */
+    public record Snapshot(
+            String id,
+            Status status,
+            Audience audience,
+            Long practitionerId,
+            long senderId,
+            long recipients,
+            long sent,
+            int percent,
+            long yields,
+            Instant queuedAt,
+            Instant startedAt,
+            Instant finishedAt,
+            String error
+    ) {}
+
+    private final String id = UUID.randomUUID().toString();
+    private final Audience audience;
+    private final Long practitionerId;
+    private final long senderId;
+    private final String content;
+    private final Instant queuedAt = Instant.now();
+
+    final AtomicLong sent = new AtomicLong();
+    final AtomicLong yields = new AtomicLong();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile long recipients;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    BroadcastJob(Audience audience, Long practitionerId, long senderId, String content) {
+        this.audience = audience;
+        this.practitionerId = practitionerId;
+        this.senderId = senderId;
+        this.content = content;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public Status status() {
+        return status;
+    }
+
+    Audience audience() {
+        return audience;
+    }
+
+    Long practitionerId() {
+        return practitionerId;
+    }
+
+    long senderId() {
+        return senderId;
+    }
+
+    String content() {
+        return content;
+    }
+
+    void start() {
+        startedAt = Instant.now();
+        status = Status.RUNNING;
+    }
+
+    void recipients(long count) {
+        recipients = count;
+    }
+
+    void finish() {
+        finishedAt = Instant.now();
+        status = Status.DONE;
+    }
+
+    void fail(String message) {
+        error = message;
+        finishedAt = Instant.now();
+        status = Status.FAILED;
+    }
+
+    public Snapshot snapshot() {
+        long done = sent.get();
+        int percent = status == Status.DONE ? 100
+                : recipients == 0 ? 0 : (int) Math.min(99, done * 100 / recipients);
+        return new Snapshot(id, status, audience, practitionerId, senderId, recipients, done, percent,
+                yields.get(), queuedAt, startedAt, finishedAt, error);
+    }
+}
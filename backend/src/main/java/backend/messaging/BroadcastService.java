@@ -0,0 +1,209 @@
+package backend.messaging;
+
+import backend.datasource.PatientShards;
+import backend.messaging.BroadcastJob.Audience;
+import backend.repository.BroadcastRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Sends one message to a group of patients: every patient account, or the accounts of the
+ * patients a practitioner has met.
+ *
+ * Broadcasts run on a single background thread, one at a time. The recipients are resolved
+ * in the database and the messages written in batches, each batch one INSERT ... SELECT in its
+ * own transaction: all patient accounts are walked in id order, a practitioner's patients are
+ * collected from the encounters (on every shard) first. Every message of a broadcast gets the
+ * same sent_at.
+ *
+ * To leave the database to interactive requests the job writes at most maxRate messages per
+ * second, and before each batch waits in steps of busyPause for as long as requests are
+ * queueing for a connection. A failed batch rolls back on its own and ends the job; the
+ * messages of earlier batches stay sent.
+ */
+public class BroadcastService implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(BroadcastService.class);
+
+    private final BroadcastRepository broadcasts;
+    private final PatientShards shards;
+    private final TransactionTemplate tx;
+    private final BooleanSupplier poolBusy;
+    private final int batchSize;
+    private final int maxRate;
+    private final Duration busyPause;
+    private final int retainedJobs;
+    private final ThreadPoolExecutor worker;
+    private final Map<String, BroadcastJob> jobs = new LinkedHashMap<>();
+
+    /**
+     * @param broadcasts recipient lookups and inserts
+     * @param shards where the encounters of a practitioner's patients are
+     * @param transactionManager used for one transaction per batch
+     * @param poolBusy true while requests are waiting for a database connection
+     * @param batchSize messages per batch
+     * @param maxRate most messages written per second
+     * @param busyPause wait before checking poolBusy again
+     * @param queueCapacity broadcasts that may wait while another one runs
+     * @param retainedJobs jobs remembered for status requests
+     */
+    public BroadcastService(BroadcastRepository broadcasts, PatientShards shards,
+                            PlatformTransactionManager transactionManager, BooleanSupplier poolBusy,
+                            int batchSize, int maxRate, Duration busyPause, int queueCapacity, int retainedJobs) {
+        this.broadcasts = broadcasts;
+        this.shards = shards;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.poolBusy = poolBusy;
+        this.batchSize = batchSize;
+        this.maxRate = maxRate;
+        this.busyPause = busyPause;
+        this.retainedJobs = retainedJobs;
+        this.worker = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread t = new Thread(r, "message-broadcast");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Queues a broadcast.
+     *
+     * @param audience who receives the message
+     * @param practitionerId whose patients receive it, for {@link Audience#PRACTITIONER_PATIENTS}
+     * @param senderId account the messages are sent from
+     * @param content message text
+     * @return the queued job
+     * @throws RejectedExecutionException if too many broadcasts are already waiting
+     */
+    public BroadcastJob submit(Audience audience, Long practitionerId, long senderId, String content) {
+        BroadcastJob job = new BroadcastJob(audience, practitionerId, senderId, content);
+        worker.execute(() -> run(job));
+        remember(job);
+        return job;
+    }
+
+    public Optional<BroadcastJob> find(String id) {
+        synchronized (jobs) {
+            return Optional.ofNullable(jobs.get(id));
+        }
+    }
+
+    /**
+     * @return remembered jobs, newest first
+     */
+    public List<BroadcastJob> recent() {
+        synchronized (jobs) {
+            List<BroadcastJob> list = new ArrayList<>(jobs.values());
+            Collections.reverse(list);
+            return list;
+        }
+    }
+
+    private void remember(BroadcastJob job) {
+        synchronized (jobs) {
+            jobs.put(job.id(), job);
+            var it = jobs.values().iterator();
+            while (jobs.size() > retainedJobs && it.hasNext()) {
+                BroadcastJob oldest = it.next();
+                if (oldest.status() == BroadcastJob.Status.DONE || oldest.status() == BroadcastJob.Status.FAILED) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    // ==== processing ====
+
+    private void run(BroadcastJob job) {
+        job.start();
+        try {
+            LocalDateTime sentAt = LocalDateTime.now();
+            if (job.audience() == Audience.ALL_PATIENTS) {
+                sendToAllPatients(job, sentAt);
+            } else {
+                sendToPatients(job, patientsOf(job.practitionerId()), sentAt);
+            }
+            job.finish();
+            log.info("Broadcast {} sent {} messages", job.id(), job.sent.get());
+        } catch (Exception e) {
+            log.warn("Broadcast {} failed after {} messages", job.id(), job.sent.get(), e);
+            job.fail(e.getMessage());
+        }
+    }
+
+    private void sendToAllPatients(BroadcastJob job, LocalDateTime sentAt) throws InterruptedException {
+        job.recipients(broadcasts.countPatientAccounts());
+        long after = 0;
+        while (true) {
+            awaitQuietPool(job);
+            long started = System.nanoTime();
+            long from = after;
+            Long upTo = broadcasts.patientAccountBound(from, batchSize);
+            if (upTo == null) return;
+            int n = tx.execute(status -> broadcasts.insertForPatientAccounts(
+                    job.senderId(), job.content(), sentAt, from, upTo));
+            job.sent.addAndGet(n);
+            after = upTo;
+            pace(started, n);
+        }
+    }
+
+    private void sendToPatients(BroadcastJob job, List<Long> patientIds, LocalDateTime sentAt)
+            throws InterruptedException {
+        job.recipients(patientIds.size());
+        for (int i = 0; i < patientIds.size(); i += batchSize) {
+            awaitQuietPool(job);
+            long started = System.nanoTime();
+            List<Long> batch = patientIds.subList(i, Math.min(i + batchSize, patientIds.size()));
+            int n = tx.execute(status -> broadcasts.insertForPatients(job.senderId(), job.content(), sentAt, batch));
+            job.sent.addAndGet(n);
+            pace(started, n);
+        }
+    }
+
+    // encounters live on the patients' shards; the accounts on the home database
+    private List<Long> patientsOf(long practitionerId) {
+        TreeSet<Long> ids = new TreeSet<>();
+        shards.onEveryShard(() -> broadcasts.patientsOfPractitioner(practitionerId)).forEach(ids::addAll);
+        return new ArrayList<>(ids);
+    }
+
+    private void awaitQuietPool(BroadcastJob job) throws InterruptedException {
+        while (poolBusy.getAsBoolean()) {
+            job.yields.incrementAndGet();
+            Thread.sleep(busyPause.toMillis());
+        }
+    }
+
+    // sleeps out the rest of the time the batch may take at maxRate
+    private void pace(long startedNanos, int messages) throws InterruptedException {
+        long due = startedNanos + messages * 1_000_000_000L / maxRate;
+        long wait = due - System.nanoTime();
+        if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+    }
+
+    @Override
+    public void close() {
+        worker.shutdownNow();
+    }
+}
@@ -0,0 +1,107 @@
+package backend.messaging;
+
+import backend.bulkhead.Workload;
+import backend.bulkhead.WorkloadContext;
+import backend.tracing.TraceContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs the blocking messaging work of async requests on a few threads of its own. A waiting
+ * request costs a queued task instead of a servlet thread, and the threads, not the number of
+ * clients, bound how many connections messaging holds; size them like the messaging connection
+ * partition. Requests that find the queue full, or have waited in it longer than maxQueueWait
+ * by the time a thread is free, fail with 503. The work runs in the MESSAGING workload, so its
+ * connections come from the messaging partition like those of blocking requests.
+ */
+public class MessagingExecutor implements AutoCloseable {
+
+    /** The queue is full or the request waited too long for a thread. */
+    @ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "Messaging is busy, try again")
+    public static class OverloadedException extends RuntimeException {
+        OverloadedException(String message) {
+            super(message);
+        }
+    }
+
+    private final ThreadPoolExecutor pool;
+    private final long maxQueueWaitNanos;
+
+    private final Timer queueWait;
+    private final Counter queueFull;
+    private final Counter expired;
+
+    /**
+     * @param threads threads doing the database work
+     * @param queueCapacity requests that may wait for a thread
+     * @param maxQueueWait a request still queued after this long is failed instead of run
+     * @param registry where the meters are registered
+     */
+    public MessagingExecutor(int threads, int queueCapacity, Duration maxQueueWait, MeterRegistry registry) {
+        this.maxQueueWaitNanos = maxQueueWait.toNanos();
+        AtomicInteger index = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread t = new Thread(r, "messaging-" + index.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        this.queueWait = Timer.builder("journal.messaging.queue.wait").description("Time waiting for a messaging thread")
+                .register(registry);
+        this.queueFull = Counter.builder("journal.messaging.rejected").tag("reason", "queue-full").register(registry);
+        this.expired = Counter.builder("journal.messaging.rejected").tag("reason", "expired").register(registry);
+        Gauge.builder("journal.messaging.queue.size", pool, p -> p.getQueue().size()).register(registry);
+        Gauge.builder("journal.messaging.active", pool, ThreadPoolExecutor::getActiveCount).register(registry);
+    }
+
+    /**
+     * Queues the work and returns at once.
+     *
+     * @return completes with the work's result or failure
+     * @throws OverloadedException if the queue is full
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> work) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long submitted = System.nanoTime();
+        try {
+            pool.execute(WorkloadContext.wrap(Workload.MESSAGING, TraceContext.wrap(() -> {
+                long waited = System.nanoTime() - submitted;
+                queueWait.record(waited, TimeUnit.NANOSECONDS);
+                if (waited > maxQueueWaitNanos) {
+                    // the client has likely given up already
+                    expired.increment();
+                    result.completeExceptionally(new OverloadedException("Waited too long for a messaging thread"));
+                    return;
+                }
+                try {
+                    result.complete(work.get());
+                } catch (RuntimeException | Error e) {
+                    result.completeExceptionally(e);
+                }
+            })));
+        } catch (RejectedExecutionException e) {
+            queueFull.increment();
+            throw new OverloadedException("Messaging queue is full");
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,204 @@
+package backend.messaging;
+
+import backend.archive.MessageSegments;
+import backend.auth.SessionManager;
+import backend.coalesce.SingleFlight;
+import backend.coalesce.SingleFlights;
+import backend.json.JsonBody;
+import backend.json.ResponseWriters;
+import backend.json.ResponseWriters.ArchivedThread;
+import backend.json.ResponseWriters.Contacts;
+import backend.json.ResponseWriters.MessageThread;
+import backend.json.ResponseWriters.MessageView;
+import backend.model.Message;
+import backend.model.Role;
+import backend.model.User;
+import backend.repository.MessageArchiveRepository;
+import backend.repository.MessageRepository;
+import backend.repository.UserRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * The messaging operations behind /api/messages, shared by the blocking {@link backend.controller.MessageController}
+ * and the async {@link backend.controller.AsyncMessageController}. Every method blocks on the database
+ * and returns the response body; failures are ResponseStatusExceptions, as in the controllers.
+ */
+@Service
+public class MessagingService {
+
+    /**
+     * Record representing the data required to send a new message.
+     */
+    public record SendMessageRequest(Long receiverId, String content) {}
+
+    private final MessageRepository messages;
+    private final UserRepository users;
+    private final MessageArchiveRepository archive;
+    private final TransactionTemplate readOnlyTx;
+    private final SingleFlight<Pair, Conversation> threads;
+
+    /**
+     * @param messages MessageRepository for accessing message data
+     * @param users UserRepository for accessing user data
+     * @param archive MessageArchiveRepository for reading archived messages
+     * @param transactionManager PlatformTransactionManager for the shared thread loads
+     * @param flights SingleFlights for sharing thread loads between concurrent requests
+     */
+    public MessagingService(MessageRepository messages, UserRepository users, MessageArchiveRepository archive,
+                            PlatformTransactionManager transactionManager, SingleFlights flights) {
+        this.messages = messages;
+        this.users = users;
+        this.archive = archive;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.threads = flights.create("message-thread");
+    }
+
+    // both participants of a thread load the same pair, whoever asks
+    private record Pair(long low, long high) {
+        static Pair of(long a, long b) {
+            return new Pair(Math.min(a, b), Math.max(a, b));
+        }
+    }
+
+    // messages of a thread in both directions, each sorted by time; shared read-only between requests
+    private record Conversation(List<Message> lowToHigh, List<Message> highToLow) {}
+
+    private User requireUser(String token) {
+        Long uid = SessionManager.resolveUserId(token);
+        if (uid == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Not logged in");
+        }
+        return users.findById(uid)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid session"));
+    }
+
+    /**
+     * Patients can message all doctors and staff; doctors and staff can message all patients.
+     *
+     * @param token Authentication token from the X-Auth header
+     * @return the contacts (id, username, role)
+     * @throws ResponseStatusException with 401 status if user is not authenticated
+     */
+    @Transactional(readOnly = true)
+    public JsonBody contacts(String token) {
+        User me = requireUser(token);
+
+        List<User> contacts;
+        if (me.getRole() == Role.PATIENT) {
+            // patient -> alla läkare + personal
+            var doctors = users.findByRole(Role.DOCTOR);
+            var staff   = users.findByRole(Role.STAFF);
+            doctors.addAll(staff);
+            contacts = doctors;
+        } else {
+            // läkare/personal -> alla patienter
+            contacts = users.findByRole(Role.PATIENT);
+        }
+
+        return JsonBody.of(ResponseWriters.CONTACTS, new Contacts(me.getId(), contacts));
+    }
+
+    /**
+     * The live thread between the caller and another user, oldest first. Concurrent loads of the
+     * same thread, from either participant, share one load.
+     *
+     * @param token Authentication token from the X-Auth header
+     * @param otherId The ID of the other user in the conversation
+     * @return the messages of the thread
+     * @throws ResponseStatusException with 401 status if user is not authenticated
+     * @throws ResponseStatusException with 404 status if the other user is not found
+     */
+    public JsonBody thread(String token, Long otherId) {
+        User me = requireUser(token);
+
+        User other = users.findById(otherId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
+
+        // 1) hämta båda riktningarna en gång, även om flera frågar samtidigt
+        Pair pair = Pair.of(me.getId(), otherId);
+        Conversation c = threads.load(pair, () -> readOnlyTx.execute(status -> new Conversation(
+                messages.findBySenderUserIdAndReceiverUserIdOrderBySentAtAsc(pair.low(), pair.high()),
+                messages.findBySenderUserIdAndReceiverUserIdOrderBySentAtAsc(pair.high(), pair.low()))));
+
+        // 2) jag -> andra och andra -> jag, sett från den som frågar
+        boolean iAmLow = me.getId() == pair.low();
+        var m1 = iAmLow ? c.lowToHigh() : c.highToLow();
+        var m2 = iAmLow ? c.highToLow() : c.lowToHigh();
+
+        // 3) båda är redan sorterade efter tid, så de slås ihop medan svaret skrivs
+        return JsonBody.of(ResponseWriters.THREAD, new MessageThread(me, other, m1, m2));
+    }
+
+    /**
+     * One archived segment of the thread between the caller and another user.
+     *
+     * @param token Authentication token from the X-Auth header
+     * @param otherId The ID of the other user in the conversation
+     * @param before Cursor from the previous response; null for the newest segment
+     * @return {@code {messages, before}}, messages oldest first; empty when nothing is archived
+     * @throws ResponseStatusException with 401 status if user is not authenticated
+     * @throws ResponseStatusException with 404 status if the other user is not found
+     */
+    public JsonBody archivedThread(String token, Long otherId, Long before) {
+        User me = requireUser(token);
+
+        User other = users.findById(otherId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
+
+        Pair pair = Pair.of(me.getId(), otherId);
+        MessageArchiveRepository.Pair key = new MessageArchiveRepository.Pair(pair.low(), pair.high());
+        var segment = archive.segmentBefore(key, before).orElse(null);
+        if (segment == null) {
+            return JsonBody.of(ResponseWriters.ARCHIVED_THREAD, new ArchivedThread(me, other, List.of(), null));
+        }
+
+        var archived = MessageSegments.decode(pair.low(), pair.high(), segment.body());
+        Long next = archive.hasSegmentBefore(key, segment.id()) ? segment.id() : null;
+        return JsonBody.of(ResponseWriters.ARCHIVED_THREAD, new ArchivedThread(me, other, archived, next));
+    }
+
+    /**
+     * Sends a message from the caller to another user.
+     *
+     * @param token Authentication token from the X-Auth header
+     * @param req receiverId and message content
+     * @return the sent message
+     * @throws ResponseStatusException with 401 status if user is not authenticated
+     * @throws ResponseStatusException with 400 status for invalid request (empty content, self-message, etc.)
+     * @throws ResponseStatusException with 404 status if the receiver user is not found
+     */
+    @Transactional
+    public JsonBody send(String token, SendMessageRequest req) {
+        User me = requireUser(token);
+
+        if (req.receiverId() == null || req.content() == null || req.content().isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "receiverId och content krävs");
+        }
+        if (req.receiverId().equals(me.getId())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Kan inte skicka till dig själv");
+        }
+
+        User receiver = users.findById(req.receiverId())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Receiver not found"));
+
+        Message m = new Message();
+        m.setSenderUserId(me.getId());
+        m.setReceiverUserId(receiver.getId());
+        m.setContent(req.content().trim());
+        m.setSentAt(LocalDateTime.now());
+        m.setRead(false);
+
+        Message saved = messages.save(m);
+
+        return JsonBody.of(ResponseWriters.MESSAGE, new MessageView(saved, me, receiver));
+    }
+}
@@ -0,0 +1,104 @@
+package backend.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Stores text in a VARBINARY column, deflate-compressed when that pays off.
+ * The first byte says how the rest is stored: 0 = plain UTF-8, 1 = raw deflate of UTF-8.
+ * Short texts are kept plain since deflate only adds overhead to them.
+ */
+@Converter
+public class CompressedTextConverter implements AttributeConverter<String, byte[]> {
+
+    static final byte PLAIN = 0;
+    static final byte DEFLATE = 1;
+
+    /** Texts shorter than this (in UTF-8 bytes) are never compressed. */
+    static final int MIN_COMPRESS_BYTES = 256;
+
+    @Override
+    public byte[] convertToDatabaseColumn(String text) {
+        return encode(text);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] stored) {
+        return decode(stored);
+    }
+
+    public static byte[] encode(String text) {
+        if (text == null) return null;
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+
+        if (utf8.length >= MIN_COMPRESS_BYTES) {
+            byte[] deflated = deflate(utf8);
+            if (deflated.length + 1 < utf8.length) {
+                return withHeader(DEFLATE, deflated, deflated.length);
+            }
+        }
+        return withHeader(PLAIN, utf8, utf8.length);
+    }
+
+    public static String decode(byte[] stored) {
+        if (stored == null) return null;
+        if (stored.length == 0) return "";
+        return switch (stored[0]) {
+            case PLAIN -> new String(stored, 1, stored.length - 1, StandardCharsets.UTF_8);
+            case DEFLATE -> new String(inflate(stored), StandardCharsets.UTF_8);
+            default -> throw new IllegalStateException("Unknown text encoding " + stored[0]);
+        };
+    }
+
+    private static byte[] withHeader(byte codec, byte[] body, int length) {
+        byte[] out = new byte[length + 1];
+        out[0] = codec;
+        System.arraycopy(body, 0, out, 1, length);
+        return out;
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            byte[] buf = new byte[Math.max(64, input.length / 2)];
+            int len = 0;
+            while (!deflater.finished()) {
+                if (len == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+                len += deflater.deflate(buf, len, buf.length - len);
+            }
+            return Arrays.copyOf(buf, len);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] stored) {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(stored, 1, stored.length - 1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(stored.length * 3);
+            byte[] buf = new byte[4096];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buf);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated compressed text");
+                }
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt compressed text", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package backend.model;
 
 import jakarta.persistence.*;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "[condition]") // matchar din SQL
@@ -24,6 +25,9 @@ public class Condition {
     @Column(name = "onset_date")
     private LocalDate onsetDate;
 
+    @Column(name = "recorded_at", nullable = false)
+    private LocalDateTime recordedAt;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "asserted_by_practitioner_id")
     private Practitioner assertedByPractitioner;
@@ -66,6 +70,14 @@ public class Condition {
         this.onsetDate = onsetDate;
     }
 
+    public LocalDateTime getRecordedAt() {
+        return recordedAt;
+    }
+
+    public void setRecordedAt(LocalDateTime recordedAt) {
+        this.recordedAt = recordedAt;
+    }
+
     public Practitioner getAssertedByPractitioner() {
         return assertedByPractitioner;
     }
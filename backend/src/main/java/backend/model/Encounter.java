@@ -1,6 +1,7 @@
 package backend.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Nationalized;
 import java.time.LocalDateTime;
 
 @Entity
@@ -26,8 +27,10 @@ public class Encounter {
     @Column(name = "end_time")
     private LocalDateTime endTime;
 
-    @Column(columnDefinition = "NVARCHAR(MAX)")
-    private String notes;
+    // first characters of the note; the full body lives in encounter_note
+    @Nationalized
+    @Column(name = "note_preview", length = 200)
+    private String notePreview;
 
     // --- getters & setters ---
 
@@ -75,11 +78,11 @@ public class Encounter {
         this.endTime = endTime;
     }
 
-    public String getNotes() {
-        return notes;
+    public String getNotePreview() {
+        return notePreview;
     }
 
-    public void setNotes(String notes) {
-        this.notes = notes;
+    public void setNotePreview(String notePreview) {
+        this.notePreview = notePreview;
     }
 }
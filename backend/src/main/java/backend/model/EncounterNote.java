@@ -0,0 +1,67 @@
+package backend.model;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Body of an encounter note, kept apart from the encounter row so that
+ * listing encounters never reads note text. Stored compressed (see {@link CompressedTextConverter}).
+ */
+@Entity
+@Table(name = "encounter_note")
+public class EncounterNote implements Persistable<Long> {
+
+    /** Length of the plain-text preview kept on the encounter row. */
+    public static final int PREVIEW_LENGTH = 200;
+
+    @Id
+    @Column(name = "encounter_id")
+    private Long encounterId;
+
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(name = "body", nullable = false, columnDefinition = "VARBINARY(MAX)")
+    private String body;
+
+    // the id is assigned from the encounter, so tell Spring Data to persist rather than merge
+    @Transient
+    private boolean isNew = true;
+
+    protected EncounterNote() {
+    }
+
+    public EncounterNote(Long encounterId, String body) {
+        this.encounterId = encounterId;
+        this.body = body;
+    }
+
+    public static String previewOf(String text) {
+        if (text == null || text.length() <= PREVIEW_LENGTH) return text;
+        return text.substring(0, PREVIEW_LENGTH);
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+    // --- getters ---
+
+    @Override
+    public Long getId() {
+        return encounterId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    public Long getEncounterId() {
+        return encounterId;
+    }
+
+    public String getBody() {
+        return body;
+    }
+}
@@ -1,6 +1,7 @@
 package backend.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Nationalized;
 
 import java.time.LocalDateTime;
 
@@ -18,6 +19,7 @@ public class Message {
     @Column(name = "receiver_user_id", nullable = false)
     private Long receiverUserId;
 
+    @Nationalized
     @Column(name = "content", nullable = false, columnDefinition = "nvarchar(max)")
     private String content;
 
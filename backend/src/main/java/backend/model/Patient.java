@@ -18,6 +18,14 @@ public class Patient {
         return id;
     }
 
+    public String getName() {
+        return name;
+    }
+
+    public String getPersonnummer() {
+        return personnummer;
+    }
+
     public void setName(String username) {
         this.name = username;
     }
@@ -13,4 +13,8 @@ public class Practitioner {
     String name;
     String title;
     Long organizationId;
+
+    public Long getId() {
+        return id;
+    }
 }
\ No newline at end of file
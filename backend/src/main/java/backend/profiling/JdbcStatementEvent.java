@@ -0,0 +1,28 @@
+package backend.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * One JDBC execute call, written by {@link JfrDataSource}. Off unless a recording enables it;
+ * the recordings of {@link JfrProfiler} do, with their own threshold.
+ */
+@Name(JdbcStatementEvent.NAME)
+@Label("JDBC Statement")
+@Category({"Journal", "JDBC"})
+@Description("A statement executed through the application's DataSource")
+@StackTrace
+@Enabled(false)
+@Threshold("10 ms")
+class JdbcStatementEvent extends jdk.jfr.Event {
+
+    static final String NAME = "backend.JdbcStatement";
+
+    @Label("SQL")
+    String sql;
+}
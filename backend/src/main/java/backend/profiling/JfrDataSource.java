@@ -0,0 +1,104 @@
+package backend.profiling;
+
+import jdk.jfr.EventType;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Writes a {@link JdbcStatementEvent} for every statement executed while a JFR recording has the
+ * event enabled. Connections taken while no recording wants it are handed out untouched, so
+ * outside a profiling session this costs one flag check per connection. Only the SQL text is
+ * recorded, never the bound parameters.
+ */
+public class JfrDataSource extends DelegatingDataSource {
+
+    private static final int MAX_SQL_LENGTH = 2000;
+
+    private final EventType type = EventType.getEventType(JdbcStatementEvent.class);
+
+    public JfrDataSource(DataSource target) {
+        super(target);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection connection = super.getConnection();
+        return type.isEnabled() ? recording(connection) : connection;
+    }
+
+    private Connection recording(Connection target) {
+        return (Connection) Proxy.newProxyInstance(JfrDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals" -> {
+                            return proxy == args[0];
+                        }
+                        case "hashCode" -> {
+                            return System.identityHashCode(proxy);
+                        }
+                        case "unwrap" -> {
+                            if (((Class<?>) args[0]).isInstance(proxy)) return proxy;
+                        }
+                        default -> {
+                        }
+                    }
+                    Object result = invoke(target, method, args);
+                    if (result instanceof CallableStatement s) return statement(s, CallableStatement.class, (String) args[0]);
+                    if (result instanceof PreparedStatement s) return statement(s, PreparedStatement.class, (String) args[0]);
+                    if (result instanceof Statement s) return statement(s, Statement.class, null);
+                    return result;
+                });
+    }
+
+    private Object statement(Statement target, Class<? extends Statement> type, String preparedSql) {
+        return Proxy.newProxyInstance(JfrDataSource.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    switch (name) {
+                        case "equals" -> {
+                            return proxy == args[0];
+                        }
+                        case "hashCode" -> {
+                            return System.identityHashCode(proxy);
+                        }
+                        case "unwrap" -> {
+                            if (((Class<?>) args[0]).isInstance(proxy)) return proxy;
+                        }
+                        default -> {
+                        }
+                    }
+                    if (!name.startsWith("execute")) return invoke(target, method, args);
+
+                    JdbcStatementEvent event = new JdbcStatementEvent();
+                    event.begin();
+                    try {
+                        return invoke(target, method, args);
+                    } finally {
+                        event.end();
+                        if (event.shouldCommit()) {
+                            String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : preparedSql;
+                            event.sql = sql == null || sql.length() <= MAX_SQL_LENGTH ? sql
+                                    : sql.substring(0, MAX_SQL_LENGTH) + "...";
+                            event.commit();
+                        }
+                    }
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package backend.profiling;
+
+import backend.profiling.JfrProfiler.Info;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Actuator endpoint "jfr" over {@link JfrProfiler}; SecurityConfig lets only operator sessions in.
+ *
+ * <pre>
+ * GET  jfr                         recordings, newest first
+ * POST jfr/record {"duration":"60s"}  start an on-demand recording
+ * POST jfr/dump                    write the continuous recording to a file
+ * GET  jfr/{id}                    status, and the summary once written
+ * GET  jfr/{id}/{cpu|allocation|lock|jdbc}  collapsed stacks for a flame graph
+ * </pre>
+ */
+@Endpoint(id = "jfr")
+public class JfrEndpoint {
+
+    private static final int CONFLICT = 409;
+
+    public record Recordings(boolean continuous, List<Info> recordings) {}
+
+    /**
+     * @param summary null until the recording is written
+     */
+    public record Report(Info recording, JfrSummary.Summary summary) {}
+
+    private final JfrProfiler profiler;
+    private final Duration defaultDuration;
+
+    public JfrEndpoint(JfrProfiler profiler, Duration defaultDuration) {
+        this.profiler = profiler;
+        this.defaultDuration = defaultDuration;
+    }
+
+    @ReadOperation
+    public Recordings recordings() {
+        return new Recordings(profiler.continuous(), profiler.recent());
+    }
+
+    /**
+     * @param action "record" or "dump"
+     * @param duration how long to record, e.g. 90s or 2m; journal.profiling.default-duration if missing
+     */
+    @WriteOperation
+    public WebEndpointResponse<Object> start(@Selector String action, @Nullable String duration) {
+        try {
+            return switch (action) {
+                case "record" -> new WebEndpointResponse<>(profiler.record(
+                        duration == null ? defaultDuration : DurationStyle.detectAndParse(duration)), 202);
+                case "dump" -> new WebEndpointResponse<>(profiler.dump());
+                default -> error(WebEndpointResponse.STATUS_NOT_FOUND, "Unknown action " + action);
+            };
+        } catch (IllegalArgumentException e) {
+            return error(WebEndpointResponse.STATUS_BAD_REQUEST, e.getMessage());
+        } catch (JfrProfiler.BusyException | IllegalStateException e) {
+            return error(CONFLICT, e.getMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @ReadOperation
+    public WebEndpointResponse<Object> recording(@Selector String id) {
+        Info info = profiler.find(id).orElse(null);
+        if (info == null) return error(WebEndpointResponse.STATUS_NOT_FOUND, "Recording not found");
+        try {
+            return new WebEndpointResponse<>(new Report(info, profiler.summary(id).orElse(null)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param kind cpu, allocation, lock or jdbc
+     */
+    @ReadOperation(produces = "text/plain")
+    public WebEndpointResponse<String> collapsed(@Selector String id, @Selector String kind) {
+        JfrSummary.Kind k;
+        try {
+            k = JfrSummary.Kind.valueOf(kind.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return new WebEndpointResponse<>("kind must be cpu, allocation, lock or jdbc\n",
+                    WebEndpointResponse.STATUS_BAD_REQUEST);
+        }
+        try {
+            return profiler.collapsed(id, k)
+                    .map(WebEndpointResponse::new)
+                    .orElseGet(() -> new WebEndpointResponse<>("No written recording " + id + "\n",
+                            WebEndpointResponse.STATUS_NOT_FOUND));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static WebEndpointResponse<Object> error(int status, String message) {
+        return new WebEndpointResponse<>(Map.of("error", message), status);
+    }
+}
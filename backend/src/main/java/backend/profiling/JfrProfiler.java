@@ -0,0 +1,289 @@
+package backend.profiling;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JFR recordings taken inside the running backend.
+ *
+ * An on-demand recording samples CPU, allocations, lock waits and slow JDBC statements for a
+ * bounded time, one at a time, and is written to a file in the directory when it ends.
+ * Optionally a continuous recording keeps the last maxAge (at most maxSize) in a ring buffer
+ * with lighter settings; dumping it after a latency alert writes what led up to it to a file
+ * the same way. Either file is then read through {@link JfrSummary}.
+ *
+ * The settings start from one of the JDK's configurations ("default" is meant to stay under 1%
+ * overhead, "profile" samples more often and costs about 2%); the JDBC event is added with its
+ * own threshold. Stacks are cut at the JVM's stack depth (64 frames unless started with
+ * -XX:FlightRecorderOptions:stackdepth=...).
+ */
+public class JfrProfiler implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(JfrProfiler.class);
+
+    public enum Kind { RECORDING, DUMP }
+
+    public enum Status { RECORDING, DONE, FAILED }
+
+    /**
+     * A recording as returned by the API.
+     *
+     * @param endsAt when an on-demand recording stops; the dump time for dumps
+     * @param bytes file size once written
+     */
+    public record Info(String id, Kind kind, Status status, Instant startedAt, Instant endsAt,
+                       String file, long bytes, String error) {}
+
+    /**
+     * @param configuration JDK configuration the ring buffer records with
+     * @param jdbcThreshold shortest JDBC statement kept
+     * @param maxAge oldest data kept
+     * @param maxSize most bytes kept
+     */
+    public record Continuous(String configuration, Duration jdbcThreshold, Duration maxAge, long maxSize) {}
+
+    /** Thrown when an on-demand recording is asked for while one is running. */
+    public static class BusyException extends RuntimeException {
+        BusyException(String message) {
+            super(message);
+        }
+    }
+
+    private final Path directory;
+    private final Map<String, String> settings;
+    private final Duration maxDuration;
+    private final int retained;
+    private final int top;
+    private final Recording continuous;
+    private final ScheduledExecutorService stopper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "jfr-stop");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Map<String, Entry> recordings = new LinkedHashMap<>();
+
+    private static final class Entry {
+        final String id;
+        final Kind kind;
+        final Path file;
+        final Instant startedAt;
+        final Instant endsAt;
+        Recording recording;
+        volatile Status status = Status.RECORDING;
+        volatile String error;
+        JfrSummary.Summary summary;
+
+        Entry(String id, Kind kind, Path file, Instant startedAt, Instant endsAt) {
+            this.id = id;
+            this.kind = kind;
+            this.file = file;
+            this.startedAt = startedAt;
+            this.endsAt = endsAt;
+        }
+
+        Info info() {
+            long bytes = 0;
+            if (status == Status.DONE) {
+                try {
+                    bytes = Files.size(file);
+                } catch (IOException e) {
+                    // deleted from under us; reported as empty
+                }
+            }
+            return new Info(id, kind, status, startedAt, endsAt, file.toString(), bytes, error);
+        }
+    }
+
+    /**
+     * @param directory where recordings are written
+     * @param configuration JDK configuration on-demand recordings start from
+     * @param jdbcThreshold shortest JDBC statement recorded on demand
+     * @param maxDuration longest on-demand recording
+     * @param retained recording files kept; older ones are deleted
+     * @param top rows in each summary table
+     * @param continuous ring buffer settings, null for no continuous recording
+     */
+    public JfrProfiler(Path directory, String configuration, Duration jdbcThreshold, Duration maxDuration,
+                       int retained, int top, Continuous continuous) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.settings = settings(configuration, jdbcThreshold);
+        this.maxDuration = maxDuration;
+        this.retained = retained;
+        this.top = top;
+        if (continuous == null) {
+            this.continuous = null;
+        } else {
+            this.continuous = new Recording(settings(continuous.configuration(), continuous.jdbcThreshold()));
+            this.continuous.setName("journal-continuous");
+            this.continuous.setToDisk(true);
+            this.continuous.setMaxAge(continuous.maxAge());
+            this.continuous.setMaxSize(continuous.maxSize());
+            this.continuous.start();
+        }
+    }
+
+    private static Map<String, String> settings(String configuration, Duration jdbcThreshold) {
+        Map<String, String> settings;
+        try {
+            settings = new HashMap<>(Configuration.getConfiguration(configuration).getSettings());
+        } catch (IOException | ParseException e) {
+            throw new IllegalArgumentException("Unknown JFR configuration '" + configuration + "'", e);
+        }
+        settings.put(JdbcStatementEvent.NAME + "#enabled", "true");
+        settings.put(JdbcStatementEvent.NAME + "#threshold", jdbcThreshold.toMillis() + " ms");
+        settings.put(JdbcStatementEvent.NAME + "#stackTrace", "true");
+        return settings;
+    }
+
+    public boolean continuous() {
+        return continuous != null;
+    }
+
+    /**
+     * Starts an on-demand recording; it stops and is written to its file after {@code duration}.
+     *
+     * @throws IllegalArgumentException if the duration is not positive or longer than maxDuration
+     * @throws BusyException if another on-demand recording is running
+     */
+    public synchronized Info record(Duration duration) {
+        if (duration.isNegative() || duration.isZero() || duration.compareTo(maxDuration) > 0) {
+            throw new IllegalArgumentException("duration must be positive and at most " + maxDuration.toSeconds() + "s");
+        }
+        for (Entry e : recordings.values()) {
+            if (e.kind == Kind.RECORDING && e.status == Status.RECORDING) {
+                throw new BusyException("Recording " + e.id + " runs until " + e.endsAt);
+            }
+        }
+
+        Instant now = Instant.now();
+        Entry entry = new Entry("recording-" + now.toEpochMilli(), Kind.RECORDING,
+                directory.resolve("recording-" + now.toEpochMilli() + ".jfr"), now, now.plus(duration));
+        Recording recording = new Recording(settings);
+        recording.setName(entry.id);
+        recording.setToDisk(true);
+        try {
+            recording.setDestination(entry.file);
+        } catch (IOException e) {
+            recording.close();
+            throw new IllegalStateException("Cannot write " + entry.file, e);
+        }
+        recording.start();
+        entry.recording = recording;
+        remember(entry);
+        stopper.schedule(() -> stop(entry), duration.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("JFR recording {} started for {}", entry.id, duration);
+        return entry.info();
+    }
+
+    // stop() writes the recording to its destination before returning
+    private void stop(Entry entry) {
+        try (Recording recording = entry.recording) {
+            recording.stop();
+            entry.status = Status.DONE;
+            log.info("JFR recording {} written to {}", entry.id, entry.file);
+        } catch (RuntimeException e) {
+            log.warn("JFR recording {} failed", entry.id, e);
+            entry.error = e.getMessage();
+            entry.status = Status.FAILED;
+        }
+    }
+
+    /**
+     * Writes what the continuous recording holds to a file.
+     *
+     * @throws IllegalStateException if there is no continuous recording
+     */
+    public synchronized Info dump() throws IOException {
+        if (continuous == null) throw new IllegalStateException("No continuous recording is running");
+        Instant now = Instant.now();
+        Entry entry = new Entry("dump-" + now.toEpochMilli(), Kind.DUMP,
+                directory.resolve("dump-" + now.toEpochMilli() + ".jfr"), now, now);
+        continuous.dump(entry.file);
+        entry.status = Status.DONE;
+        remember(entry);
+        log.info("JFR continuous recording dumped to {}", entry.file);
+        return entry.info();
+    }
+
+    public synchronized List<Info> recent() {
+        List<Info> list = new ArrayList<>();
+        for (Entry e : recordings.values()) list.add(e.info());
+        Collections.reverse(list);
+        return list;
+    }
+
+    public synchronized Optional<Info> find(String id) {
+        return Optional.ofNullable(recordings.get(id)).map(Entry::info);
+    }
+
+    /**
+     * @return the summary, empty if the recording is unknown or not written yet
+     */
+    public Optional<JfrSummary.Summary> summary(String id) throws IOException {
+        Entry entry = written(id);
+        if (entry == null) return Optional.empty();
+        // read once; a summary of a large file takes seconds
+        synchronized (entry) {
+            if (entry.summary == null) entry.summary = JfrSummary.summarize(entry.file, top);
+            return Optional.of(entry.summary);
+        }
+    }
+
+    /**
+     * @return collapsed stacks, empty if the recording is unknown or not written yet
+     */
+    public Optional<String> collapsed(String id, JfrSummary.Kind kind) throws IOException {
+        Entry entry = written(id);
+        return entry == null ? Optional.empty() : Optional.of(JfrSummary.collapsed(entry.file, kind));
+    }
+
+    private synchronized Entry written(String id) {
+        Entry entry = recordings.get(id);
+        return entry != null && entry.status == Status.DONE ? entry : null;
+    }
+
+    private void remember(Entry entry) {
+        recordings.put(entry.id, entry);
+        var it = recordings.values().iterator();
+        while (recordings.size() > retained && it.hasNext()) {
+            Entry oldest = it.next();
+            if (oldest.status == Status.RECORDING) continue;
+            it.remove();
+            try {
+                Files.deleteIfExists(oldest.file);
+            } catch (IOException e) {
+                log.warn("Could not delete JFR file {}", oldest.file, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        stopper.shutdownNow();
+        synchronized (this) {
+            for (Entry e : recordings.values()) {
+                if (e.status == Status.RECORDING) e.recording.close();
+            }
+        }
+        if (continuous != null) continuous.close();
+    }
+}
@@ -0,0 +1,222 @@
+package backend.profiling;
+
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+/**
+ * Reads a JFR file into the tables an engineer looks at first, and into collapsed stacks
+ * (one "root;...;leaf weight" line per distinct stack) for flamegraph.pl, speedscope or
+ * any other flame graph viewer.
+ *
+ * A site is where the application asked for the work: the topmost frame in the backend
+ * package, or the top frame when the stack has none.
+ */
+public final class JfrSummary {
+
+    private static final String APPLICATION_PACKAGE = "backend.";
+
+    private JfrSummary() {
+    }
+
+    /** Which events a flame graph is drawn from, and what a line's weight means. */
+    public enum Kind {
+        /** Execution samples; weight is samples. */
+        CPU("jdk.ExecutionSample"),
+        /** Allocation samples, with the allocated type as leaf; weight is estimated bytes. */
+        ALLOCATION("jdk.ObjectAllocationSample"),
+        /** Monitor waits and parks, with the lock type as leaf; weight is microseconds blocked. */
+        LOCK("jdk.JavaMonitorEnter", "jdk.ThreadPark"),
+        /** JDBC statements over the recording's threshold, with the SQL as leaf; weight is microseconds. */
+        JDBC(JdbcStatementEvent.NAME);
+
+        private final Set<String> events;
+
+        Kind(String... events) {
+            this.events = Set.of(events);
+        }
+    }
+
+    /**
+     * @param self samples with the method on top of the stack
+     * @param total samples with the method anywhere on the stack
+     */
+    public record HotMethod(String method, long self, long total) {}
+
+    /**
+     * @param frame the top frame, usually a JDK collection or buffer growing
+     * @param bytes estimated bytes allocated, scaled up from the samples
+     */
+    public record AllocationSite(String site, String frame, String type, long bytes) {}
+
+    public record LockSite(String site, String lock, long events, long blockedMillis) {}
+
+    public record Statement(String sql, long count, long totalMillis, long maxMillis) {}
+
+    public record Summary(
+            long cpuSamples,
+            List<HotMethod> hotMethods,
+            long allocatedBytes,
+            List<AllocationSite> allocationSites,
+            List<LockSite> locks,
+            List<Statement> jdbc
+    ) {}
+
+    /**
+     * @param top rows kept in each table
+     */
+    public static Summary summarize(Path file, int top) throws IOException {
+        long cpuSamples = 0;
+        Map<String, long[]> methods = new HashMap<>();
+        long allocated = 0;
+        Map<List<String>, Long> allocations = new HashMap<>();
+        Map<List<String>, long[]> locks = new HashMap<>();
+        Map<String, long[]> statements = new HashMap<>();
+
+        try (RecordingFile recording = new RecordingFile(file)) {
+            while (recording.hasMoreEvents()) {
+                RecordedEvent e = recording.readEvent();
+                switch (e.getEventType().getName()) {
+                    case "jdk.ExecutionSample" -> {
+                        List<String> stack = frames(e.getStackTrace());
+                        if (stack.isEmpty()) continue;
+                        cpuSamples++;
+                        methods.computeIfAbsent(stack.get(0), m -> new long[2])[0]++;
+                        for (String m : new HashSet<>(stack)) methods.computeIfAbsent(m, x -> new long[2])[1]++;
+                    }
+                    case "jdk.ObjectAllocationSample" -> {
+                        long weight = e.getLong("weight");
+                        allocated += weight;
+                        List<String> stack = frames(e.getStackTrace());
+                        List<String> key = List.of(site(stack), stack.isEmpty() ? "?" : stack.get(0),
+                                typeName(e.getClass("objectClass")));
+                        allocations.merge(key, weight, Long::sum);
+                    }
+                    case "jdk.JavaMonitorEnter", "jdk.ThreadPark" -> {
+                        RecordedClass lock = e.getEventType().getName().equals("jdk.ThreadPark")
+                                ? e.getClass("parkedClass") : e.getClass("monitorClass");
+                        long[] l = locks.computeIfAbsent(List.of(site(frames(e.getStackTrace())), typeName(lock)),
+                                k -> new long[2]);
+                        l[0]++;
+                        l[1] += e.getDuration().toNanos();
+                    }
+                    case JdbcStatementEvent.NAME -> {
+                        long[] s = statements.computeIfAbsent(String.valueOf(e.getString("sql")), k -> new long[3]);
+                        long nanos = e.getDuration().toNanos();
+                        s[0]++;
+                        s[1] += nanos;
+                        s[2] = Math.max(s[2], nanos);
+                    }
+                    default -> {
+                    }
+                }
+            }
+        }
+
+        return new Summary(
+                cpuSamples,
+                methods.entrySet().stream()
+                        .map(m -> new HotMethod(m.getKey(), m.getValue()[0], m.getValue()[1]))
+                        .sorted(Comparator.comparingLong(HotMethod::self).thenComparingLong(HotMethod::total).reversed())
+                        .limit(top).toList(),
+                allocated,
+                allocations.entrySet().stream()
+                        .map(a -> new AllocationSite(a.getKey().get(0), a.getKey().get(1), a.getKey().get(2), a.getValue()))
+                        .sorted(Comparator.comparingLong(AllocationSite::bytes).reversed())
+                        .limit(top).toList(),
+                locks.entrySet().stream()
+                        .map(l -> new LockSite(l.getKey().get(0), l.getKey().get(1), l.getValue()[0], l.getValue()[1] / 1_000_000))
+                        .sorted(Comparator.comparingLong(LockSite::blockedMillis).thenComparingLong(LockSite::events).reversed())
+                        .limit(top).toList(),
+                statements.entrySet().stream()
+                        .map(s -> new Statement(s.getKey(), s.getValue()[0], s.getValue()[1] / 1_000_000, s.getValue()[2] / 1_000_000))
+                        .sorted(Comparator.comparingLong(Statement::totalMillis).thenComparingLong(Statement::count).reversed())
+                        .limit(top).toList());
+    }
+
+    /**
+     * @return collapsed stacks, root frame first, heaviest first
+     */
+    public static String collapsed(Path file, Kind kind) throws IOException {
+        ToLongFunction<RecordedEvent> weight = switch (kind) {
+            case CPU -> e -> 1;
+            case ALLOCATION -> e -> e.getLong("weight");
+            case LOCK, JDBC -> e -> e.getDuration().toNanos() / 1000;
+        };
+        Map<String, Long> stacks = new HashMap<>();
+        try (RecordingFile recording = new RecordingFile(file)) {
+            while (recording.hasMoreEvents()) {
+                RecordedEvent e = recording.readEvent();
+                String event = e.getEventType().getName();
+                if (!kind.events.contains(event)) continue;
+                List<String> frames = frames(e.getStackTrace());
+                if (frames.isEmpty()) continue;
+
+                StringBuilder line = new StringBuilder();
+                for (int i = frames.size() - 1; i >= 0; i--) {
+                    if (line.length() > 0) line.append(';');
+                    line.append(frames.get(i));
+                }
+                switch (kind) {
+                    case ALLOCATION -> line.append(';').append(typeName(e.getClass("objectClass")));
+                    case LOCK -> line.append(';').append(typeName(event.equals("jdk.ThreadPark")
+                            ? e.getClass("parkedClass") : e.getClass("monitorClass")));
+                    case JDBC -> line.append(';').append(leaf(e.getString("sql")));
+                    default -> {
+                    }
+                }
+                stacks.merge(line.toString(), weight.applyAsLong(e), Long::sum);
+            }
+        }
+
+        StringBuilder out = new StringBuilder();
+        stacks.entrySet().stream()
+                .filter(s -> s.getValue() > 0)
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .forEach(s -> out.append(s.getKey()).append(' ').append(s.getValue()).append('\n'));
+        return out.toString();
+    }
+
+    // top frame first
+    private static List<String> frames(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) return List.of();
+        List<RecordedFrame> recorded = stackTrace.getFrames();
+        List<String> frames = new ArrayList<>(recorded.size());
+        for (RecordedFrame f : recorded) {
+            if (!f.isJavaFrame()) continue;
+            frames.add(f.getMethod().getType().getName() + "." + f.getMethod().getName());
+        }
+        return frames;
+    }
+
+    private static String site(List<String> frames) {
+        for (String f : frames) {
+            if (f.startsWith(APPLICATION_PACKAGE)) return f;
+        }
+        return frames.isEmpty() ? "?" : frames.get(0);
+    }
+
+    private static String typeName(RecordedClass type) {
+        return type == null ? "?" : type.getName();
+    }
+
+    // a frame may not contain the separator or a line break; long statements are cut
+    private static String leaf(String sql) {
+        if (sql == null) return "?";
+        String flat = sql.replace(';', ',').replaceAll("\\s+", " ").strip();
+        return flat.length() <= 200 ? flat : flat.substring(0, 200) + "...";
+    }
+}
@@ -0,0 +1,86 @@
+package backend.ratelimit;
+
+import backend.auth.SessionManager;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejects clients that call an endpoint faster than its {@link RateLimitRule} allows with
+ * 429 and Retry-After. The first matching rule applies. Signed-in clients are counted by
+ * session token, and every client by address, so a polling loop in one tab is slowed down
+ * without affecting other users behind the same address until the address limit is reached.
+ *
+ * The address is the client's as Tomcat resolves it from X-Forwarded-For when the request comes
+ * through a trusted proxy (server.forward-headers-strategy), not the proxy's own.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final List<RateLimitRule> rules;
+    private final Counter[] rejected;
+
+    public RateLimitFilter(List<RateLimitRule> rules, MeterRegistry registry) {
+        this.rules = List.copyOf(rules);
+        this.rejected = rules.stream()
+                .map(r -> Counter.builder("journal.ratelimit.rejected").tag("rule", r.name()).register(registry))
+                .toArray(Counter[]::new);
+    }
+
+    // fixed instead of derived from the filter name on every request
+    private static final String FILTERED = RateLimitFilter.class.getName() + ALREADY_FILTERED_SUFFIX;
+
+    @Override
+    protected String getAlreadyFilteredAttributeName() {
+        return FILTERED;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String method = request.getMethod();
+        if (!"OPTIONS".equals(method)) {
+            String path = request.getRequestURI().substring(request.getContextPath().length());
+            for (int i = 0; i < rules.size(); i++) {
+                RateLimitRule rule = rules.get(i);
+                if (!rule.appliesTo(method) || !rule.matches(path)) continue;
+
+                long wait = waitFor(rule, request, System.nanoTime());
+                if (wait > 0) {
+                    rejected[i].increment();
+                    tooManyRequests(response, wait);
+                    return;
+                }
+                break;
+            }
+        }
+        chain.doFilter(request, response);
+    }
+
+    private static long waitFor(RateLimitRule rule, HttpServletRequest request, long now) {
+        if (rule.perToken() != null) {
+            String token = request.getHeader("X-Auth");
+            if (SessionManager.resolveUserId(token) != null) {
+                long wait = rule.perToken().acquire(token, now);
+                if (wait > 0) return wait;
+            }
+        }
+        return rule.perIp() == null ? 0 : rule.perIp().acquire(request.getRemoteAddr(), now);
+    }
+
+    private static void tooManyRequests(HttpServletResponse response, long waitNanos) throws IOException {
+        long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", Long.toString(seconds));
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getWriter().write("Too many requests, try again in " + seconds + " s");
+    }
+}
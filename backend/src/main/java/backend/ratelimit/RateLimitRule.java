@@ -0,0 +1,62 @@
+package backend.ratelimit;
+
+import java.util.Set;
+
+/**
+ * Limits for the requests matching one path pattern (and optionally only some methods).
+ *
+ * Patterns are literal segments, {@code *} or {@code {name}} for exactly one segment, and an
+ * optional trailing {@code /**} for any rest; matching walks the path in place since it runs
+ * on every request.
+ *
+ * @param name used in metrics and logs
+ * @param pattern request path pattern, e.g. /api/messages/thread/*
+ * @param methods HTTP methods the rule applies to; empty for all
+ * @param perToken limiter keyed by session token, or null; only used for tokens that resolve to a session
+ * @param perIp limiter keyed by client address, or null
+ */
+public record RateLimitRule(String name, String pattern, Set<String> methods,
+                            RateLimiter perToken, RateLimiter perIp) {
+
+    public RateLimitRule {
+        if (!pattern.startsWith("/")) throw new IllegalArgumentException("Pattern must start with /: " + pattern);
+        int rest = pattern.indexOf("**");
+        if (rest >= 0 && (rest != pattern.length() - 2 || pattern.charAt(rest - 1) != '/')) {
+            throw new IllegalArgumentException("** is only allowed as the last segment: " + pattern);
+        }
+    }
+
+    boolean appliesTo(String method) {
+        return methods.isEmpty() || methods.contains(method);
+    }
+
+    boolean matches(String path) {
+        int p = 0;
+        int q = 0;
+        while (p < pattern.length()) {
+            int patternEnd = segmentEnd(pattern, p + 1);
+            if (pattern.startsWith("/**", p)) return q == path.length() || path.charAt(q) == '/';
+            if (q >= path.length() || path.charAt(q) != '/') return false;
+            int pathEnd = segmentEnd(path, q + 1);
+
+            if (isWildcard(p + 1, patternEnd)) {
+                if (pathEnd == q + 1) return false;
+            } else if (patternEnd - p != pathEnd - q || !pattern.regionMatches(p, path, q, patternEnd - p)) {
+                return false;
+            }
+            p = patternEnd;
+            q = pathEnd;
+        }
+        return q == path.length();
+    }
+
+    private boolean isWildcard(int from, int to) {
+        return (to - from == 1 && pattern.charAt(from) == '*')
+                || (to - from > 2 && pattern.charAt(from) == '{' && pattern.charAt(to - 1) == '}');
+    }
+
+    private static int segmentEnd(String s, int from) {
+        int slash = s.indexOf('/', from);
+        return slash < 0 ? s.length() : slash;
+    }
+}
@@ -0,0 +1,84 @@
+package backend.ratelimit;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets for one limit, one bucket per key (a session token or an IP address).
+ *
+ * Each bucket is a single AtomicLong holding the theoretical arrival time of the next request
+ * (GCRA): a request is allowed if, after adding one emission interval, that time is no more
+ * than {@code burst} intervals ahead of now. Taking a token is one CAS, no locks.
+ *
+ * A bucket whose arrival time has passed is full again and holds no state worth keeping, so
+ * such buckets are swept when the map reaches {@code maxKeys}. If it is still full after the
+ * sweep, arbitrary buckets are dropped; those clients simply start over with a full bucket.
+ */
+public class RateLimiter {
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final int maxKeys;
+    private final long origin = System.nanoTime();
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    /**
+     * @param requests requests allowed per {@code per} on average
+     * @param per the period {@code requests} is counted over
+     * @param burst requests allowed back to back from a full bucket
+     * @param maxKeys buckets kept before idle ones are swept
+     */
+    public RateLimiter(int requests, Duration per, int burst, int maxKeys) {
+        if (requests <= 0 || burst <= 0) throw new IllegalArgumentException("requests and burst must be positive");
+        this.intervalNanos = Math.max(1, per.toNanos() / requests);
+        this.toleranceNanos = intervalNanos * burst;
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * @param key who is asking
+     * @param nanoTime current {@link System#nanoTime()}
+     * @return 0 if the request is allowed, otherwise nanoseconds until it would be
+     */
+    public long acquire(String key, long nanoTime) {
+        long now = nanoTime - origin;
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) bucket = newBucket(key, now);
+
+        while (true) {
+            long tat = bucket.get();
+            long next = Math.max(tat, now) + intervalNanos;
+            long ahead = next - now;
+            if (ahead > toleranceNanos) return ahead - toleranceNanos;
+            if (bucket.compareAndSet(tat, next)) return 0;
+        }
+    }
+
+    int size() {
+        return buckets.size();
+    }
+
+    private AtomicLong newBucket(String key, long now) {
+        if (buckets.size() >= maxKeys) sweep(now);
+        AtomicLong created = new AtomicLong(now);
+        AtomicLong existing = buckets.putIfAbsent(key, created);
+        return existing == null ? created : existing;
+    }
+
+    private void sweep(long now) {
+        if (!sweeping.compareAndSet(false, true)) return;
+        try {
+            buckets.values().removeIf(b -> b.get() <= now);
+            var keys = buckets.keySet().iterator();
+            while (buckets.size() >= maxKeys && keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package backend.repository;
+
+import backend.audit.AuditEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Loads audit segments into dbo.audit_event.
+ */
+@Repository
+public class AuditRepository {
+
+    /** Thrown when a segment's id already holds the rows of another segment file. */
+    public static class SegmentConflictException extends RuntimeException {
+        public SegmentConflictException(String message) {
+            super(message);
+        }
+    }
+
+    private final JdbcTemplate jdbc;
+
+    public AuditRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * Replaces the rows of one segment, so a segment shipped twice is stored once.
+     * Only rows of the same file are replaced: an earlier attempt stored the same events from
+     * the start, so its first row matches. Call inside a transaction.
+     *
+     * @throws SegmentConflictException if the segment's rows hold other events
+     */
+    public void replaceSegment(long segment, List<AuditEvent> events) {
+        List<AuditEvent> stored = jdbc.query("""
+                SELECT occurred_at, action, user_id, patient_id, subject_id
+                FROM dbo.audit_event WITH (UPDLOCK, HOLDLOCK)
+                WHERE segment = ? AND seq = 0
+                """, (rs, i) -> new AuditEvent(
+                rs.getTimestamp("occurred_at").getTime(),
+                AuditEvent.Action.valueOf(rs.getString("action")),
+                rs.getLong("user_id"),
+                rs.getLong("patient_id"),
+                rs.getLong("subject_id")
+        ), segment);
+        if (!stored.isEmpty() && (events.isEmpty() || !stored.get(0).equals(events.get(0)))) {
+            throw new SegmentConflictException("segment " + segment + " already holds another file's events");
+        }
+        jdbc.update("DELETE FROM dbo.audit_event WHERE segment = ?", segment);
+        if (events.isEmpty()) return;
+        new BulkRows(IntStream.range(0, events.size()).mapToObj(i -> {
+            AuditEvent e = events.get(i);
+            return new Object[]{
+                    segment, i, new Timestamp(e.occurredAt()), e.action().name(),
+                    e.userId(), e.patientId(), e.subjectId() == 0 ? null : e.subjectId()
+            };
+        }).toList())
+                .column("segment", Types.BIGINT, 19)
+                .column("seq", Types.INTEGER, 10)
+                .column("occurred_at", Types.TIMESTAMP, 23)
+                .column("action", Types.VARCHAR, 20)
+                .column("user_id", Types.BIGINT, 19)
+                .column("patient_id", Types.BIGINT, 19)
+                .column("subject_id", Types.BIGINT, 19)
+                .copyInto(jdbc, "dbo.audit_event");
+    }
+}
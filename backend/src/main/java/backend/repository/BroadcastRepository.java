@@ -0,0 +1,92 @@
+package backend.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Recipient lookups and set-based message inserts for broadcasts.
+ *
+ * A batch of messages is one INSERT ... SELECT over the recipients' accounts, so the content
+ * travels to the database once per batch instead of once per message. The content is bound
+ * with setNString: parameters are sent as varchar by default (see application.yml) and
+ * message.content is nvarchar.
+ */
+@Repository
+public class BroadcastRepository {
+
+    private static final String INSERT = """
+            INSERT INTO dbo.message (sender_user_id, receiver_user_id, content, sent_at, [read])
+            SELECT ?, u.id, ?, ?, 0
+            FROM dbo.users u
+            WHERE u.role = 'PATIENT' AND\s""";
+
+    private final JdbcTemplate jdbc;
+
+    public BroadcastRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public int countPatientAccounts() {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM dbo.users WHERE role = 'PATIENT'", Integer.class);
+    }
+
+    /**
+     * Next keyset page of patient accounts.
+     *
+     * @param after highest account id already covered
+     * @param limit accounts in the page
+     * @return highest account id of the page, or null when no account is left after {@code after}
+     */
+    public Long patientAccountBound(long after, int limit) {
+        return jdbc.queryForObject("""
+                SELECT MAX(id) FROM (
+                    SELECT TOP (?) id FROM dbo.users WHERE role = 'PATIENT' AND id > ? ORDER BY id
+                ) page
+                """, Long.class, limit, after);
+    }
+
+    /**
+     * Sends the message to every patient account with an id in (after, upTo].
+     *
+     * @return messages inserted
+     */
+    public int insertForPatientAccounts(long senderId, String content, LocalDateTime sentAt, long after, long upTo) {
+        return jdbc.update(INSERT + "u.id > ? AND u.id <= ?", ps -> {
+            ps.setLong(1, senderId);
+            ps.setNString(2, content);
+            ps.setTimestamp(3, Timestamp.valueOf(sentAt));
+            ps.setLong(4, after);
+            ps.setLong(5, upTo);
+        });
+    }
+
+    /**
+     * Patients with at least one encounter with the practitioner, on the current shard.
+     */
+    public List<Long> patientsOfPractitioner(long practitionerId) {
+        return jdbc.queryForList("SELECT DISTINCT patient_id FROM dbo.encounter WHERE practitioner_id = ?",
+                Long.class, practitionerId);
+    }
+
+    /**
+     * Sends the message to the accounts of the given patients; patients without an account are skipped.
+     * Binds one parameter per patient; SQL Server allows 2100.
+     *
+     * @return messages inserted
+     */
+    public int insertForPatients(long senderId, String content, LocalDateTime sentAt, List<Long> patientIds) {
+        if (patientIds.isEmpty()) return 0;
+        String in = String.join(",", Collections.nCopies(patientIds.size(), "?"));
+        return jdbc.update(INSERT + "u.patient_id IN (" + in + ")", ps -> {
+            ps.setLong(1, senderId);
+            ps.setNString(2, content);
+            ps.setTimestamp(3, Timestamp.valueOf(sentAt));
+            for (int i = 0; i < patientIds.size(); i++) ps.setLong(4 + i, patientIds.get(i));
+        });
+    }
+}
@@ -0,0 +1,114 @@
+package backend.repository;
+
+import com.microsoft.sqlserver.jdbc.ISQLServerBulkData;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopy;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopyOptions;
+import com.microsoft.sqlserver.jdbc.SQLServerConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rows already in memory, fed to SQLServerBulkCopy column by column.
+ * Column order must match the order of the values in each row.
+ */
+public final class BulkRows implements ISQLServerBulkData {
+
+    private record Column(String name, int sqlType, int precision, int scale) {}
+
+    private final List<Column> columns = new ArrayList<>();
+    private final transient Iterator<Object[]> rows;
+    private transient Object[] current;
+    private boolean keepIdentity;
+
+    public BulkRows(Iterable<Object[]> rows) {
+        this.rows = rows.iterator();
+    }
+
+    /**
+     * @param name destination column name
+     * @param sqlType one of {@link Types}
+     * @param precision maximum length for character types, precision for numbers
+     */
+    public BulkRows column(String name, int sqlType, int precision) {
+        columns.add(new Column(name, sqlType, precision, 0));
+        return this;
+    }
+
+    /**
+     * Writes the rows' own values into the identity column instead of letting the table number them,
+     * for loads that need to know the ids up front to reference them from other rows.
+     */
+    public BulkRows keepIdentity() {
+        keepIdentity = true;
+        return this;
+    }
+
+    /**
+     * Bulk copies the rows into {@code table} on the connection {@code jdbc} uses,
+     * joining the current transaction if there is one. Foreign keys and check constraints are
+     * checked, so they stay trusted by the optimizer.
+     */
+    public void copyInto(JdbcTemplate jdbc, String table) {
+        jdbc.execute((ConnectionCallback<Void>) con -> {
+            try (SQLServerBulkCopy copy = new SQLServerBulkCopy(con.unwrap(SQLServerConnection.class))) {
+                SQLServerBulkCopyOptions options = new SQLServerBulkCopyOptions();
+                options.setBulkCopyTimeout(0);
+                options.setCheckConstraints(true);
+                options.setKeepIdentity(keepIdentity);
+                copy.setBulkCopyOptions(options);
+                copy.setDestinationTableName(table);
+                for (int i = 1; i <= columns.size(); i++) {
+                    copy.addColumnMapping(i, getColumnName(i));
+                }
+                copy.writeToServer(this);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public Set<Integer> getColumnOrdinals() {
+        Set<Integer> ordinals = new LinkedHashSet<>();
+        for (int i = 1; i <= columns.size(); i++) ordinals.add(i);
+        return ordinals;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns.get(column - 1).name();
+    }
+
+    @Override
+    public int getColumnType(int column) {
+        return columns.get(column - 1).sqlType();
+    }
+
+    @Override
+    public int getPrecision(int column) {
+        return columns.get(column - 1).precision();
+    }
+
+    @Override
+    public int getScale(int column) {
+        return columns.get(column - 1).scale();
+    }
+
+    @Override
+    public Object[] getRowData() {
+        return current;
+    }
+
+    @Override
+    public boolean next() {
+        if (!rows.hasNext()) return false;
+        current = rows.next();
+        return true;
+    }
+}
@@ -0,0 +1,155 @@
+package backend.repository;
+
+import backend.archive.ArchivedMessage;
+import backend.archive.MessageSegments;
+import backend.model.CompressedTextConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Reads rows changed after a given rowversion.
+ *
+ * Every query stops below MIN_ACTIVE_ROWVERSION(): versions handed out to transactions that
+ * have not committed yet are never skipped, because the cursor cannot pass them until they commit.
+ */
+@Repository
+public class ChangeFeedRepository {
+
+    /** A changed row; {@code version} is the row's rowversion as a number. */
+    public sealed interface Change permits EncounterChange, ConditionChange, MessageChange, ArchivedChange {
+        long version();
+    }
+
+    public record EncounterChange(long version, long id, Long patientId, Long practitionerId,
+                                  LocalDateTime startTime, LocalDateTime endTime, String notes) implements Change {}
+
+    public record ConditionChange(long version, long id, Long patientId, String code,
+                                  String display, LocalDate onsetDate) implements Change {}
+
+    public record MessageChange(long version, long id, Long senderId, Long receiverId,
+                                String content, LocalDateTime sentAt, boolean read) implements Change {}
+
+    /**
+     * Messages the archiver moved out of the message table into one segment; the segment's
+     * rowversion is taken after the messages' own, so it is their tombstone in the feed.
+     *
+     * @param otherUserId the other user of the conversation
+     * @param messageIds the messages that left the thread
+     */
+    public record ArchivedChange(long version, long segmentId, long otherUserId,
+                                 List<Long> messageIds) implements Change {}
+
+    private static final String AFTER_CURSOR =
+            " change_version > CAST(CAST(? AS BIGINT) AS BINARY(8)) AND change_version < MIN_ACTIVE_ROWVERSION() ";
+
+    private final JdbcTemplate jdbc;
+
+    public ChangeFeedRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public List<EncounterChange> encountersSince(long patientId, long since, int limit) {
+        return jdbc.query("""
+                SELECT TOP (?) CAST(e.change_version AS BIGINT) AS version,
+                       e.id, e.patient_id, e.practitioner_id, e.start_time, e.end_time, n.body
+                FROM encounter e
+                LEFT JOIN encounter_note n ON n.encounter_id = e.id
+                WHERE e.patient_id = ? AND""" + AFTER_CURSOR + "ORDER BY e.change_version",
+                (rs, i) -> new EncounterChange(
+                        rs.getLong("version"),
+                        rs.getLong("id"),
+                        rs.getObject("patient_id", Long.class),
+                        rs.getObject("practitioner_id", Long.class),
+                        toLocal(rs.getTimestamp("start_time")),
+                        toLocal(rs.getTimestamp("end_time")),
+                        CompressedTextConverter.decode(rs.getBytes("body"))
+                ), limit, patientId, since);
+    }
+
+    public List<ConditionChange> conditionsSince(long patientId, long since, int limit) {
+        return jdbc.query("""
+                SELECT TOP (?) CAST(change_version AS BIGINT) AS version,
+                       id, patient_id, code, display, onset_date
+                FROM [condition]
+                WHERE patient_id = ? AND""" + AFTER_CURSOR + "ORDER BY change_version",
+                (rs, i) -> new ConditionChange(
+                        rs.getLong("version"),
+                        rs.getLong("id"),
+                        rs.getObject("patient_id", Long.class),
+                        rs.getString("code"),
+                        rs.getString("display"),
+                        toLocal(rs.getDate("onset_date"))
+                ), limit, patientId, since);
+    }
+
+    /*
+     * Sent and received messages are read by one seek each, on (sender_user_id, change_version)
+     * and (receiver_user_id, change_version); a message to oneself is only taken as sent.
+     * Each side's first `limit` changes hold the first `limit` of both.
+     */
+    public List<MessageChange> messagesSince(long userId, long since, int limit) {
+        String side = """
+                SELECT TOP (?) id, sender_user_id, receiver_user_id, content, sent_at, [read], change_version
+                FROM message WHERE %s AND""" + AFTER_CURSOR + "ORDER BY change_version";
+        return jdbc.query("""
+                SELECT TOP (?) CAST(change_version AS BIGINT) AS version,
+                       id, sender_user_id, receiver_user_id, content, sent_at, [read]
+                FROM (
+                    SELECT * FROM (%s) sent
+                    UNION ALL
+                    SELECT * FROM (%s) received
+                ) m
+                ORDER BY change_version
+                """.formatted(side.formatted("sender_user_id = ?"), side.formatted("receiver_user_id = ? AND sender_user_id <> ?")),
+                (rs, i) -> new MessageChange(
+                        rs.getLong("version"),
+                        rs.getLong("id"),
+                        rs.getObject("sender_user_id", Long.class),
+                        rs.getObject("receiver_user_id", Long.class),
+                        rs.getString("content"),
+                        toLocal(rs.getTimestamp("sent_at")),
+                        rs.getBoolean("read")
+                ), limit, limit, userId, since, limit, userId, userId, since);
+    }
+
+    // same as messagesSince, on (user_low, change_version) and (user_high, change_version)
+    public List<ArchivedChange> archivedSince(long userId, long since, int limit) {
+        String side = """
+                SELECT TOP (?) id, user_low, user_high, body, change_version
+                FROM message_archive_segment WHERE %s AND""" + AFTER_CURSOR + "ORDER BY change_version";
+        return jdbc.query("""
+                SELECT TOP (?) CAST(change_version AS BIGINT) AS version, id, user_low, user_high, body
+                FROM (
+                    SELECT * FROM (%s) low
+                    UNION ALL
+                    SELECT * FROM (%s) high
+                ) s
+                ORDER BY change_version
+                """.formatted(side.formatted("user_low = ?"), side.formatted("user_high = ? AND user_low <> ?")),
+                (rs, i) -> {
+                    long low = rs.getLong("user_low");
+                    long high = rs.getLong("user_high");
+                    return new ArchivedChange(
+                            rs.getLong("version"),
+                            rs.getLong("id"),
+                            low == userId ? high : low,
+                            MessageSegments.decode(low, high, rs.getBytes("body")).stream()
+                                    .map(ArchivedMessage::id)
+                                    .toList());
+                }, limit, limit, userId, since, limit, userId, userId, since);
+    }
+
+    private static LocalDateTime toLocal(Timestamp ts) {
+        return ts == null ? null : ts.toLocalDateTime();
+    }
+
+    private static LocalDate toLocal(Date d) {
+        return d == null ? null : d.toLocalDate();
+    }
+}
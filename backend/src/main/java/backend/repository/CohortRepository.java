@@ -0,0 +1,34 @@
+package backend.repository;
+
+import backend.cohort.PatientBitmap;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads condition codes for the cohort index.
+ */
+@Repository
+public class CohortRepository {
+
+    private final JdbcTemplate jdbc;
+
+    public CohortRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * Streams every (code, patient) pair of the current database into bitmaps.
+     *
+     * @return patients per code, codes as stored
+     */
+    public Map<String, PatientBitmap> patientsByCode() {
+        Map<String, PatientBitmap> byCode = new HashMap<>();
+        jdbc.query("SELECT code, patient_id FROM [condition]", rs -> {
+            byCode.computeIfAbsent(rs.getString(1), c -> new PatientBitmap()).add(rs.getLong(2));
+        });
+        return byCode;
+    }
+}
@@ -0,0 +1,7 @@
+package backend.repository;
+
+import backend.model.EncounterNote;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface EncounterNoteRepository extends JpaRepository<EncounterNote, Long> {
+}
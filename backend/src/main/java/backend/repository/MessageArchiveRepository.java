@@ -0,0 +1,109 @@
+package backend.repository;
+
+import backend.archive.ArchivedMessage;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Moves old messages into message_archive_segment and reads segments back.
+ */
+@Repository
+public class MessageArchiveRepository {
+
+    /** A conversation, by its two user ids in ascending order. */
+    public record Pair(long low, long high) {}
+
+    /**
+     * One stored segment.
+     *
+     * @param id segment id; older segments of a conversation have lower ids
+     * @param body encoded messages, see {@link backend.archive.MessageSegments}
+     */
+    public record Segment(long id, int messageCount, byte[] body) {}
+
+    private final JdbcTemplate jdbc;
+
+    public MessageArchiveRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * @return the conversation of the oldest message sent before {@code cutoff}, if any
+     */
+    public Optional<Pair> oldestConversationBefore(LocalDateTime cutoff) {
+        return jdbc.query("""
+                SELECT TOP (1) sender_user_id, receiver_user_id
+                FROM dbo.message
+                WHERE sent_at < ?
+                ORDER BY sent_at
+                """, (rs, i) -> {
+            long a = rs.getLong(1);
+            long b = rs.getLong(2);
+            return new Pair(Math.min(a, b), Math.max(a, b));
+        }, Timestamp.valueOf(cutoff)).stream().findFirst();
+    }
+
+    /**
+     * @return up to {@code limit} of the conversation's oldest messages sent before {@code cutoff}, oldest first
+     */
+    public List<ArchivedMessage> oldestMessages(Pair pair, LocalDateTime cutoff, int limit) {
+        return jdbc.query("""
+                SELECT TOP (?) id, sender_user_id, receiver_user_id, content, sent_at, [read]
+                FROM dbo.message
+                WHERE ((sender_user_id = ? AND receiver_user_id = ?) OR (sender_user_id = ? AND receiver_user_id = ?))
+                  AND sent_at < ?
+                ORDER BY sent_at, id
+                """, (rs, i) -> new ArchivedMessage(
+                rs.getLong("id"),
+                rs.getLong("sender_user_id"),
+                rs.getLong("receiver_user_id"),
+                rs.getString("content"),
+                rs.getTimestamp("sent_at").toLocalDateTime(),
+                rs.getBoolean("read")
+        ), limit, pair.low(), pair.high(), pair.high(), pair.low(), Timestamp.valueOf(cutoff));
+    }
+
+    public void insertSegment(Pair pair, List<ArchivedMessage> messages, byte[] body) {
+        jdbc.update("""
+                INSERT INTO dbo.message_archive_segment (user_low, user_high, first_sent_at, last_sent_at, message_count, body)
+                VALUES (?, ?, ?, ?, ?, ?)
+                """, pair.low(), pair.high(),
+                Timestamp.valueOf(messages.get(0).sentAt()),
+                Timestamp.valueOf(messages.get(messages.size() - 1).sentAt()),
+                messages.size(), body);
+    }
+
+    public int deleteMessages(List<ArchivedMessage> messages) {
+        String placeholders = String.join(",", Collections.nCopies(messages.size(), "?"));
+        return jdbc.update("DELETE FROM dbo.message WHERE id IN (" + placeholders + ")",
+                messages.stream().map(ArchivedMessage::id).toArray());
+    }
+
+    /**
+     * @param before only segments with a lower id; null for the newest
+     * @return the conversation's newest segment below {@code before}
+     */
+    public Optional<Segment> segmentBefore(Pair pair, Long before) {
+        return jdbc.query("""
+                SELECT TOP (1) id, message_count, body
+                FROM dbo.message_archive_segment
+                WHERE user_low = ? AND user_high = ? AND id < ?
+                ORDER BY id DESC
+                """, (rs, i) -> new Segment(rs.getLong("id"), rs.getInt("message_count"), rs.getBytes("body")),
+                pair.low(), pair.high(), before == null ? Long.MAX_VALUE : before).stream().findFirst();
+    }
+
+    public boolean hasSegmentBefore(Pair pair, long before) {
+        return Boolean.TRUE.equals(jdbc.queryForObject("""
+                SELECT CASE WHEN EXISTS (
+                    SELECT 1 FROM dbo.message_archive_segment WHERE user_low = ? AND user_high = ? AND id < ?
+                ) THEN 1 ELSE 0 END
+                """, Boolean.class, pair.low(), pair.high(), before));
+    }
+}
@@ -0,0 +1,123 @@
+package backend.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Staging and merge steps of the CSV patient import.
+ *
+ * Rows are bulk copied into a staging table tagged with the job id and then merged into the
+ * real table in one set-based statement, which also skips rows whose key already exists.
+ * Call these inside a transaction so staging, merge and cleanup share one connection.
+ */
+@Repository
+public class PatientImportRepository {
+
+    public record StagedPatient(int line, String personnummer, String name, LocalDate birthDate,
+                                String gender, String contactInfo) {}
+
+    /** passwordHash goes into users.password_hash as is, so it must already be hashed. */
+    public record StagedUser(int line, String username, String passwordHash, Long patientId) {}
+
+    private final JdbcTemplate jdbc;
+
+    public PatientImportRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public void stagePatients(String jobId, List<StagedPatient> rows) {
+        new BulkRows(rows.stream().map(p -> new Object[]{
+                jobId, p.line(), p.personnummer(), p.name(),
+                p.birthDate() == null ? null : Date.valueOf(p.birthDate()), p.gender(), p.contactInfo()
+        }).toList())
+                .column("job_id", Types.CHAR, 36)
+                .column("line_no", Types.INTEGER, 10)
+                .column("personnummer", Types.VARCHAR, 32)
+                .column("name", Types.VARCHAR, 255)
+                .column("birth_date", Types.DATE, 10)
+                .column("gender", Types.VARCHAR, 20)
+                .column("contact_info", Types.VARCHAR, 255)
+                .copyInto(jdbc, "dbo.patient_import_staging");
+    }
+
+    /**
+     * Inserts the staged patients whose personnummer is not taken yet and clears the stage.
+     *
+     * @return new patient id by line number; staged lines missing from the map already existed
+     */
+    public Map<Integer, Long> mergePatients(String jobId) {
+        Map<Integer, Long> created = new HashMap<>();
+        jdbc.query("""
+                MERGE dbo.patient WITH (HOLDLOCK) AS t
+                USING (SELECT * FROM dbo.patient_import_staging WHERE job_id = ?) AS s
+                ON t.personnummer = s.personnummer
+                WHEN NOT MATCHED BY TARGET THEN
+                    INSERT (personnummer, name, birth_date, gender, contact_info)
+                    VALUES (s.personnummer, s.name, s.birth_date, s.gender, s.contact_info)
+                OUTPUT s.line_no, inserted.id;
+                """, rs -> {
+            created.put(rs.getInt(1), rs.getLong(2));
+        }, jobId);
+        jdbc.update("DELETE FROM dbo.patient_import_staging WHERE job_id = ?", jobId);
+        return created;
+    }
+
+    /**
+     * @return line numbers of the given users whose username is already registered
+     */
+    public Set<Integer> takenUsernames(String jobId, List<StagedUser> rows) {
+        stageUsers(jobId, rows);
+        Set<Integer> taken = new HashSet<>(jdbc.queryForList("""
+                SELECT s.line_no
+                FROM dbo.user_import_staging s
+                JOIN dbo.users u ON u.username = s.username
+                WHERE s.job_id = ?
+                """, Integer.class, jobId));
+        jdbc.update("DELETE FROM dbo.user_import_staging WHERE job_id = ?", jobId);
+        return taken;
+    }
+
+    /**
+     * Creates PATIENT accounts for the given users, skipping usernames that are taken, and clears the stage.
+     *
+     * @return new user id by line number
+     */
+    public Map<Integer, Long> mergeUsers(String jobId, List<StagedUser> rows) {
+        stageUsers(jobId, rows);
+        Map<Integer, Long> created = new HashMap<>();
+        jdbc.query("""
+                MERGE dbo.users WITH (HOLDLOCK) AS t
+                USING (SELECT * FROM dbo.user_import_staging WHERE job_id = ?) AS s
+                ON t.username = s.username
+                WHEN NOT MATCHED BY TARGET THEN
+                    INSERT (username, password_hash, role, patient_id)
+                    VALUES (s.username, s.password_hash, 'PATIENT', s.patient_id)
+                OUTPUT s.line_no, inserted.id;
+                """, rs -> {
+            created.put(rs.getInt(1), rs.getLong(2));
+        }, jobId);
+        jdbc.update("DELETE FROM dbo.user_import_staging WHERE job_id = ?", jobId);
+        return created;
+    }
+
+    private void stageUsers(String jobId, List<StagedUser> rows) {
+        new BulkRows(rows.stream().map(u -> new Object[]{
+                jobId, u.line(), u.username(), u.passwordHash(), u.patientId()
+        }).toList())
+                .column("job_id", Types.CHAR, 36)
+                .column("line_no", Types.INTEGER, 10)
+                .column("username", Types.VARCHAR, 100)
+                .column("password_hash", Types.VARCHAR, 100)
+                .column("patient_id", Types.BIGINT, 19)
+                .copyInto(jdbc, "dbo.user_import_staging");
+    }
+}
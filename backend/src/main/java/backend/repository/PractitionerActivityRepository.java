@@ -0,0 +1,113 @@
+package backend.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The practitioner_daily_activity rollup: encounters and diagnoses per practitioner and day
+ * on the current database. Writers bump it in their own transaction; {@link #reconcile}
+ * recounts a range of days from the source tables.
+ */
+@Repository
+public class PractitionerActivityRepository {
+
+    /**
+     * Activity of one practitioner in one period.
+     *
+     * @param period the day, or the Monday of the week
+     */
+    public record Activity(long practitionerId, LocalDate period, long encounters, long diagnoses) {}
+
+    private final JdbcTemplate jdbc;
+
+    public PractitionerActivityRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public void addEncounter(long practitionerId, LocalDate day) {
+        add(practitionerId, day, 1, 0);
+    }
+
+    public void addDiagnosis(long practitionerId, LocalDate day) {
+        add(practitionerId, day, 0, 1);
+    }
+
+    private void add(long practitionerId, LocalDate day, int encounters, int diagnoses) {
+        jdbc.update("""
+                MERGE dbo.practitioner_daily_activity WITH (HOLDLOCK) AS t
+                USING (SELECT ? AS practitioner_id, ? AS day) AS s
+                ON t.practitioner_id = s.practitioner_id AND t.day = s.day
+                WHEN MATCHED THEN
+                    UPDATE SET encounters = t.encounters + ?, diagnoses = t.diagnoses + ?
+                WHEN NOT MATCHED THEN
+                    INSERT (practitioner_id, day, encounters, diagnoses) VALUES (s.practitioner_id, s.day, ?, ?);
+                """, practitionerId, Date.valueOf(day), encounters, diagnoses, encounters, diagnoses);
+    }
+
+    /**
+     * Recounts the days {@code [from, to)} from encounter and [condition] and corrects the rollup.
+     *
+     * @return rollup rows that were inserted, changed or removed
+     */
+    public int reconcile(LocalDate from, LocalDate to) {
+        Date start = Date.valueOf(from);
+        Date end = Date.valueOf(to);
+        return jdbc.update("""
+                MERGE dbo.practitioner_daily_activity WITH (HOLDLOCK) AS t
+                USING (
+                    SELECT practitioner_id, day, SUM(encounters) AS encounters, SUM(diagnoses) AS diagnoses
+                    FROM (
+                        SELECT practitioner_id, CAST(start_time AS DATE) AS day, 1 AS encounters, 0 AS diagnoses
+                        FROM dbo.encounter
+                        WHERE practitioner_id IS NOT NULL AND start_time >= ? AND start_time < ?
+                        UNION ALL
+                        SELECT asserted_by_practitioner_id, CAST(recorded_at AS DATE), 0, 1
+                        FROM dbo.[condition]
+                        WHERE asserted_by_practitioner_id IS NOT NULL AND recorded_at >= ? AND recorded_at < ?
+                    ) activity
+                    GROUP BY practitioner_id, day
+                ) AS s
+                ON t.practitioner_id = s.practitioner_id AND t.day = s.day
+                WHEN MATCHED AND (t.encounters <> s.encounters OR t.diagnoses <> s.diagnoses) THEN
+                    UPDATE SET encounters = s.encounters, diagnoses = s.diagnoses
+                WHEN NOT MATCHED BY TARGET THEN
+                    INSERT (practitioner_id, day, encounters, diagnoses)
+                    VALUES (s.practitioner_id, s.day, s.encounters, s.diagnoses)
+                WHEN NOT MATCHED BY SOURCE AND t.day >= ? AND t.day < ? THEN
+                    DELETE;
+                """, start, end, start, end, start, end);
+    }
+
+    /**
+     * @param from first day, inclusive
+     * @param to last day, exclusive
+     * @param practitionerId only this practitioner, or null for all
+     * @param weekly sum per ISO week (periods are Mondays) instead of per day
+     * @return activity per practitioner and period
+     */
+    public List<Activity> range(LocalDate from, LocalDate to, Long practitionerId, boolean weekly) {
+        // 1900-01-01 was a Monday, so this is the week's Monday whatever DATEFIRST is
+        String period = weekly ? "DATEADD(day, -(DATEDIFF(day, '19000101', day) % 7), day)" : "day";
+        List<Object> args = new ArrayList<>(List.of(Date.valueOf(from), Date.valueOf(to)));
+        String filter = "";
+        if (practitionerId != null) {
+            filter = " AND practitioner_id = ?";
+            args.add(practitionerId);
+        }
+        String sql = "SELECT practitioner_id, " + period + " AS period, SUM(encounters) AS encounters, SUM(diagnoses) AS diagnoses"
+                + " FROM dbo.practitioner_daily_activity WHERE day >= ? AND day < ?" + filter
+                + " GROUP BY practitioner_id, " + period;
+
+        return jdbc.query(sql, (rs, i) -> new Activity(
+                rs.getLong("practitioner_id"),
+                rs.getDate("period").toLocalDate(),
+                rs.getLong("encounters"),
+                rs.getLong("diagnoses")
+        ), args.toArray());
+    }
+}
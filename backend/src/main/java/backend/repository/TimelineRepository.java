@@ -0,0 +1,114 @@
+package backend.repository;
+
+import backend.timeline.TimelineCursor;
+import backend.timeline.TimelineEntry;
+import backend.timeline.TimelineEntry.Kind;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+/**
+ * Keyset queries behind the patient timeline. Each method returns one source's rows
+ * after a cursor in (time, id) order, so they can be merged without sorting.
+ * Rows without a timestamp have no place on the timeline and are skipped.
+ */
+@Repository
+public class TimelineRepository {
+
+    private final JdbcTemplate jdbc;
+
+    public TimelineRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public List<TimelineEntry> encountersAfter(long patientId, TimelineCursor after, int limit) {
+        String sql = """
+                SELECT TOP (?) id, start_time, practitioner_id, note_preview AS summary
+                FROM encounter
+                WHERE patient_id = ? AND start_time IS NOT NULL
+                """ + (after == null ? "" : " AND (start_time > ? OR (start_time = ? AND id > ?))") + """
+                 ORDER BY start_time, id
+                """;
+        Object[] args = after == null
+                ? new Object[]{limit, patientId}
+                : new Object[]{limit, patientId,
+                        Timestamp.valueOf(after.at()), Timestamp.valueOf(after.at()), after.idThresholdFor(Kind.ENCOUNTER)};
+
+        return jdbc.query(sql, (rs, i) -> new TimelineEntry(
+                Kind.ENCOUNTER,
+                rs.getLong("id"),
+                rs.getTimestamp("start_time").toLocalDateTime(),
+                rs.getString("summary"),
+                rs.getObject("practitioner_id", Long.class)
+        ), args);
+    }
+
+    public List<TimelineEntry> conditionsAfter(long patientId, TimelineCursor after, int limit) {
+        String sql = """
+                SELECT TOP (?) id, onset_date, code, display, asserted_by_practitioner_id
+                FROM [condition]
+                WHERE patient_id = ? AND onset_date IS NOT NULL
+                """ + (after == null ? "" : " AND (onset_date > ? OR (onset_date = ? AND id > ?))") + """
+                 ORDER BY onset_date, id
+                """;
+        Object[] args;
+        if (after == null) {
+            args = new Object[]{limit, patientId};
+        } else {
+            // a condition sits at midnight of its onset date, so it only ties with a cursor at midnight
+            LocalDate day = after.at().toLocalDate();
+            long threshold = after.at().toLocalTime().equals(LocalTime.MIDNIGHT)
+                    ? after.idThresholdFor(Kind.CONDITION)
+                    : Long.MAX_VALUE;
+            args = new Object[]{limit, patientId, day, day, threshold};
+        }
+
+        return jdbc.query(sql, (rs, i) -> new TimelineEntry(
+                Kind.CONDITION,
+                rs.getLong("id"),
+                rs.getDate("onset_date").toLocalDate().atStartOfDay(),
+                join(rs.getString("code"), rs.getString("display")),
+                rs.getObject("asserted_by_practitioner_id", Long.class)
+        ), args);
+    }
+
+    public List<TimelineEntry> observationsAfter(long patientId, TimelineCursor after, int limit) {
+        String sql = """
+                SELECT TOP (?) id, observed_at, type, value, unit, recorded_by_practitioner_id
+                FROM observation
+                WHERE patient_id = ? AND observed_at IS NOT NULL
+                """ + (after == null ? "" : " AND (observed_at > ? OR (observed_at = ? AND id > ?))") + """
+                 ORDER BY observed_at, id
+                """;
+        Object[] args = after == null
+                ? new Object[]{limit, patientId}
+                : new Object[]{limit, patientId,
+                        Timestamp.valueOf(after.at()), Timestamp.valueOf(after.at()), after.idThresholdFor(Kind.OBSERVATION)};
+
+        return jdbc.query(sql, (rs, i) -> new TimelineEntry(
+                Kind.OBSERVATION,
+                rs.getLong("id"),
+                rs.getTimestamp("observed_at").toLocalDateTime(),
+                join(label(rs.getString("type")), rs.getString("value"), rs.getString("unit")),
+                rs.getObject("recorded_by_practitioner_id", Long.class)
+        ), args);
+    }
+
+    private static String label(String type) {
+        return type == null ? null : type + ":";
+    }
+
+    private static String join(String... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (String p : parts) {
+            if (p == null || p.isBlank()) continue;
+            if (!sb.isEmpty()) sb.append(' ');
+            sb.append(p);
+        }
+        return sb.toString();
+    }
+}
@@ -2,13 +2,77 @@ package backend.repository;
 
 import backend.model.Role;
 import backend.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByUsername(String username);
     Optional<User> findByUsername(String username);
     List<User> findByRole(Role role);
+
+    // only if nobody changed it meanwhile; used to replace plaintext and outdated hashes on login
+    @Modifying
+    @Transactional
+    @Query("update User u set u.password = :hash where u.id = :id and u.password = :previous")
+    int replacePassword(@Param("id") Long id, @Param("previous") String previous, @Param("hash") String hash);
+
+    // keyset page over the primary key; role and pattern are optional, pattern is a LIKE pattern escaped with '\'.
+    // Each combination of filters is its own statement with a plan for its own index, instead of
+    // one cached plan shared by all of them
+    default List<UserSummary> findPage(long afterId, Role role, String pattern, Limit limit) {
+        if (role == null && pattern == null) return findPageAfter(afterId, limit);
+        if (pattern == null) return findPageByRole(afterId, role, limit);
+        if (role == null) return findPageByPattern(afterId, pattern, limit);
+        return findPageByRoleAndPattern(afterId, role, pattern, limit);
+    }
+
+    @Query("""
+            select u.id as id, u.username as username, u.role as role from User u
+            where u.id > :afterId
+            order by u.id
+            """)
+    List<UserSummary> findPageAfter(@Param("afterId") long afterId, Limit limit);
+
+    @Query("""
+            select u.id as id, u.username as username, u.role as role from User u
+            where u.id > :afterId and u.role = :role
+            order by u.id
+            """)
+    List<UserSummary> findPageByRole(@Param("afterId") long afterId, @Param("role") Role role, Limit limit);
+
+    @Query("""
+            select u.id as id, u.username as username, u.role as role from User u
+            where u.id > :afterId and u.username like :pattern escape '\\'
+            order by u.id
+            """)
+    List<UserSummary> findPageByPattern(@Param("afterId") long afterId, @Param("pattern") String pattern, Limit limit);
+
+    @Query("""
+            select u.id as id, u.username as username, u.role as role from User u
+            where u.id > :afterId and u.role = :role and u.username like :pattern escape '\\'
+            order by u.id
+            """)
+    List<UserSummary> findPageByRoleAndPattern(@Param("afterId") long afterId, @Param("role") Role role,
+                                               @Param("pattern") String pattern, Limit limit);
+
+    // same filters as findPage, read as a stream; only use inside a transaction and close it
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("""
+            select u.id as id, u.username as username, u.role as role from User u
+            where (:role is null or u.role = :role)
+              and (:pattern is null or u.username like :pattern escape '\\')
+            order by u.id
+            """)
+    Stream<UserSummary> streamAll(@Param("role") Role role, @Param("pattern") String pattern);
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package backend.repository;
+
+import backend.model.Role;
+
+/**
+ * The columns of a user that listings need, read without loading the entity.
+ */
+public interface UserSummary {
+    Long getId();
+    String getUsername();
+    Role getRole();
+}
@@ -0,0 +1,156 @@
+package backend.seed;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Names, diagnoses and phrases the synthetic records are drawn from.
+ * Diagnoses are listed most common first; {@link #diagnosis} picks them with Zipf weights,
+ * so a handful of codes make up most rows, as in primary care.
+ */
+final class ClinicalCatalog {
+
+    private ClinicalCatalog() {
+    }
+
+    /**
+     * @param code ICD-10 code
+     * @param display Swedish name
+     * @param minAge youngest age the diagnosis is given at
+     */
+    record Diagnosis(String code, String display, int minAge) {}
+
+    static final String INFECTION = "J06.9";
+    static final String HYPERTENSION = "I10";
+    static final String DIABETES = "E11.9";
+    static final String OBESITY = "E66.9";
+
+    static final List<Diagnosis> DIAGNOSES = List.of(
+            new Diagnosis(INFECTION, "Akut övre luftvägsinfektion", 0),
+            new Diagnosis(HYPERTENSION, "Essentiell hypertoni", 30),
+            new Diagnosis("M54.5", "Lumbago", 16),
+            new Diagnosis(DIABETES, "Typ 2-diabetes utan komplikationer", 30),
+            new Diagnosis("J45.9", "Astma, ospecificerad", 3),
+            new Diagnosis("F32.9", "Depressiv episod, ospecificerad", 14),
+            new Diagnosis("F41.1", "Generaliserat ångestsyndrom", 14),
+            new Diagnosis("E78.0", "Ren hyperkolesterolemi", 30),
+            new Diagnosis("N39.0", "Urinvägsinfektion", 0),
+            new Diagnosis("K21.9", "Gastroesofageal refluxsjukdom", 18),
+            new Diagnosis("L20.9", "Atopiskt eksem", 0),
+            new Diagnosis("M17.9", "Knäledsartros", 45),
+            new Diagnosis("E03.9", "Hypotyreos", 20),
+            new Diagnosis("I48.9", "Förmaksflimmer", 50),
+            new Diagnosis(OBESITY, "Fetma", 12),
+            new Diagnosis("J44.9", "Kroniskt obstruktiv lungsjukdom", 45),
+            new Diagnosis("H66.9", "Akut mellanöreinflammation", 0),
+            new Diagnosis("G43.9", "Migrän", 10),
+            new Diagnosis("I25.9", "Kronisk ischemisk hjärtsjukdom", 45),
+            new Diagnosis("M81.9", "Osteoporos", 55),
+            new Diagnosis("N18.3", "Kronisk njursjukdom, stadium 3", 50),
+            new Diagnosis("D50.9", "Järnbristanemi", 0),
+            new Diagnosis("L40.0", "Psoriasis vulgaris", 10),
+            new Diagnosis("G47.0", "Insomni", 16),
+            new Diagnosis("K58.9", "Colon irritabile", 16),
+            new Diagnosis("F90.0", "ADHD", 5),
+            new Diagnosis("J18.9", "Pneumoni", 0),
+            new Diagnosis("I50.9", "Hjärtsvikt", 55),
+            new Diagnosis("M06.9", "Reumatoid artrit", 25),
+            new Diagnosis("S52.5", "Fraktur på nedre änden av radius", 0),
+            new Diagnosis("I63.9", "Cerebral infarkt", 50),
+            new Diagnosis("G30.9", "Alzheimers sjukdom", 65));
+
+    private static final double[] DIAGNOSIS_CUMULATIVE = zipf(DIAGNOSES.size(), 1.1);
+
+    /** A diagnosis drawn by Zipf rank: the first one is about 28% of all draws, the last one under 1%. */
+    static Diagnosis diagnosis(SplittableRandom random) {
+        double u = random.nextDouble();
+        int lo = 0;
+        int hi = DIAGNOSIS_CUMULATIVE.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (DIAGNOSIS_CUMULATIVE[mid] < u) lo = mid + 1;
+            else hi = mid;
+        }
+        return DIAGNOSES.get(lo);
+    }
+
+    private static double[] zipf(int n, double exponent) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 1; rank <= n; rank++) {
+            sum += 1 / Math.pow(rank, exponent);
+            cumulative[rank - 1] = sum;
+        }
+        for (int i = 0; i < n; i++) cumulative[i] /= sum;
+        return cumulative;
+    }
+
+    static final String[] FEMALE_NAMES = {"Anna", "Eva", "Maria", "Karin", "Sara", "Christina", "Lena", "Emma",
+            "Kerstin", "Ingrid", "Marie", "Malin", "Sofia", "Linnea", "Elsa", "Astrid", "Maja", "Ebba", "Ida", "Birgitta"};
+    static final String[] MALE_NAMES = {"Lars", "Mikael", "Anders", "Johan", "Erik", "Per", "Karl", "Peter",
+            "Thomas", "Jan", "Daniel", "Fredrik", "Hans", "Andreas", "Oskar", "William", "Lucas", "Hugo", "Nils", "Olof"};
+    static final String[] SURNAMES = {"Andersson", "Johansson", "Karlsson", "Nilsson", "Eriksson", "Larsson",
+            "Olsson", "Persson", "Svensson", "Gustafsson", "Pettersson", "Jonsson", "Jansson", "Hansson", "Bengtsson",
+            "Jönsson", "Lindberg", "Jakobsson", "Magnusson", "Lindström", "Olofsson", "Lindqvist", "Lindgren",
+            "Berg", "Axelsson", "Bergström", "Lundberg", "Lind", "Lundgren", "Mattsson", "Berglund", "Fredriksson"};
+    static final String[] TOWNS = {"Stockholm", "Göteborg", "Malmö", "Uppsala", "Västerås", "Örebro", "Linköping",
+            "Helsingborg", "Jönköping", "Norrköping", "Lund", "Umeå", "Gävle", "Borås", "Luleå", "Kiruna"};
+    static final String[] STREETS = {"Storgatan", "Kyrkogatan", "Drottninggatan", "Skolgatan", "Järnvägsgatan",
+            "Parkvägen", "Björkvägen", "Ringvägen", "Södra vägen", "Hamngatan", "Tallvägen", "Ekvägen"};
+
+    static final String[] REASONS = {"hosta och feber", "ryggsmärta", "trötthet", "huvudvärk", "uppföljning",
+            "receptförnyelse", "yrsel", "bröstsmärta", "hudutslag", "magbesvär", "sömnsvårigheter", "ledvärk"};
+
+    static final String[] NOTE_SENTENCES = {
+            "Allmäntillstånd gott, opåverkad.",
+            "Cor: regelbunden rytm, inga blåsljud.",
+            "Pulm: vesikulära andningsljud bilateralt, inga biljud.",
+            "Buk: mjuk och oöm, inga palpabla resistenser.",
+            "Inga hållpunkter för allvarlig bakomliggande sjukdom.",
+            "Patienten informerad om varningstecken och när ny kontakt ska tas.",
+            "Åter vid försämring eller utebliven förbättring inom en vecka.",
+            "Läkemedelslistan genomgången och uppdaterad.",
+            "Provtagning beställd, svar meddelas via 1177.",
+            "Sjukskrivning ej aktuell i nuläget.",
+            "Neurologstatus utan anmärkning.",
+            "Munhåla och svalg utan anmärkning, inga förstorade lymfkörtlar.",
+            "Patienten upplever viss förbättring sedan förra besöket.",
+            "Överenskommet om telefonuppföljning om två veckor."};
+
+    static final Map<String, String[]> CONDITION_SENTENCES = Map.of(
+            HYPERTENSION, new String[]{"Hemblodtryck i genomsnitt något förhöjt.",
+                    "Fortsatt behandling med ACE-hämmare, dosen oförändrad."},
+            DIABETES, new String[]{"Blodsocker stabilt enligt egenmätningar.",
+                    "Fotstatus utan sår, sensibilitet bevarad.", "Metformin fortsätter i oförändrad dos."},
+            INFECTION, new String[]{"Lätt rodnad i svalget, ingen beläggning.", "Symtomatisk behandling rekommenderas."},
+            "J45.9", new String[]{"Astmakontroll god, använder inhalator som ordinerat."},
+            "F32.9", new String[]{"Stämningsläget något bättre, sover bättre.", "PHQ-9 genomförd, poängen har sjunkit."},
+            "M54.5", new String[]{"Rörelsesmärta i ländryggen, inga neurologiska bortfall.",
+                    "Remiss till fysioterapeut skickad."},
+            "I48.9", new String[]{"Oregelbunden rytm, frekvens kontrollerad.", "Antikoagulation fortsätter."},
+            OBESITY, new String[]{"Samtal om kost och fysisk aktivitet.", "Vikten något minskad sedan förra mätningen."});
+
+    static final String[] PATIENT_MESSAGES = {
+            "Hej! Jag undrar om provsvaren har kommit?",
+            "Tack för senast. Medicinen verkar hjälpa.",
+            "Jag har fortfarande ont, ska jag boka en ny tid?",
+            "Kan jag få receptet förnyat?",
+            "Jag har fått biverkningar, yrsel och illamående. Vad ska jag göra?",
+            "Behöver jag fasta inför provtagningen?",
+            "Hej, jag vill flytta min tid nästa vecka.",
+            "Blodtrycket hemma har legat runt 145/90 den senaste veckan."};
+
+    static final String[] PRACTITIONER_MESSAGES = {
+            "Hej! Provsvaren är normala, ingen åtgärd behövs.",
+            "Receptet är förnyat och finns på apoteket.",
+            "Boka gärna en tid så undersöker vi dig igen.",
+            "Fortsätt med nuvarande dos och hör av dig om det inte blir bättre.",
+            "Du behöver fasta från midnatt inför provtagningen.",
+            "Tack för informationen, vi tar upp det vid nästa besök.",
+            "Sänk dosen till hälften och återkom om en vecka."};
+
+    static String pick(SplittableRandom random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
@@ -0,0 +1,225 @@
+package backend.seed;
+
+import backend.repository.BulkRows;
+import backend.repository.PractitionerActivityRepository;
+import backend.seed.SyntheticRecords.Batch;
+import backend.seed.SyntheticRecords.Ids;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes {@link SyntheticRecords} to the database.
+ *
+ * The staff rows go first; then the patient chunks are generated and written on a pool of
+ * threads, each chunk in its own transaction, one bulk copy per table. Rows keep the ids the
+ * generator gave them, so the identity counters are moved past them at the end, and the
+ * practitioner activity rollup is recounted for the generated period.
+ *
+ * Meant for an empty or previously seeded database with a single shard. A chunk that fails
+ * (for example on a personnummer left by an earlier run with another seed) rolls back on its
+ * own and stops the load; chunks already written stay.
+ */
+public class SeedLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(SeedLoader.class);
+
+    private static final List<String> TABLES = List.of("organization", "location", "practitioner", "users",
+            "patient", "encounter", "[condition]", "observation", "message");
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final PractitionerActivityRepository activity;
+    private final int threads;
+
+    /**
+     * @param jdbc connection to the database to fill
+     * @param transactionManager used for one transaction per chunk
+     * @param activity recounted once the rows are in
+     * @param threads chunks generated and written at the same time; each holds a connection
+     */
+    public SeedLoader(JdbcTemplate jdbc, PlatformTransactionManager transactionManager,
+                      PractitionerActivityRepository activity, int threads) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.activity = activity;
+        this.threads = threads;
+    }
+
+    /**
+     * @return one past the highest id in each table, where generated rows start
+     */
+    public Ids nextIds() {
+        long[] next = new long[TABLES.size()];
+        for (int i = 0; i < next.length; i++) {
+            next[i] = jdbc.queryForObject("SELECT ISNULL(MAX(id), 0) + 1 FROM dbo." + TABLES.get(i), Long.class);
+        }
+        return new Ids(next[0], next[1], next[2], next[3], next[4], next[5], next[6], next[7], next[8]);
+    }
+
+    public void load(SyntheticRecords records) {
+        long started = System.nanoTime();
+        Batch staff = records.staff();
+        tx.executeWithoutResult(status -> write(staff));
+
+        int chunks = records.chunks();
+        AtomicInteger done = new AtomicInteger();
+        AtomicLong rows = new AtomicLong();
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "seed-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(chunks);
+            for (int c = 0; c < chunks; c++) {
+                int chunk = c;
+                futures.add(pool.submit(() -> {
+                    Batch batch = records.chunk(chunk);
+                    tx.executeWithoutResult(status -> write(batch));
+                    long total = rows.addAndGet(batch.rows());
+                    int finished = done.incrementAndGet();
+                    if (finished % Math.max(1, chunks / 20) == 0 || finished == chunks) {
+                        log.info("Seed: {}/{} chunks, {} rows, {} rows/s", finished, chunks, total,
+                                total * 1_000_000_000L / Math.max(1, System.nanoTime() - started));
+                    }
+                }));
+            }
+            for (Future<?> f : futures) f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while seeding", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException("Seeding failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // with explicit ids the identity counters may still point below the rows just written
+        for (String table : TABLES) {
+            jdbc.execute("DBCC CHECKIDENT ('dbo." + table + "', RESEED) WITH NO_INFOMSGS");
+        }
+        // a year per statement keeps each recount's transaction and memory grant small
+        for (LocalDate year = records.firstDay(); year.isBefore(records.until()); year = year.plusYears(1)) {
+            LocalDate from = year;
+            LocalDate to = year.plusYears(1).isBefore(records.until()) ? year.plusYears(1) : records.until();
+            tx.executeWithoutResult(status -> activity.reconcile(from, to));
+        }
+        log.info("Seed: {} rows in {} s", rows.get() + staff.rows(),
+                (System.nanoTime() - started) / 1_000_000_000L);
+    }
+
+    private void write(Batch batch) {
+        if (!batch.organizations().isEmpty()) {
+            new BulkRows(batch.organizations()).keepIdentity()
+                    .column("id", Types.BIGINT, 19)
+                    .column("name", Types.VARCHAR, 255)
+                    .column("type", Types.VARCHAR, 100)
+                    .column("address", Types.VARCHAR, 255)
+                    .copyInto(jdbc, "dbo.organization");
+        }
+        if (!batch.locations().isEmpty()) {
+            new BulkRows(batch.locations()).keepIdentity()
+                    .column("id", Types.BIGINT, 19)
+                    .column("name", Types.VARCHAR, 255)
+                    .column("address", Types.VARCHAR, 255)
+                    .copyInto(jdbc, "dbo.location");
+        }
+        if (!batch.practitioners().isEmpty()) {
+            new BulkRows(batch.practitioners()).keepIdentity()
+                    .column("id", Types.BIGINT, 19)
+                    .column("name", Types.VARCHAR, 255)
+                    .column("title", Types.VARCHAR, 100)
+                    .column("organization_id", Types.BIGINT, 19)
+                    .copyInto(jdbc, "dbo.practitioner");
+        }
+        // patients before their accounts and records, for the foreign keys
+        if (!batch.patients().isEmpty()) {
+            new BulkRows(batch.patients()).keepIdentity()
+                    .column("id", Types.BIGINT, 19)
+                    .column("personnummer", Types.VARCHAR, 32)
+                    .column("name", Types.VARCHAR, 255)
+                    .column("birth_date", Types.DATE, 10)
+                    .column("gender", Types.VARCHAR, 20)
+                    .column("contact_info", Types.VARCHAR, 255)
+                    .copyInto(jdbc, "dbo.patient");
+        }
+        if (!batch.users().isEmpty()) {
+            new BulkRows(batch.users()).keepIdentity()
+                    .column("id", Types.BIGINT, 19)
+                    .column("username", Types.VARCHAR, 100)
+                    .column("password_hash", Types.VARCHAR, 100)
+                    .column("role", Types.VARCHAR, 20)
+                    .column("patient_id", Types.BIGINT, 19)
+                    .column("practitioner_id", Types.BIGINT, 19)
+                    .copyInto(jdbc, "dbo.users");
+        }
+        if (!batch.conditions().isEmpty()) {
+            new BulkRows(batch.conditions()).keepIdentity()
+                    .column("id", Types.BIGINT, 19)
+                    .column("patient_id", Types.BIGINT, 19)
+                    .column("code", Types.VARCHAR, 50)
+                    .column("display", Types.VARCHAR, 255)
+                    .column("onset_date", Types.DATE, 10)
+                    .column("recorded_at", Types.TIMESTAMP, 27)
+                    .column("asserted_by_practitioner_id", Types.BIGINT, 19)
+                    .copyInto(jdbc, "dbo.[condition]");
+        }
+        if (!batch.encounters().isEmpty()) {
+            new BulkRows(batch.encounters()).keepIdentity()
+                    .column("id", Types.BIGINT, 19)
+                    .column("patient_id", Types.BIGINT, 19)
+                    .column("practitioner_id", Types.BIGINT, 19)
+                    .column("location_id", Types.BIGINT, 19)
+                    .column("start_time", Types.TIMESTAMP, 27)
+                    .column("end_time", Types.TIMESTAMP, 27)
+                    .column("note_preview", Types.NVARCHAR, 200)
+                    .copyInto(jdbc, "dbo.encounter");
+        }
+        if (!batch.notes().isEmpty()) {
+            new BulkRows(batch.notes())
+                    .column("encounter_id", Types.BIGINT, 19)
+                    .column("body", Types.VARBINARY, Integer.MAX_VALUE)
+                    .copyInto(jdbc, "dbo.encounter_note");
+        }
+        if (!batch.observations().isEmpty()) {
+            new BulkRows(batch.observations()).keepIdentity()
+                    .column("id", Types.BIGINT, 19)
+                    .column("patient_id", Types.BIGINT, 19)
+                    .column("type", Types.VARCHAR, 100)
+                    .column("value", Types.VARCHAR, 100)
+                    .column("unit", Types.VARCHAR, 50)
+                    .column("observed_at", Types.TIMESTAMP, 27)
+                    .column("recorded_by_practitioner_id", Types.BIGINT, 19)
+                    .column("encounter_id", Types.BIGINT, 19)
+                    .copyInto(jdbc, "dbo.observation");
+        }
+        if (!batch.messages().isEmpty()) {
+            new BulkRows(batch.messages()).keepIdentity()
+                    .column("id", Types.BIGINT, 19)
+                    .column("sender_user_id", Types.BIGINT, 19)
+                    .column("receiver_user_id", Types.BIGINT, 19)
+                    .column("content", Types.NVARCHAR, Integer.MAX_VALUE)
+                    .column("sent_at", Types.TIMESTAMP, 27)
+                    .column("read", Types.BIT, 1)
+                    .copyInto(jdbc, "dbo.message");
+        }
+    }
+}
@@ -0,0 +1,408 @@
+package backend.seed;
+
+import backend.imports.Personnummer;
+import backend.model.CompressedTextConverter;
+import backend.model.EncounterNote;
+import backend.model.Role;
+import backend.seed.ClinicalCatalog.Diagnosis;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static backend.seed.ClinicalCatalog.pick;
+
+/**
+ * Deterministic synthetic records for scale testing: clinics and practitioners with their
+ * accounts, then patients with an account, diagnoses, encounters with notes, observations and
+ * a message thread with their doctor.
+ *
+ * Patients are generated in chunks. Each chunk draws from its own random stream, derived from
+ * the seed and the chunk number, and numbers its rows from ids reserved for its patients, so a
+ * chunk comes out the same whichever thread generates it and in whatever order. The same seed,
+ * size and end date always give the same rows.
+ *
+ * Rows are correlated the way the clinical views see them: older patients have more diagnoses
+ * and visits, observations follow the diagnoses (blood pressure with hypertension, HbA1c with
+ * diabetes), notes mention them, and most care is with the patient's own doctor. Diagnosis codes
+ * are Zipf-distributed, note lengths log-normal and thread lengths Pareto-distributed, so a few
+ * codes, notes and conversations are much larger than the rest.
+ *
+ * Patients get coordination numbers (day of birth + 60), which never collide with the
+ * personnummer of real people loaded through the CSV import.
+ */
+public final class SyntheticRecords {
+
+    /** First id to use in each table; every generated row carries an explicit id. */
+    public record Ids(long organization, long location, long practitioner, long user, long patient,
+                      long encounter, long condition, long observation, long message) {}
+
+    /** Rows per table, values in the column order {@link SeedLoader} writes them in. */
+    public record Batch(List<Object[]> organizations, List<Object[]> locations, List<Object[]> practitioners,
+                        List<Object[]> patients, List<Object[]> users, List<Object[]> conditions,
+                        List<Object[]> encounters, List<Object[]> notes, List<Object[]> observations,
+                        List<Object[]> messages) {
+
+        static Batch empty() {
+            return new Batch(new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>(),
+                    new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>(),
+                    new ArrayList<>(), new ArrayList<>());
+        }
+
+        public int rows() {
+            return organizations.size() + locations.size() + practitioners.size() + patients.size() + users.size()
+                    + conditions.size() + encounters.size() + notes.size() + observations.size() + messages.size();
+        }
+    }
+
+    // most a patient can have; each patient reserves this many ids in the table
+    static final int MAX_CONDITIONS = 12;
+    static final int MAX_ENCOUNTERS = 60;
+    static final int MAX_OBSERVATIONS_PER_ENCOUNTER = 5;
+    static final int MAX_MESSAGES = 400;
+
+    private static final int MAX_NOTE_SENTENCES = 200;
+    private static final int PRACTITIONERS_PER_CLINIC = 8;
+    private static final int MAX_AGE = 100;
+    private static final int CONDITION_YEARS = 30;
+    // serials 010-999: odd for men, even for women
+    private static final int FIRST_SERIAL = 10;
+
+    private final long seed;
+    private final int patients;
+    private final int chunkSize;
+    private final int doctors;
+    private final int nurses;
+    private final int clinics;
+    private final int historyYears;
+    private final LocalDate until;
+    private final LocalDateTime end;
+    private final String passwordHash;
+    private final Ids ids;
+
+    // per patient, filled up front: about 6 bytes each
+    private final int[] birthDays;
+    private final short[] serials;
+
+    /**
+     * @param seed random seed
+     * @param patients patients to generate
+     * @param chunkSize patients per chunk
+     * @param patientsPerDoctor list size of a doctor; there is one nurse per two doctors
+     * @param historyYears how far back encounters and messages go
+     * @param until day after the last generated event
+     * @param passwordHash stored password of every generated account
+     * @param ids first free id in each table
+     */
+    public SyntheticRecords(long seed, int patients, int chunkSize, int patientsPerDoctor, int historyYears,
+                            LocalDate until, String passwordHash, Ids ids) {
+        if (patients < 0 || chunkSize < 1 || patientsPerDoctor < 1 || historyYears < 1) {
+            throw new IllegalArgumentException("patients must be >= 0 and chunk size, list size and history >= 1");
+        }
+        this.seed = seed;
+        this.patients = patients;
+        this.chunkSize = chunkSize;
+        this.doctors = Math.max(1, (patients + patientsPerDoctor - 1) / patientsPerDoctor);
+        this.nurses = Math.max(1, doctors / 2);
+        this.clinics = (doctors + nurses + PRACTITIONERS_PER_CLINIC - 1) / PRACTITIONERS_PER_CLINIC;
+        this.historyYears = historyYears;
+        this.until = until;
+        this.end = until.atStartOfDay();
+        this.passwordHash = passwordHash;
+        this.ids = ids;
+        this.birthDays = new int[patients];
+        this.serials = new short[patients];
+        assignBirthNumbers();
+    }
+
+    public int chunks() {
+        return (patients + chunkSize - 1) / chunkSize;
+    }
+
+    /** @return the earliest day an encounter or diagnosis may be dated */
+    public LocalDate firstDay() {
+        return until.minusYears(CONDITION_YEARS);
+    }
+
+    public LocalDate until() {
+        return until;
+    }
+
+    /**
+     * @return clinics with one location each, practitioners and their DOCTOR and STAFF accounts
+     *         (doctor-00001..., nurse-00001...); load these before any chunk
+     */
+    public Batch staff() {
+        Batch batch = Batch.empty();
+        SplittableRandom random = random(-1);
+        for (int c = 0; c < clinics; c++) {
+            String town = pick(random, ClinicalCatalog.TOWNS);
+            String address = pick(random, ClinicalCatalog.STREETS) + " " + (1 + random.nextInt(80)) + ", " + town;
+            batch.organizations().add(new Object[]{ids.organization() + c, "Vårdcentralen " + town + " " + (c + 1),
+                    "Primärvård", address});
+            batch.locations().add(new Object[]{ids.location() + c, "Mottagningen " + town + " " + (c + 1), address});
+        }
+        for (int i = 0; i < doctors + nurses; i++) {
+            boolean doctor = i < doctors;
+            batch.practitioners().add(new Object[]{practitionerId(i), name(random, random.nextBoolean()),
+                    doctor ? "Läkare" : "Sjuksköterska", ids.organization() + clinicOf(i)});
+            String username = doctor ? String.format("doctor-%05d", i + 1) : String.format("nurse-%05d", i - doctors + 1);
+            batch.users().add(new Object[]{ids.user() + i, username, passwordHash,
+                    (doctor ? Role.DOCTOR : Role.STAFF).name(), null, practitionerId(i)});
+        }
+        return batch;
+    }
+
+    /**
+     * @param chunk chunk number, 0 to {@link #chunks()} - 1
+     * @return the chunk's patients with their accounts (username = personnummer) and records
+     */
+    public Batch chunk(int chunk) {
+        Batch batch = Batch.empty();
+        SplittableRandom random = random(2L * chunk + 1);
+        int from = chunk * chunkSize;
+        int to = Math.min(patients, from + chunkSize);
+        NextIds next = new NextIds();
+        next.condition = ids.condition() + (long) from * MAX_CONDITIONS;
+        next.encounter = ids.encounter() + (long) from * MAX_ENCOUNTERS;
+        next.observation = ids.observation() + (long) from * MAX_ENCOUNTERS * MAX_OBSERVATIONS_PER_ENCOUNTER;
+        next.message = ids.message() + (long) from * MAX_MESSAGES;
+        for (int p = from; p < to; p++) {
+            patient(random, p, batch, next);
+        }
+        return batch;
+    }
+
+    /** Next id in each patient-scoped table, within the range the chunk reserved. */
+    private static final class NextIds {
+        long condition;
+        long encounter;
+        long observation;
+        long message;
+    }
+
+    // ==== one patient ====
+
+    private void patient(SplittableRandom random, int p, Batch batch, NextIds next) {
+        long patientId = ids.patient() + p;
+        long userId = ids.user() + doctors + nurses + p;
+        LocalDate born = LocalDate.ofEpochDay(birthDays[p]);
+        boolean male = serials[p] % 2 == 1;
+        int age = (int) ChronoUnit.YEARS.between(born, until);
+        String personnummer = Personnummer.format(born, serials[p], true);
+
+        batch.patients().add(new Object[]{patientId, personnummer, name(random, male), Date.valueOf(born),
+                male ? "male" : "female", String.format("07%d-%03d %02d %02d", random.nextInt(10),
+                random.nextInt(1000), random.nextInt(100), random.nextInt(100))});
+        batch.users().add(new Object[]{userId, personnummer, passwordHash, Role.PATIENT.name(), patientId, null});
+
+        int gp = random.nextInt(doctors);
+
+        // diagnoses: more with age, drawn by Zipf rank among those given at this age
+        List<Diagnosis> diagnoses = new ArrayList<>();
+        Set<String> codes = new HashSet<>();
+        int wanted = Math.min(MAX_CONDITIONS, poisson(random, 0.3 + age / 18.0));
+        for (int attempt = 0; diagnoses.size() < wanted && attempt < wanted * 4; attempt++) {
+            Diagnosis d = ClinicalCatalog.diagnosis(random);
+            if (d.minAge() <= age && codes.add(d.code())) diagnoses.add(d);
+        }
+        LocalDate earliest = max(born, firstDay());
+        for (Diagnosis d : diagnoses) {
+            LocalDate onset = day(random, earliest, until);
+            LocalDateTime recorded = min(onset.plusDays(random.nextInt(15)).atTime(8 + random.nextInt(8),
+                    random.nextInt(60)), end.minusMinutes(1));
+            long assertedBy = practitionerId(random.nextDouble() < 0.85 ? gp : random.nextInt(doctors));
+            batch.conditions().add(new Object[]{next.condition++, patientId, d.code(), d.display(),
+                    Date.valueOf(onset), Timestamp.valueOf(recorded), assertedBy});
+        }
+
+        // encounters in time order, mostly with the patient's own doctor
+        LocalDate historyStart = max(born, until.minusYears(historyYears));
+        int visits = Math.min(MAX_ENCOUNTERS, 1 + poisson(random, 1 + age / 25.0 + 1.5 * diagnoses.size()));
+        LocalDateTime[] starts = new LocalDateTime[visits];
+        for (int i = 0; i < visits; i++) starts[i] = visitTime(random, historyStart);
+        Arrays.sort(starts);
+
+        for (LocalDateTime start : starts) {
+            long encounterId = next.encounter++;
+            double who = random.nextDouble();
+            int practitioner = who < 0.7 ? gp : who < 0.9 ? random.nextInt(doctors) : doctors + random.nextInt(nurses);
+            LocalDateTime finish = start.plusMinutes(15L * (1 + random.nextInt(4)));
+            String note = random.nextDouble() < 0.92 ? note(random, diagnoses) : null;
+
+            batch.encounters().add(new Object[]{encounterId, patientId, practitionerId(practitioner),
+                    ids.location() + clinicOf(practitioner), Timestamp.valueOf(start), Timestamp.valueOf(finish),
+                    note == null ? null : EncounterNote.previewOf(note)});
+            if (note != null) batch.notes().add(new Object[]{encounterId, CompressedTextConverter.encode(note)});
+            observations(random, batch, next, patientId, encounterId, practitionerId(practitioner), start, age,
+                    male, codes);
+        }
+
+        if (random.nextDouble() < 0.35) {
+            thread(random, batch, next, userId, ids.user() + gp, historyStart);
+        }
+    }
+
+    private void observations(SplittableRandom random, Batch batch, NextIds next, long patientId, long encounterId,
+                              long practitionerId, LocalDateTime start, int age, boolean male, Set<String> codes) {
+        List<String[]> values = new ArrayList<>(MAX_OBSERVATIONS_PER_ENCOUNTER);
+        if (age >= 3 && random.nextDouble() < 0.6) {
+            double systolic = 105 + age * 0.4 + (codes.contains(ClinicalCatalog.HYPERTENSION) ? 18 : 0)
+                    + random.nextGaussian() * 12;
+            double diastolic = systolic * 0.62 + random.nextGaussian() * 6;
+            values.add(new String[]{"Blodtryck", Math.round(systolic) + "/" + Math.round(diastolic), "mmHg"});
+        }
+        if (random.nextDouble() < 0.4) {
+            values.add(new String[]{"Puls", Long.toString(Math.round((age < 12 ? 90 : 70) + random.nextGaussian() * 10)),
+                    "slag/min"});
+        }
+        if (random.nextDouble() < 0.3) {
+            double kg = age < 16 ? 3.5 + age * 3.5 : (male ? 84 : 70)
+                    + (codes.contains(ClinicalCatalog.OBESITY) ? 28 : 0) + random.nextGaussian() * 8;
+            values.add(new String[]{"Vikt", decimal(Math.max(2.5, kg)), "kg"});
+        }
+        if (codes.contains(ClinicalCatalog.DIABETES) && random.nextDouble() < 0.6) {
+            values.add(new String[]{"HbA1c", Long.toString(Math.round(52 + random.nextGaussian() * 9)), "mmol/mol"});
+        }
+        if (codes.contains(ClinicalCatalog.INFECTION) && random.nextDouble() < 0.5) {
+            values.add(new String[]{"Temperatur", decimal(37.8 + random.nextGaussian() * 0.6), "°C"});
+        }
+        for (String[] v : values) {
+            LocalDateTime observed = start.plusMinutes(random.nextInt(10));
+            batch.observations().add(new Object[]{next.observation++, patientId, v[0], v[1], v[2], Timestamp.valueOf(observed),
+                    practitionerId, encounterId});
+        }
+    }
+
+    private void thread(SplittableRandom random, Batch batch, NextIds next, long patientUser, long doctorUser,
+                        LocalDate from) {
+        // Pareto, alpha 1.2: over half the threads are one message, about 1 in 250 reaches a hundred
+        int length = (int) Math.min(MAX_MESSAGES, Math.floor(Math.pow(1 - random.nextDouble(), -1 / 1.2)));
+        LocalDateTime at = from.atStartOfDay().plusMinutes(random.nextLong(ChronoUnit.MINUTES.between(from.atStartOfDay(), end)));
+        boolean fromPatient = true;
+        for (int i = 0; i < length && at.isBefore(end); i++) {
+            batch.messages().add(new Object[]{next.message++, fromPatient ? patientUser : doctorUser,
+                    fromPatient ? doctorUser : patientUser,
+                    pick(random, fromPatient ? ClinicalCatalog.PATIENT_MESSAGES : ClinicalCatalog.PRACTITIONER_MESSAGES),
+                    Timestamp.valueOf(at), at.isBefore(end.minusDays(2))});
+            at = at.plusMinutes(5 + (long) (random.nextExponential() * 24 * 60));
+            if (random.nextDouble() < 0.75) fromPatient = !fromPatient;
+        }
+    }
+
+    private static String note(SplittableRandom random, List<Diagnosis> diagnoses) {
+        StringBuilder text = new StringBuilder("Patienten söker för ").append(pick(random, ClinicalCatalog.REASONS)).append('.');
+        // log-normal: most notes are a few sentences, a few percent run past twenty
+        int sentences = (int) Math.min(MAX_NOTE_SENTENCES, Math.exp(1.2 + 0.9 * random.nextGaussian()));
+        for (int i = 0; i < sentences; i++) {
+            String[] pool = ClinicalCatalog.NOTE_SENTENCES;
+            if (!diagnoses.isEmpty() && random.nextDouble() < 0.4) {
+                String[] specific = ClinicalCatalog.CONDITION_SENTENCES.get(diagnoses.get(random.nextInt(diagnoses.size())).code());
+                if (specific != null) pool = specific;
+            }
+            text.append(' ').append(pick(random, pool));
+        }
+        return text.toString();
+    }
+
+    // ==== helpers ====
+
+    /*
+     * Birth dates come from each chunk's own stream; serials are then handed out in patient order.
+     * This pass is sequential but cheap, and it is what keeps personnummer unique without the
+     * chunks having to coordinate.
+     */
+    private void assignBirthNumbers() {
+        long first = until.minusYears(MAX_AGE + 1).toEpochDay();
+        int[] taken = new int[(int) (until.toEpochDay() - first) * 2];
+        for (int chunk = 0; chunk < chunks(); chunk++) {
+            SplittableRandom random = random(2L * chunk);
+            for (int p = chunk * chunkSize; p < Math.min(patients, (chunk + 1) * chunkSize); p++) {
+                long day = until.toEpochDay() - 1 - age(random) * 365L - random.nextInt(365);
+                int male = random.nextBoolean() ? 1 : 0;
+                int slot = (int) (day - first) * 2 + male;
+                int serial = FIRST_SERIAL + 2 * taken[slot]++ + male;
+                if (serial > 999) {
+                    throw new IllegalStateException("More patients born on " + LocalDate.ofEpochDay(day)
+                            + " than there are serial numbers");
+                }
+                birthDays[p] = (int) day;
+                serials[p] = (short) serial;
+            }
+        }
+    }
+
+    // roughly the Swedish age pyramid: flat to 65, then thinning out towards 100
+    private static int age(SplittableRandom random) {
+        while (true) {
+            int age = random.nextInt(MAX_AGE);
+            double weight = age < 65 ? 1 : (MAX_AGE - age) / 35.0;
+            if (random.nextDouble() < weight) return age;
+        }
+    }
+
+    // Knuth's method; the means used here are small
+    private static int poisson(SplittableRandom random, double mean) {
+        double limit = Math.exp(-mean);
+        double product = random.nextDouble();
+        int n = 0;
+        while (product > limit) {
+            n++;
+            product *= random.nextDouble();
+        }
+        return n;
+    }
+
+    private LocalDateTime visitTime(SplittableRandom random, LocalDate from) {
+        LocalDate day = day(random, from, until);
+        if (day.getDayOfWeek() == DayOfWeek.SATURDAY) day = day.minusDays(1);
+        if (day.getDayOfWeek() == DayOfWeek.SUNDAY) day = day.minusDays(2);
+        if (day.isBefore(from)) day = from;
+        return day.atTime(8, 0).plusMinutes(15L * random.nextInt(32));
+    }
+
+    private static LocalDate day(SplittableRandom random, LocalDate from, LocalDate until) {
+        long days = ChronoUnit.DAYS.between(from, until);
+        return days <= 0 ? from : from.plusDays(random.nextLong(days));
+    }
+
+    private static String name(SplittableRandom random, boolean male) {
+        return pick(random, male ? ClinicalCatalog.MALE_NAMES : ClinicalCatalog.FEMALE_NAMES) + " "
+                + pick(random, ClinicalCatalog.SURNAMES);
+    }
+
+    private static String decimal(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+
+    private long practitionerId(int index) {
+        return ids.practitioner() + index;
+    }
+
+    private int clinicOf(int practitioner) {
+        return practitioner % clinics;
+    }
+
+    // seeding a generator with the first output of another spreads nearby stream numbers far apart
+    private SplittableRandom random(long stream) {
+        return new SplittableRandom(new SplittableRandom(seed ^ stream * 0x9E3779B97F4A7C15L).nextLong());
+    }
+
+    private static LocalDate max(LocalDate a, LocalDate b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static LocalDateTime min(LocalDateTime a, LocalDateTime b) {
+        return a.isBefore(b) ? a : b;
+    }
+}
@@ -0,0 +1,84 @@
+package backend.startup;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.schema.internal.ExceptionHandlerHaltImpl;
+import org.hibernate.tool.schema.spi.ContributableMatcher;
+import org.hibernate.tool.schema.spi.ExecutionOptions;
+import org.hibernate.tool.schema.spi.SchemaManagementTool;
+import org.hibernate.tool.schema.spi.SchemaManagementToolCoordinator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The check {@code ddl-auto: validate} does, run after startup instead of before the first request.
+ * Registered as a Hibernate integrator to get hold of the mapping metadata; {@link #validate} is
+ * then called from a background thread. Until it has passed, the {@code schema} health check is
+ * not UP; the fast-start profile adds it to the readiness group, so a deployment whose entities
+ * do not match the database is never sent traffic and is stopped by its readiness probe rather
+ * than by a failed start.
+ */
+public class DeferredSchemaValidation implements Integrator, HealthIndicator {
+
+    private static final Logger log = LoggerFactory.getLogger(DeferredSchemaValidation.class);
+
+    private volatile Metadata metadata;
+    private volatile SessionFactoryImplementor sessionFactory;
+    private volatile Health health = Health.unknown().withDetail("validation", "pending").build();
+
+    @Override
+    public void integrate(Metadata metadata, BootstrapContext bootstrapContext, SessionFactoryImplementor sessionFactory) {
+        this.metadata = metadata;
+        this.sessionFactory = sessionFactory;
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        this.metadata = null;
+        this.sessionFactory = null;
+    }
+
+    /**
+     * Validates the mapped entities against the database.
+     *
+     * @return true if the schema matches
+     */
+    public boolean validate() {
+        Metadata m = metadata;
+        SessionFactoryImplementor sf = sessionFactory;
+        if (m == null || sf == null) {
+            health = Health.unknown().withDetail("validation", "no session factory").build();
+            return false;
+        }
+        long start = System.nanoTime();
+        try {
+            Map<String, Object> settings = new HashMap<>(sf.getProperties());
+            ExecutionOptions options = SchemaManagementToolCoordinator.buildExecutionOptions(
+                    settings, ExceptionHandlerHaltImpl.INSTANCE);
+            sf.getServiceRegistry().requireService(SchemaManagementTool.class)
+                    .getSchemaValidator(settings)
+                    .doValidation(m, options, ContributableMatcher.ALL);
+            long ms = (System.nanoTime() - start) / 1_000_000;
+            health = Health.up().withDetail("validatedInMs", ms).build();
+            log.info("Schema validated in {} ms", ms);
+            return true;
+        } catch (RuntimeException e) {
+            health = Health.down(e).build();
+            log.error("Schema validation failed; the schema health check stays DOWN", e);
+            return false;
+        }
+    }
+
+    @Override
+    public Health health() {
+        return health;
+    }
+}
@@ -0,0 +1,62 @@
+package backend.startup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline.TimelineEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.StreamSupport;
+
+/**
+ * Logs how long startup took and the slowest bean creations, so startup time can be followed
+ * from one deployment to the next. The same numbers are in the application.started.time and
+ * application.ready.time metrics, and the full timeline is at /api/actuator/startup.
+ */
+public class StartupReport implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupReport.class);
+
+    private final ApplicationStartup startup;
+    private final int slowest;
+
+    /**
+     * @param startup where the startup steps were recorded
+     * @param slowest how many bean creations to list
+     */
+    public StartupReport(ApplicationStartup startup, int slowest) {
+        this.startup = startup;
+        this.slowest = slowest;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        Duration ready = event.getTimeTaken();
+        log.info("Started in {} ms (lazy initialization {})", ready == null ? -1 : ready.toMillis(),
+                event.getApplicationContext().getEnvironment().getProperty("spring.main.lazy-initialization", "false"));
+        if (!(startup instanceof BufferingApplicationStartup buffering) || slowest <= 0) return;
+
+        List<TimelineEvent> beans = buffering.getBufferedTimeline().getEvents().stream()
+                .filter(e -> e.getStartupStep().getName().equals("spring.beans.instantiate"))
+                .sorted(Comparator.comparing(TimelineEvent::getDuration).reversed())
+                .limit(slowest)
+                .toList();
+        for (TimelineEvent e : beans) {
+            log.info("  {} ms  {}", e.getDuration().toMillis(), beanName(e.getStartupStep()));
+        }
+    }
+
+    private static String beanName(StartupStep step) {
+        return StreamSupport.stream(step.getTags().spliterator(), false)
+                .filter(t -> t.getKey().equals("beanName"))
+                .map(StartupStep.Tag::getValue)
+                .findFirst()
+                .orElse("?");
+    }
+}
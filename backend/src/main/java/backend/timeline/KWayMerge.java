@@ -0,0 +1,49 @@
+package backend.timeline;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Lazily merges k iterators that are each sorted by the same comparator.
+ * Only the current head of every source is held in memory, so sources can be
+ * cursors over tables of any size.
+ */
+public class KWayMerge<T> implements Iterator<T> {
+
+    private record Head<T>(T value, Iterator<T> source) {}
+
+    private final PriorityQueue<Head<T>> heads;
+
+    /**
+     * @param sources iterators, each already sorted by {@code order}
+     * @param order ordering shared by all sources; ties should be broken so the order is total
+     */
+    public KWayMerge(List<? extends Iterator<T>> sources, Comparator<? super T> order) {
+        this.heads = new PriorityQueue<>(Math.max(1, sources.size()), (a, b) -> order.compare(a.value(), b.value()));
+        for (Iterator<T> source : sources) {
+            advance(source);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heads.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        Head<T> head = heads.poll();
+        if (head == null) throw new NoSuchElementException();
+        advance(head.source());
+        return head.value();
+    }
+
+    private void advance(Iterator<T> source) {
+        if (source.hasNext()) {
+            heads.add(new Head<>(source.next(), source));
+        }
+    }
+}
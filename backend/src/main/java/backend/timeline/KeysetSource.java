@@ -0,0 +1,54 @@
+package backend.timeline;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Ordered cursor over one table, read in keyset-paged chunks.
+ * The next chunk is only fetched once the previous one has been consumed.
+ */
+public class KeysetSource implements Iterator<TimelineEntry> {
+
+    /** Fetches up to {@code limit} rows strictly after {@code after} (null = from the start), in timeline order. */
+    @FunctionalInterface
+    public interface Fetcher {
+        List<TimelineEntry> fetch(TimelineCursor after, int limit);
+    }
+
+    private final Fetcher fetcher;
+    private final int chunkSize;
+    private TimelineCursor position;
+    private Iterator<TimelineEntry> chunk = List.<TimelineEntry>of().iterator();
+    private boolean exhausted;
+
+    /**
+     * @param fetcher runs the keyset query
+     * @param start position to continue after, or null
+     * @param chunkSize rows per query
+     */
+    public KeysetSource(Fetcher fetcher, TimelineCursor start, int chunkSize) {
+        this.fetcher = fetcher;
+        this.position = start;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (chunk.hasNext()) return true;
+        if (exhausted) return false;
+
+        List<TimelineEntry> rows = fetcher.fetch(position, chunkSize);
+        exhausted = rows.size() < chunkSize;
+        chunk = rows.iterator();
+        return chunk.hasNext();
+    }
+
+    @Override
+    public TimelineEntry next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        TimelineEntry e = chunk.next();
+        position = e.position();
+        return e;
+    }
+}
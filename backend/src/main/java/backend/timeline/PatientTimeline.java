@@ -0,0 +1,54 @@
+package backend.timeline;
+
+import backend.repository.TimelineRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds one page of a patient's timeline by k-way merging ordered cursors over
+ * encounters, conditions and observations. Each source reads at most one chunk
+ * of page size + 1 rows per page, however long the patient's history is.
+ */
+@Component
+public class PatientTimeline {
+
+    public static final int MAX_PAGE_SIZE = 200;
+
+    /**
+     * @param items entries in time order
+     * @param next token for the following page, null on the last page
+     */
+    public record Page(List<TimelineEntry> items, String next) {}
+
+    private final TimelineRepository timeline;
+
+    public PatientTimeline(TimelineRepository timeline) {
+        this.timeline = timeline;
+    }
+
+    /**
+     * @param patientId patient whose history to read
+     * @param after position to continue after, or null for the beginning
+     * @param size maximum number of entries, at most {@link #MAX_PAGE_SIZE}
+     * @return the page and a continuation token
+     */
+    public Page page(long patientId, TimelineCursor after, int size) {
+        int chunk = size + 1;
+        var merged = new KWayMerge<>(List.of(
+                new KeysetSource((c, n) -> timeline.encountersAfter(patientId, c, n), after, chunk),
+                new KeysetSource((c, n) -> timeline.conditionsAfter(patientId, c, n), after, chunk),
+                new KeysetSource((c, n) -> timeline.observationsAfter(patientId, c, n), after, chunk)
+        ), TimelineEntry.ORDER);
+
+        List<TimelineEntry> items = new ArrayList<>(size);
+        while (items.size() < size && merged.hasNext()) {
+            items.add(merged.next());
+        }
+        String next = merged.hasNext() && !items.isEmpty()
+                ? items.get(items.size() - 1).position().encode()
+                : null;
+        return new Page(items, next);
+    }
+}
@@ -0,0 +1,55 @@
+package backend.timeline;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position of the last entry a client has seen. Sent back and forth as an opaque token.
+ *
+ * @param at timestamp of the last entry
+ * @param kind kind of the last entry
+ * @param id id of the last entry
+ */
+public record TimelineCursor(LocalDateTime at, TimelineEntry.Kind kind, long id) {
+
+    /**
+     * Rows of {@code other} kind with exactly the cursor's timestamp come after the cursor
+     * only if their id is greater than the returned value.
+     * Lets every source use the same "(time &gt; t) or (time = t and id &gt; x)" predicate.
+     *
+     * @param other kind of the source being queried
+     * @return id threshold for rows that tie with the cursor on time
+     */
+    public long idThresholdFor(TimelineEntry.Kind other) {
+        int cmp = other.compareTo(kind);
+        if (cmp < 0) return Long.MAX_VALUE; // ordered before the cursor kind: nothing at t is left
+        if (cmp > 0) return Long.MIN_VALUE; // ordered after: everything at t is still to come
+        return id;
+    }
+
+    public String encode() {
+        String raw = at + "|" + kind.name() + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param token value from {@link #encode()}
+     * @return the decoded cursor
+     * @throws IllegalArgumentException if the token is not a valid cursor
+     */
+    public static TimelineCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length != 3) throw new IllegalArgumentException("Invalid cursor");
+            return new TimelineCursor(
+                    LocalDateTime.parse(parts[0]),
+                    TimelineEntry.Kind.valueOf(parts[1]),
+                    Long.parseLong(parts[2]));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
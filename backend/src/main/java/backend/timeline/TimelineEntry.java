@@ -0,0 +1,29 @@
+package backend.timeline;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+/**
+ * One row of a patient's timeline: an encounter, a condition or an observation.
+ *
+ * @param kind which table the row comes from
+ * @param id row id within that table
+ * @param at encounter start, condition onset (start of day) or observation time
+ * @param summary short text for the list; encounter notes are cut off
+ * @param practitionerId practitioner who created the row, if known
+ */
+public record TimelineEntry(Kind kind, long id, LocalDateTime at, String summary, Long practitionerId) {
+
+    /** Declaration order is the tie-breaker between rows with the same timestamp. */
+    public enum Kind { ENCOUNTER, CONDITION, OBSERVATION }
+
+    /** Total order used by the sources and the merge: time, then kind, then id. */
+    public static final Comparator<TimelineEntry> ORDER = Comparator
+            .comparing(TimelineEntry::at)
+            .thenComparing(TimelineEntry::kind)
+            .thenComparingLong(TimelineEntry::id);
+
+    public TimelineCursor position() {
+        return new TimelineCursor(at, kind, id);
+    }
+}
@@ -0,0 +1,31 @@
+package backend.tracing;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+/**
+ * Times a repository call as an INTERNAL span named Repository.method, so a trace shows which
+ * repository call issued which statements. Calls outside a sampled trace go straight through.
+ */
+public class RepositoryTracing implements MethodInterceptor {
+
+    private final String repositoryName;
+
+    public RepositoryTracing(String repositoryName) {
+        this.repositoryName = repositoryName;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        if (TraceContext.current() == null) return invocation.proceed();
+        try (TraceContext.Scope scope = TraceContext.open(repositoryName + "." + invocation.getMethod().getName(),
+                Span.Kind.INTERNAL)) {
+            try {
+                return invocation.proceed();
+            } catch (Throwable t) {
+                scope.error(t);
+                throw t;
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package backend.tracing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One timed operation of a sampled trace. Spans exist only for sampled traces; code that may
+ * run without one goes through {@link TraceContext#open}, which costs nothing when there is none.
+ * Not thread-safe: a span is changed by the thread that opened it.
+ */
+public final class Span {
+
+    /** OTLP span kinds. */
+    public enum Kind {
+        INTERNAL(1), SERVER(2), CLIENT(3);
+
+        final int otlp;
+
+        Kind(int otlp) {
+            this.otlp = otlp;
+        }
+    }
+
+    /** A span attribute; the value is a String or a Long. */
+    record Attribute(String key, Object value) {}
+
+    private final Tracer tracer;
+    final long traceIdHigh;
+    final long traceIdLow;
+    final long spanId;
+    final long parentSpanId;
+    final Kind kind;
+    final long startNanos;
+    String name;
+    long endNanos;
+    String error;
+    final List<Attribute> attributes = new ArrayList<>(4);
+
+    Span(Tracer tracer, long traceIdHigh, long traceIdLow, long spanId, long parentSpanId, String name, Kind kind) {
+        this.tracer = tracer;
+        this.traceIdHigh = traceIdHigh;
+        this.traceIdLow = traceIdLow;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.kind = kind;
+        this.startNanos = tracer.epochNanos();
+    }
+
+    /** Starts a span below this one, in the same trace. */
+    public Span child(String name, Kind kind) {
+        return new Span(tracer, traceIdHigh, traceIdLow, tracer.newId(), spanId, name, kind);
+    }
+
+    public Span rename(String name) {
+        this.name = name;
+        return this;
+    }
+
+    public Span attribute(String key, String value) {
+        if (value != null) attributes.add(new Attribute(key, value));
+        return this;
+    }
+
+    public Span attribute(String key, long value) {
+        attributes.add(new Attribute(key, value));
+        return this;
+    }
+
+    /** Marks the span as failed. */
+    public Span error(Throwable t) {
+        this.error = t.getClass().getSimpleName() + (t.getMessage() == null ? "" : ": " + t.getMessage());
+        return this;
+    }
+
+    /** Ends the span and hands it to the exporter; call once. */
+    public void end() {
+        endNanos = tracer.epochNanos();
+        tracer.export(this);
+    }
+
+    /** W3C traceparent header value for this span. */
+    public String traceparent() {
+        return "00-" + hex(traceIdHigh) + hex(traceIdLow) + "-" + hex(spanId) + "-01";
+    }
+
+    String traceId() {
+        return hex(traceIdHigh) + hex(traceIdLow);
+    }
+
+    static String hex(long v) {
+        String s = Long.toHexString(v);
+        return s.length() == 16 ? s : "0".repeat(16 - s.length()) + s;
+    }
+}
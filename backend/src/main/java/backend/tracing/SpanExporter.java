@@ -0,0 +1,244 @@
+package backend.tracing;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes finished spans to local files in the OTLP/JSON file format: one
+ * ExportTraceServiceRequest per line, which the OpenTelemetry collector's otlpjsonfile receiver
+ * and most trace viewers read as is. Request threads only put spans on a bounded queue; when it
+ * is full the span is dropped and counted rather than slowing the request down. Files are
+ * rotated by size, traces-0.jsonl being the newest, and the oldest beyond maxFiles is deleted.
+ */
+public class SpanExporter implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(SpanExporter.class);
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final Path dir;
+    private final String serviceName;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private final int batchSize;
+    private final BlockingQueue<Span> queue;
+
+    private final Counter exported;
+    private final Counter dropped;
+
+    private final Thread writer;
+    private volatile boolean running = true;
+    private OutputStream out;
+    private long written;
+
+    /**
+     * @param dir where the trace files are written
+     * @param serviceName the service.name resource attribute
+     * @param maxFileSize a file is rotated once it is larger than this
+     * @param maxFiles rotated files kept, including the current one
+     * @param queueCapacity finished spans waiting for the writer
+     * @param batchSize most spans per line
+     */
+    public SpanExporter(Path dir, String serviceName, long maxFileSize, int maxFiles, int queueCapacity,
+                        int batchSize, MeterRegistry registry) throws IOException {
+        this.dir = Files.createDirectories(dir);
+        this.serviceName = serviceName;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        this.exported = Counter.builder("journal.tracing.spans").tag("outcome", "exported").register(registry);
+        this.dropped = Counter.builder("journal.tracing.spans").tag("outcome", "dropped")
+                .description("Spans lost because the export queue was full").register(registry);
+        Gauge.builder("journal.tracing.queue.size", queue, BlockingQueue::size).register(registry);
+
+        this.writer = new Thread(this::writeLoop, "span-exporter");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    void export(Span span) {
+        if (!queue.offer(span)) dropped.increment();
+    }
+
+    private void writeLoop() {
+        List<Span> batch = new ArrayList<>(batchSize);
+        while (true) {
+            boolean stopping = !running;
+            try {
+                Span first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    write(batch);
+                    exported.increment(batch.size());
+                    batch.clear();
+                    if (!queue.isEmpty()) continue;
+                }
+                if (out != null) out.flush();
+                if (stopping) {
+                    closeFile();
+                    return;
+                }
+            } catch (InterruptedException e) {
+                closeFile();
+                return;
+            } catch (IOException | RuntimeException e) {
+                // tracing is best effort: lose the batch, keep the writer
+                log.warn("Writing {} spans failed", batch.size(), e);
+                dropped.increment(batch.size());
+                batch.clear();
+                closeFile();
+                if (stopping) return;
+            }
+        }
+    }
+
+    private void write(List<Span> batch) throws IOException {
+        if (out == null || written >= maxFileSize) rotate();
+        CountingStream counting = new CountingStream(out);
+        try (JsonGenerator g = JSON.createGenerator(counting, JsonEncoding.UTF8)) {
+            g.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            writeRequest(g, batch);
+        }
+        out.write('\n');
+        written += counting.count + 1;
+    }
+
+    private void writeRequest(JsonGenerator g, List<Span> batch) throws IOException {
+        g.writeStartObject();
+        g.writeArrayFieldStart("resourceSpans");
+        g.writeStartObject();
+        g.writeObjectFieldStart("resource");
+        g.writeArrayFieldStart("attributes");
+        attribute(g, "service.name", serviceName);
+        g.writeEndArray();
+        g.writeEndObject();
+        g.writeArrayFieldStart("scopeSpans");
+        g.writeStartObject();
+        g.writeObjectFieldStart("scope");
+        g.writeStringField("name", "backend.tracing");
+        g.writeEndObject();
+        g.writeArrayFieldStart("spans");
+        for (Span s : batch) span(g, s);
+        g.writeEndArray();
+        g.writeEndObject();
+        g.writeEndArray();
+        g.writeEndObject();
+        g.writeEndArray();
+        g.writeEndObject();
+    }
+
+    private static void span(JsonGenerator g, Span s) throws IOException {
+        g.writeStartObject();
+        g.writeStringField("traceId", s.traceId());
+        g.writeStringField("spanId", Span.hex(s.spanId));
+        if (s.parentSpanId != 0) g.writeStringField("parentSpanId", Span.hex(s.parentSpanId));
+        g.writeStringField("name", s.name);
+        g.writeNumberField("kind", s.kind.otlp);
+        // 64-bit integers are strings in OTLP/JSON
+        g.writeStringField("startTimeUnixNano", Long.toString(s.startNanos));
+        g.writeStringField("endTimeUnixNano", Long.toString(s.endNanos));
+        if (!s.attributes.isEmpty()) {
+            g.writeArrayFieldStart("attributes");
+            for (Span.Attribute a : s.attributes) attribute(g, a.key(), a.value());
+            g.writeEndArray();
+        }
+        if (s.error != null) {
+            g.writeObjectFieldStart("status");
+            g.writeNumberField("code", 2);
+            g.writeStringField("message", s.error);
+            g.writeEndObject();
+        }
+        g.writeEndObject();
+    }
+
+    private static void attribute(JsonGenerator g, String key, Object value) throws IOException {
+        g.writeStartObject();
+        g.writeStringField("key", key);
+        g.writeObjectFieldStart("value");
+        if (value instanceof Long l) g.writeStringField("intValue", l.toString());
+        else g.writeStringField("stringValue", value.toString());
+        g.writeEndObject();
+        g.writeEndObject();
+    }
+
+    private void rotate() throws IOException {
+        closeFile();
+        Files.deleteIfExists(file(maxFiles - 1));
+        for (int i = maxFiles - 2; i >= 0; i--) {
+            if (Files.exists(file(i))) Files.move(file(i), file(i + 1));
+        }
+        out = new BufferedOutputStream(Files.newOutputStream(file(0),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE), 64 * 1024);
+        written = 0;
+    }
+
+    Path file(int index) {
+        return dir.resolve("traces-" + index + ".jsonl");
+    }
+
+    private void closeFile() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException e) {
+            log.warn("Closing trace file failed", e);
+        }
+        out = null;
+        written = maxFileSize;
+    }
+
+    /**
+     * Writes out the queued spans and stops the writer.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class CountingStream extends OutputStream {
+
+        private final OutputStream target;
+        long count;
+
+        CountingStream(OutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package backend.tracing;
+
+import java.util.concurrent.Callable;
+
+/**
+ * The span of the sampled trace being served on this thread, if any. Work handed to another
+ * thread takes it along through {@link #wrap}.
+ */
+public final class TraceContext {
+
+    private static final ThreadLocal<Span> CURRENT = new ThreadLocal<>();
+
+    /** A scope that was opened without a current span: nothing to time, nothing to close. */
+    private static final Scope NONE = new Scope(null, null);
+
+    private TraceContext() {
+    }
+
+    /**
+     * @return the current span, null if this thread is not in a sampled trace
+     */
+    public static Span current() {
+        return CURRENT.get();
+    }
+
+    static Span swap(Span span) {
+        Span previous = CURRENT.get();
+        if (span == null) CURRENT.remove();
+        else CURRENT.set(span);
+        return previous;
+    }
+
+    /**
+     * Starts a child of the current span and makes it current until the scope is closed.
+     * Without a current span this returns a shared no-op scope.
+     */
+    public static Scope open(String name, Span.Kind kind) {
+        Span parent = CURRENT.get();
+        if (parent == null) return NONE;
+        Span span = parent.child(name, kind);
+        CURRENT.set(span);
+        return new Scope(span, parent);
+    }
+
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        Span span = CURRENT.get();
+        if (span == null) return task;
+        return () -> {
+            Span previous = swap(span);
+            try {
+                return task.call();
+            } finally {
+                swap(previous);
+            }
+        };
+    }
+
+    public static Runnable wrap(Runnable task) {
+        Span span = CURRENT.get();
+        if (span == null) return task;
+        return () -> {
+            Span previous = swap(span);
+            try {
+                task.run();
+            } finally {
+                swap(previous);
+            }
+        };
+    }
+
+    /** An opened span; closing it ends the span and restores its parent as current. */
+    public static final class Scope implements AutoCloseable {
+
+        private final Span span;
+        private final Span parent;
+
+        private Scope(Span span, Span parent) {
+            this.span = span;
+            this.parent = parent;
+        }
+
+        /** @return the span, null for the no-op scope */
+        public Span span() {
+            return span;
+        }
+
+        public void error(Throwable t) {
+            if (span != null) span.error(t);
+        }
+
+        @Override
+        public void close() {
+            if (span == null) return;
+            span.end();
+            swap(parent);
+        }
+    }
+}
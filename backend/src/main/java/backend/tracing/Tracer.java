@@ -0,0 +1,62 @@
+package backend.tracing;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Starts root spans for a share of requests and hands finished spans to the exporter.
+ */
+public class Tracer {
+
+    private final double sampleRatio;
+    private final SpanExporter exporter;
+    private final long epochBase = System.currentTimeMillis() * 1_000_000L;
+    private final long nanoBase = System.nanoTime();
+
+    /**
+     * @param sampleRatio share of new traces that are recorded, 0 to 1
+     */
+    public Tracer(double sampleRatio, SpanExporter exporter) {
+        this.sampleRatio = sampleRatio;
+        this.exporter = exporter;
+    }
+
+    /**
+     * Starts the root span of a request, or continues the caller's trace.
+     *
+     * @param traceparent the incoming W3C traceparent header, may be null
+     * @return the span, or null if the trace is not sampled
+     */
+    public Span startServer(String name, String traceparent) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (traceparent != null && traceparent.length() == 55 && traceparent.startsWith("00-")) {
+            try {
+                long high = Long.parseUnsignedLong(traceparent, 3, 19, 16);
+                long low = Long.parseUnsignedLong(traceparent, 19, 35, 16);
+                long parent = Long.parseUnsignedLong(traceparent, 36, 52, 16);
+                boolean sampled = (Integer.parseInt(traceparent, 53, 55, 16) & 1) == 1;
+                if (!sampled) return null;
+                return new Span(this, high, low, newId(), parent, name, Span.Kind.SERVER);
+            } catch (NumberFormatException e) {
+                // malformed header: start a new trace
+            }
+        }
+        if (random.nextDouble() >= sampleRatio) return null;
+        return new Span(this, random.nextLong(), random.nextLong(), newId(), 0, name, Span.Kind.SERVER);
+    }
+
+    long newId() {
+        long id;
+        do {
+            id = ThreadLocalRandom.current().nextLong();
+        } while (id == 0);
+        return id;
+    }
+
+    long epochNanos() {
+        return epochBase + (System.nanoTime() - nanoBase);
+    }
+
+    void export(Span span) {
+        exporter.export(span);
+    }
+}
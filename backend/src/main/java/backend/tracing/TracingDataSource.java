@@ -0,0 +1,133 @@
+package backend.tracing;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+
+/**
+ * Gives every JDBC statement run inside a sampled trace a CLIENT span, plus one for taking the
+ * connection from the pool (which includes any wait for a bulkhead partition). Connections
+ * taken outside a sampled trace are handed out untouched, so unsampled requests pay nothing.
+ * Only the SQL text goes into the span, never the bound parameters, so no patient data ends
+ * up in the trace files.
+ */
+public class TracingDataSource extends DelegatingDataSource {
+
+    private final String system;
+    private final int maxStatementLength;
+
+    /**
+     * @param system the db.system attribute, e.g. mssql
+     * @param maxStatementLength longer SQL is cut off in db.statement
+     */
+    public TracingDataSource(DataSource target, String system, int maxStatementLength) {
+        super(target);
+        this.system = system;
+        this.maxStatementLength = maxStatementLength;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (TraceContext.current() == null) return super.getConnection();
+        try (TraceContext.Scope scope = TraceContext.open("db.connection.acquire", Span.Kind.INTERNAL)) {
+            try {
+                return tracing(super.getConnection());
+            } catch (SQLException | RuntimeException e) {
+                scope.error(e);
+                throw e;
+            }
+        }
+    }
+
+    private Connection tracing(Connection target) {
+        return (Connection) Proxy.newProxyInstance(TracingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals" -> {
+                            return proxy == args[0];
+                        }
+                        case "hashCode" -> {
+                            return System.identityHashCode(proxy);
+                        }
+                        case "unwrap" -> {
+                            if (((Class<?>) args[0]).isInstance(proxy)) return proxy;
+                        }
+                        default -> {
+                        }
+                    }
+                    Object result = invoke(target, method, args);
+                    if (result instanceof CallableStatement s) return statement(s, CallableStatement.class, (String) args[0]);
+                    if (result instanceof PreparedStatement s) return statement(s, PreparedStatement.class, (String) args[0]);
+                    if (result instanceof Statement s) return statement(s, Statement.class, null);
+                    return result;
+                });
+    }
+
+    private Object statement(Statement target, Class<? extends Statement> type, String preparedSql) {
+        return Proxy.newProxyInstance(TracingDataSource.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    switch (name) {
+                        case "equals" -> {
+                            return proxy == args[0];
+                        }
+                        case "hashCode" -> {
+                            return System.identityHashCode(proxy);
+                        }
+                        case "unwrap" -> {
+                            if (((Class<?>) args[0]).isInstance(proxy)) return proxy;
+                        }
+                        default -> {
+                        }
+                    }
+                    if (!name.startsWith("execute")) return invoke(target, method, args);
+
+                    String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : preparedSql;
+                    try (TraceContext.Scope scope = TraceContext.open(operation(sql), Span.Kind.CLIENT)) {
+                        Span span = scope.span();
+                        if (span != null) {
+                            span.attribute("db.system", system);
+                            if (sql != null) span.attribute("db.statement", truncate(sql));
+                            if (name.equals("executeBatch")) span.attribute("db.operation.batch", 1L);
+                        }
+                        try {
+                            return invoke(target, method, args);
+                        } catch (SQLException | RuntimeException e) {
+                            scope.error(e);
+                            throw e;
+                        }
+                    }
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    // span name is the statement's first keyword, e.g. "SELECT"
+    static String operation(String sql) {
+        if (sql == null) return "db.query";
+        int start = 0;
+        while (start < sql.length() && !Character.isLetter(sql.charAt(start))) start++;
+        int end = start;
+        while (end < sql.length() && Character.isLetter(sql.charAt(end))) end++;
+        return end == start ? "db.query" : sql.substring(start, end).toUpperCase(Locale.ROOT);
+    }
+
+    private String truncate(String sql) {
+        return sql.length() <= maxStatementLength ? sql : sql.substring(0, maxStatementLength) + "...";
+    }
+}
@@ -0,0 +1,87 @@
+package backend.tracing;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Decides per request whether it is traced and, if so, opens the SERVER span every other span
+ * of the request hangs off. A caller's W3C traceparent is honoured: its sampling decision wins
+ * and the spans join its trace. The span is named after the matched route, so /api/users/7 and
+ * /api/users/8 are one operation. Only the route is recorded, never the request URI: paths such
+ * as /api/patients/{patientName}/full carry patient names. Async requests (streamed exports)
+ * end the span when the response completes rather than when the first dispatch returns.
+ */
+public class TracingFilter extends OncePerRequestFilter {
+
+    private final Tracer tracer;
+
+    public TracingFilter(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Span span = tracer.startServer(request.getMethod(), request.getHeader("traceparent"));
+        if (span == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        span.attribute("http.request.method", request.getMethod());
+        Span previous = TraceContext.swap(span);
+        try {
+            chain.doFilter(request, response);
+        } catch (ServletException | IOException | RuntimeException e) {
+            span.error(e);
+            throw e;
+        } finally {
+            TraceContext.swap(previous);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new EndOnComplete(span, request, response));
+            } else {
+                end(span, request, response);
+            }
+        }
+    }
+
+    private static void end(Span span, HttpServletRequest request, HttpServletResponse response) {
+        Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (route != null) {
+            span.rename(request.getMethod() + " " + route).attribute("http.route", route.toString());
+        }
+        span.attribute("http.response.status_code", response.getStatus());
+        span.end();
+    }
+
+    private record EndOnComplete(Span span, HttpServletRequest request, HttpServletResponse response)
+            implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            end(span, request, response);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            span.attribute("error.type", "timeout");
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            if (event.getThrowable() != null) span.error(event.getThrowable());
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package backend.warmup;
+
+import backend.audit.AuditLog;
+import backend.auth.SessionManager;
+import backend.controller.PatientRecordController;
+import backend.controller.PatientRecordController.CreateDiagnosisRequest;
+import backend.controller.PatientRecordController.CreateNoteRequest;
+import backend.datasource.PatientShards;
+import backend.json.JsonBody;
+import backend.messaging.MessagingService;
+import backend.messaging.MessagingService.SendMessageRequest;
+import backend.model.Patient;
+import backend.model.Role;
+import backend.model.User;
+import backend.repository.PatientRepository;
+import backend.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Replays the hot message and record requests through the real messaging service and record
+ * controller, repositories and response writers before the application reports ready, so the first clinical requests after a
+ * deploy do not run interpreted code against cold Hibernate plan caches.
+ *
+ * Every iteration works on its own synthetic patient, users and messages, created inside a
+ * transaction that is rolled back at the end, so nothing stays behind, and runs unaudited so no
+ * synthetic accesses reach the audit log. With sharding the record requests are left out: they
+ * run in their own shard transactions, which would wait on the locks of the uncommitted patient.
+ *
+ * Iterations run until the JIT has settled, that is until compilation took less than the given
+ * share of the time in several windows in a row, or until the time budget is spent.
+ */
+public class WarmUp {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmUp.class);
+    private static final int MAX_FAILURES_IN_A_ROW = 3;
+
+    /** How a warm-up went. */
+    public record Result(int iterations, Duration elapsed, Duration compilation, Duration firstIteration,
+                         Duration lastIteration, boolean settled) {}
+
+    private final MessagingService messaging;
+    private final PatientRecordController recordController;
+    private final PatientRepository patients;
+    private final UserRepository users;
+    private final PatientShards shards;
+    private final TransactionTemplate tx;
+    private final ObjectMapper mapper;
+    private final MeterRegistry registry;
+
+    // last warm-up, kept here since gauges only hold weak references
+    private final AtomicLong durationMs = new AtomicLong();
+    private final AtomicLong compilationMs = new AtomicLong();
+    private final AtomicLong firstIterationUs = new AtomicLong();
+    private final AtomicLong lastIterationUs = new AtomicLong();
+
+    public WarmUp(MessagingService messaging, PatientRecordController recordController,
+                  PatientRepository patients, UserRepository users, PatientShards shards,
+                  TransactionTemplate tx, ObjectMapper mapper, MeterRegistry registry) {
+        this.messaging = messaging;
+        this.recordController = recordController;
+        this.patients = patients;
+        this.users = users;
+        this.shards = shards;
+        this.tx = tx;
+        this.mapper = mapper;
+        this.registry = registry;
+        registry.gauge("journal.warmup.duration", durationMs);
+        registry.gauge("journal.warmup.compilation", compilationMs);
+        registry.gauge("journal.warmup.iteration.first", firstIterationUs);
+        registry.gauge("journal.warmup.iteration.last", lastIterationUs);
+    }
+
+    /**
+     * @param budget longest time to spend
+     * @param window length of one measurement of compilation activity
+     * @param settledWindows windows in a row below {@code maxCompilationShare} that count as settled
+     * @param maxCompilationShare share of a window spent compiling, 0 to 1, below which it counts as quiet
+     */
+    public Result run(Duration budget, Duration window, int settledWindows, double maxCompilationShare) {
+        CompilationMXBean jit = ManagementFactory.getCompilationMXBean();
+        boolean canMeasure = jit != null && jit.isCompilationTimeMonitoringSupported();
+        Timer iterationTimer = Timer.builder("journal.warmup.iteration").register(registry);
+        Counter failures = Counter.builder("journal.warmup.failures")
+                .description("Warm-up iterations that ended in an unexpected error").register(registry);
+
+        long start = System.nanoTime();
+        long deadline = start + budget.toNanos();
+        long jitAtStart = canMeasure ? jit.getTotalCompilationTime() : 0;
+        long windowStart = start;
+        long jitAtWindowStart = jitAtStart;
+        int quietWindows = 0;
+        int failedInARow = 0;
+        int iterations = 0;
+        long first = 0;
+        long last = 0;
+        if (shards.isSharded()) log.info("Warm-up skips the record requests, sharding is on");
+
+        while (System.nanoTime() < deadline && quietWindows < settledWindows) {
+            long t0 = System.nanoTime();
+            try {
+                iteration();
+                failedInARow = 0;
+            } catch (RuntimeException e) {
+                failures.increment();
+                log.warn("Warm-up iteration failed", e);
+                // e.g. the database is down; readiness should not wait out the budget for that
+                if (++failedInARow == MAX_FAILURES_IN_A_ROW) {
+                    log.warn("Giving up the warm-up after {} failed iterations", failedInARow);
+                    break;
+                }
+            }
+            last = System.nanoTime() - t0;
+            if (iterations++ == 0) first = last;
+            iterationTimer.record(Duration.ofNanos(last));
+
+            long now = System.nanoTime();
+            if (canMeasure && now - windowStart >= window.toNanos()) {
+                long compiledMs = jit.getTotalCompilationTime() - jitAtWindowStart;
+                double share = compiledMs / ((now - windowStart) / 1e6);
+                quietWindows = share < maxCompilationShare ? quietWindows + 1 : 0;
+                windowStart = now;
+                jitAtWindowStart = jit.getTotalCompilationTime();
+            }
+        }
+
+        Result result = new Result(iterations, Duration.ofNanos(System.nanoTime() - start),
+                Duration.ofMillis(canMeasure ? jit.getTotalCompilationTime() - jitAtStart : 0),
+                Duration.ofNanos(first), Duration.ofNanos(last), quietWindows >= settledWindows);
+        record(result);
+        return result;
+    }
+
+    private void record(Result r) {
+        Counter.builder("journal.warmup.iterations").register(registry).increment(r.iterations());
+        durationMs.set(r.elapsed().toMillis());
+        compilationMs.set(r.compilation().toMillis());
+        firstIterationUs.set(r.firstIteration().toNanos() / 1000);
+        lastIterationUs.set(r.lastIteration().toNanos() / 1000);
+        log.info("Warm-up: {} iterations in {} ms, {} ms compiling, first iteration {} us, last {} us, {}",
+                r.iterations(), r.elapsed().toMillis(), r.compilation().toMillis(),
+                r.firstIteration().toNanos() / 1000, r.lastIteration().toNanos() / 1000,
+                r.settled() ? "compilation settled" : "stopped by the time budget");
+    }
+
+    // one round of the requests that matter after a deploy, on throwaway rows
+    private void iteration() {
+        tx.executeWithoutResult(status -> {
+            String tag = UUID.randomUUID().toString().substring(0, 8);
+            Patient patient = new Patient();
+            patient.setName("warmup-" + tag);
+            patient.setPersonnummer("warmup-" + tag);
+            patient = patients.save(patient);
+
+            User patientUser = users.save(user("warmup-p-" + tag, Role.PATIENT, patient.getId()));
+            User doctor = users.save(user("warmup-d-" + tag, Role.DOCTOR, null));
+            String patientToken = SessionManager.issueToken(patientUser.getId());
+            String doctorToken = SessionManager.issueToken(doctor.getId());
+            long patientId = patient.getId();
+            String patientName = patient.getName();
+            try {
+                AuditLog.unaudited(() -> {
+                    requests(patientToken, doctorToken, patientUser.getId(), doctor.getId(), patientId, patientName);
+                    return null;
+                });
+            } finally {
+                SessionManager.revoke(patientToken);
+                SessionManager.revoke(doctorToken);
+                status.setRollbackOnly();
+            }
+        });
+    }
+
+    private void requests(String patientToken, String doctorToken, long patientUserId, long doctorId,
+                          long patientId, String patientName) {
+        call(() -> ResponseEntity.ok(messaging.send(doctorToken,
+                new SendMessageRequest(patientUserId, "Provsvaren har kommit, allt ser bra ut."))));
+        call(() -> ResponseEntity.ok(messaging.send(patientToken,
+                new SendMessageRequest(doctorId, "Tack! Behöver jag boka ett återbesök?"))));
+        call(() -> ResponseEntity.ok(messaging.thread(patientToken, doctorId)));
+        call(() -> ResponseEntity.ok(messaging.contacts(doctorToken)));
+        if (shards.isSharded()) return;
+        call(() -> recordController.createNote(doctorToken, patientId,
+                new CreateNoteRequest("Uppföljning efter provtagning. Inga nya besvär.")));
+        call(() -> recordController.createDiagnosis(doctorToken, patientId,
+                new CreateDiagnosisRequest("Z00.0", "Allmän undersökning", null)));
+        call(() -> recordController.getFullRecordForDoctor(doctorToken, patientName));
+        call(() -> recordController.getMyRecord(patientToken));
+    }
+
+    private static User user(String username, Role role, Long patientId) {
+        User u = new User();
+        u.setUsername(username);
+        // never committed, and matches no password
+        u.setPassword("!" + UUID.randomUUID());
+        u.setRole(role);
+        u.setPatientId(patientId);
+        return u;
+    }
+
+    // renders the body like the message converters would, into nothing
+    private void call(Supplier<ResponseEntity<?>> request) {
+        Object body;
+        try {
+            body = request.get().getBody();
+        } catch (ResponseStatusException e) {
+            // e.g. a validation the synthetic rows do not pass
+            return;
+        }
+        try (JsonGenerator g = mapper.getFactory().createGenerator(OutputStream.nullOutputStream())) {
+            if (body instanceof JsonBody json) json.writeTo(g);
+            else mapper.writeValue(g, body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
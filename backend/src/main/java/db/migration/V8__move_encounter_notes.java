@@ -0,0 +1,114 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Copies encounter.notes into encounter_note (compressed) and fills encounter.note_preview,
+ * then drops the old column. Runs in id order, a batch at a time, so large tables are
+ * never read into memory at once. Lives in Java because the compression is done by the application.
+ *
+ * The encoding and the preview rule are copied from CompressedTextConverter and
+ * EncounterNote.previewOf as they were when this migration was written, so that later changes
+ * to either cannot change what this migration writes. The converter must keep reading it.
+ */
+public class V8__move_encounter_notes extends BaseJavaMigration {
+
+    private static final int BATCH = 500;
+
+    private static final byte PLAIN = 0;
+    private static final byte DEFLATE = 1;
+    private static final int MIN_COMPRESS_BYTES = 256;
+    private static final int PREVIEW_LENGTH = 200;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection con = context.getConnection();
+
+        try (PreparedStatement select = con.prepareStatement(
+                     "SELECT TOP (?) id, notes FROM dbo.encounter WHERE id > ? AND notes IS NOT NULL ORDER BY id");
+             PreparedStatement insert = con.prepareStatement(
+                     "INSERT INTO dbo.encounter_note (encounter_id, body) VALUES (?, ?)");
+             PreparedStatement preview = con.prepareStatement(
+                     "UPDATE dbo.encounter SET note_preview = ? WHERE id = ?")) {
+
+            long after = 0;
+            while (true) {
+                select.setInt(1, BATCH);
+                select.setLong(2, after);
+                int rows = 0;
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        long id = rs.getLong("id");
+                        String notes = rs.getString("notes");
+
+                        insert.setLong(1, id);
+                        insert.setBytes(2, encode(notes));
+                        insert.addBatch();
+
+                        preview.setNString(1, preview(notes));
+                        preview.setLong(2, id);
+                        preview.addBatch();
+
+                        after = id;
+                        rows++;
+                    }
+                }
+                if (rows == 0) break;
+                insert.executeBatch();
+                preview.executeBatch();
+            }
+        }
+
+        try (Statement st = con.createStatement()) {
+            st.execute("ALTER TABLE dbo.encounter DROP COLUMN notes");
+        }
+    }
+
+    // codec byte, then UTF-8 (PLAIN) or raw deflate of UTF-8 (DEFLATE) when that is smaller
+    static byte[] encode(String text) {
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        byte codec = PLAIN;
+        byte[] body = utf8;
+        if (utf8.length >= MIN_COMPRESS_BYTES) {
+            byte[] deflated = deflate(utf8);
+            if (deflated.length + 1 < utf8.length) {
+                codec = DEFLATE;
+                body = deflated;
+            }
+        }
+        byte[] out = new byte[body.length + 1];
+        out[0] = codec;
+        System.arraycopy(body, 0, out, 1, body.length);
+        return out;
+    }
+
+    static String preview(String text) {
+        return text.length() <= PREVIEW_LENGTH ? text : text.substring(0, PREVIEW_LENGTH);
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            byte[] buf = new byte[Math.max(64, input.length / 2)];
+            int len = 0;
+            while (!deflater.finished()) {
+                if (len == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+                len += deflater.deflate(buf, len, buf.length - len);
+            }
+            return Arrays.copyOf(buf, len);
+        } finally {
+            deflater.end();
+        }
+    }
+}
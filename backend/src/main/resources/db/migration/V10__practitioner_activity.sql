@@ -0,0 +1,35 @@
+-- V10__practitioner_activity.sql
+-- Encounters and diagnoses per practitioner and day, kept next to the rows they count so
+-- the increment commits with the write. Each shard counts its own patients' rows; the
+-- activity API adds the shards together. A periodic reconciliation recounts recent days.
+ALTER TABLE dbo.[condition] ADD recorded_at DATETIME2 NULL;
+GO
+
+-- when a diagnosis was recorded was not kept before; the onset date is the best guess
+UPDATE dbo.[condition] SET recorded_at = COALESCE(CAST(onset_date AS DATETIME2), SYSDATETIME());
+ALTER TABLE dbo.[condition] ALTER COLUMN recorded_at DATETIME2 NOT NULL;
+
+CREATE INDEX ix_encounter_start_time ON dbo.encounter (start_time) INCLUDE (practitioner_id);
+CREATE INDEX ix_condition_recorded_at ON dbo.[condition] (recorded_at) INCLUDE (asserted_by_practitioner_id);
+
+CREATE TABLE dbo.practitioner_daily_activity (
+    practitioner_id BIGINT NOT NULL,
+    day             DATE   NOT NULL,
+    encounters      INT    NOT NULL,
+    diagnoses       INT    NOT NULL,
+    CONSTRAINT pk_practitioner_daily_activity PRIMARY KEY (day, practitioner_id)
+);
+GO
+
+INSERT INTO dbo.practitioner_daily_activity (practitioner_id, day, encounters, diagnoses)
+SELECT practitioner_id, day, SUM(encounters), SUM(diagnoses)
+FROM (
+    SELECT practitioner_id, CAST(start_time AS DATE) AS day, 1 AS encounters, 0 AS diagnoses
+    FROM dbo.encounter
+    WHERE practitioner_id IS NOT NULL AND start_time IS NOT NULL
+    UNION ALL
+    SELECT asserted_by_practitioner_id, CAST(recorded_at AS DATE), 0, 1
+    FROM dbo.[condition]
+    WHERE asserted_by_practitioner_id IS NOT NULL
+) activity
+GROUP BY practitioner_id, day;
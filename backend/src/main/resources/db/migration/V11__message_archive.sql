@@ -0,0 +1,21 @@
+-- V11__message_archive.sql
+-- Old messages are moved out of dbo.message into compressed segments: each row holds up to
+-- journal.archive.segment-size messages of one conversation, oldest segments first, so a
+-- conversation's history can be paged backwards by segment id. Rows are never updated.
+CREATE TABLE dbo.message_archive_segment (
+    id            BIGINT IDENTITY(1,1) PRIMARY KEY,
+    user_low      BIGINT         NOT NULL,
+    user_high     BIGINT         NOT NULL,
+    first_sent_at DATETIME2      NOT NULL,
+    last_sent_at  DATETIME2      NOT NULL,
+    message_count INT            NOT NULL,
+    body          VARBINARY(MAX) NOT NULL,
+    archived_at   DATETIME2      NOT NULL CONSTRAINT df_message_archive_archived_at DEFAULT SYSDATETIME()
+);
+
+CREATE INDEX ix_message_archive_pair ON dbo.message_archive_segment (user_low, user_high)
+    INCLUDE (first_sent_at, last_sent_at, message_count);
+
+-- finding the oldest messages to move, and loading one conversation
+CREATE INDEX ix_message_sent_at ON dbo.message (sent_at) INCLUDE (sender_user_id, receiver_user_id);
+CREATE INDEX ix_message_pair ON dbo.message (sender_user_id, receiver_user_id, sent_at);
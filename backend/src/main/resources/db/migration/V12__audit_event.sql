@@ -0,0 +1,16 @@
+-- V12__audit_event.sql
+-- Access audit events shipped from the audit segment files (journal.audit.*).
+-- (segment, seq) identifies an event in its file, so shipping a segment again replaces its rows.
+CREATE TABLE dbo.audit_event (
+    segment     BIGINT      NOT NULL,
+    seq         INT         NOT NULL,
+    occurred_at DATETIME2(3) NOT NULL,
+    action      VARCHAR(20) NOT NULL,
+    user_id     BIGINT      NOT NULL,
+    patient_id  BIGINT      NOT NULL,
+    subject_id  BIGINT      NULL,
+    CONSTRAINT pk_audit_event PRIMARY KEY (segment, seq)
+);
+
+CREATE INDEX ix_audit_event_patient ON dbo.audit_event (patient_id, occurred_at);
+CREATE INDEX ix_audit_event_user ON dbo.audit_event (user_id, occurred_at);
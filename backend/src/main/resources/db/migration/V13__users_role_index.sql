@@ -0,0 +1,4 @@
+-- V13__users_role_index.sql
+-- Keyset pages of /api/users filtered by role: seek on role, read in id order,
+-- with the username in the index so the listing never touches the table.
+CREATE INDEX ix_users_role_id ON dbo.users (role, id) INCLUDE (username);
@@ -0,0 +1,6 @@
+-- V14__patient_name_index.sql
+-- Looking a patient up by name (PatientRecordController, PatientRepository.findByName) scanned
+-- the whole patient table. The other hot lookups already seek: encounter and condition by
+-- patient (V6), users by username (unique constraint) and role (V13), message threads (V11).
+-- QueryPlanTests checks all of them against a seeded database.
+CREATE INDEX ix_patient_name ON dbo.patient (name);
@@ -0,0 +1,5 @@
+-- V15__broadcast_indexes.sql
+-- Message broadcasts to a practitioner's patients (/api/messages/broadcasts) find the patients
+-- through their encounters and then the patients' accounts; both lookups scanned their table.
+CREATE INDEX ix_encounter_practitioner_patient ON dbo.encounter (practitioner_id, patient_id);
+CREATE INDEX ix_users_patient ON dbo.users (patient_id) INCLUDE (role);
@@ -0,0 +1,12 @@
+-- V17__message_archive_change_version.sql
+-- Archiving deletes messages from dbo.message, which the rowversion-based change feed
+-- (/api/changes) cannot see. A segment's change_version is taken in the same transaction as
+-- the deletes, so it comes after the versions of the messages it holds, and the feed reports
+-- the segment as the tombstone of those messages. rowversion is database-wide, so segments
+-- and messages share the feed's message cursor.
+ALTER TABLE dbo.message_archive_segment ADD change_version ROWVERSION;
+GO
+
+CREATE INDEX ix_message_archive_change ON dbo.message_archive_segment (change_version)
+    INCLUDE (user_low, user_high);
+GO
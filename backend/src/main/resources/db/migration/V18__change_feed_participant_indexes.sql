@@ -0,0 +1,12 @@
+-- V18__change_feed_participant_indexes.sql
+-- The change feed (/api/changes) reads a user's messages and archive segments after a cursor.
+-- An index keyed on change_version alone made that a range scan over every user's changes,
+-- filtered by sender or receiver. Keyed by user first, each side is a seek that starts at the
+-- cursor. The feed queries the two sides separately and merges them.
+DROP INDEX ix_message_change ON dbo.message;
+DROP INDEX ix_message_archive_change ON dbo.message_archive_segment;
+
+CREATE INDEX ix_message_sender_change ON dbo.message (sender_user_id, change_version);
+CREATE INDEX ix_message_receiver_change ON dbo.message (receiver_user_id, change_version) INCLUDE (sender_user_id);
+CREATE INDEX ix_message_archive_low_change ON dbo.message_archive_segment (user_low, change_version);
+CREATE INDEX ix_message_archive_high_change ON dbo.message_archive_segment (user_high, change_version) INCLUDE (user_low);
@@ -0,0 +1,23 @@
+-- V5__shard_identity_ranges.sql
+-- Each shard allocates patient-scoped ids from its own range (shard number * journal.sharding.id-range),
+-- so ids stay globally unique and the owning shard follows from the id.
+-- On an unsharded database shard_id_base is 0 and nothing changes.
+IF IDENT_CURRENT('dbo.patient') < ${shard_id_base}
+    DBCC CHECKIDENT ('dbo.patient', RESEED, ${shard_id_base});
+IF IDENT_CURRENT('dbo.encounter') < ${shard_id_base}
+    DBCC CHECKIDENT ('dbo.encounter', RESEED, ${shard_id_base});
+IF IDENT_CURRENT('dbo.[condition]') < ${shard_id_base}
+    DBCC CHECKIDENT ('dbo.[condition]', RESEED, ${shard_id_base});
+IF IDENT_CURRENT('dbo.observation') < ${shard_id_base}
+    DBCC CHECKIDENT ('dbo.observation', RESEED, ${shard_id_base});
+
+-- Users, practitioners and locations stay on shard 0 while patient records are spread out,
+-- so these references cannot be enforced by foreign keys once there is more than one shard.
+IF ${shard_count} > 1
+BEGIN
+    ALTER TABLE dbo.users DROP CONSTRAINT fk_user_patient;
+    ALTER TABLE dbo.encounter DROP CONSTRAINT fk_encounter_practitioner;
+    ALTER TABLE dbo.encounter DROP CONSTRAINT fk_encounter_location;
+    ALTER TABLE dbo.[condition] DROP CONSTRAINT fk_cond_pract;
+    ALTER TABLE dbo.observation DROP CONSTRAINT fk_obs_pract;
+END
@@ -0,0 +1,13 @@
+-- V6__change_version.sql
+-- rowversion columns are bumped by SQL Server on every insert and update and back the
+-- "changes since cursor" feed (/api/changes). GO separates batches so the indexes
+-- can see the new columns.
+ALTER TABLE dbo.encounter ADD change_version ROWVERSION;
+ALTER TABLE dbo.[condition] ADD change_version ROWVERSION;
+ALTER TABLE dbo.message ADD change_version ROWVERSION;
+GO
+
+CREATE INDEX ix_encounter_patient_change ON dbo.encounter (patient_id, change_version);
+CREATE INDEX ix_condition_patient_change ON dbo.[condition] (patient_id, change_version);
+CREATE INDEX ix_message_change ON dbo.message (change_version) INCLUDE (sender_user_id, receiver_user_id);
+GO
@@ -0,0 +1,14 @@
+-- V7__encounter_note.sql
+-- Note bodies move out of the encounter row into encounter_note so that listing a
+-- patient's encounters never touches the note text. The body is written by the
+-- application (CompressedTextConverter): a codec byte followed by UTF-8 or raw deflate.
+-- note_preview keeps the first 200 characters on the encounter row for list views.
+-- V8 copies the existing notes over and drops encounter.notes.
+CREATE TABLE dbo.encounter_note (
+    encounter_id BIGINT NOT NULL PRIMARY KEY,
+    body VARBINARY(MAX) NOT NULL,
+    CONSTRAINT fk_encounter_note_encounter FOREIGN KEY (encounter_id) REFERENCES dbo.encounter(id) ON DELETE CASCADE
+);
+
+ALTER TABLE dbo.encounter ADD note_preview NVARCHAR(200) NULL;
+GO
@@ -0,0 +1,23 @@
+-- V9__import_staging.sql
+-- Staging tables for the CSV patient import. Rows are bulk copied here tagged with the
+-- import job id, merged into patient/users in one statement and deleted again in the same
+-- transaction, so the tables are empty between batches.
+CREATE TABLE dbo.patient_import_staging (
+    job_id       CHAR(36)     NOT NULL,
+    line_no      INT          NOT NULL,
+    personnummer VARCHAR(32)  NOT NULL,
+    name         VARCHAR(255) NULL,
+    birth_date   DATE         NULL,
+    gender       VARCHAR(20)  NULL,
+    contact_info VARCHAR(255) NULL,
+    CONSTRAINT pk_patient_import_staging PRIMARY KEY (job_id, line_no)
+);
+
+CREATE TABLE dbo.user_import_staging (
+    job_id        CHAR(36)     NOT NULL,
+    line_no       INT          NOT NULL,
+    username      VARCHAR(100) NOT NULL,
+    password_hash VARCHAR(100) NOT NULL,
+    patient_id    BIGINT       NULL,
+    CONSTRAINT pk_user_import_staging PRIMARY KEY (job_id, line_no)
+);
@@ -0,0 +1,13 @@
+-- afterMigrate__drop_cross_shard_foreign_keys.sql
+-- Flyway callback, run after every migrate. V5 drops the references from patient records to
+-- shard 0 only when a database is first migrated with more than one shard; a database that
+-- started unsharded keeps them, and rows on the other shards break them as soon as sharding is
+-- turned on. Running on every migrate drops them then. Unsharded databases keep their foreign keys.
+IF ${shard_count} > 1
+BEGIN
+    ALTER TABLE dbo.users DROP CONSTRAINT IF EXISTS fk_user_patient;
+    ALTER TABLE dbo.encounter DROP CONSTRAINT IF EXISTS fk_encounter_practitioner;
+    ALTER TABLE dbo.encounter DROP CONSTRAINT IF EXISTS fk_encounter_location;
+    ALTER TABLE dbo.[condition] DROP CONSTRAINT IF EXISTS fk_cond_pract;
+    ALTER TABLE dbo.observation DROP CONSTRAINT IF EXISTS fk_obs_pract;
+END
@@ -0,0 +1,46 @@
+package backend.archive;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageSegmentsTests {
+
+    @Test
+    void roundTripKeepsEveryField() {
+        LocalDateTime t = LocalDateTime.of(2023, 2, 1, 8, 30, 0, 120_000_000);
+        List<ArchivedMessage> messages = List.of(
+                new ArchivedMessage(10, 3, 9, "Hej, hur mår du?", t, true),
+                new ArchivedMessage(11, 9, 3, "Bättre, tack ✓", t.plusMinutes(4), false));
+
+        assertEquals(messages, MessageSegments.decode(3, 9, MessageSegments.encode(3, messages)));
+    }
+
+    @Test
+    void conversationsCompress() {
+        LocalDateTime t = LocalDateTime.of(2023, 2, 1, 8, 30);
+        List<ArchivedMessage> messages = new ArrayList<>();
+        long raw = 0;
+        for (int i = 0; i < 200; i++) {
+            String content = "Provsvar " + i + " är klara, vi ses på mottagningen nästa vecka.";
+            raw += content.getBytes(StandardCharsets.UTF_8).length;
+            messages.add(new ArchivedMessage(i, i % 2 == 0 ? 3 : 9, i % 2 == 0 ? 9 : 3, content, t.plusHours(i), true));
+        }
+
+        byte[] body = MessageSegments.encode(3, messages);
+        assertTrue(body.length < raw / 4, "segment is " + body.length + " bytes for " + raw + " bytes of text");
+        assertEquals(messages, MessageSegments.decode(3, 9, body));
+    }
+
+    @Test
+    void unknownFormatIsRejected() {
+        assertThrows(IllegalStateException.class, () -> MessageSegments.decode(3, 9, new byte[] {7, 1, 2}));
+    }
+}
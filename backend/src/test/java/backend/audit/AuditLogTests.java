@@ -0,0 +1,209 @@
+package backend.audit;
+
+import backend.audit.AuditEvent.Action;
+import backend.repository.AuditRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AuditLogTests {
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void everyEventFromConcurrentWritersEndsUpInSealedSegments() throws Exception {
+        // 4 KB segments hold about a hundred events, so this rolls many times
+        AuditLog log = new AuditLog(dir, 64, 4096, 16, Duration.ofMillis(10), Duration.ofMinutes(5),
+                Duration.ofSeconds(5), registry);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            long user = t;
+            writers.add(pool.submit(() -> {
+                for (int i = 0; i < 1000; i++) log.record(Action.READ_RECORD, user, i, 0);
+            }));
+        }
+        for (Future<?> f : writers) f.get();
+        pool.shutdown();
+        log.close();
+
+        List<AuditEvent> events = new ArrayList<>();
+        List<Path> sealed = AuditSegment.list(dir, AuditSegment.SEALED);
+        assertTrue(sealed.size() > 10);
+        for (Path file : sealed) assertTrue(AuditSegment.read(file, events::add));
+        assertEquals(4000, events.size());
+        for (long user = 0; user < 4; user++) {
+            long u = user;
+            // each writer's own events stay in order
+            assertEquals(LongStream.range(0, 1000).boxed().toList(),
+                    events.stream().filter(e -> e.userId() == u).map(AuditEvent::patientId).toList());
+        }
+        assertEquals(0.0, registry.counter("journal.audit.events", "outcome", "dropped").count());
+        assertTrue(AuditSegment.list(dir, AuditSegment.OPEN).isEmpty());
+    }
+
+    @Test
+    void damagedFrameEndsTheReadAndScanFindsThePatient() throws Exception {
+        AuditLog log = new AuditLog(dir, 64, 4096, 1, Duration.ZERO, Duration.ofMinutes(5),
+                Duration.ofSeconds(5), registry);
+        log.record(Action.WRITE_NOTE, 7, 42, 1001);
+        log.record(Action.READ_RECORD, 7, 43, 0);
+        log.record(Action.READ_RECORD, 8, 42, 0);
+        log.close();
+
+        Path file = AuditSegment.list(dir, AuditSegment.SEALED).get(0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, AuditScan.scan(dir, 42, new PrintStream(out)));
+        assertTrue(out.toString().contains("WRITE_NOTE\t7\t42\t1001"));
+
+        // flip a byte in the third frame (header 16, frames of 8 + 36 bytes)
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.wrap(new byte[] {0x55}), 16 + 2 * 44 + 8 + 3);
+        }
+        List<AuditEvent> events = new ArrayList<>();
+        assertFalse(AuditSegment.read(file, events::add));
+        assertEquals(2, events.size());
+    }
+
+    @Test
+    void unauditedWorkRecordsNothing() throws Exception {
+        AuditLog log = new AuditLog(dir, 64, 4096, 1, Duration.ZERO, Duration.ofMinutes(5),
+                Duration.ofSeconds(5), registry);
+        AuditLog.unaudited(() -> {
+            log.record(Action.READ_RECORD, 7, 42, 0);
+            return null;
+        });
+        log.record(Action.READ_RECORD, 8, 43, 0);
+        log.close();
+
+        List<AuditEvent> events = new ArrayList<>();
+        for (Path file : AuditSegment.list(dir, AuditSegment.SEALED)) AuditSegment.read(file, events::add);
+        assertEquals(List.of(8L), events.stream().map(AuditEvent::userId).toList());
+    }
+
+    @Test
+    void segmentIdsDoNotRepeatAfterARestartWithAnEmptyDirectory() throws Exception {
+        Map<Long, List<AuditEvent>> table = new TreeMap<>();
+        AuditShipper shipper = new AuditShipper(dir, new InMemoryAuditRepository(table),
+                new TransactionTemplate(new NoTransactions()), registry);
+
+        AuditLog first = new AuditLog(dir, 64, 4096, 1, Duration.ZERO, Duration.ofMinutes(5),
+                Duration.ofSeconds(5), registry);
+        first.record(Action.READ_RECORD, 7, 42, 0);
+        first.close();
+        assertEquals(1, shipper.ship());
+        assertTrue(AuditSegment.list(dir, AuditSegment.SEALED).isEmpty());
+
+        AuditLog second = new AuditLog(dir, 64, 4096, 1, Duration.ZERO, Duration.ofMinutes(5),
+                Duration.ofSeconds(5), registry);
+        second.record(Action.WRITE_NOTE, 8, 43, 1001);
+        second.close();
+        assertEquals(1, shipper.ship());
+
+        // both runs' events are kept, the second under a later id
+        assertEquals(2, table.size());
+        assertEquals(List.of(7L, 8L), table.values().stream().map(events -> events.get(0).userId()).toList());
+        assertEquals(0.0, registry.counter("journal.audit.conflict.segments").count());
+    }
+
+    @Test
+    void segmentHoldingAnotherFilesEventsIsNotReplaced() throws Exception {
+        Map<Long, List<AuditEvent>> table = new TreeMap<>();
+        AuditLog log = new AuditLog(dir, 64, 4096, 1, Duration.ZERO, Duration.ofMinutes(5),
+                Duration.ofSeconds(5), registry);
+        log.record(Action.READ_RECORD, 7, 42, 0);
+        log.close();
+        long id = AuditSegment.sequenceOf(AuditSegment.list(dir, AuditSegment.SEALED).get(0));
+        List<AuditEvent> other = List.of(new AuditEvent(1, Action.READ_RECORD, 9, 99, 0));
+        table.put(id, other);
+
+        AuditShipper shipper = new AuditShipper(dir, new InMemoryAuditRepository(table),
+                new TransactionTemplate(new NoTransactions()), registry);
+        assertEquals(0, shipper.ship());
+        assertEquals(other, table.get(id));
+        assertEquals(1.0, registry.counter("journal.audit.conflict.segments").count());
+        assertTrue(AuditSegment.list(dir, AuditSegment.SEALED).isEmpty());
+    }
+
+    @Test
+    void ringHandsOutElementsInOrderAndRefusesWhenFull() {
+        AuditRing<Integer> ring = new AuditRing<>(4);
+        for (int i = 0; i < 4; i++) assertTrue(ring.offer(i));
+        assertFalse(ring.offer(4));
+
+        List<Integer> taken = new ArrayList<>();
+        assertEquals(3, ring.drain(taken::add, 3));
+        assertTrue(ring.offer(4));
+        assertTrue(ring.offer(5));
+        assertTrue(ring.offer(6));
+        assertFalse(ring.offer(7));
+        ring.drain(taken::add, 10);
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6), taken);
+        assertEquals(0, ring.size());
+    }
+
+    // dbo.audit_event as segment -> events, with the repository's rule for replacing a segment
+    private static final class InMemoryAuditRepository extends AuditRepository {
+        private final Map<Long, List<AuditEvent>> table;
+
+        InMemoryAuditRepository(Map<Long, List<AuditEvent>> table) {
+            super(null);
+            this.table = table;
+        }
+
+        @Override
+        public void replaceSegment(long segment, List<AuditEvent> events) {
+            List<AuditEvent> stored = table.get(segment);
+            if (stored != null && (events.isEmpty() || !stored.get(0).equals(events.get(0)))) {
+                throw new SegmentConflictException("segment " + segment + " already holds another file's events");
+            }
+            table.put(segment, List.copyOf(events));
+        }
+    }
+
+    private static final class NoTransactions extends AbstractPlatformTransactionManager {
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
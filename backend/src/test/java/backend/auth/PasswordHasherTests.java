@@ -0,0 +1,55 @@
+package backend.auth;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PasswordHasherTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PasswordHasher hasher = new PasswordHasher(5, 1, 4, Duration.ofSeconds(5), registry);
+
+    @AfterEach
+    void close() {
+        hasher.close();
+    }
+
+    @Test
+    void legacyPlaintextMatchesAndAsksForRehash() {
+        assertEquals(PasswordHasher.Check.MATCH_REHASH, hasher.check("hemligt", "hemligt"));
+        assertEquals(PasswordHasher.Check.MISMATCH, hasher.check("fel", "hemligt"));
+    }
+
+    @Test
+    void hashesMatchUntilTheCostIsRaised() {
+        String stored = hasher.hash("hemligt");
+        assertTrue(stored.startsWith("{bcrypt}$2a$05$"), stored);
+        assertEquals(PasswordHasher.Check.MATCH, hasher.check("hemligt", stored));
+        assertEquals(PasswordHasher.Check.MISMATCH, hasher.check("fel", stored));
+        assertEquals(3, registry.timer("journal.password.hash").count());
+
+        try (PasswordHasher stronger = new PasswordHasher(6, 1, 4, Duration.ofSeconds(5), new SimpleMeterRegistry())) {
+            assertEquals(PasswordHasher.Check.MATCH_REHASH, stronger.check("hemligt", stored));
+        }
+    }
+
+    @Test
+    void unknownUserCostsAHashToo() {
+        assertEquals(PasswordHasher.Check.MISMATCH, hasher.check("hemligt", null));
+        assertEquals(1, registry.timer("journal.password.hash").count());
+    }
+
+    @Test
+    void slowHashIsShed() {
+        try (PasswordHasher slow = new PasswordHasher(12, 1, 4, Duration.ofMillis(1), registry)) {
+            assertThrows(PasswordHasher.OverloadedException.class, () -> slow.hash("hemligt"));
+            assertEquals(1.0, registry.counter("journal.password.rejected", "reason", "timeout").count());
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package backend.bulkhead;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BulkheadFilterTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void classifiesRequests() {
+        assertEquals(Workload.MESSAGING, Workload.of("GET", "/api/messages/thread/4"));
+        assertEquals(Workload.AUTH, Workload.of("POST", "/api/auth/login"));
+        assertEquals(Workload.RECORDS, Workload.of("GET", "/api/patients/3/full"));
+        assertEquals(Workload.CLINICAL_WRITE, Workload.of("POST", "/api/patients/3/notes"));
+        assertEquals(Workload.OTHER, Workload.of("OPTIONS", "/api/messages/contacts"));
+    }
+
+    @Test
+    void fullWorkloadIsShedWithoutTouchingTheOthers() throws Exception {
+        Bulkhead messaging = new Bulkhead("journal.bulkhead", Workload.MESSAGING, 1, Duration.ZERO, registry);
+        Bulkhead auth = new Bulkhead("journal.bulkhead", Workload.AUTH, 1, Duration.ZERO, registry);
+        BulkheadFilter filter = new BulkheadFilter(Map.of(Workload.MESSAGING, messaging, Workload.AUTH, auth));
+        messaging.tryEnter();
+
+        MockHttpServletResponse polled = run(filter, "GET", "/api/messages/contacts", new MockFilterChain());
+        assertEquals(503, polled.getStatus());
+        assertEquals("1", polled.getHeader("Retry-After"));
+        assertEquals(1.0, registry.counter("journal.bulkhead.rejected", "workload", "messaging").count());
+
+        AtomicReference<Workload> seen = new AtomicReference<>();
+        MockHttpServletResponse login = run(filter, "POST", "/api/auth/login",
+                new MockFilterChain(new HttpServlet() {
+                    @Override
+                    protected void service(HttpServletRequest req,
+                                           HttpServletResponse res) {
+                        seen.set(WorkloadContext.current());
+                    }
+                }));
+        assertEquals(200, login.getStatus());
+        assertEquals(Workload.AUTH, seen.get());
+        assertEquals(0, auth.active());
+        assertEquals(Workload.OTHER, WorkloadContext.current());
+    }
+
+    @Test
+    void connectionPartitionIsReleasedOnClose() throws Exception {
+        DataSource pool = mock(DataSource.class);
+        Connection raw = mock(Connection.class);
+        when(pool.getConnection()).thenReturn(raw);
+        Bulkhead partition = new Bulkhead("journal.db.partition", Workload.MESSAGING, 1, Duration.ZERO, registry);
+        PartitionedDataSource dataSource = new PartitionedDataSource(pool, Map.of(Workload.MESSAGING, partition));
+
+        WorkloadContext.set(Workload.MESSAGING);
+        try {
+            Connection held = dataSource.getConnection();
+            assertThrows(PartitionedDataSource.PartitionExhaustedException.class, () -> onOtherRequest(dataSource));
+            held.close();
+            held.close();
+            verify(raw, times(2)).close();
+            assertEquals(0, partition.active());
+            dataSource.getConnection().close();
+        } finally {
+            WorkloadContext.set(null);
+        }
+
+        // outside a limited workload nothing is counted
+        dataSource.getConnection();
+        assertEquals(0, partition.active());
+    }
+
+    @Test
+    void nestedConnectionSharesTheRequestsPermit() throws Exception {
+        DataSource pool = mock(DataSource.class);
+        when(pool.getConnection()).thenAnswer(i -> mock(Connection.class));
+        Bulkhead partition = new Bulkhead("journal.db.partition", Workload.CLINICAL_WRITE, 1, Duration.ZERO, registry);
+        PartitionedDataSource dataSource = new PartitionedDataSource(pool, Map.of(Workload.CLINICAL_WRITE, partition));
+
+        WorkloadContext.set(Workload.CLINICAL_WRITE);
+        try {
+            // a sharded write: the home transaction, then REQUIRES_NEW on the patient's shard
+            Connection home = dataSource.getConnection();
+            Connection shard = dataSource.getConnection();
+            assertEquals(1, partition.active());
+            assertThrows(PartitionedDataSource.PartitionExhaustedException.class, () -> onOtherRequest(dataSource));
+
+            shard.close();
+            assertEquals(1, partition.active());
+            home.close();
+            assertEquals(0, partition.active());
+            onOtherRequest(dataSource);
+        } finally {
+            WorkloadContext.set(null);
+        }
+    }
+
+    // a connection taken by another request of the current workload
+    private static void onOtherRequest(PartitionedDataSource dataSource) throws Exception {
+        Workload workload = WorkloadContext.current();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread t = new Thread(() -> {
+            WorkloadContext.set(workload);
+            try {
+                dataSource.getConnection().close();
+            } catch (Exception e) {
+                failure.set(e);
+            }
+        });
+        t.start();
+        t.join();
+        if (failure.get() != null) throw failure.get();
+    }
+
+    private static MockHttpServletResponse run(BulkheadFilter filter, String method, String path, MockFilterChain chain)
+            throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+}
@@ -0,0 +1,105 @@
+package backend.coalesce;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutorService pool = Executors.newFixedThreadPool(8);
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>("test", Duration.ofSeconds(5), true, registry);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(pool.submit(() -> flight.load("anna", () -> {
+                loads.incrementAndGet();
+                await(release);
+                return "record";
+            })));
+        }
+        waitUntil(() -> registry.counter("journal.singleflight.calls", "name", "test", "role", "follower").count() == 7);
+        release.countDown();
+
+        for (Future<String> f : results) assertEquals("record", f.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+        assertEquals(7.0 / 8, flight.coalescingRatio(), 1e-9);
+
+        // nothing is cached: the next call loads again
+        flight.load("anna", () -> "again");
+        assertEquals(2.0, registry.counter("journal.singleflight.calls", "name", "test", "role", "leader").count());
+    }
+
+    @Test
+    void followersGetTheLeadersFailure() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>("test", Duration.ofSeconds(5), true, registry);
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException boom = new IllegalStateException("db down");
+
+        Future<String> leader = pool.submit(() -> flight.load("k", () -> {
+            await(release);
+            throw boom;
+        }));
+        waitUntil(() -> registry.counter("journal.singleflight.calls", "name", "test", "role", "leader").count() == 1);
+        Future<String> follower = pool.submit(() -> flight.load("k", () -> "never"));
+        waitUntil(() -> registry.counter("journal.singleflight.calls", "name", "test", "role", "follower").count() == 1);
+        release.countDown();
+
+        Exception e = assertThrows(Exception.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertSame(boom, e.getCause());
+        assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void followerGivesUpAfterTimeout() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>("test", Duration.ofMillis(50), true, registry);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = pool.submit(() -> flight.load("k", () -> {
+            await(release);
+            return "late";
+        }));
+        waitUntil(() -> registry.counter("journal.singleflight.calls", "name", "test", "role", "leader").count() == 1);
+
+        assertThrows(SingleFlight.WaitTimeoutException.class, () -> flight.load("k", () -> "never"));
+        release.countDown();
+        assertEquals("late", leader.get(5, TimeUnit.SECONDS));
+        assertEquals(1.0, registry.counter("journal.singleflight.timeouts", "name", "test").count());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) throw new AssertionError("condition not reached");
+            Thread.sleep(5);
+        }
+    }
+}
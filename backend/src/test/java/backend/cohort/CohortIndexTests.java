@@ -0,0 +1,100 @@
+package backend.cohort;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CohortIndexTests {
+
+    @Test
+    void bitmapOperationsMatchPlainSets() {
+        Random random = new Random(7);
+        TreeSet<Long> a = new TreeSet<>();
+        TreeSet<Long> b = new TreeSet<>();
+        PatientBitmap ba = new PatientBitmap();
+        PatientBitmap bb = new PatientBitmap();
+        // dense and sparse chunks, and ids from a second shard's range
+        for (int i = 0; i < 20_000; i++) {
+            long x = random.nextInt(70_000);
+            long y = random.nextBoolean() ? random.nextInt(200_000) : 1_000_000_000_000L + random.nextInt(5_000);
+            a.add(x);
+            ba.add(x);
+            b.add(y);
+            bb.add(y);
+        }
+
+        TreeSet<Long> and = new TreeSet<>(a);
+        and.retainAll(b);
+        TreeSet<Long> or = new TreeSet<>(a);
+        or.addAll(b);
+        TreeSet<Long> andNot = new TreeSet<>(a);
+        andNot.removeAll(b);
+
+        assertSame(and, ba.and(bb));
+        assertSame(or, ba.or(bb));
+        assertSame(andNot, ba.andNot(bb));
+        assertArrayEquals(or.stream().skip(12_345).limit(100).mapToLong(Long::longValue).toArray(),
+                ba.or(bb).page(12_345, 100));
+    }
+
+    @Test
+    void answersCohortExpressions() {
+        CohortIndex index = new CohortIndex(new SimpleMeterRegistry());
+        index.load(List.of(
+                Map.of("E11", PatientBitmap.of(1, 2, 3, 4), "I10", PatientBitmap.of(2, 3, 5), "N18", PatientBitmap.of(3)),
+                Map.of("e11.9", PatientBitmap.of(7), "I10", PatientBitmap.of(7))));
+
+        assertEquals(1, index.count(CohortQuery.parse("E11 AND I10 AND NOT N18")));
+        assertEquals(2, index.count(CohortQuery.parse("e11* and i10 and not n18")));
+        assertEquals(4, index.count(CohortQuery.parse("NOT (E11 AND I10)")));
+        assertEquals(6, index.count(CohortQuery.parse("E11* OR I10")));
+        assertEquals(0, index.count(CohortQuery.parse("Z99")));
+
+        CohortIndex.Page page = index.page(CohortQuery.parse("E11* OR I10"), 2, 3);
+        assertEquals(6, page.total());
+        assertArrayEquals(new long[]{3, 4, 5}, page.patientIds());
+
+        assertThrows(IllegalArgumentException.class, () -> CohortQuery.parse("E11 AND"));
+        assertThrows(IllegalArgumentException.class, () -> CohortQuery.parse("(E11 OR I10"));
+    }
+
+    @Test
+    void additionsDuringTheLoadAreKept() {
+        CohortIndex index = new CohortIndex(new SimpleMeterRegistry());
+        assertThrows(CohortIndex.NotReadyException.class, () -> index.count(CohortQuery.parse("E11")));
+
+        index.added("E11", 42);
+        index.load(List.of(Map.of("E11", PatientBitmap.of(1))));
+        index.added(" e11 ", 43);
+
+        assertEquals(3, index.count(CohortQuery.parse("E11")));
+    }
+
+    @Test
+    void tooManyAdditionsDuringTheLoadMakeItRepeat() {
+        CohortIndex index = new CohortIndex(new SimpleMeterRegistry(), 2);
+        for (long patient = 1; patient <= 3; patient++) index.added("E11", patient);
+
+        assertThrows(IllegalStateException.class, () -> index.load(List.of(Map.of("E11", PatientBitmap.of(9)))));
+        assertThrows(CohortIndex.NotReadyException.class, () -> index.count(CohortQuery.parse("E11")));
+
+        // the repeated load reads the first three; only what comes in after the failure is replayed
+        index.added("I10", 4);
+        index.load(List.of(Map.of("E11", PatientBitmap.of(1, 2, 3, 9))));
+        assertEquals(4, index.count(CohortQuery.parse("E11")));
+        assertEquals(1, index.count(CohortQuery.parse("I10")));
+    }
+
+    private static void assertSame(TreeSet<Long> expected, PatientBitmap actual) {
+        assertEquals(expected.size(), actual.cardinality());
+        assertArrayEquals(expected.stream().mapToLong(Long::longValue).toArray(), actual.page(0, expected.size()));
+    }
+}
@@ -0,0 +1,63 @@
+package backend.config;
+
+import backend.datasource.PatientShards;
+import backend.repository.PractitionerActivityRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.config.IntervalTask;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The scheduled recount of the activity rollup, run by hand.
+ */
+class ActivityRollupConfigTests {
+
+    private final PractitionerActivityRepository activity = mock(PractitionerActivityRepository.class);
+    private final PatientShards shards = mock(PatientShards.class);
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void recountsTheLastDaysOnEveryShardAndCountsCorrections() {
+        when(shards.onEveryShard(any())).thenAnswer(inv -> {
+            Supplier<?> work = inv.getArgument(0);
+            return List.of(work.get(), 2);
+        });
+        when(activity.reconcile(any(), any())).thenReturn(3);
+
+        IntervalTask task = schedule(new ActivityRollupProperties(Duration.ofMinutes(10), 7));
+        task.getRunnable().run();
+
+        LocalDate tomorrow = LocalDate.now().plusDays(1);
+        verify(activity).reconcile(tomorrow.minusDays(7), tomorrow);
+        assertEquals(Duration.ofMinutes(10), task.getIntervalDuration());
+        assertEquals(5, registry.get("journal.activity.reconcile.corrections").counter().count());
+    }
+
+    @Test
+    void aFailedRecountWaitsForTheNextRun() {
+        when(shards.onEveryShard(any())).thenThrow(new IllegalStateException("Shard query failed"));
+
+        schedule(new ActivityRollupProperties(Duration.ofMinutes(10), 7)).getRunnable().run();
+
+        assertEquals(0, registry.get("journal.activity.reconcile.corrections").counter().count());
+        assertEquals(1, registry.get("journal.activity.reconcile").timer().count());
+    }
+
+    private IntervalTask schedule(ActivityRollupProperties properties) {
+        var registrar = new ScheduledTaskRegistrar();
+        new ActivityRollupConfig().reconcileActivityRollup(properties, activity, shards, registry).configureTasks(registrar);
+        return registrar.getFixedDelayTaskList().get(0);
+    }
+}
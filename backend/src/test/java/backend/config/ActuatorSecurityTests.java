@@ -0,0 +1,93 @@
+package backend.config;
+
+import backend.auth.SessionManager;
+import backend.model.Role;
+import backend.model.User;
+import backend.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.endpoint.EndpointAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.endpoint.web.WebEndpointAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.health.HealthEndpointAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsEndpointAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.simple.SimpleMetricsExportAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.web.server.ManagementContextAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.web.servlet.ServletManagementContextAutoConfiguration;
+import org.springframework.boot.actuate.startup.StartupEndpoint;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The actuator under {@link SecurityConfig}, exposed as in the fast-start profile: health stays open
+ * for the probes, metrics and startup answer configured operators only. No controllers are loaded.
+ */
+@WebMvcTest(controllers = ActuatorSecurityTests.class, properties = {
+        "management.endpoints.web.base-path=/api/actuator",
+        "management.endpoints.web.exposure.include=health,metrics,startup",
+        "journal.operators.usernames=ops"
+})
+@ImportAutoConfiguration({EndpointAutoConfiguration.class, WebEndpointAutoConfiguration.class,
+        ManagementContextAutoConfiguration.class, ServletManagementContextAutoConfiguration.class,
+        HealthEndpointAutoConfiguration.class, MetricsAutoConfiguration.class,
+        SimpleMetricsExportAutoConfiguration.class, MetricsEndpointAutoConfiguration.class})
+@Import({SecurityConfig.class, ActuatorSecurityTests.Startup.class})
+class ActuatorSecurityTests {
+
+    @TestConfiguration
+    static class Startup {
+        @Bean
+        StartupEndpoint startupEndpoint() {
+            return new StartupEndpoint(new BufferingApplicationStartup(16));
+        }
+    }
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockBean
+    private UserRepository users;
+
+    @Test
+    void healthIsOpenForTheProbes() throws Exception {
+        mvc.perform(get("/api/actuator/health")).andExpect(status().isOk());
+    }
+
+    @Test
+    void metricsAndStartupNeedAnOperator() throws Exception {
+        when(users.findById(1L)).thenReturn(Optional.of(user("ops", Role.STAFF)));
+        when(users.findById(2L)).thenReturn(Optional.of(user("mallory", Role.STAFF)));
+        String operator = SessionManager.issueToken(1L);
+        String staff = SessionManager.issueToken(2L);
+        try {
+            for (String endpoint : List.of("/api/actuator/metrics", "/api/actuator/startup")) {
+                mvc.perform(get(endpoint)).andExpect(status().isForbidden());
+                mvc.perform(get(endpoint).header("X-Auth", staff)).andExpect(status().isForbidden());
+                mvc.perform(get(endpoint).header("X-Auth", operator)).andExpect(status().isOk());
+            }
+        } finally {
+            SessionManager.revoke(operator);
+            SessionManager.revoke(staff);
+        }
+    }
+
+    private static User user(String username, Role role) {
+        User u = new User();
+        u.setUsername(username);
+        u.setRole(role);
+        return u;
+    }
+}
@@ -0,0 +1,63 @@
+package backend.config;
+
+import backend.auth.SessionManager;
+import backend.model.Role;
+import backend.model.User;
+import backend.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SecurityConfigTests {
+
+    private final UserRepository users = mock(UserRepository.class);
+
+    @Test
+    void selfRegisteredStaffIsNoOperator() {
+        // /api/auth/register lets anyone pick STAFF
+        when(users.findById(1L)).thenReturn(Optional.of(user("mallory", Role.STAFF)));
+        AuthorizationManager<RequestAuthorizationContext> operators =
+                SecurityConfig.operatorSession(() -> users, Set.of("ops"));
+
+        assertFalse(granted(operators, SessionManager.issueToken(1L)));
+    }
+
+    @Test
+    void onlyListedStaffSessionsAreOperators() {
+        when(users.findById(any())).thenReturn(Optional.empty());
+        when(users.findById(1L)).thenReturn(Optional.of(user("ops", Role.STAFF)));
+        when(users.findById(2L)).thenReturn(Optional.of(user("ops-doctor", Role.DOCTOR)));
+        AuthorizationManager<RequestAuthorizationContext> operators =
+                SecurityConfig.operatorSession(() -> users, Set.of("ops", "ops-doctor"));
+
+        assertTrue(granted(operators, SessionManager.issueToken(1L)));
+        assertFalse(granted(operators, SessionManager.issueToken(2L)));
+        assertFalse(granted(operators, SessionManager.issueToken(3L)));
+        assertFalse(granted(operators, null));
+        assertFalse(granted(SecurityConfig.operatorSession(() -> users, Set.of()), SessionManager.issueToken(1L)),
+                "an empty list locks the endpoints");
+    }
+
+    private static boolean granted(AuthorizationManager<RequestAuthorizationContext> manager, String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/actuator/jfr/record");
+        if (token != null) request.addHeader("X-Auth", token);
+        return manager.check(() -> null, new RequestAuthorizationContext(request)).isGranted();
+    }
+
+    private static User user(String username, Role role) {
+        User u = new User();
+        u.setUsername(username);
+        u.setRole(role);
+        return u;
+    }
+}
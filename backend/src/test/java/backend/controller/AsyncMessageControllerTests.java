@@ -0,0 +1,94 @@
+package backend.controller;
+
+import backend.bulkhead.Workload;
+import backend.bulkhead.WorkloadContext;
+import backend.config.SecurityConfig;
+import backend.json.JsonBody;
+import backend.messaging.MessagingExecutor;
+import backend.messaging.MessagingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The async-messaging profile maps /api/messages to {@link AsyncMessageController}, which answers
+ * through async dispatch with the same bodies and errors as the blocking controller.
+ */
+@WebMvcTest(AsyncMessageController.class)
+@ActiveProfiles("async-messaging")
+@Import({AsyncMessageControllerTests.Executor.class, SecurityConfig.class})
+class AsyncMessageControllerTests {
+
+    @TestConfiguration
+    static class Executor {
+        @Bean(destroyMethod = "close")
+        MessagingExecutor messagingExecutor() {
+            return new MessagingExecutor(1, 10, Duration.ofSeconds(5), new SimpleMeterRegistry());
+        }
+    }
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockBean
+    private MessagingService messaging;
+
+    @Test
+    void threadIsWrittenAfterTheWorkCompletes() throws Exception {
+        when(messaging.thread("t", 2L)).thenReturn(JsonBody.of((g, v) -> g.writeString("thread"), null));
+
+        MvcResult started = mvc.perform(get("/api/messages/thread/2").header("X-Auth", "t"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().string("\"thread\""));
+    }
+
+    @Test
+    void workRunsInTheMessagingWorkload() throws Exception {
+        AtomicReference<Workload> workload = new AtomicReference<>();
+        when(messaging.contacts("t")).thenAnswer(invocation -> {
+            workload.set(WorkloadContext.current());
+            return JsonBody.of((g, v) -> g.writeString("contacts"), null);
+        });
+
+        MvcResult started = mvc.perform(get("/api/messages/contacts").header("X-Auth", "t"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(started)).andExpect(status().isOk());
+        assertEquals(Workload.MESSAGING, workload.get());
+    }
+
+    @Test
+    void failuresKeepTheirStatus() throws Exception {
+        when(messaging.contacts(any())).thenThrow(new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Not logged in"));
+
+        MvcResult started = mvc.perform(get("/api/messages/contacts"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(started)).andExpect(status().isUnauthorized());
+    }
+}
@@ -0,0 +1,177 @@
+package backend.controller;
+
+import backend.auth.SessionManager;
+import backend.controller.ChangeFeedController.ChangeBatch;
+import backend.controller.ChangeFeedController.Cursor;
+import backend.controller.ChangeFeedController.Slice;
+import backend.datasource.PatientShards;
+import backend.model.Role;
+import backend.model.User;
+import backend.repository.ChangeFeedRepository;
+import backend.repository.ChangeFeedRepository.ArchivedChange;
+import backend.repository.ChangeFeedRepository.Change;
+import backend.repository.ChangeFeedRepository.ConditionChange;
+import backend.repository.ChangeFeedRepository.EncounterChange;
+import backend.repository.ChangeFeedRepository.MessageChange;
+import backend.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Cursors and batching of the change feed. The repository is mocked: it hands back what SQL Server
+ * would, each stream's first changes after the cursor and below MIN_ACTIVE_ROWVERSION().
+ */
+class ChangeFeedControllerTests {
+
+    private final ChangeFeedRepository feed = mock(ChangeFeedRepository.class);
+    private final UserRepository users = mock(UserRepository.class);
+    private final ChangeFeedController controller =
+            new ChangeFeedController(feed, users, new PatientShards(1, Long.MAX_VALUE, null));
+    private final List<String> sessions = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        sessions.forEach(SessionManager::revoke);
+    }
+
+    @Test
+    void cursorsRoundTrip() {
+        assertEquals(new Cursor(0, 0), Cursor.parse(null));
+        assertEquals(new Cursor(0, 0), Cursor.parse(" "));
+        assertEquals(new Cursor(12, 340), Cursor.parse("12.340"));
+        assertEquals("12.340", new Cursor(12, 340).token());
+        for (String bad : List.of("12", "12.340.5", "a.b", "12.")) {
+            assertEquals(HttpStatus.BAD_REQUEST,
+                    assertThrows(ResponseStatusException.class, () -> Cursor.parse(bad)).getStatusCode(), bad);
+        }
+    }
+
+    @Test
+    void firstChangesInterleaveBothStreamsUpToTheLimit() {
+        Slice<Change> slice = ChangeFeedController.firstChanges(
+                List.of(message(3), message(6), message(7)),
+                List.of(archived(4), archived(5)),
+                2, 3);
+
+        assertEquals(List.of(3L, 4L, 5L), versions(slice));
+        assertEquals(5, slice.cursor());
+        assertTrue(slice.hasMore());
+    }
+
+    @Test
+    void aFullStreamMeansMoreEvenWhenEverythingFits() {
+        // the stream stopped at the limit, so rows after version 2 may be waiting behind it
+        Slice<Change> slice = ChangeFeedController.firstChanges(List.of(message(1), message(2)), List.of(), 0, 2);
+
+        assertEquals(List.of(1L, 2L), versions(slice));
+        assertEquals(2, slice.cursor());
+        assertTrue(slice.hasMore());
+    }
+
+    @Test
+    void nothingNewKeepsTheCursor() {
+        Slice<Change> slice = ChangeFeedController.firstChanges(List.of(), List.of(), 41, 200);
+
+        assertEquals(List.of(), slice.rows());
+        assertEquals(41, slice.cursor());
+        assertFalse(slice.hasMore());
+    }
+
+    @Test
+    void changesStopWhereTheRepositoryStopped() {
+        // a transaction holding version 9 has not committed: the repository returns nothing from 9 on,
+        // so the cursor must stay at 8 and version 9 comes in a later batch
+        String token = session(5L, Role.PATIENT, 70L);
+        when(feed.encountersSince(70L, 10, 200)).thenReturn(List.of(encounter(11), encounter(13)));
+        when(feed.conditionsSince(70L, 10, 200)).thenReturn(List.of(condition(12)));
+        when(feed.messagesSince(5L, 7, 200)).thenReturn(List.of(message(8)));
+        when(feed.archivedSince(5L, 7, 200)).thenReturn(List.of());
+
+        ChangeBatch batch = batch(token, "10.7", null, 200);
+
+        assertEquals("13.8", batch.cursor());
+        assertFalse(batch.hasMore());
+        assertEquals(List.of(11L, 13L), batch.encounters().stream().map(Change::version).toList());
+        assertEquals(List.of(12L), batch.conditions().stream().map(Change::version).toList());
+        assertEquals(List.of(8L), batch.messages().stream().map(Change::version).toList());
+        assertEquals(List.of(), batch.archived());
+    }
+
+    @Test
+    void moreRecordsKeepTheMessageCursor() {
+        String token = session(6L, Role.DOCTOR, null);
+        when(feed.encountersSince(70L, 0, 2)).thenReturn(List.of(encounter(1), encounter(2)));
+        when(feed.conditionsSince(70L, 0, 2)).thenReturn(List.of());
+        when(feed.messagesSince(6L, 0, 2)).thenReturn(List.of());
+        when(feed.archivedSince(6L, 0, 2)).thenReturn(List.of());
+
+        ChangeBatch batch = batch(token, null, 70L, 2);
+
+        assertEquals("2.0", batch.cursor());
+        assertTrue(batch.hasMore());
+    }
+
+    @Test
+    void rejectsOtherPatientsAndBadLimits() {
+        String patient = session(5L, Role.PATIENT, 70L);
+        assertStatus(HttpStatus.FORBIDDEN, () -> controller.changesSince(patient, null, 71L, 200));
+        assertStatus(HttpStatus.BAD_REQUEST, () -> controller.changesSince(patient, null, null, 0));
+        assertStatus(HttpStatus.BAD_REQUEST, () -> controller.changesSince(patient, null, null, 1001));
+        assertStatus(HttpStatus.BAD_REQUEST, () -> controller.changesSince(patient, "oops", null, 200));
+        assertStatus(HttpStatus.UNAUTHORIZED, () -> controller.changesSince(null, null, null, 200));
+    }
+
+    private ChangeBatch batch(String token, String since, Long patientId, int limit) {
+        return (ChangeBatch) controller.changesSince(token, since, patientId, limit).getBody();
+    }
+
+    private String session(long userId, Role role, Long patientId) {
+        User u = new User();
+        ReflectionTestUtils.setField(u, "id", userId);
+        u.setRole(role);
+        u.setPatientId(patientId);
+        when(users.findById(userId)).thenReturn(Optional.of(u));
+        String token = SessionManager.issueToken(userId);
+        sessions.add(token);
+        return token;
+    }
+
+    private static void assertStatus(HttpStatus status, Runnable call) {
+        assertEquals(status, assertThrows(ResponseStatusException.class, call::run).getStatusCode());
+    }
+
+    private static List<Long> versions(Slice<Change> slice) {
+        return slice.rows().stream().map(Change::version).toList();
+    }
+
+    private static EncounterChange encounter(long version) {
+        return new EncounterChange(version, version, 70L, null, null, null, null);
+    }
+
+    private static ConditionChange condition(long version) {
+        return new ConditionChange(version, version, 70L, "J06.9", null, null);
+    }
+
+    private static MessageChange message(long version) {
+        return new MessageChange(version, version, 5L, 6L, "hej", null, false);
+    }
+
+    private static ArchivedChange archived(long version) {
+        return new ArchivedChange(version, version, 6L, LongStream.rangeClosed(1, 3).boxed().toList());
+    }
+}
@@ -0,0 +1,149 @@
+package backend.controller;
+
+import backend.auth.SessionManager;
+import backend.datasource.PatientShards;
+import backend.datasource.ShardRoutingDataSource;
+import backend.model.Role;
+import backend.model.User;
+import backend.repository.PractitionerActivityRepository;
+import backend.repository.PractitionerActivityRepository.Activity;
+import backend.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Activity dashboards over two in-memory H2 databases in SQL Server mode standing in for the
+ * shards, each holding its own part of the practitioner_daily_activity rollup.
+ */
+class PractitionerActivityControllerTests {
+
+    private static final LocalDate MONDAY = LocalDate.of(2024, 3, 4);
+
+    private final List<DataSource> databases = List.of(database("activity0"), database("activity1"));
+    private final UserRepository users = mock(UserRepository.class);
+    private PatientShards shards;
+    private PractitionerActivityController controller;
+    private String doctor;
+
+    @BeforeEach
+    void setUp() {
+        var routing = new ShardRoutingDataSource(databases);
+        shards = new PatientShards(2, 1_000, new DataSourceTransactionManager(routing));
+        controller = new PractitionerActivityController(new PractitionerActivityRepository(new JdbcTemplate(routing)), users, shards);
+        doctor = session(1L, Role.DOCTOR);
+    }
+
+    @AfterEach
+    void tearDown() {
+        shards.close();
+        SessionManager.revoke(doctor);
+    }
+
+    @Test
+    void shardsAreAddedTogether() {
+        row(0, 7, MONDAY, 2, 0);
+        row(1, 7, MONDAY, 1, 1);
+        row(1, 9, MONDAY, 0, 3);
+        row(0, 7, MONDAY.plusDays(1), 1, 0);
+
+        assertEquals(List.of(
+                new Activity(7, MONDAY, 3, 1),
+                new Activity(9, MONDAY, 0, 3),
+                new Activity(7, MONDAY.plusDays(1), 1, 0)
+        ), activity(MONDAY, MONDAY.plusDays(1), "day", null));
+        assertEquals(List.of(new Activity(9, MONDAY, 0, 3)), activity(MONDAY, MONDAY, "day", 9L));
+    }
+
+    @Test
+    void weeksRunFromMondayToSunday() {
+        row(0, 7, MONDAY.minusDays(1), 1, 0);
+        row(0, 7, MONDAY, 1, 0);
+        row(1, 7, MONDAY.plusDays(6), 0, 1);
+        row(1, 7, MONDAY.plusDays(7), 1, 1);
+        // outside the range asked for
+        row(0, 7, MONDAY.plusDays(8), 5, 5);
+
+        assertEquals(List.of(
+                new Activity(7, MONDAY.minusDays(7), 1, 0),
+                new Activity(7, MONDAY, 1, 1),
+                new Activity(7, MONDAY.plusDays(7), 1, 1)
+        ), activity(MONDAY.minusDays(1), MONDAY.plusDays(7), "week", null));
+    }
+
+    @Test
+    void weeksCrossTheTurnOfTheYear() {
+        row(0, 7, LocalDate.of(2024, 12, 31), 1, 0);
+        row(1, 7, LocalDate.of(2025, 1, 5), 1, 0);
+
+        assertEquals(List.of(new Activity(7, LocalDate.of(2024, 12, 30), 2, 0)),
+                activity(LocalDate.of(2024, 12, 1), LocalDate.of(2025, 1, 31), "week", null));
+    }
+
+    @Test
+    void rejectsPatientsAndBadRanges() {
+        String patient = session(2L, Role.PATIENT);
+        try {
+            assertStatus(HttpStatus.FORBIDDEN, () -> controller.activity(patient, MONDAY, MONDAY, "day", null));
+        } finally {
+            SessionManager.revoke(patient);
+        }
+        assertStatus(HttpStatus.UNAUTHORIZED, () -> controller.activity(null, MONDAY, MONDAY, "day", null));
+        assertStatus(HttpStatus.BAD_REQUEST, () -> controller.activity(doctor, MONDAY, MONDAY.minusDays(1), "day", null));
+        assertStatus(HttpStatus.BAD_REQUEST, () -> controller.activity(doctor, MONDAY, MONDAY.plusDays(400), "day", null));
+        assertStatus(HttpStatus.BAD_REQUEST, () -> controller.activity(doctor, MONDAY, MONDAY, "month", null));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Activity> activity(LocalDate from, LocalDate to, String granularity, Long practitionerId) {
+        return (List<Activity>) controller.activity(doctor, from, to, granularity, practitionerId).getBody();
+    }
+
+    private void row(int shard, long practitionerId, LocalDate day, int encounters, int diagnoses) {
+        new JdbcTemplate(databases.get(shard)).update(
+                "INSERT INTO dbo.practitioner_daily_activity (practitioner_id, day, encounters, diagnoses) VALUES (?, ?, ?, ?)",
+                practitionerId, day, encounters, diagnoses);
+    }
+
+    private String session(long userId, Role role) {
+        User u = new User();
+        u.setRole(role);
+        when(users.findById(userId)).thenReturn(Optional.of(u));
+        return SessionManager.issueToken(userId);
+    }
+
+    private static void assertStatus(HttpStatus status, Runnable call) {
+        assertEquals(status, assertThrows(ResponseStatusException.class, call::run).getStatusCode());
+    }
+
+    private static DataSource database(String name) {
+        var ds = new DriverManagerDataSource("jdbc:h2:mem:" + name
+                + ";MODE=MSSQLServer;NON_KEYWORDS=DAY;DB_CLOSE_DELAY=-1;INIT=CREATE SCHEMA IF NOT EXISTS dbo", "sa", "");
+        var jdbc = new JdbcTemplate(ds);
+        jdbc.execute("DROP TABLE IF EXISTS dbo.practitioner_daily_activity");
+        jdbc.execute("""
+                CREATE TABLE dbo.practitioner_daily_activity (
+                    practitioner_id BIGINT NOT NULL,
+                    day             DATE   NOT NULL,
+                    encounters      INT    NOT NULL,
+                    diagnoses       INT    NOT NULL,
+                    PRIMARY KEY (day, practitioner_id)
+                )""");
+        return ds;
+    }
+}
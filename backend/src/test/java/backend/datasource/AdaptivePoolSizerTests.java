@@ -0,0 +1,146 @@
+package backend.datasource;
+
+import backend.bulkhead.Bulkhead;
+import backend.bulkhead.PartitionedDataSource;
+import backend.bulkhead.Workload;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Load tests against an in-memory H2 pool. The database stand-in is the DB_WORK function: it
+ * sleeps like a query, but only as many calls run at once as the simulated server has workers,
+ * so a saturated database shows up as connections being held longer. Public so H2 can call it.
+ */
+public class AdaptivePoolSizerTests {
+
+    private static final int CLIENTS = 16;
+    private static volatile Semaphore serverWorkers;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+    private HikariDataSource pool;
+
+    @AfterEach
+    void tearDown() {
+        clients.shutdownNow();
+        pool.close();
+    }
+
+    /** Called by H2 as DB_WORK(ms). */
+    public static int dbWork(int millis) throws InterruptedException {
+        serverWorkers.acquire();
+        try {
+            Thread.sleep(millis);
+        } finally {
+            serverWorkers.release();
+        }
+        return millis;
+    }
+
+    @Test
+    void growsWhileRequestsWaitForConnectionsTheDatabaseCouldServe() throws Exception {
+        AdaptivePoolSizer sizer = sizer(pool("grow", 2, 32), null, 2, 12);
+
+        for (int run = 0; run < 8; run++) {
+            load(Duration.ofMillis(300), 5);
+            sizer.adjust();
+        }
+
+        assertEquals(12, sizer.size());
+        assertEquals(12, pool.getMaximumPoolSize());
+        Timer acquire = registry.get("hikaricp.connections.acquire").tag("pool", "grow").timer();
+        double before = acquire.mean(TimeUnit.MILLISECONDS);
+        load(Duration.ofMillis(300), 5);
+        assertTrue(acquire.mean(TimeUnit.MILLISECONDS) < before, "waits went down once the pool had grown");
+    }
+
+    @Test
+    void stopsGrowingWhenTheDatabaseIsSaturated() throws Exception {
+        AdaptivePoolSizer sizer = sizer(pool("saturated", 2, 3), null, 2, 16);
+
+        int largest = 0;
+        for (int run = 0; run < 10; run++) {
+            load(Duration.ofMillis(300), 5);
+            sizer.adjust();
+            largest = Math.max(largest, sizer.size());
+        }
+
+        // three server workers: beyond a few connections each one is just held longer
+        assertTrue(largest < 16, "never grew to the ceiling, largest was " + largest);
+        assertTrue(registry.get("journal.db.pool.resizes").tag("direction", "shrink").counter().count() > 0);
+    }
+
+    @Test
+    void idlePoolShrinksToTheFloorAndPartitionsFollow() throws Exception {
+        pool("idle", 10, 32);
+        Bulkhead messaging = new Bulkhead("journal.db.partition", Workload.MESSAGING, 4, Duration.ZERO, registry);
+        Bulkhead auth = new Bulkhead("journal.db.partition", Workload.AUTH, 6, Duration.ZERO, registry);
+        var partitions = new PartitionedDataSource(pool, Map.of(Workload.MESSAGING, messaging, Workload.AUTH, auth));
+        AdaptivePoolSizer sizer = sizer(pool, partitions, 5, 20);
+
+        load(Duration.ofMillis(100), 5);
+        sizer.adjust();
+        for (int run = 0; run < 30; run++) {
+            Thread.sleep(10);
+            sizer.adjust();
+        }
+
+        assertEquals(5, sizer.size());
+        assertEquals(2, messaging.limit());
+        assertEquals(3, auth.limit());
+    }
+
+    private HikariDataSource pool(String name, int size, int serverCapacity) throws Exception {
+        serverWorkers = new Semaphore(serverCapacity);
+        pool = new HikariDataSource();
+        pool.setJdbcUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        pool.setPoolName(name);
+        pool.setMaximumPoolSize(size);
+        pool.setMinimumIdle(1);
+        pool.setConnectionTimeout(5_000);
+        pool.setMetricRegistry(registry);
+        try (Connection c = pool.getConnection(); Statement s = c.createStatement()) {
+            s.execute("CREATE ALIAS IF NOT EXISTS DB_WORK FOR '" + getClass().getName() + ".dbWork'");
+        }
+        return pool;
+    }
+
+    private AdaptivePoolSizer sizer(HikariDataSource pool, PartitionedDataSource partitions, int min, int max) {
+        return new AdaptivePoolSizer(pool, partitions, min, max, 2, Duration.ofMillis(2), 1.5, 1.5, 3, registry);
+    }
+
+    // every client runs one query after the other for the given time
+    private void load(Duration duration, int queryMillis) throws Exception {
+        long end = System.nanoTime() + duration.toNanos();
+        List<Future<?>> running = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            running.add(clients.submit(() -> {
+                while (System.nanoTime() < end) {
+                    try (Connection c = pool.getConnection(); Statement s = c.createStatement()) {
+                        s.execute("SELECT DB_WORK(" + queryMillis + ")");
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f : running) f.get(30, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,29 @@
+package backend.datasource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+
+/**
+ * In-memory H2 databases standing in for SQL Server ones, each holding a marker row with its
+ * name so a test can ask which database a statement actually ran on.
+ */
+final class MarkedDatabases {
+
+    private MarkedDatabases() {
+    }
+
+    static DataSource database(String name) {
+        var ds = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        var jdbc = new JdbcTemplate(ds);
+        jdbc.execute("CREATE TABLE IF NOT EXISTS marker (name VARCHAR(20))");
+        jdbc.execute("DELETE FROM marker");
+        jdbc.update("INSERT INTO marker (name) VALUES (?)", name);
+        return ds;
+    }
+
+    static String whereAmI(JdbcTemplate jdbc) {
+        return jdbc.queryForObject("SELECT name FROM marker", String.class);
+    }
+}
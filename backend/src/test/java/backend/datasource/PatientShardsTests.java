@@ -0,0 +1,66 @@
+package backend.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.util.List;
+
+import static backend.datasource.MarkedDatabases.database;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Three in-memory H2 databases stand in for the SQL Server shards.
+ */
+class PatientShardsTests {
+
+    private static final long RANGE = 1_000;
+
+    private PatientShards shards;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        var routing = new ShardRoutingDataSource(List.of(database("shard0"), database("shard1"), database("shard2")));
+        jdbc = new JdbcTemplate(routing);
+        shards = new PatientShards(3, RANGE, new DataSourceTransactionManager(routing));
+    }
+
+    @AfterEach
+    void tearDown() {
+        shards.close();
+    }
+
+    @Test
+    void idsMapToTheShardOwningTheirRange() {
+        assertEquals(0, shards.shardOf(1));
+        assertEquals(1, shards.shardOf(RANGE));
+        assertEquals(2, shards.shardOf(2 * RANGE + 17));
+        assertThrows(IllegalArgumentException.class, () -> shards.shardOf(3 * RANGE));
+    }
+
+    @Test
+    void workRunsOnThePatientsShard() {
+        assertEquals("shard1", shards.onShardOf(RANGE + 5, this::whereAmI));
+        assertEquals("shard0", whereAmI());
+    }
+
+    @Test
+    void scatterGatherVisitsEveryShardInOrder() {
+        assertEquals(List.of("shard0", "shard1", "shard2"), shards.onEveryShard(this::whereAmI));
+    }
+
+    @Test
+    void singleShardRunsInline() {
+        var single = new PatientShards(1, RANGE, null);
+        assertEquals(0, single.shardOf(5 * RANGE));
+        assertEquals(List.of("inline"), single.onEveryShard(() -> "inline"));
+    }
+
+    private String whereAmI() {
+        return MarkedDatabases.whereAmI(jdbc);
+    }
+}
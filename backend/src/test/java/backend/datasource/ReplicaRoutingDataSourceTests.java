@@ -0,0 +1,89 @@
+package backend.datasource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static backend.datasource.MarkedDatabases.database;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Uses two in-memory H2 databases as stand-ins for the SQL Server primary and replica.
+ */
+class ReplicaRoutingDataSourceTests {
+
+    private final AtomicReference<String> session = new AtomicReference<>();
+    private final List<String> routes = new ArrayList<>();
+    private JdbcTemplate jdbc;
+    private TransactionTemplate tx;
+
+    @BeforeEach
+    void setUp() {
+        DataSource primary = database("primary");
+        DataSource replica = database("replica");
+
+        var routing = new ReplicaRoutingDataSource(
+                primary,
+                replica,
+                new ReplicaLagGuard(Duration.ofMinutes(1), 100),
+                session::get,
+                (target, reason) -> routes.add(target + "/" + reason)
+        );
+        var dataSource = new LazyConnectionDataSourceProxy(routing);
+        dataSource.setDefaultAutoCommit(true);
+        dataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        jdbc = new JdbcTemplate(dataSource);
+        tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @Test
+    void readOnlyTransactionsGoToReplica() {
+        assertEquals("replica", whereAmI(true));
+        assertEquals(List.of("REPLICA/read"), routes);
+    }
+
+    @Test
+    void readWriteTransactionsGoToPrimary() {
+        assertEquals("primary", whereAmI(false));
+        assertEquals(List.of("PRIMARY/write"), routes);
+    }
+
+    @Test
+    void sessionReadsItsOwnWritesFromPrimary() {
+        session.set("writer");
+        whereAmI(false);
+        assertEquals("primary", whereAmI(true));
+
+        session.set("someone-else");
+        assertEquals("replica", whereAmI(true));
+
+        assertEquals(List.of("PRIMARY/write", "PRIMARY/lag-guard", "REPLICA/read"), routes);
+    }
+
+    @Test
+    void lagGuardForgetsTheOldestWritersWhenFull() {
+        var guard = new ReplicaLagGuard(Duration.ofMinutes(1), 100);
+        for (int i = 0; i < 1000; i++) guard.markWrite("session-" + i);
+
+        assertTrue(guard.size() <= 100, "tracked " + guard.size());
+        assertTrue(guard.mustReadFromPrimary("session-999"));
+        assertFalse(guard.mustReadFromPrimary("session-0"));
+    }
+
+    private String whereAmI(boolean readOnly) {
+        tx.setReadOnly(readOnly);
+        return tx.execute(status -> MarkedDatabases.whereAmI(jdbc));
+    }
+}
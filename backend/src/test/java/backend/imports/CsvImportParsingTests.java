@@ -0,0 +1,80 @@
+package backend.imports;
+
+import backend.datasource.PatientShards;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CsvImportParsingTests {
+
+    private static final LocalDate TODAY = LocalDate.of(2025, 6, 1);
+
+    @Test
+    void readsQuotedFieldsAndTracksLines() throws IOException {
+        String csv = "\uFEFFpersonnummer,name\r\n"
+                + "811218-9876,\"Svensson, Anna\"\r\n"
+                + "\r\n"
+                + "121212-1212,\"Rad ett\nrad två med \"\"citat\"\"\"\n"
+                + "701063-2391,Sist";
+
+        List<List<String>> records = new ArrayList<>();
+        List<Long> lines = new ArrayList<>();
+        try (CsvReader reader = new CsvReader(new StringReader(csv), ',')) {
+            for (List<String> r = reader.next(); r != null; r = reader.next()) {
+                records.add(r);
+                lines.add(reader.line());
+            }
+        }
+
+        assertEquals(List.of(
+                List.of("personnummer", "name"),
+                List.of("811218-9876", "Svensson, Anna"),
+                List.of("121212-1212", "Rad ett\nrad två med \"citat\""),
+                List.of("701063-2391", "Sist")
+        ), records);
+        assertEquals(List.of(1L, 2L, 4L, 6L), lines);
+    }
+
+    @Test
+    void unterminatedQuoteFails() {
+        CsvReader reader = new CsvReader(new StringReader("a,\"b\n"), ',');
+        assertThrows(IOException.class, reader::next);
+    }
+
+    @Test
+    void personnummerIsNormalized() {
+        assertEquals("19811218-9876", Personnummer.normalize("811218-9876", TODAY));
+        assertEquals("19811218-9876", Personnummer.normalize("198112189876", TODAY));
+        assertEquals("19121212-1212", Personnummer.normalize("121212+1212", TODAY));
+        assertEquals("20121212-1212", Personnummer.normalize("1212121212", TODAY));
+        // samordningsnummer, day + 60
+        assertEquals(LocalDate.of(1970, 10, 3), Personnummer.birthDate(Personnummer.normalize("701063-2391", TODAY)));
+    }
+
+    @Test
+    void invalidPersonnummerIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Personnummer.normalize("811218-9875", TODAY));
+        assertThrows(IllegalArgumentException.class, () -> Personnummer.normalize("811318-9876", TODAY));
+        assertThrows(IllegalArgumentException.class, () -> Personnummer.normalize("81121-9876", TODAY));
+        assertThrows(IllegalArgumentException.class, () -> Personnummer.normalize("", TODAY));
+    }
+
+    @Test
+    void uploadOverTheLimitIsRejected() {
+        try (var service = new PatientImportService(null, new PatientShards(1, Long.MAX_VALUE, null), null, null,
+                100, 10, 1, 10, 1024)) {
+            var csv = new ByteArrayInputStream("personnummer,name,password\n".repeat(100).getBytes());
+            assertThrows(PatientImportService.TooLargeException.class, () -> service.submit(csv, ','));
+            assertTrue(service.recent().isEmpty());
+        }
+    }
+}
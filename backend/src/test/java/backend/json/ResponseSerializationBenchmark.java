@@ -0,0 +1,120 @@
+package backend.json;
+
+import backend.json.ResponseWriters.Login;
+import backend.json.ResponseWriters.MessageThread;
+import backend.model.Message;
+import backend.model.Role;
+import backend.model.User;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Reflective Jackson over maps/records (the old controller code) against the precompiled writers.
+ * Run with the GC profiler to compare bytes allocated per response:
+ *
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main ResponseSerializationBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseSerializationBenchmark {
+
+    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private final OutputStream sink = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private User me;
+    private User other;
+    private List<Message> sent;
+    private List<Message> received;
+
+    @Setup
+    public void setUp() {
+        me = ResponseWritersTests.user(1L, "patient2", Role.PATIENT);
+        me.setPatientId(5L);
+        other = ResponseWritersTests.user(2L, "doctor2", Role.DOCTOR);
+        sent = new ArrayList<>();
+        received = new ArrayList<>();
+        LocalDateTime t = LocalDateTime.of(2025, 3, 1, 9, 0);
+        for (int i = 0; i < 50; i++) {
+            boolean mine = i % 2 == 0;
+            (mine ? sent : received).add(ResponseWritersTests.message(i, mine ? 1 : 2, mine ? 2 : 1,
+                    "Meddelande nummer " + i + " om provsvar och nästa besök", t.plusMinutes(i)));
+        }
+    }
+
+    @Benchmark
+    public void loginMap() throws IOException {
+        var userMap = new HashMap<String, Object>();
+        userMap.put("id", me.getId());
+        userMap.put("username", me.getUsername());
+        if (me.getRole() != null) userMap.put("role", me.getRole().name());
+        if (me.getPatientId() != null) userMap.put("patientId", me.getPatientId());
+        if (me.getPractitionerId() != null) userMap.put("practitionerId", me.getPractitionerId());
+        var resp = new HashMap<String, Object>();
+        resp.put("token", "0b0e8f0c-8d4c-4b8e-9a8f-2a1f2b3c4d5e");
+        resp.put("user", userMap);
+        mapper.writeValue(sink, resp);
+    }
+
+    @Benchmark
+    public void loginPrecompiled() throws IOException {
+        write(ResponseWriters.LOGIN, new Login("0b0e8f0c-8d4c-4b8e-9a8f-2a1f2b3c4d5e", me));
+    }
+
+    @Benchmark
+    public void threadRecords() throws IOException {
+        var merged = Stream.concat(sent.stream(), received.stream())
+                .sorted(Comparator.comparing(Message::getSentAt))
+                .map(m -> {
+                    User sender = m.getSenderUserId().equals(me.getId()) ? me : other;
+                    User receiver = m.getReceiverUserId().equals(me.getId()) ? me : other;
+                    return new ResponseWritersTests.MessageDto(m.getId(), m.getSenderUserId(), m.getReceiverUserId(),
+                            sender.getUsername(), receiver.getUsername(), m.getContent(), m.getSentAt(), m.isRead());
+                })
+                .toList();
+        mapper.writeValue(sink, merged);
+    }
+
+    @Benchmark
+    public void threadPrecompiled() throws IOException {
+        write(ResponseWriters.THREAD, new MessageThread(me, other, sent, received));
+    }
+
+    // same steps as JsonBodyHttpMessageConverter
+    private <T> void write(JsonWriter<T> writer, T value) throws IOException {
+        try (JsonGenerator g = mapper.getFactory().createGenerator(sink, JsonEncoding.UTF8)) {
+            writer.write(g, value);
+        }
+    }
+}
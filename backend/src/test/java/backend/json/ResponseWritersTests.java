@@ -0,0 +1,98 @@
+package backend.json;
+
+import backend.json.ResponseWriters.Login;
+import backend.json.ResponseWriters.MessageThread;
+import backend.model.Message;
+import backend.model.Role;
+import backend.model.User;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ResponseWritersTests {
+
+    // configured like Spring Boot's auto-configured mapper
+    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    // the shape MessageController used to build for every message
+    record MessageDto(Long id, Long senderId, Long receiverId, String senderName, String receiverName,
+                      String content, LocalDateTime sentAt, boolean read) {}
+
+    @Test
+    void loginMatchesTheMapItReplaces() throws IOException {
+        User u = user(7L, "doctor2", Role.DOCTOR);
+        u.setPractitionerId(3L);
+
+        Map<String, Object> user = new HashMap<>();
+        user.put("id", 7L);
+        user.put("username", "doctor2");
+        user.put("role", "DOCTOR");
+        user.put("practitionerId", 3L);
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("token", "abc");
+        expected.put("user", user);
+
+        assertSameJson(mapper.writeValueAsString(expected), write(ResponseWriters.LOGIN, new Login("abc", u)));
+    }
+
+    @Test
+    void threadIsMergedInTimeOrder() throws IOException {
+        User me = user(1L, "patient2", Role.PATIENT);
+        User other = user(2L, "doctor2", Role.DOCTOR);
+        LocalDateTime t = LocalDateTime.of(2025, 3, 1, 9, 0);
+        List<Message> sent = List.of(message(10L, 1L, 2L, "hej", t), message(12L, 1L, 2L, "tack", t.plusMinutes(5)));
+        List<Message> received = List.of(message(11L, 2L, 1L, "hej hej", t.plusSeconds(30).plusNanos(120_000_000)));
+
+        List<MessageDto> expected = List.of(
+                new MessageDto(10L, 1L, 2L, "patient2", "doctor2", "hej", t, false),
+                new MessageDto(11L, 2L, 1L, "doctor2", "patient2", "hej hej", t.plusSeconds(30).plusNanos(120_000_000), false),
+                new MessageDto(12L, 1L, 2L, "patient2", "doctor2", "tack", t.plusMinutes(5), false));
+
+        assertEquals(mapper.writeValueAsString(expected),
+                write(ResponseWriters.THREAD, new MessageThread(me, other, sent, received)));
+    }
+
+    private <T> String write(JsonWriter<T> writer, T value) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator g = mapper.getFactory().createGenerator(out)) {
+            writer.write(g, value);
+        }
+        return out.toString();
+    }
+
+    private void assertSameJson(String expected, String actual) throws IOException {
+        assertEquals(mapper.readTree(expected), mapper.readTree(actual));
+    }
+
+    static User user(long id, String name, Role role) {
+        User u = new User();
+        ReflectionTestUtils.setField(u, "id", id);
+        u.setUsername(name);
+        u.setRole(role);
+        return u;
+    }
+
+    static Message message(long id, long from, long to, String content, LocalDateTime at) {
+        Message m = new Message();
+        ReflectionTestUtils.setField(m, "id", id);
+        m.setSenderUserId(from);
+        m.setReceiverUserId(to);
+        m.setContent(content);
+        m.setSentAt(at);
+        return m;
+    }
+}
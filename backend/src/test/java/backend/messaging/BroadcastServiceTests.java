@@ -0,0 +1,125 @@
+package backend.messaging;
+
+import backend.datasource.PatientShards;
+import backend.messaging.BroadcastJob.Audience;
+import backend.messaging.BroadcastJob.Snapshot;
+import backend.repository.BroadcastRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Broadcast fan-out against an in-memory H2 schema generated from the entities, in SQL Server mode.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:broadcast;MODE=MSSQLServer;NON_KEYWORDS=VALUE;INIT=CREATE SCHEMA IF NOT EXISTS dbo",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.default_schema=dbo",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BroadcastServiceTests {
+
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final AtomicInteger busyChecks = new AtomicInteger();
+    private PatientShards shards;
+    private BroadcastService service;
+    private long doctor;
+
+    @BeforeEach
+    void setUp() {
+        shards = new PatientShards(1, Long.MAX_VALUE, transactionManager);
+        // the pool looks busy on the first two checks only
+        service = new BroadcastService(new BroadcastRepository(jdbc), shards, transactionManager,
+                () -> busyChecks.incrementAndGet() <= 2, 2, 100_000, Duration.ofMillis(1), 4, 10);
+
+        doctor = user("doktor", "DOCTOR", null);
+        user("syster", "STAFF", null);
+        for (long patient = 1; patient <= 5; patient++) user("patient-" + patient, "PATIENT", patient);
+        // patient 6 has encounters but no account
+        encounter(1, 10);
+        encounter(1, 10);
+        encounter(3, 10);
+        encounter(6, 10);
+        encounter(2, 11);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.close();
+        shards.close();
+        jdbc.update("DELETE FROM dbo.message");
+        jdbc.update("DELETE FROM dbo.encounter");
+        jdbc.update("DELETE FROM dbo.users");
+    }
+
+    @Test
+    void allPatientsGetOneMessageInKeysetBatches() throws InterruptedException {
+        Snapshot done = await(service.submit(Audience.ALL_PATIENTS, null, doctor, "Vaccinationen har öppnat"));
+
+        assertEquals(BroadcastJob.Status.DONE, done.status(), done.error());
+        assertEquals(5, done.recipients());
+        assertEquals(5, done.sent());
+        assertEquals(100, done.percent());
+        assertEquals(2, done.yields());
+        assertEquals(List.of("patient-1", "patient-2", "patient-3", "patient-4", "patient-5"), jdbc.queryForList("""
+                SELECT u.username FROM dbo.message m JOIN dbo.users u ON u.id = m.receiver_user_id
+                WHERE m.sender_user_id = ? AND m.content = 'Vaccinationen har öppnat'
+                ORDER BY u.username
+                """, String.class, doctor));
+        assertEquals(1, jdbc.queryForObject("SELECT COUNT(DISTINCT sent_at) FROM dbo.message", Integer.class));
+    }
+
+    @Test
+    void practitionerPatientsWithAccountsGetTheMessage() throws InterruptedException {
+        Snapshot done = await(service.submit(Audience.PRACTITIONER_PATIENTS, 10L, doctor, "Mottagningen är stängd"));
+
+        assertEquals(BroadcastJob.Status.DONE, done.status(), done.error());
+        assertEquals(3, done.recipients());
+        assertEquals(2, done.sent());
+        assertEquals(List.of("patient-1", "patient-3"), jdbc.queryForList("""
+                SELECT u.username FROM dbo.message m JOIN dbo.users u ON u.id = m.receiver_user_id
+                ORDER BY u.username
+                """, String.class));
+    }
+
+    private long user(String username, String role, Long patientId) {
+        jdbc.update("INSERT INTO dbo.users (username, password_hash, role, patient_id) VALUES (?, 'x', ?, ?)",
+                username, role, patientId);
+        return jdbc.queryForObject("SELECT id FROM dbo.users WHERE username = ?", Long.class, username);
+    }
+
+    private void encounter(long patientId, long practitionerId) {
+        jdbc.update("INSERT INTO dbo.encounter (patient_id, practitioner_id) VALUES (?, ?)", patientId, practitionerId);
+    }
+
+    private Snapshot await(BroadcastJob job) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            Snapshot s = job.snapshot();
+            if (s.status() == BroadcastJob.Status.DONE || s.status() == BroadcastJob.Status.FAILED) return s;
+            Thread.sleep(10);
+        }
+        throw new AssertionError("broadcast did not finish: " + job.snapshot());
+    }
+}
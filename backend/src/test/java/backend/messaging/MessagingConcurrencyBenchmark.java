@@ -0,0 +1,351 @@
+package backend.messaging;
+
+import backend.auth.SessionManager;
+import backend.config.CoalescingConfig;
+import backend.model.Message;
+import backend.model.Role;
+import backend.model.User;
+import backend.repository.MessageArchiveRepository;
+import backend.repository.MessageRepository;
+import backend.repository.UserRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Blocking (one platform thread per request, as with MessageController) against async
+ * (requests queued on the MessagingExecutor, as with AsyncMessageController) message thread
+ * reads with many concurrent clients. H2 stands in for SQL Server, with every statement held
+ * for a few milliseconds, behind a pool of two connections like the messaging partition.
+ * Not part of the test run; run it with
+ *
+ * <pre>
+ * mvn -q test -Dtest=MessagingConcurrencyBenchmark -Dsurefire.failIfNoSpecifiedTests=false
+ * </pre>
+ *
+ * and compare threads, connections held, throughput and resident memory per waiting client.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:messaging;NON_KEYWORDS=VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.hikari.maximum-pool-size=2",
+        "spring.datasource.hikari.connection-timeout=60000",
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "journal.coalescing.enabled=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({MessagingService.class, MessageArchiveRepository.class, CoalescingConfig.class,
+        MessagingConcurrencyBenchmark.Setup.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class MessagingConcurrencyBenchmark {
+
+    private static final int CLIENTS = 400;
+    private static final int STATEMENT_MILLIS = 2;
+    private static final Duration RUN = Duration.ofSeconds(10);
+
+    // statements wait here while closed, so waiting clients can be counted and measured
+    private static final Semaphore DATABASE = new Semaphore(Integer.MAX_VALUE);
+
+    @TestConfiguration
+    static class Setup {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        static BeanPostProcessor slowDatabase() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!"dataSource".equals(beanName) || !(bean instanceof DataSource ds)) return bean;
+                    return new DelegatingDataSource(ds) {
+                        @Override
+                        public Connection getConnection() throws SQLException {
+                            return slow(super.getConnection());
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    @Autowired
+    private MessagingService messaging;
+
+    @Autowired
+    private UserRepository users;
+
+    @Autowired
+    private MessageRepository messages;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private String token;
+    private long otherId;
+
+    @BeforeEach
+    void setUp() {
+        messages.deleteAll();
+        users.deleteAll();
+        User patient = users.save(user("patient", Role.PATIENT));
+        User doctor = users.save(user("doctor", Role.DOCTOR));
+        List<Message> thread = new ArrayList<>();
+        LocalDateTime t = LocalDateTime.of(2025, 3, 1, 9, 0);
+        for (int i = 0; i < 40; i++) {
+            boolean mine = i % 2 == 0;
+            Message m = new Message();
+            m.setSenderUserId(mine ? patient.getId() : doctor.getId());
+            m.setReceiverUserId(mine ? doctor.getId() : patient.getId());
+            m.setContent("Meddelande " + i);
+            m.setSentAt(t.plusMinutes(i));
+            thread.add(m);
+        }
+        messages.saveAll(thread);
+        token = SessionManager.issueToken(patient.getId());
+        otherId = doctor.getId();
+    }
+
+    @Test
+    void blockingVersusAsync() throws Exception {
+        // warm up both paths
+        blocking(CLIENTS, Duration.ofSeconds(2));
+        try (MessagingExecutor executor = new MessagingExecutor(2, CLIENTS * 2, Duration.ofMinutes(1), registry)) {
+            async(executor, CLIENTS, Duration.ofSeconds(2));
+        }
+
+        Result blocking = blocking(CLIENTS, RUN);
+        long blockingRss = waitingRss(true);
+        Result async;
+        long asyncRss;
+        try (MessagingExecutor executor = new MessagingExecutor(2, CLIENTS * 2, Duration.ofMinutes(1), registry)) {
+            async = async(executor, CLIENTS, RUN);
+        }
+        asyncRss = waitingRss(false);
+
+        System.out.printf("%n%d concurrent clients, %d ms per statement, pool of 2%n", CLIENTS, STATEMENT_MILLIS);
+        System.out.printf("%-9s %10s %12s %10s %10s %10s %16s%n",
+                "model", "requests/s", "peak threads", "peak conns", "p50 ms", "p99 ms", "RSS/waiting client");
+        blocking.print("blocking", blockingRss);
+        async.print("async", asyncRss);
+    }
+
+    private record Result(double throughput, int peakThreads, int peakConnections, long p50Micros, long p99Micros) {
+        void print(String model, long rssPerClient) {
+            System.out.printf("%-9s %10.0f %12d %10d %10.1f %10.1f %14d B%n", model, throughput, peakThreads,
+                    peakConnections, p50Micros / 1000.0, p99Micros / 1000.0, rssPerClient);
+        }
+    }
+
+    // a platform thread per client, blocked for the whole request like a servlet thread
+    private Result blocking(int clients, Duration run) throws Exception {
+        Latencies latencies = new Latencies();
+        long end = System.nanoTime() + run.toNanos();
+        threads.resetPeakThreadCount();
+        ConnectionSampler sampler = new ConnectionSampler();
+        List<Thread> running = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            Thread t = new Thread(() -> {
+                while (System.nanoTime() < end) {
+                    long start = System.nanoTime();
+                    messaging.thread(token, otherId);
+                    latencies.add(System.nanoTime() - start);
+                }
+            });
+            t.start();
+            running.add(t);
+        }
+        for (Thread t : running) t.join();
+        return latencies.result(run, threads.getPeakThreadCount(), sampler.stop());
+    }
+
+    // each client has one request queued or running at a time, and no thread while waiting
+    private Result async(MessagingExecutor executor, int clients, Duration run) throws Exception {
+        Latencies latencies = new Latencies();
+        long end = System.nanoTime() + run.toNanos();
+        threads.resetPeakThreadCount();
+        ConnectionSampler sampler = new ConnectionSampler();
+        CountDownLatch done = new CountDownLatch(clients);
+        for (int i = 0; i < clients; i++) {
+            next(executor, latencies, end, done);
+        }
+        done.await();
+        return latencies.result(run, threads.getPeakThreadCount(), sampler.stop());
+    }
+
+    private void next(MessagingExecutor executor, Latencies latencies, long end, CountDownLatch done) {
+        if (System.nanoTime() >= end) {
+            done.countDown();
+            return;
+        }
+        long start = System.nanoTime();
+        executor.submit(() -> messaging.thread(token, otherId)).whenComplete((body, failure) -> {
+            latencies.add(System.nanoTime() - start);
+            next(executor, latencies, end, done);
+        });
+    }
+
+    // resident memory added per client while CLIENTS requests wait for a closed database
+    private long waitingRss(boolean blocking) throws Exception {
+        System.gc();
+        long before = rss();
+        DATABASE.drainPermits();
+        List<Thread> waiting = new ArrayList<>();
+        List<CompletableFuture<?>> queued = new ArrayList<>();
+        MessagingExecutor executor = blocking ? null
+                : new MessagingExecutor(2, CLIENTS * 2, Duration.ofMinutes(1), registry);
+        try {
+            for (int i = 0; i < CLIENTS; i++) {
+                if (blocking) {
+                    Thread t = new Thread(() -> messaging.thread(token, otherId));
+                    t.start();
+                    waiting.add(t);
+                } else {
+                    queued.add(executor.submit(() -> messaging.thread(token, otherId)));
+                }
+            }
+            Thread.sleep(1000);
+            System.gc();
+            return (rss() - before) / CLIENTS;
+        } finally {
+            DATABASE.release(Integer.MAX_VALUE);
+            for (Thread t : waiting) t.join();
+            for (CompletableFuture<?> f : queued) f.get(1, TimeUnit.MINUTES);
+            if (executor != null) executor.close();
+        }
+    }
+
+    private static long rss() throws IOException {
+        for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+            if (line.startsWith("VmRSS:")) return Long.parseLong(line.replaceAll("\\D", "")) * 1024;
+        }
+        throw new IllegalStateException("No VmRSS in /proc/self/status");
+    }
+
+    private static Connection slow(Connection target) {
+        return (Connection) Proxy.newProxyInstance(MessagingConcurrencyBenchmark.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    Object result = invoke(target, method, args);
+                    if (result instanceof PreparedStatement ps) return slow(ps);
+                    return result;
+                });
+    }
+
+    private static PreparedStatement slow(PreparedStatement target) {
+        return (PreparedStatement) Proxy.newProxyInstance(MessagingConcurrencyBenchmark.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    if (method.getName().startsWith("execute")) {
+                        DATABASE.acquire();
+                        DATABASE.release();
+                        Thread.sleep(STATEMENT_MILLIS);
+                    }
+                    return invoke(target, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, java.lang.reflect.Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private static User user(String name, Role role) {
+        User u = new User();
+        u.setUsername(name);
+        u.setPassword("!");
+        u.setRole(role);
+        return u;
+    }
+
+    private final class ConnectionSampler {
+
+        private final AtomicInteger peak = new AtomicInteger();
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        ConnectionSampler() throws SQLException {
+            HikariDataSource pool = dataSource.unwrap(HikariDataSource.class);
+            thread = new Thread(() -> {
+                while (running) {
+                    var mx = pool.getHikariPoolMXBean();
+                    if (mx != null) peak.accumulateAndGet(mx.getActiveConnections(), Math::max);
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int stop() throws InterruptedException {
+            running = false;
+            thread.join();
+            return peak.get();
+        }
+    }
+
+    private static final class Latencies {
+
+        private final long[] micros = new long[2_000_000];
+        private final AtomicLong count = new AtomicLong();
+
+        void add(long nanos) {
+            long i = count.getAndIncrement();
+            if (i < micros.length) micros[(int) i] = nanos / 1000;
+        }
+
+        Result result(Duration run, int peakThreads, int peakConnections) {
+            int n = (int) Math.min(count.get(), micros.length);
+            long[] sorted = Arrays.copyOf(micros, n);
+            Arrays.sort(sorted);
+            return new Result(count.get() / (run.toNanos() / 1e9), peakThreads, peakConnections,
+                    sorted[n / 2], sorted[(int) (n * 0.99)]);
+        }
+    }
+}
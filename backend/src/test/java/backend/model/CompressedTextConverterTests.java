@@ -0,0 +1,49 @@
+package backend.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompressedTextConverterTests {
+
+    private static final String NOTE = """
+            Patienten söker för tilltagande andfåddhet sedan två veckor. Ingen feber.
+            Status: AT gott, cor regelbunden rytm utan blåsljud, pulm vesikulärt andningsljud bilateralt.
+            Bedömning: misstänkt astma, spirometri bokas. Återbesök om fyra veckor.
+            """;
+
+    @Test
+    void shortTextIsStoredPlain() {
+        byte[] stored = CompressedTextConverter.encode("Kontroll, inga anmärkningar.");
+        assertEquals(CompressedTextConverter.PLAIN, stored[0]);
+        assertEquals("Kontroll, inga anmärkningar.", CompressedTextConverter.decode(stored));
+    }
+
+    @Test
+    void longTextIsDeflatedAndRoundTrips() {
+        String text = NOTE.repeat(20);
+        byte[] stored = CompressedTextConverter.encode(text);
+        int utf8 = text.getBytes(StandardCharsets.UTF_8).length;
+
+        assertEquals(CompressedTextConverter.DEFLATE, stored[0]);
+        assertTrue(stored.length * 4 < utf8, "expected at least 4x smaller, got " + stored.length + " of " + utf8);
+        assertEquals(text, CompressedTextConverter.decode(stored));
+    }
+
+    @Test
+    void nullAndEmptyRoundTrip() {
+        assertNull(CompressedTextConverter.encode(null));
+        assertNull(CompressedTextConverter.decode(null));
+        assertEquals("", CompressedTextConverter.decode(CompressedTextConverter.encode("")));
+    }
+
+    @Test
+    void unknownCodecIsRejected() {
+        assertThrows(IllegalStateException.class, () -> CompressedTextConverter.decode(new byte[]{7, 1, 2}));
+    }
+}
@@ -0,0 +1,134 @@
+package backend.profiling;
+
+import backend.profiling.JfrProfiler.Info;
+import backend.profiling.JfrProfiler.Status;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A short real recording of this test's own work: spinning, allocating and running statements on H2.
+ */
+class JfrProfilerTests {
+
+    private static final String QUERY = "SELECT COUNT(*) FROM SYSTEM_RANGE(1, 20000)";
+
+    @TempDir
+    Path directory;
+
+    private JfrProfiler profiler;
+    private JfrDataSource dataSource;
+    private volatile Object sink;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        profiler = new JfrProfiler(directory, "profile", Duration.ZERO, Duration.ofMinutes(1), 5, 10, null);
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:jfr");
+        dataSource = new JfrDataSource(h2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        profiler.close();
+    }
+
+    @Test
+    void recordingIsSummarizedAndCollapsed() throws Exception {
+        Info started = profiler.record(Duration.ofMillis(1500));
+        assertEquals(Status.RECORDING, started.status());
+        assertThrows(JfrProfiler.BusyException.class, () -> profiler.record(Duration.ofSeconds(1)));
+
+        long until = System.nanoTime() + 1_200_000_000L;
+        while (System.nanoTime() < until) {
+            spin();
+            allocate();
+            query();
+        }
+        Info done = await(started.id());
+        assertEquals(Status.DONE, done.status(), done.error());
+        assertTrue(done.bytes() > 0);
+
+        JfrSummary.Summary summary = profiler.summary(started.id()).orElseThrow();
+        assertTrue(summary.cpuSamples() > 0);
+        assertTrue(summary.hotMethods().stream().anyMatch(m -> m.method().endsWith("JfrProfilerTests.spin")),
+                summary.hotMethods().toString());
+        assertTrue(summary.allocatedBytes() > 0);
+        assertTrue(summary.allocationSites().stream().anyMatch(a -> a.site().startsWith("backend.profiling.")),
+                summary.allocationSites().toString());
+        JfrSummary.Statement statement = summary.jdbc().stream()
+                .filter(s -> s.sql().equals(QUERY)).findFirst().orElseThrow();
+        assertTrue(statement.count() > 0);
+
+        String cpu = profiler.collapsed(started.id(), JfrSummary.Kind.CPU).orElseThrow();
+        String[] lines = cpu.split("\n");
+        assertTrue(lines.length > 0);
+        for (String line : lines) assertTrue(line.matches("[^ ].*;?.* \\d+"), line);
+        assertTrue(cpu.contains("JfrProfilerTests.recordingIsSummarizedAndCollapsed;backend.profiling.JfrProfilerTests.spin"),
+                cpu);
+        String jdbc = profiler.collapsed(started.id(), JfrSummary.Kind.JDBC).orElseThrow();
+        assertTrue(jdbc.contains("JfrProfilerTests.query;") && jdbc.contains(";" + QUERY + " "), jdbc);
+    }
+
+    @Test
+    void durationIsBounded() {
+        assertThrows(IllegalArgumentException.class, () -> profiler.record(Duration.ofMinutes(2)));
+        assertThrows(IllegalArgumentException.class, () -> profiler.record(Duration.ZERO));
+        assertThrows(IllegalStateException.class, () -> profiler.dump());
+    }
+
+    @Test
+    void continuousRecordingCanBeDumped() throws Exception {
+        profiler.close();
+        profiler = new JfrProfiler(directory, "profile", Duration.ZERO, Duration.ofMinutes(1), 5, 10,
+                new JfrProfiler.Continuous("default", Duration.ZERO, Duration.ofMinutes(1), 50_000_000));
+        query();
+
+        Info dump = profiler.dump();
+        assertEquals(Status.DONE, dump.status());
+        assertTrue(profiler.summary(dump.id()).orElseThrow().jdbc().stream().anyMatch(s -> s.sql().equals(QUERY)));
+        assertEquals(List.of(dump.id()), profiler.recent().stream().map(Info::id).toList());
+    }
+
+    private void spin() {
+        long x = 0;
+        for (int i = 0; i < 2_000_000; i++) x += Long.rotateLeft(x ^ i, 7);
+        sink = x;
+    }
+
+    private void allocate() {
+        List<byte[]> chunks = new ArrayList<>();
+        for (int i = 0; i < 200; i++) chunks.add(new byte[4096]);
+        sink = chunks;
+    }
+
+    private void query() throws Exception {
+        try (Connection c = dataSource.getConnection(); Statement s = c.createStatement();
+             ResultSet rs = s.executeQuery(QUERY)) {
+            rs.next();
+        }
+    }
+
+    private Info await(String id) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            Info info = profiler.find(id).orElseThrow();
+            if (info.status() != Status.RECORDING) return info;
+            Thread.sleep(50);
+        }
+        throw new AssertionError("recording did not finish");
+    }
+}
@@ -0,0 +1,75 @@
+package backend.ratelimit;
+
+import backend.auth.SessionManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the rate limit filter on an allowed request, against calling the chain directly.
+ * The limits are set high enough that every call is let through.
+ *
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main RateLimitFilterBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RateLimitFilterBenchmark {
+
+    /** One filter shared by all threads, as in the server. */
+    @State(Scope.Benchmark)
+    public static class Shared {
+        RateLimitFilter filter;
+
+        @Setup
+        public void setUp() {
+            int lots = Integer.MAX_VALUE;
+            filter = new RateLimitFilter(List.of(
+                    new RateLimitRule("login", "/api/auth/login", Set.of("POST"),
+                            null, new RateLimiter(lots, Duration.ofSeconds(1), lots, 100_000)),
+                    new RateLimitRule("message-thread", "/api/messages/thread/*", Set.of("GET"),
+                            new RateLimiter(lots, Duration.ofSeconds(1), lots, 100_000),
+                            new RateLimiter(lots, Duration.ofSeconds(1), lots, 100_000))
+            ), new SimpleMeterRegistry());
+        }
+    }
+
+    /** Each thread is its own signed-in client. */
+    @State(Scope.Thread)
+    public static class Poll {
+        MockHttpServletRequest request;
+        MockHttpServletResponse response;
+
+        @Setup
+        public void setUp(Shared shared) {
+            request = new MockHttpServletRequest("GET", "/api/messages/thread/7");
+            request.addHeader("X-Auth", SessionManager.issueToken(42L));
+            response = new MockHttpServletResponse();
+        }
+    }
+
+    private static final FilterChain CHAIN = (req, res) -> {
+    };
+
+    @Benchmark
+    public void withoutFilter(Poll poll) throws Exception {
+        CHAIN.doFilter(poll.request, poll.response);
+    }
+
+    @Benchmark
+    public void withFilter(Shared shared, Poll poll) throws Exception {
+        shared.filter.doFilter(poll.request, poll.response, CHAIN);
+    }
+}
@@ -0,0 +1,125 @@
+package backend.ratelimit;
+
+import backend.auth.SessionManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.filters.RemoteIpFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimitFilterTests {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void allowsBurstThenSustainedRate() {
+        RateLimiter limiter = new RateLimiter(2, Duration.ofSeconds(1), 3, 100);
+        long t = System.nanoTime();
+
+        for (int i = 0; i < 3; i++) assertEquals(0, limiter.acquire("a", t));
+        long wait = limiter.acquire("a", t);
+        assertEquals(SECOND / 2, wait);
+        assertEquals(0, limiter.acquire("b", t), "other keys have their own bucket");
+
+        assertEquals(0, limiter.acquire("a", t + wait));
+        assertTrue(limiter.acquire("a", t + wait) > 0);
+    }
+
+    @Test
+    void idleBucketsAreDroppedWhenFull() {
+        RateLimiter limiter = new RateLimiter(1, Duration.ofSeconds(1), 1, 10);
+        long t = System.nanoTime();
+        for (int i = 0; i < 10; i++) limiter.acquire("ip-" + i, t);
+
+        limiter.acquire("late", t + 5 * SECOND);
+        assertEquals(1, limiter.size());
+    }
+
+    @Test
+    void matchesPathPatterns() {
+        assertTrue(rule("/api/messages/thread/*").matches("/api/messages/thread/7"));
+        assertFalse(rule("/api/messages/thread/*").matches("/api/messages/thread/"));
+        assertFalse(rule("/api/messages/thread/*").matches("/api/messages/thread/7/read"));
+        assertTrue(rule("/api/patients/{id}/notes").matches("/api/patients/3/notes"));
+        assertFalse(rule("/api/auth/login").matches("/api/auth/logout"));
+        assertTrue(rule("/api/**").matches("/api"));
+        assertTrue(rule("/api/**").matches("/api/messages/contacts"));
+        assertFalse(rule("/api/**").matches("/apix"));
+    }
+
+    @Test
+    void pollingTabGets429WithRetryAfter() throws Exception {
+        String token = SessionManager.issueToken(42L);
+        RateLimitRule thread = new RateLimitRule("message-thread",
+                "/api/messages/thread/*", Set.of("GET"),
+                new RateLimiter(1, Duration.ofSeconds(2), 2, 100), null);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RateLimitFilter filter = new RateLimitFilter(List.of(thread), registry);
+
+        assertEquals(200, poll(filter, token).getStatus());
+        assertEquals(200, poll(filter, token).getStatus());
+        MockHttpServletResponse limited = poll(filter, token);
+        assertEquals(429, limited.getStatus());
+        assertEquals("2", limited.getHeader("Retry-After"));
+        assertEquals(1.0, registry.counter("journal.ratelimit.rejected", "rule", "message-thread").count());
+
+        // unknown tokens are not counted per token
+        assertEquals(200, poll(filter, "made-up").getStatus());
+        SessionManager.revoke(token);
+    }
+
+    @Test
+    void clientsBehindTheProxyAreCountedByTheirOwnAddress() throws Exception {
+        RateLimitRule login = new RateLimitRule("login", "/api/auth/login", Set.of("POST"), null,
+                new RateLimiter(1, Duration.ofSeconds(60), 1, 100));
+        RateLimitFilter filter = new RateLimitFilter(List.of(login), new SimpleMeterRegistry());
+        // what server.forward-headers-strategy=native installs in Tomcat, as a filter
+        RemoteIpFilter remoteIp = new RemoteIpFilter();
+
+        assertEquals(200, login(remoteIp, filter, "172.18.0.3", "203.0.113.7").getStatus());
+        assertEquals(200, login(remoteIp, filter, "172.18.0.3", "198.51.100.20").getStatus());
+        assertEquals(429, login(remoteIp, filter, "172.18.0.3", "203.0.113.7").getStatus());
+        // a client that is not a trusted proxy cannot pick its own address
+        assertEquals(200, login(remoteIp, filter, "192.0.2.1", "192.0.2.99").getStatus());
+        assertEquals(429, login(remoteIp, filter, "192.0.2.1", "192.0.2.100").getStatus());
+    }
+
+    private static RateLimitRule rule(String pattern) {
+        return new RateLimitRule("test", pattern, Set.of(), null, null);
+    }
+
+    private static MockHttpServletResponse poll(RateLimitFilter filter, String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/messages/thread/7");
+        request.addHeader("X-Auth", token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private static MockHttpServletResponse login(RemoteIpFilter remoteIp, RateLimitFilter filter,
+                                                 String peer, String forwardedFor) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/auth/login");
+        request.setRemoteAddr(peer);
+        request.addHeader("X-Forwarded-For", forwardedFor);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) {
+            }
+        }, remoteIp, filter).doFilter(request, response);
+        return response;
+    }
+}
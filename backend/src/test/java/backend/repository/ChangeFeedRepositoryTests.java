@@ -0,0 +1,136 @@
+package backend.repository;
+
+import backend.repository.ChangeFeedRepository.MessageChange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The message side of the change feed on SQL Server, where rowversion and MIN_ACTIVE_ROWVERSION()
+ * exist. Runs against the database of {@link PlanTestDatabase} and is skipped when
+ * JOURNAL_PLAN_TEST_URL is not set. The feed has to see other transactions commit, so rows are
+ * committed and removed again after each test.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfEnvironmentVariable(named = "JOURNAL_PLAN_TEST_URL", matches = ".+")
+@Import(ChangeFeedRepository.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ChangeFeedRepositoryTests {
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        PlanTestDatabase.register(registry);
+    }
+
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private ChangeFeedRepository feed;
+
+    private long anna;
+    private long bertil;
+    private long cecilia;
+
+    @BeforeEach
+    void setUp() {
+        tearDown();
+        anna = user("feed-test-anna");
+        bertil = user("feed-test-bertil");
+        cecilia = user("feed-test-cecilia");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbc.update("""
+                DELETE m FROM dbo.message m JOIN dbo.users u ON u.id IN (m.sender_user_id, m.receiver_user_id)
+                WHERE u.username LIKE 'feed-test-%'
+                """);
+        jdbc.update("DELETE FROM dbo.users WHERE username LIKE 'feed-test-%'");
+    }
+
+    @Test
+    void sentAndReceivedComeInVersionOrderAcrossBatches() {
+        long first = message(anna, bertil);
+        long second = message(bertil, anna);
+        message(bertil, cecilia);
+        long third = message(anna, cecilia);
+
+        List<MessageChange> batch = feed.messagesSince(anna, 0, 2);
+        assertEquals(List.of(first, second), ids(batch));
+        assertEquals(List.of(third), ids(feed.messagesSince(anna, batch.get(1).version(), 2)));
+        assertEquals(List.of(second), ids(feed.messagesSince(bertil, batch.get(0).version(), 1)));
+    }
+
+    @Test
+    void aMessageToOneselfComesOnce() {
+        long note = message(anna, anna);
+
+        assertEquals(List.of(note), ids(feed.messagesSince(anna, 0, 10)));
+    }
+
+    @Test
+    void changesWaitForOlderTransactionsToCommit() throws Exception {
+        long before = message(anna, bertil);
+        try (Connection other = dataSource.getConnection()) {
+            other.setAutoCommit(false);
+            // takes a rowversion now but commits only after bertil's next message
+            long inFlight = insert(other, cecilia, bertil);
+            long after = message(bertil, anna);
+
+            assertEquals(List.of(before), ids(feed.messagesSince(anna, 0, 10)));
+
+            other.commit();
+            assertEquals(List.of(before, after), ids(feed.messagesSince(anna, 0, 10)));
+            assertEquals(List.of(before, inFlight, after), ids(feed.messagesSince(bertil, 0, 10)));
+        }
+    }
+
+    private long user(String username) {
+        return jdbc.queryForObject(
+                "INSERT INTO dbo.users (username, password_hash, role) OUTPUT INSERTED.id VALUES (?, '{noop}x', 'PATIENT')",
+                Long.class, username);
+    }
+
+    private long message(long sender, long receiver) {
+        return jdbc.queryForObject(
+                "INSERT INTO dbo.message (sender_user_id, receiver_user_id, content) OUTPUT INSERTED.id VALUES (?, ?, 'hej')",
+                Long.class, sender, receiver);
+    }
+
+    private static long insert(Connection connection, long sender, long receiver) throws Exception {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO dbo.message (sender_user_id, receiver_user_id, content) OUTPUT INSERTED.id VALUES (?, ?, 'hej')")) {
+            ps.setLong(1, sender);
+            ps.setLong(2, receiver);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    private static List<Long> ids(List<MessageChange> changes) {
+        return changes.stream().map(MessageChange::id).toList();
+    }
+}
@@ -0,0 +1,193 @@
+package backend.repository;
+
+import backend.model.CompressedTextConverter;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Note bodies kept apart and compressed (encounter + encounter_note, V7/V8) against the old layout
+ * with the text inline in the encounter row, on the plan test database (see {@link PlanTestDatabase}):
+ *
+ * <pre>
+ * JOURNAL_PLAN_TEST_URL='...' JOURNAL_PLAN_TEST_PASSWORD='...' mvn test -Dtest=EncounterNoteStorageBenchmark
+ * </pre>
+ *
+ * The old layout is rebuilt once as dbo.encounter_wide from the seeded notes. Prints storage,
+ * the buffer pool pages a cold list of patients' encounters reads, and warm list latency.
+ * Clearing the buffer pool needs sysadmin; do not point it at a shared server.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfEnvironmentVariable(named = PlanTestDatabase.URL, matches = ".+")
+@Import(PractitionerActivityRepository.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class EncounterNoteStorageBenchmark {
+
+    private static final int PATIENTS = 500;
+    private static final int LATENCY_ROUNDS = 4;
+    private static final int BATCH = 1000;
+
+    private static final String LIST = """
+            SELECT id, patient_id, practitioner_id, location_id, start_time, end_time, note_preview
+            FROM dbo.encounter WHERE patient_id = ?
+            """;
+    private static final String LIST_WIDE = """
+            SELECT id, patient_id, practitioner_id, location_id, start_time, end_time, notes
+            FROM dbo.encounter_wide WHERE patient_id = ?
+            """;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        PlanTestDatabase.register(registry);
+    }
+
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private PractitionerActivityRepository activity;
+    @Autowired
+    private EncounterRepository encounters;
+
+    private List<Long> patients;
+
+    @BeforeAll
+    void setUp() {
+        PlanTestDatabase.seed(jdbc, transactionManager, activity);
+        if (jdbc.queryForObject("SELECT OBJECT_ID('dbo.encounter_wide')", Integer.class) == null) buildWideCopy();
+        patients = jdbc.queryForList("""
+                SELECT TOP (?) patient_id FROM dbo.encounter GROUP BY patient_id ORDER BY CHECKSUM(patient_id)
+                """, Long.class, PATIENTS);
+    }
+
+    // the pre-V7 encounter table, with the notes decoded back into it
+    private void buildWideCopy() {
+        jdbc.execute("""
+                CREATE TABLE dbo.encounter_wide (
+                    id BIGINT NOT NULL PRIMARY KEY, patient_id BIGINT NOT NULL, practitioner_id BIGINT NULL,
+                    location_id BIGINT NULL, start_time DATETIME2 NULL, end_time DATETIME2 NULL, notes NVARCHAR(MAX) NULL)
+                """);
+        long after = 0;
+        while (true) {
+            List<Object[]> rows = jdbc.query("""
+                    SELECT TOP (?) e.id, e.patient_id, e.practitioner_id, e.location_id, e.start_time, e.end_time, n.body
+                    FROM dbo.encounter e LEFT JOIN dbo.encounter_note n ON n.encounter_id = e.id
+                    WHERE e.id > ? ORDER BY e.id
+                    """, (rs, i) -> new Object[]{rs.getLong(1), rs.getLong(2), rs.getObject(3), rs.getObject(4),
+                    rs.getTimestamp(5), rs.getTimestamp(6), CompressedTextConverter.decode(rs.getBytes(7))},
+                    BATCH, after);
+            if (rows.isEmpty()) break;
+            jdbc.batchUpdate("INSERT INTO dbo.encounter_wide VALUES (?, ?, ?, ?, ?, ?, ?)", rows);
+            after = (Long) rows.get(rows.size() - 1)[0];
+        }
+        jdbc.execute("CREATE INDEX ix_encounter_wide_patient ON dbo.encounter_wide (patient_id)");
+        jdbc.execute("UPDATE STATISTICS dbo.encounter_wide");
+    }
+
+    @Test
+    void storage() {
+        long separate = reservedKb("encounter") + reservedKb("encounter_note");
+        long wide = reservedKb("encounter_wide");
+        long bodies = jdbc.queryForObject("SELECT SUM(CAST(DATALENGTH(body) AS BIGINT)) FROM dbo.encounter_note", Long.class);
+        long text = jdbc.queryForObject("SELECT SUM(CAST(DATALENGTH(notes) AS BIGINT)) FROM dbo.encounter_wide", Long.class);
+
+        System.out.printf("%n%-28s %12s %12s%n", "storage", "separate", "inline");
+        System.out.printf("%-28s %9d KB %9d KB%n", "encounter tables, reserved", separate, wide);
+        System.out.printf("%-28s %9d KB %9d KB%n", "note bodies", bodies / 1024, text / 1024);
+        assertTrue(bodies < text, "compressed bodies take " + bodies + " bytes, the text " + text);
+    }
+
+    @Test
+    void bufferPool() {
+        Map<String, Long> separate = coldPages(id -> encounters.findByPatientId(id));
+        Map<String, Long> wide = coldPages(id -> jdbc.queryForList(LIST_WIDE, id));
+
+        System.out.printf("%n%d patients' encounters listed from a cold cache, 8 KB pages read into the buffer pool%n", PATIENTS);
+        System.out.printf("%-16s %8d%n%-16s %8d%n%-16s %8d%n", "encounter", separate.getOrDefault("encounter", 0L),
+                "encounter_note", separate.getOrDefault("encounter_note", 0L),
+                "encounter_wide", wide.getOrDefault("encounter_wide", 0L));
+        assertEquals(0L, separate.getOrDefault("encounter_note", 0L), "listing encounters read note bodies");
+    }
+
+    @Test
+    void listLatency() {
+        long[] separate = warmLatency(LIST);
+        long[] wide = warmLatency(LIST_WIDE);
+
+        System.out.printf("%n%d patients x %d rounds, warm cache%n", PATIENTS, LATENCY_ROUNDS);
+        System.out.printf("%-9s %10s %10s%n", "layout", "p50 ms", "p99 ms");
+        System.out.printf("%-9s %10.2f %10.2f%n", "separate", percentile(separate, 50), percentile(separate, 99));
+        System.out.printf("%-9s %10.2f %10.2f%n", "inline", percentile(wide, 50), percentile(wide, 99));
+    }
+
+    private long reservedKb(String table) {
+        return jdbc.queryForObject("""
+                SELECT SUM(reserved_page_count) * 8 FROM sys.dm_db_partition_stats WHERE object_id = OBJECT_ID(?)
+                """, Long.class, "dbo." + table);
+    }
+
+    // pages of each table in the buffer pool after running the list on an empty one
+    private Map<String, Long> coldPages(LongConsumer list) {
+        jdbc.execute("CHECKPOINT");
+        jdbc.execute("DBCC DROPCLEANBUFFERS");
+        for (long patient : patients) list.accept(patient);
+
+        Map<String, Long> pages = new HashMap<>();
+        jdbc.query("""
+                SELECT o.name, COUNT(*)
+                FROM sys.dm_os_buffer_descriptors b
+                JOIN sys.allocation_units a ON a.allocation_unit_id = b.allocation_unit_id
+                JOIN sys.partitions p ON (a.type IN (1, 3) AND a.container_id = p.hobt_id)
+                                      OR (a.type = 2 AND a.container_id = p.partition_id)
+                JOIN sys.objects o ON o.object_id = p.object_id
+                WHERE b.database_id = DB_ID() AND o.name IN ('encounter', 'encounter_note', 'encounter_wide')
+                GROUP BY o.name
+                """, rs -> {
+            pages.put(rs.getString(1), rs.getLong(2));
+        });
+        return pages;
+    }
+
+    private long[] warmLatency(String sql) {
+        for (long patient : patients) jdbc.queryForList(sql, patient);
+        List<Long> nanos = new ArrayList<>();
+        for (int round = 0; round < LATENCY_ROUNDS; round++) {
+            for (long patient : patients) {
+                long start = System.nanoTime();
+                jdbc.queryForList(sql, patient);
+                nanos.add(System.nanoTime() - start);
+            }
+        }
+        long[] sorted = nanos.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static double percentile(long[] sorted, int p) {
+        return sorted[Math.min(sorted.length - 1, sorted.length * p / 100)] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,46 @@
+package backend.repository;
+
+import backend.seed.SeedLoader;
+import backend.seed.SyntheticRecords;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * The SQL Server database the plan and storage tests run against, named by JOURNAL_PLAN_TEST_URL
+ * (with JOURNAL_PLAN_TEST_USER and JOURNAL_PLAN_TEST_PASSWORD). It is migrated by the test context
+ * and seeded with {@link SyntheticRecords} on the first run (JOURNAL_PLAN_TEST_PATIENTS patients,
+ * 20000 by default).
+ */
+final class PlanTestDatabase {
+
+    static final String URL = "JOURNAL_PLAN_TEST_URL";
+
+    private PlanTestDatabase() {
+    }
+
+    static void register(DynamicPropertyRegistry registry) {
+        Map<String, String> env = System.getenv();
+        registry.add("spring.datasource.url", () -> env.get(URL));
+        registry.add("spring.datasource.username", () -> env.getOrDefault("JOURNAL_PLAN_TEST_USER", "sa"));
+        registry.add("spring.datasource.password", () -> env.getOrDefault("JOURNAL_PLAN_TEST_PASSWORD", ""));
+    }
+
+    static void seed(JdbcTemplate jdbc, PlatformTransactionManager transactionManager,
+                     PractitionerActivityRepository activity) {
+        int wanted = Integer.parseInt(System.getenv().getOrDefault("JOURNAL_PLAN_TEST_PATIENTS", "20000"));
+        int existing = jdbc.queryForObject("SELECT COUNT(*) FROM dbo.patient", Integer.class);
+        if (existing >= wanted) return;
+        if (existing > 0) {
+            fail("The plan test database has " + existing + " patients; use an empty one or one with at least " + wanted);
+        }
+        SeedLoader loader = new SeedLoader(jdbc, transactionManager, activity, 4);
+        loader.load(new SyntheticRecords(1, wanted, 1000, 1500, 5, LocalDate.now(), "{noop}seed", loader.nextIds()));
+        jdbc.execute("EXEC sp_updatestats");
+    }
+}
@@ -0,0 +1,130 @@
+package backend.repository;
+
+import backend.repository.PractitionerActivityRepository.Activity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The practitioner activity rollup on SQL Server: its MERGE statements (HOLDLOCK, WHEN NOT MATCHED
+ * BY SOURCE) do not parse on H2, so these run against the database of {@link PlanTestDatabase}
+ * and are skipped when JOURNAL_PLAN_TEST_URL is not set. Every test rolls back, and its rows are
+ * in 2199, where the seeded records never reach.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfEnvironmentVariable(named = "JOURNAL_PLAN_TEST_URL", matches = ".+")
+@Import(PractitionerActivityRepository.class)
+class PractitionerActivityRepositoryTests {
+
+    private static final LocalDate MONDAY = LocalDate.of(2199, 6, 3);
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        PlanTestDatabase.register(registry);
+    }
+
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private PractitionerActivityRepository activity;
+
+    private long practitioner;
+    private long patient;
+
+    @BeforeEach
+    void setUp() {
+        practitioner = jdbc.queryForObject(
+                "INSERT INTO dbo.practitioner (name) OUTPUT INSERTED.id VALUES ('Aktivitet Testsson')", Long.class);
+        patient = jdbc.queryForObject(
+                "INSERT INTO dbo.patient (personnummer, name) OUTPUT INSERTED.id VALUES ('21990603-0000', 'Test Patient')", Long.class);
+    }
+
+    @Test
+    void incrementsAddUpPerDay() {
+        activity.addEncounter(practitioner, MONDAY);
+        activity.addEncounter(practitioner, MONDAY);
+        activity.addDiagnosis(practitioner, MONDAY);
+        activity.addEncounter(practitioner, MONDAY.plusDays(1));
+
+        assertEquals(List.of(
+                new Activity(practitioner, MONDAY, 2, 1),
+                new Activity(practitioner, MONDAY.plusDays(1), 1, 0)
+        ), range(MONDAY, MONDAY.plusDays(7), false));
+    }
+
+    @Test
+    void reconcileCorrectsDriftInsideTheRangeOnly() {
+        encounter(MONDAY.atTime(8, 0));
+        encounter(MONDAY.atTime(23, 59, 59));
+        diagnosis(MONDAY.atTime(9, 30));
+        encounter(MONDAY.plusDays(2).atStartOfDay());
+        rollup(MONDAY.minusDays(1), 9, 9);   // before the range: left alone
+        rollup(MONDAY, 5, 0);                // wrong counts: updated
+        rollup(MONDAY.plusDays(1), 1, 0);    // nothing behind it: deleted
+        // the encounter on MONDAY + 2 has no row yet: inserted
+
+        assertEquals(3, activity.reconcile(MONDAY, MONDAY.plusDays(3)));
+        assertEquals(List.of(
+                new Activity(practitioner, MONDAY.minusDays(1), 9, 9),
+                new Activity(practitioner, MONDAY, 2, 1),
+                new Activity(practitioner, MONDAY.plusDays(2), 1, 0)
+        ), range(MONDAY.minusDays(1), MONDAY.plusDays(3), false));
+        assertEquals(0, activity.reconcile(MONDAY, MONDAY.plusDays(3)));
+    }
+
+    @Test
+    void weeksStartOnMondayWhateverDatefirstIs() {
+        rollup(MONDAY.minusDays(1), 1, 0);
+        rollup(MONDAY, 1, 0);
+        rollup(MONDAY.plusDays(6), 0, 1);
+        rollup(MONDAY.plusDays(7), 1, 1);
+
+        // weeks starting on Wednesday, so DATEPART(weekday) would get them wrong
+        jdbc.execute("SET DATEFIRST 3");
+        try {
+            assertEquals(List.of(
+                    new Activity(practitioner, MONDAY.minusDays(7), 1, 0),
+                    new Activity(practitioner, MONDAY, 1, 1),
+                    new Activity(practitioner, MONDAY.plusDays(7), 1, 1)
+            ), range(MONDAY.minusDays(1), MONDAY.plusDays(8), true));
+        } finally {
+            jdbc.execute("SET DATEFIRST 7");
+        }
+    }
+
+    private List<Activity> range(LocalDate from, LocalDate to, boolean weekly) {
+        return activity.range(from, to, practitioner, weekly).stream()
+                .sorted(Comparator.comparing(Activity::period))
+                .toList();
+    }
+
+    private void encounter(LocalDateTime start) {
+        jdbc.update("INSERT INTO dbo.encounter (patient_id, practitioner_id, start_time) VALUES (?, ?, ?)",
+                patient, practitioner, start);
+    }
+
+    private void diagnosis(LocalDateTime recorded) {
+        jdbc.update("INSERT INTO dbo.[condition] (patient_id, code, recorded_at, asserted_by_practitioner_id) VALUES (?, 'J06.9', ?, ?)",
+                patient, recorded, practitioner);
+    }
+
+    private void rollup(LocalDate day, int encounters, int diagnoses) {
+        jdbc.update("INSERT INTO dbo.practitioner_daily_activity (practitioner_id, day, encounters, diagnoses) VALUES (?, ?, ?, ?)",
+                practitioner, day, encounters, diagnoses);
+    }
+}
@@ -0,0 +1,204 @@
+package backend.repository;
+
+import backend.model.Patient;
+import backend.model.Role;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Execution plans of the hot repository queries on SQL Server: each one must seek its table,
+ * never scan it. Needs a database of its own, which is migrated and seeded on the first run
+ * (see {@link PlanTestDatabase}):
+ *
+ * <pre>
+ * JOURNAL_PLAN_TEST_URL='jdbc:sqlserver://localhost:1433;databaseName=journal_plans;encrypt=true;trustServerCertificate=true' \
+ * JOURNAL_PLAN_TEST_PASSWORD='...' mvn test -Dtest=QueryPlanTests
+ * </pre>
+ *
+ * Skipped when JOURNAL_PLAN_TEST_URL is not set. Each query runs once with a freshly cleared
+ * plan cache for the database, and the plan it compiled is read back from the plan cache.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfEnvironmentVariable(named = "JOURNAL_PLAN_TEST_URL", matches = ".+")
+@Import({PractitionerActivityRepository.class, ChangeFeedRepository.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryPlanTests {
+
+    private static final List<String> SCANS = List.of("Table Scan", "Index Scan", "Clustered Index Scan");
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        PlanTestDatabase.register(registry);
+    }
+
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private PractitionerActivityRepository activity;
+    @Autowired
+    private PatientRepository patients;
+    @Autowired
+    private EncounterRepository encounters;
+    @Autowired
+    private ConditionRepository conditions;
+    @Autowired
+    private UserRepository users;
+    @Autowired
+    private MessageRepository messages;
+    @Autowired
+    private ChangeFeedRepository feed;
+
+    @BeforeAll
+    void seed() {
+        PlanTestDatabase.seed(jdbc, transactionManager, activity);
+    }
+
+    @Test
+    void patientByName() {
+        // a name nobody has: with synthetic names several patients share each one, which findByName rejects
+        assertSeeks("patient", () -> patients.findByName("Ingen Alls"));
+    }
+
+    @Test
+    void encountersOfPatient() {
+        long patientId = somePatient();
+        assertSeeks("encounter", () -> encounters.findByPatientId(patientId));
+    }
+
+    @Test
+    void conditionsOfPatient() {
+        Patient patient = patients.findById(somePatient()).orElseThrow();
+        assertSeeks("[condition]", () -> conditions.findByPatient(patient));
+    }
+
+    @Test
+    void userByUsername() {
+        String username = jdbc.queryForObject("SELECT MAX(username) FROM dbo.users WHERE role = 'PATIENT'", String.class);
+        assertSeeks("users", () -> users.findByUsername(username));
+    }
+
+    @Test
+    void usersByRole() {
+        // doctors are a small share of all accounts; listing every patient is meant to scan
+        assertSeeks("users", () -> users.findByRole(Role.DOCTOR));
+    }
+
+    @Test
+    void userPages() {
+        // each filter combination of /api/users compiles its own plan
+        String username = jdbc.queryForObject("SELECT MAX(username) FROM dbo.users WHERE role = 'PATIENT'", String.class);
+        String prefix = username.substring(0, username.length() - 1).replace("\\", "\\\\")
+                .replace("%", "\\%").replace("_", "\\_").replace("[", "\\[") + "%";
+        assertSeeks("users", () -> users.findPage(0, null, null, Limit.of(50)));
+        assertSeeks("users", () -> users.findPage(0, Role.DOCTOR, null, Limit.of(50)));
+        assertSeeks("users", () -> users.findPage(0, null, prefix, Limit.of(50)));
+        assertSeeks("users", () -> users.findPage(0, Role.PATIENT, prefix, Limit.of(50)));
+    }
+
+    @Test
+    void messageThread() {
+        Map<String, Object> pair = jdbc.queryForMap("""
+                SELECT TOP 1 sender_user_id, receiver_user_id FROM dbo.message
+                GROUP BY sender_user_id, receiver_user_id ORDER BY COUNT(*) DESC
+                """);
+        long sender = ((Number) pair.get("sender_user_id")).longValue();
+        long receiver = ((Number) pair.get("receiver_user_id")).longValue();
+        assertSeeks("message", () -> messages.findBySenderUserIdAndReceiverUserIdOrderBySentAtAsc(sender, receiver));
+    }
+
+    @Test
+    void changedMessages() {
+        // sent and received are one seek each, from the cursor on
+        long user = jdbc.queryForObject("""
+                SELECT TOP 1 sender_user_id FROM dbo.message GROUP BY sender_user_id ORDER BY COUNT(*) DESC
+                """, Long.class);
+        assertSeeks("message", () -> feed.messagesSince(user, 0, 200));
+    }
+
+    private long somePatient() {
+        return jdbc.queryForObject("SELECT MAX(patient_id) FROM dbo.encounter", Long.class);
+    }
+
+    /**
+     * Runs the query on an empty plan cache and checks the plans of the statements that read
+     * {@code table}: at least one seek on it and no scan.
+     */
+    private void assertSeeks(String table, Runnable query) {
+        jdbc.execute("ALTER DATABASE SCOPED CONFIGURATION CLEAR PROCEDURE_CACHE");
+        query.run();
+
+        List<String> plans = jdbc.queryForList("""
+                SELECT CAST(qp.query_plan AS NVARCHAR(MAX))
+                FROM sys.dm_exec_cached_plans cp
+                CROSS APPLY sys.dm_exec_sql_text(cp.plan_handle) st
+                CROSS APPLY sys.dm_exec_query_plan(cp.plan_handle) qp
+                WHERE CHARINDEX(?, st.text) > 0 AND st.text NOT LIKE '%dm_exec_cached_plans%'
+                """, String.class, "from " + table + " ");
+        assertFalse(plans.isEmpty(), "no cached plan reads " + table);
+
+        String quoted = table.startsWith("[") ? table : "[" + table + "]";
+        List<String> seeks = new ArrayList<>();
+        List<String> scans = new ArrayList<>();
+        for (String plan : plans) {
+            for (Element op : relOps(plan)) {
+                NodeList objects = op.getElementsByTagNameNS("*", "Object");
+                if (objects.getLength() == 0) continue;
+                Element object = (Element) objects.item(0);
+                if (!quoted.equals(object.getAttribute("Table"))) continue;
+                String physical = op.getAttribute("PhysicalOp");
+                String described = physical + " on " + quoted + "." + object.getAttribute("Index");
+                if (SCANS.contains(physical)) scans.add(described);
+                if (physical.endsWith("Seek")) seeks.add(described);
+            }
+        }
+        assertTrue(scans.isEmpty(), "expected a seek on " + quoted + " but the plan has " + scans);
+        assertFalse(seeks.isEmpty(), "no seek on " + quoted + " in " + plans);
+    }
+
+    // leaf operators only: a scan or seek has no child operators, so its first Object is its own
+    private static List<Element> relOps(String plan) {
+        try {
+            var factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            NodeList ops = factory.newDocumentBuilder().parse(new InputSource(new StringReader(plan)))
+                    .getElementsByTagNameNS("*", "RelOp");
+            List<Element> leaves = new ArrayList<>();
+            for (int i = 0; i < ops.getLength(); i++) {
+                Element op = (Element) ops.item(i);
+                if (op.getElementsByTagNameNS("*", "RelOp").getLength() == 0) leaves.add(op);
+            }
+            return leaves;
+        } catch (Exception e) {
+            throw new IllegalStateException("Unreadable plan", e);
+        }
+    }
+}
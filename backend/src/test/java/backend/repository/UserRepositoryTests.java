@@ -0,0 +1,82 @@
+package backend.repository;
+
+import backend.model.Role;
+import backend.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The user listing queries against an in-memory H2 schema generated from the entities.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:users;NON_KEYWORDS=VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class UserRepositoryTests {
+
+    @Autowired
+    private UserRepository users;
+
+    private long first;
+
+    @BeforeEach
+    void setUp() {
+        first = save("anna", Role.PATIENT);
+        save("anders", Role.DOCTOR);
+        save("an_na", Role.PATIENT);
+        save("bertil", Role.PATIENT);
+        save("annika", Role.STAFF);
+    }
+
+    @Test
+    void pagesFollowTheIdKeyset() {
+        List<UserSummary> page1 = users.findPage(0, null, null, Limit.of(2));
+        List<UserSummary> page2 = users.findPage(page1.get(1).getId(), null, null, Limit.of(2));
+        List<UserSummary> page3 = users.findPage(page2.get(1).getId(), null, null, Limit.of(2));
+
+        assertEquals(List.of("anna", "anders"), names(page1));
+        assertEquals(List.of("an_na", "bertil"), names(page2));
+        assertEquals(List.of("annika"), names(page3));
+        assertEquals(first, page1.get(0).getId());
+    }
+
+    @Test
+    void filtersByRoleAndLiteralPrefix() {
+        assertEquals(List.of("anna", "an_na", "bertil"), names(users.findPage(0, Role.PATIENT, null, Limit.of(10))));
+        // '_' in the prefix is not a wildcard
+        assertEquals(List.of("an_na"), names(users.findPage(0, null, "an\\_%", Limit.of(10))));
+        assertEquals(List.of("anna", "an_na"), names(users.findPage(0, Role.PATIENT, "an%", Limit.of(10))));
+    }
+
+    @Test
+    void streamUsesTheSameFilters() {
+        try (Stream<UserSummary> rows = users.streamAll(null, "ann%")) {
+            assertEquals(List.of("anna", "annika"), rows.map(UserSummary::getUsername).toList());
+        }
+    }
+
+    private long save(String username, Role role) {
+        User u = new User();
+        u.setUsername(username);
+        u.setPassword("x");
+        u.setRole(role);
+        return users.save(u).getId();
+    }
+
+    private static List<String> names(List<UserSummary> rows) {
+        return rows.stream().map(UserSummary::getUsername).toList();
+    }
+}
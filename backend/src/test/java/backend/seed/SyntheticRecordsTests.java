@@ -0,0 +1,139 @@
+package backend.seed;
+
+import backend.imports.Personnummer;
+import backend.seed.SyntheticRecords.Batch;
+import backend.seed.SyntheticRecords.Ids;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SyntheticRecordsTests {
+
+    private static final LocalDate UNTIL = LocalDate.of(2025, 6, 1);
+    private static final Ids IDS = new Ids(1, 1, 1, 4, 1, 1, 1, 1, 1);
+
+    private static SyntheticRecords records(long seed) {
+        return new SyntheticRecords(seed, 5_000, 500, 1500, 5, UNTIL, "{bcrypt}x", IDS);
+    }
+
+    @Test
+    void sameSeedGivesSameRowsInAnyChunkOrder() {
+        SyntheticRecords a = records(7);
+        SyntheticRecords b = records(7);
+        List<Batch> forwards = new ArrayList<>();
+        for (int c = 0; c < a.chunks(); c++) forwards.add(a.chunk(c));
+        for (int c = b.chunks() - 1; c >= 0; c--) {
+            assertSameRows(forwards.get(c), b.chunk(c));
+        }
+        assertSameRows(a.staff(), b.staff());
+
+        Batch other = records(8).chunk(0);
+        assertTrue(!other.patients().get(0)[2].equals(forwards.get(0).patients().get(0)[2])
+                || !other.patients().get(1)[2].equals(forwards.get(0).patients().get(1)[2]));
+    }
+
+    @Test
+    void rowsReferenceEachOtherAndIdsDoNotOverlap() {
+        SyntheticRecords records = records(7);
+        Batch staff = records.staff();
+        Set<Long> practitioners = ids(staff.practitioners());
+        Set<Long> users = ids(staff.users());
+        Set<Long> patients = new HashSet<>();
+        Set<Long> encounters = new HashSet<>();
+        Set<String> personnummer = new HashSet<>();
+        int conditions = 0;
+        int observations = 0;
+        int messages = 0;
+
+        for (int c = 0; c < records.chunks(); c++) {
+            Batch batch = records.chunk(c);
+            for (Object[] p : batch.patients()) {
+                assertTrue(patients.add((Long) p[0]));
+                String pnr = (String) p[1];
+                assertTrue(personnummer.add(pnr), pnr);
+                assertEquals(pnr, Personnummer.normalize(pnr, UNTIL));
+                assertEquals(((java.sql.Date) p[3]).toLocalDate(), Personnummer.birthDate(pnr));
+            }
+            for (Object[] u : batch.users()) {
+                assertTrue(users.add((Long) u[0]));
+                assertTrue(patients.contains((Long) u[4]));
+            }
+            for (Object[] e : batch.encounters()) {
+                assertTrue(encounters.add((Long) e[0]));
+                assertTrue(patients.contains((Long) e[1]));
+                assertTrue(practitioners.contains((Long) e[2]));
+            }
+            for (Object[] n : batch.notes()) assertTrue(encounters.contains((Long) n[0]));
+            for (Object[] o : batch.observations()) assertTrue(encounters.contains((Long) o[7]));
+            for (Object[] m : batch.messages()) {
+                assertTrue(users.contains((Long) m[1]) && users.contains((Long) m[2]));
+            }
+            conditions += batch.conditions().size();
+            observations += batch.observations().size();
+            messages += batch.messages().size();
+        }
+        assertEquals(5_000, patients.size());
+        assertTrue(conditions > 5_000 && encounters.size() > 20_000 && observations > 20_000 && messages > 1_000,
+                conditions + " " + encounters.size() + " " + observations + " " + messages);
+    }
+
+    @Test
+    void diagnosesAndThreadsAreSkewed() {
+        SyntheticRecords records = records(7);
+        Map<String, Integer> codes = new HashMap<>();
+        Map<Long, Integer> threads = new HashMap<>();
+        int total = 0;
+        for (int c = 0; c < records.chunks(); c++) {
+            Batch batch = records.chunk(c);
+            for (Object[] d : batch.conditions()) {
+                codes.merge((String) d[2], 1, Integer::sum);
+                total++;
+            }
+            // one thread per patient, keyed by the patient's account
+            for (Object[] m : batch.messages()) threads.merge(Math.max((Long) m[1], (Long) m[2]), 1, Integer::sum);
+        }
+
+        List<Integer> counts = new ArrayList<>(codes.values());
+        counts.sort(null);
+        int top = counts.get(counts.size() - 1);
+        assertEquals(top, codes.get(ClinicalCatalog.INFECTION));
+        assertTrue(top > total / 5, top + " of " + total);
+        assertTrue(counts.get(0) < total / 100);
+
+        List<Integer> lengths = new ArrayList<>(threads.values());
+        lengths.sort(null);
+        assertEquals(1, lengths.get(lengths.size() / 2));
+        assertTrue(lengths.get(lengths.size() - 1) >= 50, "longest thread " + lengths.get(lengths.size() - 1));
+    }
+
+    private static Set<Long> ids(List<Object[]> rows) {
+        Set<Long> ids = new HashSet<>();
+        for (Object[] r : rows) ids.add((Long) r[0]);
+        return ids;
+    }
+
+    private static void assertSameRows(Batch expected, Batch actual) {
+        assertEquals(expected.rows(), actual.rows());
+        for (int t = 0; t < 10; t++) {
+            List<Object[]> e = table(expected, t);
+            List<Object[]> a = table(actual, t);
+            assertEquals(e.size(), a.size());
+            for (int i = 0; i < e.size(); i++) assertArrayEquals(e.get(i), a.get(i));
+        }
+    }
+
+    private static List<Object[]> table(Batch b, int t) {
+        return List.of(b.organizations(), b.locations(), b.practitioners(), b.patients(), b.users(),
+                b.conditions(), b.encounters(), b.notes(), b.observations(), b.messages()).get(t);
+    }
+}
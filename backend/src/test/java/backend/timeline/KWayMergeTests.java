@@ -0,0 +1,98 @@
+package backend.timeline;
+
+import backend.timeline.TimelineEntry.Kind;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KWayMergeTests {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    @Test
+    void mergesSortedSourcesIntoOneOrder() {
+        var merged = new KWayMerge<>(List.of(
+                List.of(1, 4, 9).iterator(),
+                List.<Integer>of().iterator(),
+                List.of(2, 3, 10).iterator()
+        ), Integer::compare);
+
+        List<Integer> out = new ArrayList<>();
+        merged.forEachRemaining(out::add);
+        assertEquals(List.of(1, 2, 3, 4, 9, 10), out);
+    }
+
+    @Test
+    void pagingWithCursorsVisitsEveryEntryOnceInOrder() {
+        // deliberate timestamp ties within and across kinds
+        List<TimelineEntry> encounters = List.of(entry(Kind.ENCOUNTER, 1, 0), entry(Kind.ENCOUNTER, 2, 0), entry(Kind.ENCOUNTER, 3, 5));
+        List<TimelineEntry> conditions = List.of(entry(Kind.CONDITION, 1, 0), entry(Kind.CONDITION, 7, 5));
+        List<TimelineEntry> observations = List.of(entry(Kind.OBSERVATION, 4, 0), entry(Kind.OBSERVATION, 5, 3), entry(Kind.OBSERVATION, 6, 5));
+
+        List<TimelineEntry> expected = new ArrayList<>();
+        expected.addAll(encounters);
+        expected.addAll(conditions);
+        expected.addAll(observations);
+        expected.sort(TimelineEntry.ORDER);
+
+        AtomicInteger queries = new AtomicInteger();
+        List<TimelineEntry> seen = new ArrayList<>();
+        TimelineCursor cursor = null;
+        do {
+            int size = 2;
+            var merged = new KWayMerge<>(List.of(
+                    new KeysetSource(table(encounters, queries), cursor, size + 1),
+                    new KeysetSource(table(conditions, queries), cursor, size + 1),
+                    new KeysetSource(table(observations, queries), cursor, size + 1)
+            ), TimelineEntry.ORDER);
+            for (int i = 0; i < size && merged.hasNext(); i++) seen.add(merged.next());
+            cursor = merged.hasNext() ? seen.get(seen.size() - 1).position() : null;
+        } while (cursor != null);
+
+        assertEquals(expected, seen);
+        assertTrue(queries.get() <= 3 * 4, "each page should cost at most one query per source");
+    }
+
+    @Test
+    void idThresholdMatchesTheTimelineOrder() {
+        for (Kind cursorKind : Kind.values()) {
+            TimelineCursor cursor = new TimelineCursor(T0, cursorKind, 10);
+            TimelineEntry at = new TimelineEntry(cursorKind, 10, T0, "", null);
+            for (Kind kind : Kind.values()) {
+                for (long id : new long[]{1, 10, 11}) {
+                    TimelineEntry row = new TimelineEntry(kind, id, T0, "", null);
+                    boolean afterByOrder = TimelineEntry.ORDER.compare(row, at) > 0;
+                    boolean afterByPredicate = id > cursor.idThresholdFor(kind);
+                    assertEquals(afterByOrder, afterByPredicate, kind + "/" + id + " vs " + cursorKind);
+                }
+            }
+        }
+    }
+
+    @Test
+    void cursorTokenRoundTrips() {
+        var cursor = new TimelineCursor(T0.plusSeconds(42), Kind.CONDITION, 123);
+        assertEquals(cursor, TimelineCursor.decode(cursor.encode()));
+    }
+
+    private static TimelineEntry entry(Kind kind, long id, int minutes) {
+        return new TimelineEntry(kind, id, T0.plusMinutes(minutes), kind + "#" + id, null);
+    }
+
+    // in-memory stand-in for one keyset query
+    private static KeysetSource.Fetcher table(List<TimelineEntry> rows, AtomicInteger queries) {
+        return (after, limit) -> {
+            queries.incrementAndGet();
+            return rows.stream()
+                    .filter(e -> after == null || TimelineEntry.ORDER.compare(e, new TimelineEntry(after.kind(), after.id(), after.at(), "", null)) > 0)
+                    .limit(limit)
+                    .toList();
+        };
+    }
+}
@@ -0,0 +1,129 @@
+package backend.tracing;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TracingTests {
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutorService pool = Executors.newSingleThreadExecutor();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void spansAreExportedAsOtlpJsonWithTheirParents() throws Exception {
+        SpanExporter exporter = new SpanExporter(dir, "journal-test", 1 << 20, 3, 100, 50, registry);
+        Tracer tracer = new Tracer(1.0, exporter);
+
+        Span root = tracer.startServer("GET /api/users", null);
+        Span previous = TraceContext.swap(root);
+        try (TraceContext.Scope repository = TraceContext.open("UserRepository.findPage", Span.Kind.INTERNAL)) {
+            // the statement runs on another thread but stays in the trace
+            pool.submit(TraceContext.wrap(() -> {
+                try (TraceContext.Scope statement = TraceContext.open("SELECT", Span.Kind.CLIENT)) {
+                    statement.span().attribute("db.statement", "select * from dbo.users");
+                    statement.error(new IllegalStateException("deadlock"));
+                }
+                return null;
+            })).get();
+            assertSame(repository.span(), TraceContext.current());
+        } finally {
+            TraceContext.swap(previous);
+        }
+        root.attribute("http.response.status_code", 200L).end();
+        assertNull(TraceContext.current());
+        exporter.close();
+
+        Map<String, JsonNode> spans = new HashMap<>();
+        for (String line : Files.readAllLines(exporter.file(0))) {
+            JsonNode resource = mapper.readTree(line).path("resourceSpans").get(0);
+            assertEquals("journal-test", resource.path("resource").path("attributes").get(0).path("value").path("stringValue").asText());
+            for (JsonNode span : resource.path("scopeSpans").get(0).path("spans")) spans.put(span.path("name").asText(), span);
+        }
+        assertEquals(3, spans.size());
+
+        JsonNode server = spans.get("GET /api/users");
+        JsonNode repository = spans.get("UserRepository.findPage");
+        JsonNode statement = spans.get("SELECT");
+        assertEquals(2, server.path("kind").asInt());
+        assertFalse(server.has("parentSpanId"));
+        assertEquals(server.path("spanId").asText(), repository.path("parentSpanId").asText());
+        assertEquals(repository.path("spanId").asText(), statement.path("parentSpanId").asText());
+        assertEquals(server.path("traceId").asText(), statement.path("traceId").asText());
+        assertEquals(32, statement.path("traceId").asText().length());
+        assertEquals(3, statement.path("kind").asInt());
+        assertEquals(2, statement.path("status").path("code").asInt());
+        assertTrue(Long.parseLong(server.path("endTimeUnixNano").asText())
+                >= Long.parseLong(statement.path("endTimeUnixNano").asText()));
+        assertEquals(3.0, registry.counter("journal.tracing.spans", "outcome", "exported").count());
+    }
+
+    @Test
+    void incomingTraceparentDecidesSampling() throws Exception {
+        SpanExporter exporter = new SpanExporter(dir, "journal-test", 1 << 20, 3, 100, 50, registry);
+        Tracer never = new Tracer(0.0, exporter);
+
+        assertNull(never.startServer("GET", null));
+        assertNull(never.startServer("GET", "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-00"));
+        Span joined = never.startServer("GET", "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01");
+        assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", joined.traceId());
+        assertEquals(0x00f067aa0ba902b7L, joined.parentSpanId);
+        assertTrue(joined.traceparent().startsWith("00-4bf92f3577b34da6a3ce929d0e0e4736-"));
+
+        // without a current span nothing is opened or wrapped
+        TraceContext.Scope scope = TraceContext.open("SELECT", Span.Kind.CLIENT);
+        assertNull(scope.span());
+        scope.close();
+        Runnable task = () -> { };
+        assertSame(task, TraceContext.wrap(task));
+        exporter.close();
+    }
+
+    @Test
+    void filesRotateAndOldOnesAreDeleted() throws Exception {
+        SpanExporter exporter = new SpanExporter(dir, "journal-test", 1, 2, 100, 1, registry);
+        Tracer tracer = new Tracer(1.0, exporter);
+        for (int i = 0; i < 5; i++) {
+            tracer.startServer("GET /api/auth/me", null).end();
+            waitFor(registry, i + 1);
+        }
+        exporter.close();
+
+        assertEquals(List.of("traces-0.jsonl", "traces-1.jsonl"),
+                Files.list(dir).map(p -> p.getFileName().toString()).sorted().toList());
+        assertEquals(1, Files.readAllLines(exporter.file(0)).size());
+    }
+
+    private static void waitFor(SimpleMeterRegistry registry, int exported) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (registry.counter("journal.tracing.spans", "outcome", "exported").count() < exported) {
+            if (System.nanoTime() > deadline) throw new AssertionError("spans not exported");
+            Thread.sleep(5);
+        }
+    }
+}
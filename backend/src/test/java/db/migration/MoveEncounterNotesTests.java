@@ -0,0 +1,32 @@
+package db.migration;
+
+import backend.model.CompressedTextConverter;
+import backend.model.EncounterNote;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * V8 carries its own copy of the note encoding; what it wrote must stay readable by the converter.
+ */
+class MoveEncounterNotesTests {
+
+    private static final String SENTENCE = "Återbesök om fyra veckor, spirometri bokas. ";
+
+    @Test
+    void migratedNotesAreReadByTheConverter() {
+        for (String note : new String[]{"", "Kontroll.", SENTENCE.repeat(5), SENTENCE.repeat(200)}) {
+            byte[] stored = V8__move_encounter_notes.encode(note);
+            assertEquals(note, CompressedTextConverter.decode(stored));
+            assertArrayEquals(CompressedTextConverter.encode(note), stored);
+        }
+    }
+
+    @Test
+    void previewMatchesTheEntity() {
+        String note = SENTENCE.repeat(10);
+        assertEquals(EncounterNote.previewOf(note), V8__move_encounter_notes.preview(note));
+        assertEquals("Kontroll.", V8__move_encounter_notes.preview("Kontroll."));
+    }
+}